@@ -0,0 +1,62 @@
+import io
+from collections import OrderedDict
+from cStringIO import StringIO
+from json.tests import CTest
+
+
+class TestIterload(CTest):
+
+    def iterload(self, source, decoder=None, items=False):
+        import _json
+        return _json.iterload(source, decoder, items)
+
+    def test_lines(self):
+        lines = '{"a": 1, "b": [true, null]}\n"x"\n2.5\n\n[]\n'
+        self.assertEqual(list(self.iterload(lines)),
+                         [{u'a': 1, u'b': [True, None]}, u'x', 2.5, []])
+        self.assertEqual(list(self.iterload(StringIO(lines))), list(self.iterload(lines)))
+        self.assertEqual(list(self.iterload(bytearray('1 2 "\xc3\xa9"'))), [1, 2, u'\xe9'])
+        self.assertEqual(list(self.iterload(u'"\xe9" {"k": "\\u00e9"}')),
+                         [u'\xe9', {u'k': u'\xe9'}])
+        self.assertEqual(list(self.iterload('  ')), [])
+
+    def test_items(self):
+        it = self.iterload(StringIO('[1, "]", {"a": [2, "["]}, 3]'), items=True)
+        self.assertEqual(next(it), 1)
+        self.assertEqual(list(it), [u']', {u'a': [2, u'[']}, 3])
+        self.assertEqual(list(self.iterload(' [ ] ', items=True)), [])
+
+    def test_many_values(self):
+        # More than one chunk of the stream, with keys shared between the values
+        text = '\n'.join('{"id": %d, "name": "n%d"}' % (i, i) for i in range(5000))
+        values = list(self.iterload(StringIO(text)))
+        self.assertEqual(len(values), 5000)
+        self.assertEqual(values[4999], {u'id': 4999, u'name': u'n4999'})
+        key = [k for k in values[0] if k == u'name'][0]
+        self.assertTrue(any(k is key for k in values[4999]))
+        items = '[' + ', '.join('"%d"' % i for i in range(5000)) + ']'
+        self.assertEqual(list(self.iterload(StringIO(items), items=True)),
+                         [unicode(i) for i in range(5000)])
+
+    def test_non_bmp(self):
+        smile = u'\U0001F600'
+        self.assertEqual(list(self.iterload(u'"%s" 1' % smile)), [smile, 1])
+        self.assertEqual(list(self.iterload(u'["%s", 3]' % smile, items=True)), [smile, 3])
+        self.assertEqual(list(self.iterload(io.StringIO(u'{"k": "%s"}\n2' % smile))),
+                         [{u'k': smile}, 2])
+        # A surrogate pair across the end of the first chunk read from the string
+        text = u'a' * 8190 + smile
+        self.assertEqual(list(self.iterload(u'"%s" 1' % text)), [text, 1])
+        self.assertRaises(ValueError, list, self.iterload(u'1%s' % smile))
+
+    def test_decoder(self):
+        decoder = self.json.JSONDecoder(parse_int=str, object_pairs_hook=OrderedDict)
+        self.assertEqual(list(self.iterload('1 {"b": 2, "a": 3}', decoder)),
+                         ['1', OrderedDict([(u'b', '2'), (u'a', '3')])])
+
+    def test_errors(self):
+        for text, items in [('[1,]', True), ('[1 2]', True), ('[1] x', True), ('{}', True),
+                            ('[1, 2', True), ('1 {"a" 1}', False), ('1 ]', False),
+                            ('12x', False), ('"abc', False), ('nul', False)]:
+            self.assertRaises(ValueError, list, self.iterload(text, items=items))
+        self.assertRaises(TypeError, self.iterload, 3)
@@ -97,8 +97,335 @@ class TestCompileall(unittest.TestCase):
                 "Hello world!")
 
 
+class TestInvokeDynamic(unittest.TestCase):
+
+    def run_indy(self, source):
+        # Options.invokedynamic is read when the code is compiled
+        from org.python.core import Options
+        saved = Options.invokedynamic
+        Options.invokedynamic = True
+        try:
+            code = compile(textwrap.dedent(source), "<indy>", "exec")
+        finally:
+            Options.invokedynamic = saved
+        namespace = {}
+        exec code in namespace
+        return namespace
+
+    def test_method_call_order(self):
+        # The method is looked up before its arguments are evaluated
+        ns = self.run_indy("""
+            def missing():
+                None.foo(1/0)
+
+            class C(object):
+                def f(self, x):
+                    return 'old', x
+
+            def rebind(c):
+                c.f = lambda x: ('new', x)
+                return 1
+
+            def rebound():
+                c = C()
+                return c.f(rebind(c))
+
+            def constant():
+                return C().f(2), 'abc'.upper()
+            """)
+        self.assertRaises(AttributeError, ns['missing'])
+        self.assertEqual(ns['rebound'](), ('old', 1))
+        self.assertEqual(ns['constant'](), (('old', 2), 'ABC'))
+
+    def test_instance_attribute_positions(self):
+        # Sites read split instance dictionaries at the position of the name they remember
+        ns = self.run_indy("""
+            class C(object):
+                pass
+
+            def get_x(c):
+                return c.x
+
+            def get_late(c):
+                return c.late
+            """)
+        C, get_x, get_late = ns['C'], ns['get_x'], ns['get_late']
+        a = C()
+        a.x = 1
+        self.assertEqual(get_x(a), 1)
+        self.assertRaises(AttributeError, get_late, a)
+        # The shared keys grow past the remembered position, and are replaced by larger ones
+        b = C()
+        b.x = 2
+        for i in range(30):
+            setattr(b, 'a%d' % i, i)
+        b.late = 'late'
+        self.assertEqual(get_x(b), 2)
+        self.assertEqual(get_late(b), 'late')
+        self.assertEqual(get_x(a), 1)
+        self.assertRaises(AttributeError, get_late, a)
+        # An instance with fewer keys than the position of the name
+        c = C()
+        c.x = 3
+        self.assertRaises(AttributeError, get_late, c)
+        c.late = 'later'
+        self.assertEqual(get_late(c), 'later')
+        # Deleting the attribute
+        del a.x
+        self.assertRaises(AttributeError, get_x, a)
+        a.x = 4
+        self.assertEqual(get_x(a), 4)
+        del b.late
+        self.assertRaises(AttributeError, get_late, b)
+        # Replacing the dictionary
+        d = C()
+        d.x = 5
+        self.assertEqual(get_x(d), 5)
+        d.__dict__ = {'x': 6}
+        self.assertEqual(get_x(d), 6)
+        d.__dict__ = {}
+        self.assertRaises(AttributeError, get_x, d)
+        self.assertEqual(get_x(a), 4)
+
+
+class TestArithmetic(unittest.TestCase):
+    """The fast paths of compiled arithmetic and comparison on int and float operands give the
+    results the general methods would, with and without invokedynamic."""
+
+    SOURCE = textwrap.dedent("""
+        def add(a, b): return a + b
+        def sub(a, b): return a - b
+        def mul(a, b): return a * b
+        def iadd(a, b):
+            a += b
+            return a
+        def isub(a, b):
+            a -= b
+            return a
+        def imul(a, b):
+            a *= b
+            return a
+        def eq(a, b): return a == b
+        def ne(a, b): return a != b
+        def lt(a, b): return a < b
+        def le(a, b): return a <= b
+        def gt(a, b): return a > b
+        def ge(a, b): return a >= b
+        """)
+
+    def compiled(self, invokedynamic):
+        # Options.invokedynamic is read when the code is compiled
+        from org.python.core import Options
+        saved = Options.invokedynamic
+        Options.invokedynamic = invokedynamic
+        try:
+            code = compile(self.SOURCE, "<arithmetic>", "exec")
+        finally:
+            Options.invokedynamic = saved
+        namespace = {}
+        exec code in namespace
+        return namespace
+
+    def assertSameValue(self, actual, expected):
+        # In this Jython type() reports a long as int, but __class__ tells them apart
+        self.assertEqual(actual, expected)
+        self.assertIs(actual.__class__, expected.__class__)
+
+    def check_overflow(self, f):
+        big, small = sys.maxint, -sys.maxint - 1
+        for add in (f['add'], f['iadd']):
+            self.assertSameValue(add(big - 1, 1), big)
+            self.assertSameValue(add(big, 1), big + 1L)
+            self.assertSameValue(add(small, -1), small - 1L)
+        for sub in (f['sub'], f['isub']):
+            self.assertSameValue(sub(small + 1, 1), small)
+            self.assertSameValue(sub(small, 1), small - 1L)
+            self.assertSameValue(sub(0, small), -small)
+            self.assertIs(sub(0, small).__class__, long)
+        for mul in (f['mul'], f['imul']):
+            self.assertSameValue(mul(1 << 15, 1 << 15), 1 << 30)
+            self.assertSameValue(mul(1 << 16, 1 << 15), 1L << 31)
+            self.assertSameValue(mul(small, -1), -small)
+            self.assertSameValue(mul(-1 << 16, 1 << 15), small)
+        self.assertSameValue(f['add'](1, 0.5), 1.5)
+        self.assertSameValue(f['mul'](3, 0.5), 1.5)
+        self.assertSameValue(f['isub'](0.5, 1), -0.5)
+
+    def check_subclasses(self, f):
+        class I(int):
+            def __add__(self, other): return 'I.add'
+            def __radd__(self, other): return 'I.radd'
+            def __mul__(self, other): return 'I.mul'
+            def __rmul__(self, other): return 'I.rmul'
+            def __eq__(self, other): return 'I.eq'
+            def __lt__(self, other): return 'I.lt'
+
+        class F(float):
+            def __sub__(self, other): return 'F.sub'
+            def __rsub__(self, other): return 'F.rsub'
+
+        self.assertEqual(f['add'](I(1), 2), 'I.add')
+        self.assertEqual(f['add'](2, I(1)), 'I.radd')
+        self.assertEqual(f['iadd'](I(1), 2), 'I.add')
+        self.assertEqual(f['mul'](2, I(1)), 'I.rmul')
+        self.assertEqual(f['eq'](I(1), 1), 'I.eq')
+        self.assertEqual(f['lt'](I(1), 2), 'I.lt')
+        self.assertSameValue(f['sub'](I(5), 2), 3)
+        self.assertEqual(f['sub'](F(1), 2), 'F.sub')
+        self.assertEqual(f['sub'](2, F(1)), 'F.rsub')
+        self.assertEqual(f['isub'](1.0, F(1)), 'F.rsub')
+        self.assertSameValue(f['add'](F(1), 2), 3.0)
+        # bool is a subclass of int, whose results are ints
+        self.assertSameValue(f['add'](True, True), 2)
+        self.assertSameValue(f['mul'](True, 3), 3)
+        self.assertSameValue(f['sub'](False, 1.5), -1.5)
+        self.assertIs(f['eq'](True, 1), True)
+        self.assertIs(f['lt'](False, True), True)
+
+    def check_comparisons(self, f):
+        nan = float('nan')
+        cases = [(1, 1.0), (1, 1.5), (2, 1.5), (-1, -1.0), (sys.maxint, float(sys.maxint)),
+                 (3, 3), (3, 4), (0.5, 0), (nan, 1), (1, nan), (nan, nan), (0, -0.0)]
+        for a, b in cases:
+            self.assertIs(f['eq'](a, b), a == b, (a, b))
+            self.assertIs(f['ne'](a, b), a != b, (a, b))
+            self.assertIs(f['lt'](a, b), a < b, (a, b))
+            self.assertIs(f['le'](a, b), a <= b, (a, b))
+            self.assertIs(f['gt'](a, b), a > b, (a, b))
+            self.assertIs(f['ge'](a, b), a >= b, (a, b))
+        self.assertIs(f['eq'](1, 1.0), True)
+        self.assertIs(f['lt'](1, nan), False)
+        self.assertIs(f['ne'](nan, nan), True)
+
+    def test_int_overflow(self):
+        self.check_overflow(self.compiled(False))
+
+    def test_int_overflow_invokedynamic(self):
+        self.check_overflow(self.compiled(True))
+
+    def test_subclasses(self):
+        self.check_subclasses(self.compiled(False))
+
+    def test_subclasses_invokedynamic(self):
+        self.check_subclasses(self.compiled(True))
+
+    def test_mixed_comparisons(self):
+        self.check_comparisons(self.compiled(False))
+
+    def test_mixed_comparisons_invokedynamic(self):
+        self.check_comparisons(self.compiled(True))
+
+    def test_sites_seeing_every_kind(self):
+        # One site meeting ints, floats, subclasses and other types in turn
+        f = self.compiled(True)
+        for i in range(3):
+            self.check_overflow(f)
+            self.check_subclasses(f)
+            self.check_comparisons(f)
+            self.assertEqual(f['add']('a', 'b'), 'ab')
+            self.assertEqual(f['mul']([1], 2), [1, 1])
+
+
+class TestGlobalCache(unittest.TestCase):
+    """Loads of global names, which the compiled code caches, see every change to the globals
+    and builtins."""
+
+    SOURCE = textwrap.dedent("""
+        def get_g():
+            return g
+
+        def get_len():
+            return len
+        """)
+
+    def namespace(self, code, **names):
+        # Module dictionaries (not a dict) are those the cache is used with
+        import types
+        ns = types.ModuleType('cached').__dict__
+        ns.update(names)
+        exec code in ns
+        return ns
+
+    def test_rebind_and_delete_global(self):
+        ns = self.namespace(compile(self.SOURCE, '<cache>', 'exec'), g=1)
+        get_g = ns['get_g']
+        self.assertEqual(get_g(), 1)
+        self.assertEqual(get_g(), 1)
+        ns['g'] = 2
+        self.assertEqual(get_g(), 2)
+        del ns['g']
+        self.assertRaises(NameError, get_g)
+        ns['g'] = 3
+        self.assertEqual(get_g(), 3)
+        ns.update(g=4)
+        self.assertEqual(get_g(), 4)
+        ns.pop('g')
+        self.assertRaises(NameError, get_g)
+
+    def test_global_shadows_builtin(self):
+        ns = self.namespace(compile(self.SOURCE, '<cache>', 'exec'))
+        get_len = ns['get_len']
+        self.assertIs(get_len(), len)
+        self.assertIs(get_len(), len)
+        ns['len'] = 'global'
+        self.assertEqual(get_len(), 'global')
+        del ns['len']
+        self.assertIs(get_len(), len)
+
+    def test_rebind_and_delete_builtin(self):
+        ns = self.namespace(compile(self.SOURCE, '<cache>', 'exec'))
+        get_g = ns['get_g']
+        self.assertRaises(NameError, get_g)
+        try:
+            __builtin__.g = 'builtin'
+            self.assertEqual(get_g(), 'builtin')
+            self.assertEqual(get_g(), 'builtin')
+            __builtin__.g = 'rebound'
+            self.assertEqual(get_g(), 'rebound')
+            del __builtin__.g
+            self.assertRaises(NameError, get_g)
+        finally:
+            if hasattr(__builtin__, 'g'):
+                del __builtin__.g
+
+    def test_one_code_two_namespaces(self):
+        # The functions share the cache of their code, but not their globals
+        code = compile(self.SOURCE, '<cache>', 'exec')
+        first = self.namespace(code, g='first')['get_g']
+        second_ns = self.namespace(code, g='second')
+        second = second_ns['get_g']
+        for i in range(3):
+            self.assertEqual(first(), 'first')
+            self.assertEqual(second(), 'second')
+        second_ns['g'] = 'changed'
+        self.assertEqual(first(), 'first')
+        self.assertEqual(second(), 'changed')
+
+    def test_namespace_not_kept(self):
+        # The cache, which the class of the code holds, does not keep the last globals alive
+        import gc
+        import time
+        import weakref
+
+        class Value(object):
+            pass
+
+        code = compile(self.SOURCE, '<cache>', 'exec')
+        ns = self.namespace(code, g=Value())
+        self.assertIsInstance(ns['get_g'](), Value)
+        ref = weakref.ref(ns['g'])
+        del ns
+        for i in range(20):
+            gc.collect()
+            if ref() is None:
+                break
+            time.sleep(0.05)
+        self.assertIsNone(ref())
+
+
 def test_main():
-    run_unittest(TestMtime, TestCompileall)
+    run_unittest(TestMtime, TestCompileall, TestInvokeDynamic, TestArithmetic,
+                 TestGlobalCache)
 
 
 if __name__ == "__main__":
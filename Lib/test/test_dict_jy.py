@@ -540,6 +540,107 @@ class JavaConcurrentHashMapDictTest(NullRejectingDictTest):
     type2test = ConcurrentHashMap
 
 
+class InstanceDictTest(unittest.TestCase):
+    """The __dict__ of instances shares its keys with the other instances of the class (PEP 412)
+    while they set the same attributes in the same order."""
+
+    def setUp(self):
+        from java.lang import Class, Object
+        from org.python.core import CompactDictMap
+        self.get_map = Class.getMethod(stringmap, 'getMap', [])
+        self.position_of = Class.getDeclaredMethod(CompactDictMap, 'positionOf', [Object])
+        self.position_of.setAccessible(True)
+        position = Class.forName('org.python.core.CompactDictMap$KeyPosition')
+        self.position_keys = Class.getDeclaredField(position, 'keys')
+        self.position_keys.setAccessible(True)
+
+    def shared_keys(self, obj):
+        # The keys the __dict__ of obj shares, or None if it has a table of its own
+        position = self.position_of.invoke(self.get_map.invoke(obj.__dict__, []), ['x'])
+        return None if position is None else self.position_keys.get(position)
+
+    def check_sharing(self, C):
+        a, b = C(), C()
+        a.x, a.y = 1, 2
+        b.x, b.y = 3, 4
+        self.assertIsNotNone(self.shared_keys(a))
+        self.assertIs(self.shared_keys(a), self.shared_keys(b))
+        self.assertEqual((a.x, a.y, b.x, b.y), (1, 2, 3, 4))
+        # An instance setting the same names in another order has a table of its own
+        c = C()
+        c.y, c.x = 5, 6
+        self.assertIsNone(self.shared_keys(c))
+        self.assertEqual((c.x, c.y), (6, 5))
+        self.assertIs(self.shared_keys(a), self.shared_keys(b))
+        # So does one that deletes an attribute
+        del b.x
+        self.assertIsNone(self.shared_keys(b))
+        self.assertEqual(vars(b), {'y': 4})
+        self.assertEqual(vars(a), {'x': 1, 'y': 2})
+
+    def test_sharing(self):
+        class C(object):
+            pass
+        self.check_sharing(C)
+
+    def test_sharing_old_style(self):
+        class C:
+            pass
+        self.check_sharing(C)
+
+    def test_shared_key_limit(self):
+        # The shared keys hold at most 42 names: an instance with more has a table of its own
+        class C(object):
+            pass
+        names = ['x'] + ['a%d' % i for i in range(41)]
+        a, b = C(), C()
+        for i, name in enumerate(names):
+            setattr(a, name, i)
+            setattr(b, name, -i)
+        self.assertIsNotNone(self.shared_keys(a))
+        self.assertIs(self.shared_keys(a), self.shared_keys(b))
+        b.extra = 'extra'
+        self.assertIsNone(self.shared_keys(b))
+        self.assertIsNotNone(self.shared_keys(a))
+        for i, name in enumerate(names):
+            self.assertEqual(getattr(a, name), i)
+            self.assertEqual(getattr(b, name), -i)
+        self.assertEqual(b.extra, 'extra')
+        self.assertEqual(len(vars(b)), 43)
+        # New instances still share the keys of the first 42
+        c = C()
+        c.x = 'c'
+        self.assertIs(self.shared_keys(c), self.shared_keys(a))
+
+    def test_vars_round_trip(self):
+        class C(object):
+            pass
+        a = C()
+        a.x, a.y = 1, 2
+        self.assertIs(vars(a), a.__dict__)
+        self.assertEqual(dict(vars(a)), {'x': 1, 'y': 2})
+        self.assertEqual(vars(a).keys(), ['x', 'y'])
+        # Changes through the dictionary are seen as attributes, and the other way round
+        vars(a)['z'] = 3
+        self.assertEqual(a.z, 3)
+        a.__dict__.update(w=4)
+        self.assertEqual(a.w, 4)
+        a.y = 'y'
+        self.assertEqual(a.__dict__['y'], 'y')
+        # Copying the attributes to a new instance, as copy.copy does
+        b = C.__new__(C)
+        b.__dict__.update(vars(a))
+        self.assertEqual(vars(b), vars(a))
+        self.assertIs(self.shared_keys(b), self.shared_keys(a))
+        # Replacing the dictionary
+        b.__dict__ = {'y': 'replaced'}
+        self.assertEqual(b.y, 'replaced')
+        self.assertFalse(hasattr(b, 'x'))
+        b.x = 5
+        self.assertEqual(vars(b), {'x': 5, 'y': 'replaced'})
+        self.assertEqual(a.x, 1)
+
+
 def test_main():
     test_support.run_unittest(
         DictInitTest,
@@ -556,6 +657,7 @@ def test_main():
         JavaLinkedHashMapDictTest,
         JavaHashtableDictTest,
         JavaConcurrentHashMapDictTest,
+        InstanceDictTest,
     )
 
 
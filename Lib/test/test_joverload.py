@@ -121,6 +121,19 @@ class OverloadedDispatchTests(unittest.TestCase):
                    """)
 
 
+    def test_choice_by_value(self):
+        # Whether a type or a method converts depends on the value, so a choice made for one
+        # object must not be remembered for the next of the same class
+        class C(object):
+            def run(self):
+                pass
+        o = JOverload()
+        self.assertEqual(o.ov_class1(C), "(java.lang.Object)")
+        self.assertEqual(o.ov_class1(dict), "(java.lang.Class)")
+        self.assertEqual(o.ov_class2(C.run), "(java.lang.Object)")
+        self.assertEqual(o.ov_class2(C().run), "(java.lang.Runnable)")
+
+
 class VarargsDispatchTests(unittest.TestCase):
 
     def test_strings(self):
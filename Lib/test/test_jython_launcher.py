@@ -4,8 +4,10 @@
 import os
 import pprint
 import shlex
+import shutil
 import subprocess
 import sys
+import tempfile
 import unittest
 from collections import OrderedDict
 from test import test_support
@@ -60,7 +62,7 @@ class TestLauncher(unittest.TestCase):
         newenv = env.copy()
         for var in ("CLASSPATH",
                     "JAVA_MEM", "JAVA_HOME", "JAVA_OPTS", "JAVA_STACK",
-                    "JYTHON_HOME", "JYTHON_OPTS"):
+                    "JYTHON_CDS_ARCHIVE", "JYTHON_HOME", "JYTHON_OPTS"):
             try:
                 del newenv[var]
             except KeyError:
@@ -239,6 +241,61 @@ class TestLauncher(unittest.TestCase):
     def test_semicolon(self):
         self.assertCommand(['-c', ';import sys; print sys.argv[1:]', 'foo;'])
 
+    def get_cds(self, archive):
+        """The arguments --cds adds for the given archive, and what the launcher says."""
+        env = self.get_newenv()
+        env["JYTHON_CDS_ARCHIVE"] = archive
+        p = subprocess.Popen([launcher, "--cds", "--print"], env=env,
+                             stdout=subprocess.PIPE, stderr=subprocess.PIPE)
+        out, err = p.communicate()
+        self.assertEqual(p.returncode, 0, err)
+        args = subprocess._cmdline2list(out.rstrip()) if is_windows else shlex.split(out)
+        self.assertEqual(args[-1], "org.python.util.jython")
+        return [arg for arg in args if "cds" in arg or "Archive" in arg], err
+
+    def make_dir(self):
+        d = tempfile.mkdtemp()
+        self.addCleanup(shutil.rmtree, d)
+        return d
+
+    def test_cds_writes_archive(self):
+        archive = os.path.join(self.make_dir(), "jython.jsa")
+        args, err = self.get_cds(archive)
+        self.assertEqual(args, ["-XX:ArchiveClassesAtExit=" + archive,
+                                "-Xlog:cds=off", "-Xlog:cds+dynamic=off"])
+        self.assertEqual(err, "")
+
+    def test_cds_uses_archive(self):
+        archive = os.path.join(self.make_dir(), "jython.jsa")
+        open(archive, "wb").close()
+        args, err = self.get_cds(archive)
+        self.assertEqual(args, ["-XX:SharedArchiveFile=" + archive,
+                                "-Xlog:cds=off", "-Xlog:cds+dynamic=off"])
+        self.assertEqual(err, "")
+
+    def test_cds_cannot_write(self):
+        # No archive, and none may be written: it runs without one, and says so
+        archive = os.path.join(self.make_dir(), "missing", "jython.jsa")
+        args, err = self.get_cds(archive)
+        self.assertEqual(args, [])
+        self.assertIn("cannot write " + archive, err)
+        self.assertIn("JYTHON_CDS_ARCHIVE", err)
+
+    def test_cds_read_only(self):
+        d = self.make_dir()
+        os.chmod(d, 0555)
+        self.addCleanup(os.chmod, d, 0755)
+        if os.access(d, os.W_OK):
+            self.skipTest("a read-only directory is writable by this user")
+        args, err = self.get_cds(os.path.join(d, "jython.jsa"))
+        self.assertEqual(args, [])
+        self.assertIn("cannot write", err)
+
+    def test_cds_not_requested(self):
+        env = self.get_newenv()
+        args = self.get_cmdline([launcher, "--print"], env)
+        self.assertEqual([arg for arg in args if "cds" in arg or "Archive" in arg], [])
+
 
 def test_main():
     global is_windows
@@ -61,6 +61,19 @@ class ListTestCase(unittest.TestCase):
         self.assertEqual(len(lst), 64000)
         self.assertEqual(sum(lst), 2047968000)
 
+    def test_item_identity(self):
+        # Items read back are the objects stored, whatever their type
+        x, y = 100000, 2.5
+        lst = [x, x]
+        self.assertIs(lst[0], x)
+        self.assertIs(lst[-1], x)
+        lst = [y]
+        lst.append(y)
+        self.assertIs(lst[1], y)
+        self.assertIs(max(lst), y)
+        self.assertIs(sorted([y, y * 2])[0], y)
+        self.assertTrue(all(a is x for a in [x] * 3))
+
 
 class ThreadSafetyTestCase(unittest.TestCase):
 
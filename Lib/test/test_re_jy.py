@@ -81,9 +81,234 @@ class ReTest(unittest.TestCase):
         COMMENT_RE = re.compile(r'(^|\s)+#.*$')
         self.assertEqual(COMMENT_RE.sub('', '#'), '')
 
+    def test_deep_repeat(self):
+        # Each repeat of the group is a level of the match, beyond the old limit of 5000
+        m = re.match(r'(ab)*c', 'ab' * 20000 + 'c')
+        self.assertEqual(m.end(), 40001)
+        self.assertEqual(m.group(1), 'ab')
+
+    def test_search_skips(self):
+        # Searches skip where no match can begin, or return early when it cannot be found at all
+        self.assertEqual(re.search(r'abcab', 'xabcadabababcab').span(), (10, 15))
+        self.assertEqual(re.search(r'x*y', 'aaay').span(), (3, 4))
+        self.assertEqual(re.findall(r'(?i)warn', 'WARN x Warned'), ['WARN', 'Warn'])
+        self.assertEqual(re.search(r'(\w+)@(\w+)', 'no at sign'), None)
+        self.assertEqual(re.search(r'(\w+)@(\w+)', 'mail me@host now').groups(), ('me', 'host'))
+        self.assertEqual(re.search(r'\b[A-Z]\w+', 'lower Upper').group(), 'Upper')
+        self.assertEqual(re.findall(r'a|$', 'xax'), ['a', ''])
+
+    def test_max_steps(self):
+        from org.python.core import Options
+        import sre_compile
+        saved = Options.sreMaxSteps
+        Options.sreMaxSteps = 100000
+        try:
+            # A new pattern object, which re.compile may have cached from another test
+            pattern = sre_compile.compile(r'(a|aa)+b', 0)
+            self.assertRaises(RuntimeError, pattern.match, 'a' * 40)
+            self.assertEqual(pattern.match('a' * 40 + 'b').end(), 41)
+        finally:
+            Options.sreMaxSteps = saved
+
+    def test_deep_match_then_another(self):
+        # A match deep enough to grow the stack of contexts, then matches that reuse it
+        s = 'ab' * 50000
+        self.assertEqual(re.match(r'(?:a|b)*?c|(?:ab)*$', s).end(), len(s))
+        self.assertEqual(re.match(r'(a|b)*c', s + 'c').end(), len(s) + 1)
+        self.assertEqual(re.match(r'(?:(a)|b)+', 'abab').group(1), 'a')
+
+
+class CompiledPatternTest(unittest.TestCase):
+    """Patterns compiled to bytecode (python.sre.jitThreshold) must match as the interpreter does:
+    each pattern is made twice, one left to the interpreter and one compiled when first used."""
+
+    # (pattern, flags, whether the compiler translates it)
+    PATTERNS = [
+        (r'abc', 0, True),
+        (r'a.c', 0, True),
+        (r'a.c', re.S, True),
+        (r'[a-c]+x?', 0, True),
+        (r'[^a-c\s]*', 0, True),
+        (r'\d+\s\w+', 0, True),
+        (r'\bfoo\b|\Bbar', 0, True),
+        (r'^\w+$', re.M, True),
+        (r'\A\w|\w\Z', 0, True),
+        (r'(a)(b|x)c', 0, True),
+        (r'(a|bc|d)(e|)', 0, True),
+        (r'(?:ab|a)c', 0, True),
+        (r'(?P<x>a)|(?P<y>b)', 0, True),
+        (r'x*?y', 0, True),
+        (r'a{2,3}b|a{1,2}?', 0, True),
+        (r'(\w)\1', 0, True),
+        (r'(\w)\1', re.I, True),
+        (r'(?=ab)a', 0, True),
+        (r'(?!ab)a\w', 0, True),
+        (r'(?<=a)b', 0, True),
+        (r'(?<!a)b+', 0, True),
+        (r'ABC|[a-c]b', re.I, True),
+        (r'STRASSE|na\xefve', re.I | re.U, True),
+        (r'\w+', re.L, True),
+        (r'\w+', re.U, True),
+        (r'[\w-]+@[\w.]+', 0, True),
+        # General repeats (of more than one character, or of a group) and conditional groups are
+        # left to the interpreter
+        (r'(a)(b)?c', 0, False),
+        (r'(ab)*c', 0, False),
+        (r'(a|b)+?c', 0, False),
+        (r'(a)?(?(1)b|c)', 0, False),
+    ]
+
+    SUBJECTS = ['', 'abc', 'aabbcc', 'xabcx', 'ab ac abc', 'foo bar foobar', 'AbC aBc',
+                'a1 b2\nc3\n', 'abab', 'aaab', 'ba', '123 abc', 'aa de bcex y xxy',
+                'me@host.com, you-2@there.org', u'caf\xe9 na\xefve STRASSE stra\xdfe',
+                u'\u0100\u0101 aa']
+
+    def setUp(self):
+        from java.lang import Class
+        from org.python.core import Options
+        from org.python.modules.sre import PatternObject
+        self.options = Options
+        self.saved = Options.sreJitThreshold
+        field = Class.getDeclaredField(PatternObject, 'program')
+        field.setAccessible(True)
+        self.program = field
+
+    def tearDown(self):
+        self.options.sreJitThreshold = self.saved
+
+    @staticmethod
+    def make(pattern, flags):
+        import sre_compile
+        # A new pattern object, counting its uses from zero, which re.compile might not give
+        return sre_compile.compile(pattern, flags)
+
+    @staticmethod
+    def describe(m):
+        if m is None:
+            return None
+        return ([m.span(i) for i in range(len(m.groups()) + 1)], m.lastindex, m.lastgroup)
+
+    def results(self, p, s, threshold):
+        # The threshold is read at each use: the first use compiles when it is zero
+        self.options.sreJitThreshold = threshold
+        return [self.describe(p.match(s)),
+                [self.describe(p.search(s, pos)) for pos in range(len(s) + 1)],
+                [self.describe(m) for m in p.finditer(s)],
+                p.findall(s),
+                p.sub(lambda m: '<%s>' % m.group(), s),
+                p.split(s)]
+
+    def test_compiled_as_interpreted(self):
+        for pattern, flags, compiles in self.PATTERNS:
+            interpreted = self.make(pattern, flags)
+            compiled = self.make(pattern, flags)
+            for s in self.SUBJECTS:
+                expected = self.results(interpreted, s, -1)
+                self.assertIsNone(self.program.get(interpreted))
+                actual = self.results(compiled, s, 0)
+                self.assertEqual(self.program.get(compiled) is not None, compiles,
+                                 'compiled %r: %r' % (pattern, self.program.get(compiled)))
+                self.assertEqual(actual, expected, '%r (flags %d) on %r' % (pattern, flags, s))
+
+
+class SubjectTest(unittest.TestCase):
+    """The kinds of subject matched in place or copied once: str read from a file (held as bytes),
+    buffers such as bytearray and memoryview, and unicode within and beyond the BMP."""
+
+    TEXT = 'GET /index.html 200 user=alice\nPOST /api 404 user=bob\n\xe9\xff'
+
+    def read(self):
+        import os
+        with open(test.test_support.TESTFN, 'wb') as f:
+            f.write(self.TEXT)
+        try:
+            fd = os.open(test.test_support.TESTFN, os.O_RDONLY)
+            try:
+                return os.read(fd, 1000)
+            finally:
+                os.close(fd)
+        finally:
+            test.test_support.unlink(test.test_support.TESTFN)
+
+    def check_text(self, s):
+        # As the same text in a str literal would
+        self.assertEqual(re.search(r'\d{3}', s).span(), (16, 19))
+        self.assertEqual(re.findall(r'user=(\w+)', s), ['alice', 'bob'])
+        self.assertEqual([m.span() for m in re.finditer(r'^\w+', s, re.M)], [(0, 3), (31, 35)])
+        self.assertEqual(re.match(r'(\w+) (\S+)', s).groups(), ('GET', '/index.html'))
+        self.assertEqual(re.search(r'[\x80-\xff]+', s).group(), '\xe9\xff')
+        self.assertEqual(re.search(r'\xff$', s).start(), len(self.TEXT) - 1)
+        self.assertEqual(re.split(r'\n', s), self.TEXT.split('\n'))
+        self.assertEqual(re.sub(r'\d+', '#', s), re.sub(r'\d+', '#', self.TEXT))
+        self.assertIsNone(re.search(r'timeout=\d+', s))
+        self.assertEqual(re.search(r'(?i)USER=B', s).start(), 45)
+
+    def test_str(self):
+        self.check_text(self.TEXT)
+
+    def test_str_read(self):
+        s = self.read()
+        self.assertEqual(s, self.TEXT)
+        self.check_text(s)
+        m = re.search(r'POST', s)
+        self.assertIs(m.string, s)
+        self.assertEqual(m.group(), 'POST')
+        # A slice of it is held as bytes too
+        self.check_text(s[:])
+        self.assertEqual(re.match(r'\w+', s[31:]).group(), 'POST')
+
+    def test_bytearray(self):
+        b = bytearray(self.TEXT)
+        self.check_text(b)
+        m = re.search(r'user=(\w+)', b)
+        self.assertEqual(m.group(1), 'alice')
+        self.assertEqual(m.string, self.TEXT)
+        # The copy is made once, before matching: changing it afterwards changes nothing
+        b[0:3] = 'PUT'
+        self.assertEqual(m.string[:3], 'GET')
+        self.assertEqual(re.match(r'\w+', b).group(), 'PUT')
+
+    def test_memoryview(self):
+        m = memoryview(self.TEXT)
+        self.check_text(m)
+        self.assertEqual(re.search(r'\d+', m[4:]).group(), '200')
+
+    def test_not_a_buffer(self):
+        self.assertRaises(TypeError, re.search, r'a', 5)
+        self.assertRaises(TypeError, re.compile(r'a').match, [])
+
+    def test_unicode_bmp(self):
+        s = u'caf\xe9 \u0100\u0101 \u4e2d\u6587 end'
+        self.assertEqual(re.findall(r'\w+', s, re.U), [u'caf\xe9', u'\u0100\u0101', u'\u4e2d\u6587',
+                                                      u'end'])
+        self.assertEqual(re.search(u'\u4e2d', s).span(), (8, 9))
+        self.assertEqual(re.search(u'[\u0100-\u01ff]+', s).span(), (5, 7))
+        self.assertEqual(re.sub(u'\u0101', u'-', s), u'caf\xe9 \u0100- \u4e2d\u6587 end')
+        self.assertEqual(re.search(u'(?iu)\u0101', u'x\u0100').start(), 1)
+        self.assertEqual(re.split(u' ', s), s.split(u' '))
+
+    def test_unicode_beyond_bmp(self):
+        # Indices count code points, not the chars of the UTF-16 String
+        s = u'a\U00010000b \U0001f600c\U0001f600'
+        self.assertEqual(len(s), 7)
+        self.assertEqual(re.search(u'b', s).span(), (2, 3))
+        self.assertEqual(re.search(u'c', s).span(), (5, 6))
+        self.assertEqual(re.findall(u'.', s), list(s))
+        self.assertEqual(re.findall(u'\U0001f600', s), [u'\U0001f600'] * 2)
+        self.assertEqual([m.span() for m in re.finditer(u'\U0001f600', s)], [(4, 5), (6, 7)])
+        self.assertEqual(re.sub(u'\U0001f600', u'x', s), u'a\U00010000b xcx')
+        self.assertEqual(re.match(u'(.)(.)', s).groups(), (u'a', u'\U00010000'))
+        self.assertEqual(re.search(u'\U00010000(.)', s).group(1), u'b')
+        self.assertEqual(re.split(u' ', s), [u'a\U00010000b', u'\U0001f600c\U0001f600'])
+        self.assertEqual(re.search(u'c.$', s).span(), (5, 7))
+        # The same again, as its code points are cached
+        self.assertEqual(re.search(u'c', s).span(), (5, 6))
+        # A str or BMP unicode pattern on it
+        self.assertEqual(re.search(r'b\s', s).span(), (2, 4))
+
 
 def test_main():
-    test.test_support.run_unittest(ReTest)
+    test.test_support.run_unittest(ReTest, CompiledPatternTest, SubjectTest)
 
 if __name__ == "__main__":
     test_main()
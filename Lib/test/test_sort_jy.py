@@ -1,84 +1,190 @@
-from test import test_support
-import unittest
-
-class SortTest(unittest.TestCase):
-
-    def test_bug1835099(self):
-        a = [21469, 0, 25093, 21992, 26488, 21392, 21998, 22387, 30011, 18382, 23114, 24329, 29505, 24637, 22922, 24258, 19705, 17497, 16693, 20602, 24780, 14618, 18200, 18468, 24491, 20448, 16797, 25276, 27262, 134009, 132609, 135000, 133027, 133957, 134209, 136300, 135505, 137629, 137364, 136698, 136705, 135020, 138258, 136820, 136502, 140408, 140861, 152317, 150993, 144857, 137562, 138705, 138811, 137456, 138393, 138521, 140876, 140271, 141384, 139595, 141839, 141237, 140742, 140514, 141127, 141411, 141501]
-        a_set = set(a)
-        a_sorted = sorted(a)
-        a_sorted_set = set(a_sorted)
-
-        if a_sorted_set != a_set:
-            print 'list elements changed during sort:'
-            print 'removed', tuple(a_set - a_sorted_set)
-            print 'added', tuple(a_sorted_set - a_set)
-
-        assert len(a_set - a_sorted_set) == len(a_sorted_set - a_set) == 0
-
-
-    def test_bug1767(self):
-        'Test bug 1767 sorting when __cmp__ inconsistent with __eq__'
-        
-        class Tricky:
-                
-            def __init__(self, pair):
-                self.key0, self.key1 = pair
-                
-            def __cmp__(self, other):
-                # Duplicates standard sort for pairs
-                if self.key0 != other.key0:
-                    return cmp(self.key0, other.key0)
-                return cmp(self.key1, other.key1)
-                
-            def __eq__(self,other):
-                # Compare only on second key: inconsistent with __cmp__()==0
-                return self.key1 == other.key1
-
-            def __repr__(self):
-                return "(%d, %d)" %(self.key0, self.key1)
-
-        def slowSorted(qq) :
-            'Reference sort peformed by insertion using only <'
-            rr = list()
-            for q in qq :
-                i = 0
-                for i in range(len(rr)) :
-                    if q < rr[i] :
-                        rr.insert(i,q)
-                        break
-                else :
-                    rr.append(q)
-            return rr
-
-        def check(trick, answer):
-            'Check list of Tricky matches list of pairs in order'
-            assert len(trick)==len(answer)
-            for t, a in zip(trick,answer) :
-                # print q, a
-                assert t.key0==a[0] and t.key1==a[1]
-
-        # Test material
-        question = [(2, 5), (1, 3), (3, 0), (2, 3), (1, 1), (2, 3),
-                    (3, 5), (1, 0), (2, 0), (2, 1), (1, 4), (2, 5),
-                    (1, 1), (3, 5), (2, 5), (1, 0), (3, 2), (1, 1),
-                    (2, 2), (2, 2), (1, 0), (2, 3), (2, 1), (3, 2)]
-        answer = slowSorted(question)
-
-        # Test library function
-        que = [Tricky(p) for p in question]
-        que.sort()
-        check(que, answer)
-
-        # Test library function in reverse
-        que = [Tricky(p) for p in question]
-        que.sort(reverse=True)
-        check(que, list(reversed(answer)))
-
-
-
-def test_main():
-    test_support.run_unittest(SortTest)
-
-if __name__ == "__main__":
-    test_main()
+from test import test_support
+import math
+import random
+import unittest
+
+class SortTest(unittest.TestCase):
+
+    def test_bug1835099(self):
+        a = [21469, 0, 25093, 21992, 26488, 21392, 21998, 22387, 30011, 18382, 23114, 24329, 29505, 24637, 22922, 24258, 19705, 17497, 16693, 20602, 24780, 14618, 18200, 18468, 24491, 20448, 16797, 25276, 27262, 134009, 132609, 135000, 133027, 133957, 134209, 136300, 135505, 137629, 137364, 136698, 136705, 135020, 138258, 136820, 136502, 140408, 140861, 152317, 150993, 144857, 137562, 138705, 138811, 137456, 138393, 138521, 140876, 140271, 141384, 139595, 141839, 141237, 140742, 140514, 141127, 141411, 141501]
+        a_set = set(a)
+        a_sorted = sorted(a)
+        a_sorted_set = set(a_sorted)
+
+        if a_sorted_set != a_set:
+            print 'list elements changed during sort:'
+            print 'removed', tuple(a_set - a_sorted_set)
+            print 'added', tuple(a_sorted_set - a_set)
+
+        assert len(a_set - a_sorted_set) == len(a_sorted_set - a_set) == 0
+
+
+    def test_bug1767(self):
+        'Test bug 1767 sorting when __cmp__ inconsistent with __eq__'
+        
+        class Tricky:
+                
+            def __init__(self, pair):
+                self.key0, self.key1 = pair
+                
+            def __cmp__(self, other):
+                # Duplicates standard sort for pairs
+                if self.key0 != other.key0:
+                    return cmp(self.key0, other.key0)
+                return cmp(self.key1, other.key1)
+                
+            def __eq__(self,other):
+                # Compare only on second key: inconsistent with __cmp__()==0
+                return self.key1 == other.key1
+
+            def __repr__(self):
+                return "(%d, %d)" %(self.key0, self.key1)
+
+        def slowSorted(qq) :
+            'Reference sort peformed by insertion using only <'
+            rr = list()
+            for q in qq :
+                i = 0
+                for i in range(len(rr)) :
+                    if q < rr[i] :
+                        rr.insert(i,q)
+                        break
+                else :
+                    rr.append(q)
+            return rr
+
+        def check(trick, answer):
+            'Check list of Tricky matches list of pairs in order'
+            assert len(trick)==len(answer)
+            for t, a in zip(trick,answer) :
+                # print q, a
+                assert t.key0==a[0] and t.key1==a[1]
+
+        # Test material
+        question = [(2, 5), (1, 3), (3, 0), (2, 3), (1, 1), (2, 3),
+                    (3, 5), (1, 0), (2, 0), (2, 1), (1, 4), (2, 5),
+                    (1, 1), (3, 5), (2, 5), (1, 0), (3, 2), (1, 1),
+                    (2, 2), (2, 2), (1, 0), (2, 3), (2, 1), (3, 2)]
+        answer = slowSorted(question)
+
+        # Test library function
+        que = [Tricky(p) for p in question]
+        que.sort()
+        check(que, answer)
+
+        # Test library function in reverse
+        que = [Tricky(p) for p in question]
+        que.sort(reverse=True)
+        check(que, list(reversed(answer)))
+
+
+
+class Boxed(object):
+    'A key only the general sort can compare, as it defines just __lt__'
+
+    def __init__(self, value):
+        self.value = value
+
+    def __lt__(self, other):
+        return self.value < other.value
+
+
+class TypedSortTest(unittest.TestCase):
+    """Lists of one built-in type are sorted without calling __lt__: the result
+    must be the one the general sort gives, object for object."""
+
+    def check(self, items, key=None):
+        for reverse in (False, True):
+            if key is None:
+                expected = sorted(items, key=Boxed, reverse=reverse)
+                actual = sorted(items, reverse=reverse)
+            else:
+                expected = sorted(items, key=lambda x: Boxed(key(x)), reverse=reverse)
+                actual = sorted(items, key=key, reverse=reverse)
+            self.assertEqual(map(id, actual), map(id, expected))
+
+    def test_kinds(self):
+        r = random.Random(42)
+        n = 500
+        self.check([r.randint(-1000, 1000) for i in range(n)])
+        self.check([r.randint(-2**62, 2**62) for i in range(n)])
+        self.check([r.uniform(-10, 10) for i in range(n)])
+        self.check([str(r.randint(0, 100)) for i in range(n)])
+        self.check([unicode(r.randint(0, 100)) for i in range(n)])
+        self.check([(r.randint(0, 5), str(r.randint(0, 5))) for i in range(n)])
+        self.check([(r.random(),) * r.randint(0, 2) for i in range(n)])
+
+    def test_stability(self):
+        r = random.Random(7)
+        pairs = [(r.randint(0, 9), i) for i in range(300)]
+        for reverse in (False, True):
+            result = sorted(pairs, key=lambda p: p[0], reverse=reverse)
+            for a, b in zip(result, result[1:]):
+                if a[0] == b[0]:
+                    self.assertTrue(a[1] < b[1])
+        # Keys of every kind, with many equal
+        self.check(pairs, key=lambda p: p[0])
+        self.check(pairs, key=lambda p: p[0] * 2**40)
+        self.check(pairs, key=lambda p: float(p[0]))
+        self.check(pairs, key=lambda p: str(p[0]))
+        self.check(pairs, key=lambda p: (p[0] % 3, unicode(p[0])))
+
+    def test_key_and_reverse(self):
+        words = 'the quick brown fox jumps over the lazy dog'.split()
+        self.assertEqual(sorted(words, key=len),
+                         ['the', 'fox', 'the', 'dog', 'over', 'lazy', 'quick', 'brown',
+                          'jumps'])
+        self.assertEqual(sorted(words, key=len, reverse=True),
+                         ['quick', 'brown', 'jumps', 'over', 'lazy', 'the', 'fox', 'the',
+                          'dog'])
+        self.assertEqual(sorted([3, -1, 2, -4], key=abs, reverse=True), [-4, 3, 2, -1])
+        self.assertEqual(sorted([-2**31, 2**31 - 1, 0], reverse=True), [2**31 - 1, 0, -2**31])
+
+    def test_nan(self):
+        nan = float('nan')
+        items = [3.0, nan, 1.0, -0.0, nan, 2.0, 0.0]
+        # Left to the general sort: only the order that gives matters
+        self.check(items)
+        result = sorted(items)
+        self.assertEqual(len(result), len(items))
+        self.assertEqual(sum(1 for x in result if x != x), 2)
+        self.check([(1, nan), (0, 1.0), (1, 0.5)])
+
+    def test_signed_zero(self):
+        items = [0.0, -0.0, 1.0, -0.0, 0.0, -1.0]
+        # Equal, so kept in the order they came
+        result = sorted(items)
+        self.assertEqual([math.copysign(1, x) for x in result], [-1, 1, -1, -1, 1, 1])
+        result = sorted(items, reverse=True)
+        self.assertEqual([math.copysign(1, x) for x in result], [1, 1, -1, -1, 1, -1])
+        self.check(items)
+
+    def test_mixed(self):
+        # Not of one kind: left to the general sort
+        self.check([3, 2**70, 1, -2**70, 2L, 0])
+        self.check([3, 2.5, 1L, 0.5, -1])
+        self.check([True, 0, False, 1, -1])
+        self.check(['b', u'a', 'c', u'b'])
+        self.check([(1, 'a'), (1, 2), (0, 'b')])
+        self.assertEqual(sorted([2**70, 1, 2**63 - 1, -2**63]), [-2**63, 1, 2**63 - 1, 2**70])
+
+    def test_mutation(self):
+        items = list(range(10))
+
+        class Meddler(object):
+            def __init__(self, value):
+                self.value = value
+            def __lt__(self, other):
+                items.append(0)
+                return self.value < other.value
+
+        self.assertRaises(ValueError, items.sort, key=Meddler)
+        items = list(range(10))
+        self.assertRaises(ValueError, items.sort, key=lambda x: items.pop())
+
+
+def test_main():
+    test_support.run_unittest(SortTest, TypedSortTest)
+
+if __name__ == "__main__":
+    test_main()
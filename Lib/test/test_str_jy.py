@@ -1,6 +1,7 @@
 # -*- coding: utf-8 -*-
 from test import test_support
 import java.lang
+import os
 import unittest
 
 class WrappedStrCmpTest(unittest.TestCase):
@@ -169,6 +170,96 @@ class ParserTest(unittest.TestCase):
         self.assertEqual(ord(bar[1]), 92)
         self.assertEqual(ord(bar[2]), 110)
 
+class BytesReadTest(unittest.TestCase):
+    """A str made by os.read holds the bytes read, and makes a String only when it needs one."""
+
+    DATA = 'Hello, world!\n' + ''.join(chr(i) for i in range(256))
+
+    def setUp(self):
+        with open(test_support.TESTFN, 'wb') as f:
+            f.write(self.DATA)
+
+    def tearDown(self):
+        test_support.unlink(test_support.TESTFN)
+
+    def read(self):
+        fd = os.open(test_support.TESTFN, os.O_RDONLY)
+        try:
+            return os.read(fd, 1000)
+        finally:
+            os.close(fd)
+
+    def test_read(self):
+        s = self.read()
+        self.assertIs(type(s), str)
+        self.assertEqual(len(s), len(self.DATA))
+        self.assertEqual(ord(s[-1]), 255)
+        self.assertEqual(s, self.DATA)
+
+    def test_hash_and_equality(self):
+        self.assertEqual(hash(self.read()), hash(self.DATA))
+        self.assertEqual(self.read(), self.DATA)
+        self.assertEqual(self.DATA, self.read())
+        self.assertEqual(self.read(), self.read())
+        self.assertNotEqual(self.read(), self.DATA[:-1])
+        self.assertTrue(self.read() < self.DATA + 'x')
+        self.assertEqual({self.read(): 1}[self.DATA], 1)
+        self.assertEqual({self.DATA: 1}[self.read()], 1)
+        self.assertIn(self.read(), set([self.DATA]))
+
+    def test_index_and_slice(self):
+        s, data = self.read(), self.DATA
+        for i in (0, 5, 13, 14, 141, 142, len(data) - 1, -1, -len(data)):
+            self.assertEqual(s[i], data[i])
+        self.assertRaises(IndexError, lambda: s[len(data)])
+        self.assertEqual(s[7:12], 'world')
+        self.assertIs(type(s[7:12]), str)
+        self.assertEqual(s[200:], data[200:])
+        self.assertEqual(s[-3:], '\xfd\xfe\xff')
+        self.assertEqual(s[::3], data[::3])
+        self.assertEqual(s[::-1], data[::-1])
+        self.assertEqual(s[100:50], '')
+        self.assertEqual(list(s[:5]), ['H', 'e', 'l', 'l', 'o'])
+
+    def test_methods(self):
+        s, data = self.read(), self.DATA
+        self.assertEqual(s.upper(), data.upper())
+        self.assertEqual(s.split(), data.split())
+        self.assertEqual(s.split(','), data.split(','))
+        self.assertEqual(s.find('world'), 7)
+        self.assertEqual(s.rfind('\xff'), len(data) - 1)
+        self.assertEqual(s.count('l'), data.count('l'))
+        self.assertTrue(s.startswith('Hello'))
+        self.assertTrue(s.startswith(('x', 'Hello')))
+        self.assertTrue(s.endswith('\xfe\xff'))
+        self.assertTrue(s.endswith(('x', '\xff')))
+        self.assertIn('world', s)
+        self.assertEqual(s.replace('world', 'there'), data.replace('world', 'there'))
+        self.assertEqual(s.strip(), data.strip())
+        self.assertEqual(s + 'x', data + 'x')
+        self.assertEqual(s * 2, data * 2)
+        self.assertEqual('%s' % s, data)
+        self.assertEqual(s.encode('hex'), data.encode('hex'))
+        self.assertEqual(s.decode('latin-1'), data.decode('latin-1'))
+        self.assertEqual(s[:13].decode('ascii'), u'Hello, world!')
+        self.assertEqual(repr(s), repr(data))
+        self.assertEqual(s.join(['a', 'b']), data.join(['a', 'b']))
+
+    def test_buffer(self):
+        import struct
+        s = self.read()
+        m = memoryview(s)
+        self.assertTrue(m.readonly)
+        self.assertEqual(m.tobytes(), self.DATA)
+        self.assertEqual(m[7:12].tobytes(), 'world')
+        with self.assertRaises(TypeError):
+            m[0] = 'x'
+        m.release()
+        self.assertEqual(bytearray(s), bytearray(self.DATA))
+        self.assertEqual(struct.unpack_from('>5s', s, 7), ('world',))
+        self.assertEqual(s, self.DATA)
+
+
 def test_main():
     test_support.run_unittest(
         WrappedStrCmpTest,
@@ -176,7 +267,8 @@ def test_main():
         StringSlicingTest,
         FormatTest,
         DisplayTest,
-        ParserTest)
+        ParserTest,
+        BytesReadTest)
 
 if __name__ == '__main__':
     test_main()
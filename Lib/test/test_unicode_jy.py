@@ -371,6 +371,38 @@ class UnicodeIndexMixTest(unittest.TestCase):
                 m.insert(t)
                 check_rfind_str(m, t)
 
+    def test_index(self):
+        # Test index and rindex return code point indexes, and count counts code points
+        u = u'a\U00010000b\U00010000b'
+        self.assertEqual(u.index(u'b'), 2)
+        self.assertEqual(u.rindex(u'b'), 4)
+        self.assertEqual(u.index(u'\U00010000', 2), 3)
+        self.assertEqual(u.rindex(u'\U00010000', 0, 3), 1)
+        self.assertEqual(u.index(u'b\U00010000'), 2)
+        self.assertEqual(u.count(u'\U00010000'), 2)
+        self.assertEqual(u.count(u'b', 3), 1)
+        self.assertEqual(u.count(u'', 1), 5)
+        self.assertRaises(ValueError, u.index, u'b', 5)
+        self.assertRaises(ValueError, u.rindex, u'b', 0, 2)
+
+        def check_index(m):
+            # Check against the same operations on the list of characters
+            u = m.text
+            for c in set(m.used):
+                self.assertEqual(u.count(c), m.ref.count(c))
+                if c in m.ref:
+                    i = m.ref.index(c)
+                    self.assertEqual(u.index(c), i)
+                    self.assertEqual(u.rindex(c), m.size - 1 - m.ref[::-1].index(c))
+                    if c in m.ref[i + 1:]:
+                        self.assertEqual(u.index(c, i + 1), m.ref.index(c, i + 1))
+                else:
+                    self.assertRaises(ValueError, u.index, c)
+                    self.assertRaises(ValueError, u.rindex, c)
+
+        for m in self.material:
+            check_index(m)
+
     def test_surrogate_validation(self):
 
         from java.lang import StringBuilder
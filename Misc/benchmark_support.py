@@ -0,0 +1,47 @@
+"""Measurement shared by the benchmarks in this directory, in Jython.
+
+A benchmark imports this module by name, which works when it is run as a
+script (jython Misc/<name>_benchmark.py), as the directory of the script is
+then the first on sys.path.
+
+Each time reported is the best of RUNS runs, after one run to warm up the JIT
+compiler of the JVM. Heap sizes are measured after collecting garbage.
+"""
+import time
+
+from java.lang import Runtime, System, Thread
+
+RUNS = 3
+
+
+def used_memory():
+    "Heap in use after collecting garbage as well as we can."
+    rt = Runtime.getRuntime()
+    for i in range(5):
+        System.gc()
+        Thread.sleep(50)
+    return rt.totalMemory() - rt.freeMemory()
+
+
+def best_of(fn, *args):
+    """The least result of RUNS calls of fn(*args), after a call to warm up.
+
+    fn returns the time it took (or a tuple beginning with it), so that it can
+    leave out the time of its own preparation.
+    """
+    fn(*args)
+    return min(fn(*args) for i in range(RUNS))
+
+
+def timed(fn):
+    "fn made to return the seconds each call takes."
+    def call(*args):
+        start = time.time()
+        fn(*args)
+        return time.time() - start
+    return call
+
+
+def best_time(fn, *args):
+    "The best time, in seconds, of RUNS calls of fn(*args), after a call to warm up."
+    return best_of(timed(fn), *args)
@@ -0,0 +1,75 @@
+"""Measure collections.deque as a queue between threads, in Jython.
+
+usage: jython deque_benchmark.py [ITEMS]
+
+For several numbers of producer and consumer threads sharing one deque, the
+producers append ITEMS (default 1000000) items between them, while the
+consumers popleft the same number between them, retrying while the deque is
+empty. Reports the time taken and the items passed per second, and as a
+baseline the same appends and poplefts made by one thread alone.
+"""
+import sys
+import threading
+import time
+from collections import deque
+
+from benchmark_support import best_of
+
+CASES = ((1, 1), (2, 2), (4, 4), (8, 8), (1, 8), (8, 1))
+
+
+def produce(q, n):
+    append = q.append
+    for i in xrange(n):
+        append(i)
+
+
+def consume(q, n):
+    popleft = q.popleft
+    while n:
+        try:
+            popleft()
+            n -= 1
+        except IndexError:
+            pass
+
+
+def single(items):
+    q = deque()
+    start = time.time()
+    produce(q, items)
+    consume(q, items)
+    return time.time() - start
+
+
+def run(producers, consumers, items):
+    q = deque()
+    threads = ([threading.Thread(target=produce, args=(q, items // producers))
+                for i in range(producers)] +
+               [threading.Thread(target=consume, args=(q, items // consumers))
+                for i in range(consumers)])
+    start = time.time()
+    for t in threads:
+        t.start()
+    for t in threads:
+        t.join()
+    elapsed = time.time() - start
+    assert len(q) == 0
+    return elapsed
+
+
+def main(argv):
+    items = int(argv[1]) if len(argv) > 1 else 1000000
+    # Equal shares, so that consumers take exactly what producers give
+    items -= items % 840
+    print "%-10s %-10s %10s %14s" % ("producers", "consumers", "best (s)", "items/s")
+    elapsed = best_of(single, items)
+    print "%-10s %-10s %10.3f %14.0f" % ("(alone)", "", elapsed, items / elapsed)
+    for producers, consumers in CASES:
+        elapsed = best_of(run, producers, consumers, items)
+        print "%-10d %-10d %10.3f %14.0f" % (producers, consumers, elapsed,
+                                              items / elapsed)
+
+
+if __name__ == "__main__":
+    main(sys.argv)
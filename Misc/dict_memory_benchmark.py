@@ -0,0 +1,107 @@
+"""Measure the memory a dict takes per entry, in Jython.
+
+usage: jython dict_memory_benchmark.py [COUNT]
+
+Creates COUNT (default 100000) dicts of each of several sizes, all with the
+same keys and values, so that only the tables of the dicts are new, and reports
+the heap they occupy as bytes per dict and per entry. It does this for dicts
+backed by the table dict uses by default and for dicts backed by a
+java.util.concurrent.ConcurrentHashMap (as dict was once), for comparison.
+
+It then does the same for instances of a class with that many attributes,
+whose __dict__ shares its keys with the other instances, and for instances
+given a copy of their __dict__, which does not.
+
+Run with a heap large enough to hold all the dicts of one size at once, for
+example: jython -J-Xmx2g dict_memory_benchmark.py
+"""
+import sys
+
+from java.lang import Boolean, Class
+from java.util.concurrent import ConcurrentHashMap, ConcurrentMap
+
+from benchmark_support import used_memory
+
+SIZES = (0, 1, 3, 5, 8, 16, 100)
+
+
+# dict() from Python cannot be given a backing map, so call the Java constructor
+_with_map = Class.getConstructor(dict, [ConcurrentMap, Boolean.TYPE])
+
+
+def default_dict():
+    return {}
+
+
+def chm_dict():
+    return _with_map.newInstance([ConcurrentHashMap(), True])
+
+
+class Plain(object):
+    pass
+
+
+def shared_instance():
+    return Plain()
+
+
+def own_instance():
+    obj = Plain()
+    obj.__dict__ = obj.__dict__.copy()
+    return obj
+
+
+def measure_instances(factory, size, count):
+    names = ["a%d" % i for i in range(size)]
+    value = 42
+    before = used_memory()
+    objs = []
+    for i in xrange(count):
+        obj = factory()
+        for name in names:
+            setattr(obj, name, value)
+        objs.append(obj)
+    after = used_memory()
+    assert len(objs) == count
+    return float(after - before) / count - 4
+
+
+def measure(factory, size, count):
+    keys = [str(i) for i in range(size)]
+    value = 42
+    before = used_memory()
+    dicts = []
+    for i in xrange(count):
+        d = factory()
+        for k in keys:
+            d[k] = value
+        dicts.append(d)
+    after = used_memory()
+    # Keep dicts alive until after the measurement
+    assert len(dicts) == count
+    # Less the list that holds them
+    return float(after - before) / count - 4
+
+
+def main(argv):
+    count = int(argv[1]) if len(argv) > 1 else 100000
+    print "%6s %14s %14s %14s %14s" % ("size", "dict B/dict", "CHM B/dict",
+                                       "dict B/entry", "CHM B/entry")
+    for size in SIZES:
+        compact = measure(default_dict, size, count)
+        chm = measure(chm_dict, size, count)
+        if size:
+            print "%6d %14.1f %14.1f %14.1f %14.1f" % (
+                size, compact, chm, compact / size, chm / size)
+        else:
+            print "%6d %14.1f %14.1f %14s %14s" % (size, compact, chm, "-", "-")
+    print
+    print "%6s %14s %14s" % ("attrs", "shared B/obj", "own B/obj")
+    for size in SIZES[:-1]:
+        shared = measure_instances(shared_instance, size, count)
+        own = measure_instances(own_instance, size, count)
+        print "%6d %14.1f %14.1f" % (size, shared, own)
+
+
+if __name__ == "__main__":
+    main(sys.argv)
@@ -0,0 +1,48 @@
+"""Measure the memory and speed of lists of numbers, in Jython.
+
+usage: jython [-Dpython.list.strategies=true] list_strategy_benchmark.py [COUNT]
+
+Builds lists of COUNT (default 1000000) random ints and of as many random
+floats, and reports the heap each takes per item, then the time for sum, max,
+sorted and a loop over the items. Run it with and without
+python.list.strategies to compare lists held as arrays of Java int or double
+with lists of boxed objects.
+
+Run with a heap large enough to hold the lists, for example:
+jython -J-Xmx2g list_strategy_benchmark.py
+"""
+import random
+import sys
+
+from benchmark_support import best_time, used_memory
+
+
+def loop(items):
+    for x in items:
+        pass
+
+
+def main(argv):
+    count = int(argv[1]) if len(argv) > 1 else 1000000
+    from org.python.core import Options
+    print "strategies = %s, %d items" % (Options.listStrategies, count)
+    rnd = random.Random(42)
+    before = used_memory()
+    ints = [rnd.randint(-10**9, 10**9) for i in xrange(count)]
+    middle = used_memory()
+    floats = [rnd.random() for i in xrange(count)]
+    after = used_memory()
+    print "%-8s %10s" % ("list", "B/item")
+    print "%-8s %10.1f" % ("int", float(middle - before) / count)
+    print "%-8s %10.1f" % ("float", float(after - middle) / count)
+    print
+    print "%-8s %-8s %10s %12s" % ("list", "op", "best (s)", "ns/item")
+    for name, items in (("int", ints), ("float", floats)):
+        for fn in (sum, max, sorted, loop):
+            best = best_time(fn, items)
+            print "%-8s %-8s %10.3f %12.1f" % (name, fn.__name__, best,
+                                               best * 1e9 / count)
+
+
+if __name__ == "__main__":
+    main(sys.argv)
@@ -0,0 +1,72 @@
+"""Measure list operations shared between threads, in Jython.
+
+usage: jython [-Dpython.list.optimisticReads=true] list_thread_benchmark.py [OPS]
+
+For 1, 8 and 32 threads, each making OPS (default 1000000) operations on one
+list shared between them, reports the time for:
+
+    append   each thread appends to the list
+    index    each thread reads items of the list by index
+    iterate  each thread iterates over the whole list, repeatedly
+
+Run it with and without python.list.optimisticReads to compare lists that read
+without locking with those that lock for every operation.
+"""
+import sys
+import threading
+import time
+
+from benchmark_support import best_of
+
+THREADS = (1, 8, 32)
+
+
+def append(shared, ops):
+    for i in xrange(ops):
+        shared.append(i)
+
+
+def index(shared, ops):
+    n = len(shared)
+    for i in xrange(ops):
+        shared[i % n]
+
+
+def iterate(shared, ops):
+    done = 0
+    while done < ops:
+        for x in shared:
+            pass
+        done += len(shared)
+
+
+def run(fn, nthreads, ops):
+    shared = [] if fn is append else list(range(1000))
+    per_thread = ops // nthreads
+    threads = [threading.Thread(target=fn, args=(shared, per_thread))
+               for i in range(nthreads)]
+    start = time.time()
+    for t in threads:
+        t.start()
+    for t in threads:
+        t.join()
+    elapsed = time.time() - start
+    if fn is append:
+        assert len(shared) == per_thread * nthreads
+    return elapsed
+
+
+def main(argv):
+    ops = int(argv[1]) if len(argv) > 1 else 1000000
+    from org.python.core import Options
+    print "optimisticReads = %s, %d operations" % (Options.listOptimisticReads, ops)
+    print "%-8s %8s %10s %12s" % ("op", "threads", "best (s)", "ns/op")
+    for fn in (append, index, iterate):
+        for nthreads in THREADS:
+            best = best_of(run, fn, nthreads, ops)
+            print "%-8s %8d %10.3f %12.1f" % (fn.__name__, nthreads, best,
+                                              best * 1e9 / ops)
+
+
+if __name__ == "__main__":
+    main(sys.argv)
@@ -0,0 +1,76 @@
+"""Measure the memory and speed of sets, in Jython.
+
+usage: jython set_benchmark.py [COUNT]
+
+Builds a set of COUNT (default 1000000) ints and a frozenset of as many
+strings, and reports the heap each takes per element. Then reports the time
+for membership tests, copy, and the set algebra between a large set and a
+small one (a tenth of the size), in each order, as operators and as in-place
+updates.
+
+Run with a heap large enough to hold the sets, for example:
+jython -J-Xmx2g set_benchmark.py
+"""
+import random
+import sys
+
+from benchmark_support import best_time, used_memory
+
+
+def members(s, items):
+    for x in items:
+        x in s
+
+
+def iand(a, b):
+    a = set(a)
+    a &= b
+
+
+def isub(a, b):
+    a = set(a)
+    a -= b
+
+
+CASES = (
+    ("x in s", members),
+    ("copy", lambda a, b: a.copy()),
+    ("a & b", lambda a, b: a & b),
+    ("a | b", lambda a, b: a | b),
+    ("a - b", lambda a, b: a - b),
+    ("a &= b", iand),
+    ("a -= b", isub),
+)
+
+
+def main(argv):
+    count = int(argv[1]) if len(argv) > 1 else 1000000
+    rnd = random.Random(42)
+    # Tuples hold the elements as objects, so only the sets are measured
+    numbers = tuple(rnd.randrange(10 * count) for i in xrange(count))
+    words = tuple(str(n) for n in numbers)
+    before = used_memory()
+    ints = set(numbers)
+    middle = used_memory()
+    strs = frozenset(words)
+    after = used_memory()
+    print "%-10s %10s" % ("set", "B/element")
+    print "%-10s %10.1f" % ("int", float(middle - before) / len(ints))
+    print "%-10s %10.1f" % ("frozenset", float(after - middle) / len(strs))
+    print
+
+    large = ints
+    small = set(rnd.randrange(10 * count) for i in xrange(count // 10))
+    print "%-10s %-12s %10s" % ("op", "a, b", "best (s)")
+    for name, fn in CASES:
+        for label, a, b in (("large,small", large, small),
+                            ("small,large", small, large)):
+            if fn is members:
+                args = (a, numbers[:len(small)])
+            else:
+                args = (a, b)
+            print "%-10s %-12s %10.3f" % (name, label, best_time(fn, *args))
+
+
+if __name__ == "__main__":
+    main(sys.argv)
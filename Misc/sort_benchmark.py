@@ -0,0 +1,62 @@
+"""Measure list.sort on large lists, in Jython.
+
+usage: jython sort_benchmark.py [COUNT]
+
+Sorts lists of COUNT (default 1000000) random items of several kinds, and
+reports the time for each: lists of one built-in type (and of tuples of them)
+are sorted comparing the Java values directly, while a list of instances of a
+class with __lt__, or of mixed types, takes the general path through __lt__.
+Each run sorts a new copy of the list, and only the sort is timed.
+"""
+import random
+import sys
+import time
+
+from benchmark_support import best_of
+
+
+class Wrapped(object):
+    __slots__ = ('v',)
+
+    def __init__(self, v):
+        self.v = v
+
+    def __lt__(self, other):
+        return self.v < other.v
+
+
+def cases(count):
+    rnd = random.Random(42)
+    ints = [rnd.randint(-10**9, 10**9) for i in xrange(count)]
+    return [
+        ("int", ints, None),
+        ("long", [i * 10**6 for i in ints], None),
+        ("float", [rnd.random() for i in xrange(count)], None),
+        ("str", ["%09d" % abs(i) for i in ints], None),
+        ("unicode", [u"%09d" % abs(i) for i in ints], None),
+        ("(int, str)", [(i % 1000, "%d" % i) for i in ints], None),
+        ("key=abs", ints, abs),
+        ("object", [Wrapped(i) for i in ints[:count // 10]], None),
+        ("mixed", [i if i % 2 else float(i) for i in ints[:count // 10]], None),
+    ]
+
+
+def sort_copy(items, key):
+    "The time to sort a copy of items, leaving out the copying."
+    copy = list(items)
+    start = time.time()
+    copy.sort(key=key)
+    return time.time() - start
+
+
+def main(argv):
+    count = int(argv[1]) if len(argv) > 1 else 1000000
+    print "%-12s %10s %10s %12s" % ("items", "count", "best (s)", "ns/item")
+    for name, items, key in cases(count):
+        best = best_of(sort_copy, items, key)
+        print "%-12s %10d %10.3f %12.1f" % (name, len(items), best,
+                                            best * 1e9 / len(items))
+
+
+if __name__ == "__main__":
+    main(sys.argv)
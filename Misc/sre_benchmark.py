@@ -0,0 +1,84 @@
+"""Measure regular expressions on long lines of text, in Jython.
+
+usage: jython sre_benchmark.py [LENGTH]
+
+Builds a log line of LENGTH (default 4000000) characters as a str, as a
+unicode of the same text, and as a bytearray, then reports for each the time
+and the memory allocated by a search that fails, findall, and sub. Each run
+works on a new copy of the line so nothing can be reused from a previous one.
+The memory is that allocated by this thread during the fastest run, per
+character of the line.
+"""
+import random
+import re
+import sys
+import time
+
+from java.lang.management import ManagementFactory
+from java.lang import Thread
+
+from benchmark_support import best_of
+
+WORDS = "GET POST /index.html /api/v1/items 200 404 500 ms user=alice user=bob".split()
+MISSING = re.compile(r"timeout=\d+")
+NUMBERS = re.compile(r"\b\d{3}\b")
+USERS = re.compile(r"user=(\w+)")
+
+
+def allocated():
+    "Bytes allocated by this thread so far."
+    threads = ManagementFactory.getThreadMXBean()
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId())
+
+
+def line(length, rnd):
+    "A long line of words, as a server might log them."
+    parts = []
+    n = 0
+    while n < length:
+        part = rnd.choice(WORDS)
+        parts.append(part)
+        n += len(part) + 1
+    return " ".join(parts)[:length]
+
+
+def search(s):
+    MISSING.search(s)
+
+
+def findall(s):
+    NUMBERS.findall(s)
+
+
+def sub(s):
+    USERS.sub(r"user=<\1>", s)
+
+
+OPS = (("search", search), ("findall", findall), ("sub", sub))
+
+
+def measure(fn, make):
+    "Time and bytes allocated by fn on a new copy from make, leaving out the copying."
+    s = make()
+    before = allocated()
+    start = time.time()
+    fn(s)
+    elapsed = time.time() - start
+    return elapsed, allocated() - before
+
+
+def main(argv):
+    length = int(argv[1]) if len(argv) > 1 else 4000000
+    text = line(length, random.Random(42))
+    kinds = (("str", lambda: text[:-1] + text[-1]),
+             ("unicode", lambda: unicode(text)),
+             ("bytearray", lambda: bytearray(text)))
+    print "%-8s %-10s %10s %10s" % ("op", "subject", "best (s)", "B/char")
+    for name, fn in OPS:
+        for kind, make in kinds:
+            t, used = best_of(measure, fn, make)
+            print "%-8s %-10s %10.3f %10.1f" % (name, kind, t, float(used) / length)
+
+
+if __name__ == "__main__":
+    main(sys.argv)
@@ -0,0 +1,89 @@
+"""Compare interpreted and compiled regular expressions on log lines, in Jython.
+
+usage: jython sre_jit_benchmark.py [LINES]
+
+Generates LINES (default 20000) lines of an access log and of an application
+log, and times some typical patterns for parsing them, matched against every
+line, first as interpreted by SRE_STATE and then compiled to JVM bytecode
+(python.sre.jitThreshold set to -1 and then to 0). A pattern the compiler
+cannot translate shows "-" as its compiled time.
+"""
+import random
+import sre_compile
+import sys
+
+from org.python.core import Options
+
+from benchmark_support import best_time
+
+PATTERNS = (
+    ("access", "match",
+     r'(\S+) (\S+) (\S+) \[([^\]]+)\] "(\w+) (\S+) (\S+)" (\d{3}) (\d+|-)'),
+    ("access", "search", r'" (5\d\d) '),
+    ("access", "search", r'\b(?:GET|POST) /api/v\d+/(\w+)'),
+    ("app", "match", r'(\d{4}-\d\d-\d\d) (\d\d:\d\d:\d\d),(\d{3}) +(\w+) +\[([\w.]+)\] (.*)$'),
+    ("app", "search", r'user=(\w+)'),
+    ("app", "search", r'(?i)timeout|refused'),
+    ("app", "search", r'(\d+\.){3}\d+'),
+)
+
+
+def access_line(rnd):
+    return '%d.%d.%d.%d - %s [10/Oct/2019:13:%02d:%02d +0200] "%s %s HTTP/1.1" %d %s' % (
+        rnd.randrange(256), rnd.randrange(256), rnd.randrange(256), rnd.randrange(256),
+        rnd.choice(["-", "alice", "bob"]), rnd.randrange(60), rnd.randrange(60),
+        rnd.choice(["GET", "POST", "PUT"]),
+        rnd.choice(["/index.html", "/api/v1/items", "/api/v2/users/17", "/static/app.js"]),
+        rnd.choice([200, 200, 200, 304, 404, 500]), rnd.choice(["-", str(rnd.randrange(9999))]))
+
+
+def app_line(rnd):
+    return "2019-10-10 13:%02d:%02d,%03d %-5s [%s] %s" % (
+        rnd.randrange(60), rnd.randrange(60), rnd.randrange(1000),
+        rnd.choice(["INFO", "DEBUG", "WARN", "ERROR"]),
+        rnd.choice(["org.app.Server", "org.app.db.Pool", "main"]),
+        rnd.choice(["request served in 12 ms user=alice",
+                    "connection to 10.0.0.7 refused",
+                    "Timeout after 30000 ms waiting for pool",
+                    "cache hit ratio 0.93"]))
+
+
+def run(method, lines):
+    for line in lines:
+        method(line)
+
+
+def main(argv):
+    count = int(argv[1]) if len(argv) > 1 else 20000
+    rnd = random.Random(42)
+    logs = {"access": [access_line(rnd) for i in range(count)],
+            "app": [app_line(rnd) for i in range(count)]}
+    print "%-60s %11s %11s" % ("pattern", "interpreted", "compiled")
+    for log, how, source in PATTERNS:
+        times = []
+        for threshold in (-1, 0):
+            Options.sreJitThreshold = threshold
+            # A new pattern object each time: re.compile would return the cached one
+            pattern = sre_compile.compile(source, 0)
+            method = getattr(pattern, how)
+            method(logs[log][0])
+            if threshold == 0 and not compiled(pattern):
+                times.append(None)
+            else:
+                times.append(best_time(run, method, logs[log]))
+        print "%-60s %11.3f %11s" % (
+            ("%s %s" % (how, source))[:60], times[0],
+            "-" if times[1] is None else "%.3f" % times[1])
+
+
+def compiled(pattern):
+    "Whether the pattern has been compiled to bytecode."
+    from java.lang import Class
+    field = Class.getDeclaredField(Class.forName("org.python.modules.sre.PatternObject"),
+                                   "program")
+    field.setAccessible(True)
+    return field.get(pattern) is not None
+
+
+if __name__ == "__main__":
+    main(sys.argv)
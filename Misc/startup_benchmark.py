@@ -0,0 +1,85 @@
+"""Measure how long Jython takes to start.
+
+usage: startup_benchmark.py [-n RUNS] JYTHON [LAUNCHER_OPTION ...]
+
+JYTHON is the launcher to time (e.g. dist/bin/jython). Two times are measured,
+each as the best and median of RUNS runs (default 5):
+
+    prompt  from launch until the interactive prompt (jython -i) is written
+    json    from launch until the process ends, running: import json
+
+If launcher options are given (e.g. --cds, or -J-Xshare:off), each time is
+measured both without and with them, so that they can be compared. The first
+run with --cds writes the archive, and is not counted.
+
+Runs under CPython 2.7 or 3, or Jython.
+"""
+from __future__ import print_function
+
+import os
+import subprocess
+import sys
+import time
+
+
+def time_prompt(command):
+    "Time from launching command until it writes the interactive prompt."
+    start = time.time()
+    proc = subprocess.Popen(command + ["-i"], stdin=subprocess.PIPE,
+                            stdout=subprocess.PIPE, stderr=subprocess.STDOUT)
+    seen = b""
+    while not seen.endswith(b">>> "):
+        c = proc.stdout.read(1)
+        if not c:
+            raise RuntimeError("no prompt from: " + " ".join(command))
+        seen += c
+    elapsed = time.time() - start
+    proc.stdin.close()
+    proc.stdout.read()
+    proc.wait()
+    return elapsed
+
+
+def time_json(command):
+    "Time to launch command, import json and exit."
+    start = time.time()
+    with open(os.devnull, "w") as devnull:
+        subprocess.check_call(command + ["-c", "import json"], stdout=devnull)
+    return time.time() - start
+
+
+def measure(command, runs):
+    results = {}
+    for name, fn in (("prompt", time_prompt), ("json", time_json)):
+        times = sorted(fn(command) for i in range(runs))
+        results[name] = (times[0], times[len(times) // 2])
+    return results
+
+
+def main(argv):
+    runs = 5
+    if len(argv) > 2 and argv[1] == "-n":
+        runs = int(argv[2])
+        del argv[1:3]
+    if len(argv) < 2:
+        print(__doc__, file=sys.stderr)
+        return 2
+    jython, options = argv[1], argv[2:]
+
+    variants = [("default", [jython])]
+    if options:
+        variants.append((" ".join(options), [jython] + options))
+        # Warm up, e.g. so that the first --cds run writes the archive
+        time_json(variants[1][1])
+
+    print("%-20s %-8s %10s %10s" % ("options", "measure", "best (s)", "median (s)"))
+    for label, command in variants:
+        results = measure(command, runs)
+        for name in ("prompt", "json"):
+            best, median = results[name]
+            print("%-20s %-8s %10.3f %10.3f" % (label, name, best, median))
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main(sys.argv))
@@ -0,0 +1,80 @@
+"""Measure operations by code point on unicode text full of emoji, in Jython.
+
+usage: jython unicode_benchmark.py [LENGTH]
+
+Generates a corpus of unicode strings of LENGTH (default 1000000) characters:
+plain ASCII, text with an emoji in every few words (as in user comments),
+and text that is mostly emoji. For each it reports the time for len, indexing
+at every position, iterating, slices of 10 characters across the string, a
+reversed slice, and count. Strings with characters beyond the BMP take the
+slower paths in PyUnicode, so these are compared with the ASCII text.
+"""
+import random
+import sys
+
+from benchmark_support import best_time
+
+WORDS = u"the quick brown fox jumps over a lazy dog and then runs off".split()
+EMOJI = [unichr(0x1F600 + i) for i in range(0x50)]
+
+
+def corpus(length, emoji_share, rnd):
+    "Text of words and emoji, an emoji standing in for a word at emoji_share."
+    parts = []
+    n = 0
+    while n < length:
+        if rnd.random() < emoji_share:
+            part = rnd.choice(EMOJI)
+        else:
+            part = rnd.choice(WORDS)
+        parts.append(part)
+        n += len(part) + 1
+    return u" ".join(parts)[:length]
+
+
+def do_len(s):
+    for i in xrange(1000):
+        len(s)
+
+
+def index(s):
+    for i in xrange(len(s)):
+        s[i]
+
+
+def iterate(s):
+    for c in s:
+        pass
+
+
+def slices(s):
+    for i in xrange(0, len(s) - 10, 3):
+        s[i:i + 10]
+
+
+def reverse(s):
+    s[::-1]
+
+
+def count(s):
+    s.count(EMOJI[0])
+
+
+OPS = (("len", do_len), ("s[i]", index), ("for c in s", iterate),
+       ("s[i:i+10]", slices), ("s[::-1]", reverse), ("count", count))
+
+
+def main(argv):
+    length = int(argv[1]) if len(argv) > 1 else 1000000
+    rnd = random.Random(42)
+    texts = (("ascii", corpus(length, 0.0, rnd)),
+             ("comments", corpus(length, 0.2, rnd)),
+             ("emoji", corpus(length, 0.9, rnd)))
+    print "%-12s" % "op" + "".join("%12s" % name for name, s in texts)
+    for name, fn in OPS:
+        times = [best_time(fn, s) for text, s in texts]
+        print "%-12s" % name + "".join("%12.4f" % t for t in times)
+
+
+if __name__ == "__main__":
+    main(sys.argv)
@@ -27,6 +27,7 @@ public class ClassFile
     ClassWriter cw;
     int access;
     long mtime;
+    int version = Opcodes.V1_6;
     public String name;
     String superclass;
     String sfilename;
@@ -98,6 +99,14 @@ public class ClassFile
         sfilename = name;
     }
 
+    /**
+     * Set the class file version, e.g. {@code Opcodes.V1_7} for {@code invokedynamic}, before
+     * adding methods, whose code depends on it.
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public void addInterface(String name)
         throws IOException
     {
@@ -111,7 +120,7 @@ public class ClassFile
         throws IOException
     {
         MethodVisitor mv = cw.visitMethod(access, name, type, null, null);
-        Code pmv = new Code(mv, type, access);
+        Code pmv = new Code(mv, type, access, version >= Opcodes.V1_7);
         methodVisitors.add(pmv);
         return pmv;
     }
@@ -120,7 +129,7 @@ public class ClassFile
         throws IOException
     {
         MethodVisitor mv = cw.visitMethod(access, name, type, null, exceptions);
-        Code pmv = new Code(mv, type, access);
+        Code pmv = new Code(mv, type, access, version >= Opcodes.V1_7);
         methodVisitors.add(pmv);
         return pmv;
     }
@@ -151,7 +160,7 @@ public class ClassFile
             }
         }
 
-        Code pmv = new Code(mv, type, access);
+        Code pmv = new Code(mv, type, access, version >= Opcodes.V1_7);
         methodVisitors.add(pmv);
         return pmv;
     }
@@ -239,7 +248,7 @@ public class ClassFile
                 }
             } catch (Exception fe) {}
         }
-        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC + Opcodes.ACC_SUPER, this.name, null, this.superclass, interfaces);
+        cw.visit(version, Opcodes.ACC_PUBLIC + Opcodes.ACC_SUPER, this.name, null, this.superclass, interfaces);
         AnnotationVisitor av = cw.visitAnnotation("Lorg/python/compiler/APIVersion;", true);
         // XXX: should imp.java really house this value or should imp.java point into
         // org.python.compiler?
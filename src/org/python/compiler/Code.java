@@ -21,9 +21,39 @@ public class Code extends MethodVisitor implements Opcodes {
     
     //XXX: I'd really like to get sig and access out of here since MethodVistitor
     //     should already have this information.
+    /**
+     * Ends the basic block after each store to a local. ASM only does this itself for stores inside
+     * exception ranges already visited, but the compiler visits try-catch blocks after their code.
+     * Without it the frame computed for a handler can miss the type a local takes in the middle of
+     * a block, which the verifier rejects in class files of version 51 (Java 7) and later. Earlier
+     * versions are verified by inference, so their methods are left as generated.
+     */
+    private static class StoreSplitter extends MethodVisitor {
+
+        StoreSplitter(MethodVisitor mv) {
+            super(ASM7, mv);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            super.visitVarInsn(opcode, var);
+            if (opcode >= ISTORE && opcode <= ASTORE) {
+                super.visitLabel(new Label());
+            }
+        }
+    }
+
     public Code(MethodVisitor mv, String sig, int access) {
+        this(mv, sig, access, false);
+    }
+
+    /**
+     * @param splitStores end the basic block after each store to a local, as the class file
+     *            version is 51 (Java 7) or later (see {@link StoreSplitter})
+     */
+    public Code(MethodVisitor mv, String sig, int access, boolean splitStores) {
         super(ASM7);
-        this.mv = mv;
+        this.mv = splitStores ? new StoreSplitter(mv) : mv;
         this.sig = sig;
         nlocals = -sigSize(sig, false);
         if ((access & ACC_STATIC) != ACC_STATIC) nlocals = nlocals+1;
@@ -2,6 +2,9 @@
 package org.python.compiler;
 
 import java.io.IOException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -75,9 +78,12 @@ import org.python.antlr.ast.operatorType;
 import org.python.antlr.base.expr;
 import org.python.antlr.base.mod;
 import org.python.antlr.base.stmt;
+import org.python.core.Arithmetic;
+import org.python.core.CallSiteBootstrap;
 import org.python.core.CompilerFlags;
 import org.python.core.ContextGuard;
 import org.python.core.ContextManager;
+import org.python.core.GlobalCache;
 import org.python.core.imp;
 import org.python.core.Py;
 import org.python.core.PyCode;
@@ -97,6 +103,7 @@ import org.python.core.PyString;
 import org.python.core.PyTuple;
 import org.python.core.PyUnicode;
 import org.python.core.ThreadState;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -107,6 +114,29 @@ public class CodeCompiler extends Visitor implements Opcodes, ClassConstants {
 
     private static final Object Exit = Integer.valueOf(1);
     private static final Object NoExit = null;
+
+    /** Bootstrap of the attribute load and method call sites; the name is a static argument. */
+    private static final Handle ATTRIBUTE_BOOTSTRAP = new Handle(H_INVOKESTATIC,
+            p(CallSiteBootstrap.class), CallSiteBootstrap.GETATTR, sig(CallSite.class,
+                    MethodHandles.Lookup.class, String.class, MethodType.class, String.class),
+            false);
+    private static final Handle METHOD_BOOTSTRAP = new Handle(H_INVOKESTATIC,
+            p(CallSiteBootstrap.class), CallSiteBootstrap.CALLMETHOD, sig(CallSite.class,
+                    MethodHandles.Lookup.class, String.class, MethodType.class, String.class),
+            false);
+    private static final Handle CALL_BOOTSTRAP = new Handle(H_INVOKESTATIC,
+            p(CallSiteBootstrap.class), CallSiteBootstrap.CALL, sig(CallSite.class,
+                    MethodHandles.Lookup.class, String.class, MethodType.class),
+            false);
+    private static final Handle BINOP_BOOTSTRAP = new Handle(H_INVOKESTATIC,
+            p(CallSiteBootstrap.class), CallSiteBootstrap.BINOP, sig(CallSite.class,
+                    MethodHandles.Lookup.class, String.class, MethodType.class, String.class),
+            false);
+    /** Largest number of positional arguments handled by the call site bootstraps. */
+    private static final int MAX_INDY_ARGS = 4;
+    /** The operations {@code _op} of {@code PyObject} implemented by {@code Arithmetic.op}. */
+    private static final Collection<String> ARITHMETIC_OPS = Arrays.asList("_add", "_sub",
+            "_mul", "_iadd", "_isub", "_imul", "_eq", "_ne", "_lt", "_le", "_gt", "_ge");
     private Module module;
     private Code code;
     private CompilerFlags cflags;
@@ -726,6 +756,54 @@ public class CodeCompiler extends Visitor implements Opcodes, ClassConstants {
         }
     }
 
+    /** Signature of a call of a target with the thread state and {@code nargs} arguments. */
+    private static String callSig(int nargs) {
+        Class<?>[] params = new Class<?>[nargs + 2];
+        params[0] = PyObject.class;
+        params[1] = ThreadState.class;
+        for (int i = 0; i < nargs; i++) {
+            params[i + 2] = PyObject.class;
+        }
+        return sig(PyObject.class, params);
+    }
+
+    /** Replace the object on the stack with its attribute {@code name}. */
+    private void getattrDynamic(String name) {
+        code.visitInvokeDynamicInsn(CallSiteBootstrap.GETATTR, sig(PyObject.class, PyObject.class),
+                ATTRIBUTE_BOOTSTRAP, name);
+    }
+
+    /**
+     * Call the method {@code name} of the object on the stack, below the thread state and
+     * {@code nargs} arguments.
+     */
+    private void callmethodDynamic(String name, int nargs) {
+        code.visitInvokeDynamicInsn(CallSiteBootstrap.CALLMETHOD, callSig(nargs),
+                METHOD_BOOTSTRAP, name);
+    }
+
+    /** Call the object on the stack, below the thread state and {@code nargs} arguments. */
+    private void callDynamic(int nargs) {
+        code.visitInvokeDynamicInsn(CallSiteBootstrap.CALL, callSig(nargs), CALL_BOOTSTRAP);
+    }
+
+    /**
+     * Apply the binary operation {@code name} of {@code PyObject} to the two objects on the stack.
+     * Where {@link Arithmetic} has a fast path for it, that (or a call site specialised by the
+     * operands seen) is used instead.
+     */
+    private void binaryOp(String name) {
+        String sig = sig(PyObject.class, PyObject.class, PyObject.class);
+        if (!ARITHMETIC_OPS.contains(name)) {
+            code.invokevirtual(p(PyObject.class), name, sig(PyObject.class, PyObject.class));
+        } else if (module.invokedynamic) {
+            code.visitInvokeDynamicInsn(CallSiteBootstrap.BINOP, sig, BINOP_BOOTSTRAP,
+                    name.substring(1));
+        } else {
+            code.invokestatic(p(Arithmetic.class), name.substring(1), sig);
+        }
+    }
+
     private int saveStack() throws Exception {
         if (stack.size() > 0) {
             int array = code.getLocal(ci(Object[].class));
@@ -1566,7 +1644,7 @@ public class CodeCompiler extends Visitor implements Opcodes, ClassConstants {
                 name = "_notin";
                 break;
         }
-        code.invokevirtual(p(PyObject.class), name, sig(PyObject.class, PyObject.class));
+        binaryOp(name);
     }
 
     @Override
@@ -1618,7 +1696,7 @@ public class CodeCompiler extends Visitor implements Opcodes, ClassConstants {
         if (node.getInternalOp() == operatorType.Div && module.getFutures().areDivisionOn()) {
             name = "_truediv";
         }
-        code.invokevirtual(p(PyObject.class), name, sig(PyObject.class, PyObject.class));
+        binaryOp(name);
         return null;
     }
 
@@ -1698,7 +1776,7 @@ public class CodeCompiler extends Visitor implements Opcodes, ClassConstants {
         if (node.getInternalOp() == operatorType.Div && module.getFutures().areDivisionOn()) {
             name = "_itruediv";
         }
-        code.invokevirtual(p(PyObject.class), name, sig(PyObject.class, PyObject.class));
+        binaryOp(name);
         code.freeLocal(target);
 
         temporary = storeTop();
@@ -1735,8 +1813,36 @@ public class CodeCompiler extends Visitor implements Opcodes, ClassConstants {
         String name = getName(node.getInternalAttr());
         visit(node.getInternalValue());
         stackProduce();
-        code.ldc(name);
-        code.invokevirtual(p(PyObject.class), "__getattr__", sig(PyObject.class, String.class));
+        if (module.invokedynamic && values.size() <= MAX_INDY_ARGS) {
+            // The method site looks the name up only after the arguments, so it is used where
+            // evaluating them can have no effect, and the attribute otherwise comes first.
+            boolean constant = true;
+            for (expr value : values) {
+                constant &= value instanceof Num || value instanceof Str;
+            }
+            if (!constant) {
+                getattrDynamic(name);
+            }
+            loadThreadState();
+            stackProduce(p(ThreadState.class));
+            for (expr value : values) {
+                visit(value);
+                stackProduce();
+            }
+            stackConsume(values.size() + 2); // target + ts + arguments
+            if (constant) {
+                callmethodDynamic(name, values.size());
+            } else {
+                callDynamic(values.size());
+            }
+            return null;
+        } else if (module.invokedynamic) {
+            getattrDynamic(name);
+        } else {
+            code.ldc(name);
+            code.invokevirtual(p(PyObject.class), "__getattr__",
+                    sig(PyObject.class, String.class));
+        }
         loadThreadState();
         stackProduce(p(ThreadState.class));
 
@@ -1862,6 +1968,15 @@ public class CodeCompiler extends Visitor implements Opcodes, ClassConstants {
             code.invokevirtual(p(PyObject.class), "__call__",
                     sig(PyObject.class, ThreadState.class, PyObject[].class, String[].class));
             freeArrayRef(argArray);
+        } else if (module.invokedynamic && values.size() <= MAX_INDY_ARGS) {
+            loadThreadState();
+            stackProduce(p(ThreadState.class));
+            for (expr value : values) {
+                visit(value);
+                stackProduce();
+            }
+            stackConsume(values.size() + 2); // target + ts + arguments
+            callDynamic(values.size());
         } else {
             loadThreadState();
             stackProduce(p(ThreadState.class));
@@ -2047,6 +2162,11 @@ public class CodeCompiler extends Visitor implements Opcodes, ClassConstants {
     public Object visitAttribute(Attribute node) throws Exception {
 
         expr_contextType ctx = node.getInternalCtx();
+        if (ctx == expr_contextType.Load && module.invokedynamic) {
+            visit(node.getInternalValue());
+            getattrDynamic(getName(node.getInternalAttr()));
+            return null;
+        }
         if (node.getInternalCtx() == expr_contextType.AugStore && augmode == expr_contextType.Store) {
             restoreAugTmps(node, 2);
             ctx = expr_contextType.Store;
@@ -2437,8 +2557,12 @@ public class CodeCompiler extends Visitor implements Opcodes, ClassConstants {
     }
 
     void emitGetGlobal(String name) throws Exception {
-        code.ldc(name);
-        code.invokevirtual(p(PyFrame.class), "getglobal", sig(PyObject.class, String.class));
+        // The frame is on the stack: look the name up through the module's cache for it
+        module.globalCacheConstant(name).get(code);
+        code.swap();
+        loadThreadState();
+        code.invokevirtual(p(GlobalCache.class), "get",
+                sig(PyObject.class, PyFrame.class, ThreadState.class));
     }
 
     @Override
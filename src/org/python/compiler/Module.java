@@ -35,7 +35,9 @@ import org.python.core.CodeBootstrap;
 import org.python.core.CodeFlag;
 import org.python.core.CodeLoader;
 import org.python.core.CompilerFlags;
+import org.python.core.GlobalCache;
 import org.python.core.imp;
+import org.python.core.Options;
 import org.python.core.Py;
 import org.python.core.PyCode;
 import org.python.core.PyBytecode;
@@ -259,6 +261,45 @@ class PyLongConstant extends Constant implements ClassConstants, Opcodes {
 }
 
 
+class GlobalCacheConstant extends Constant implements ClassConstants, Opcodes {
+
+    final String value;
+
+    GlobalCacheConstant(String value) {
+        this.value = value;
+    }
+
+    @Override
+    void get(Code c) throws IOException {
+        c.getstatic(module.classfile.name, name, ci(GlobalCache.class));
+    }
+
+    @Override
+    void put(Code c) throws IOException {
+        module.classfile.addField(name, ci(GlobalCache.class), access);
+        c.new_(p(GlobalCache.class));
+        c.dup();
+        c.ldc(value);
+        c.invokespecial(p(GlobalCache.class), "<init>", sig(Void.TYPE, String.class));
+        c.putstatic(module.classfile.name, name, ci(GlobalCache.class));
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof GlobalCacheConstant) {
+            return ((GlobalCacheConstant)o).value.equals(value);
+        } else {
+            return false;
+        }
+    }
+}
+
+
 class PyCodeConstant extends Constant implements ClassConstants, Opcodes {
 
     final String co_name;
@@ -457,6 +498,8 @@ public class Module implements Opcodes, ClassConstants, CompilationContext {
     String sfilename;
     Constant mainCode;
     boolean linenumbers;
+    /** Emit {@code invokedynamic} call sites (see {@link org.python.core.CallSiteBootstrap}). */
+    boolean invokedynamic;
     Future futures;
     Hashtable<PythonTree, ScopeInfo> scopes;
     List<PyCodeConstant> codes;
@@ -477,9 +520,13 @@ public class Module implements Opcodes, ClassConstants, CompilationContext {
 
     public Module(String name, String filename, boolean linenumbers, long mtime) {
         this.linenumbers = linenumbers;
+        this.invokedynamic = Options.invokedynamic;
         this.mtime = mtime;
         classfile =
                 new ClassFile(name, p(PyFunctionTable.class), ACC_SYNCHRONIZED | ACC_PUBLIC, mtime);
+        if (invokedynamic) {
+            classfile.setVersion(V1_7);
+        }
         constants = new Hashtable<Constant, Constant>();
         sfilename = filename;
         if (filename != null) {
@@ -533,6 +580,11 @@ public class Module implements Opcodes, ClassConstants, CompilationContext {
         return findConstant(new PyLongConstant(value));
     }
 
+    /** The {@link GlobalCache} shared by the loads of the global {@code name} in this module. */
+    Constant globalCacheConstant(String name) {
+        return findConstant(new GlobalCacheConstant(name));
+    }
+
     Constant codeConstant(mod tree, String name, boolean fast_locals, String className,
             boolean classBody, boolean printResults, int firstlineno, ScopeInfo scope,
             CompilerFlags cflags) throws Exception {
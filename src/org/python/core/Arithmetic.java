@@ -0,0 +1,236 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.core;
+
+/**
+ * Binary operations with fast paths for {@code int} and {@code float} operands, for use by compiled
+ * code. The compiler emits a call to one of these in place of the corresponding {@code PyObject}
+ * method (for example {@link #add(PyObject, PyObject)} for {@link PyObject#_add(PyObject)}).
+ * <p>
+ * When both operands are exactly {@link PyInteger} or {@link PyFloat} the result is computed
+ * directly, with the semantics of the methods of those types (an {@code int} result that
+ * overflows becomes a {@code long}). Any other operands, including {@code bool} and subclasses of
+ * {@code int} or {@code float}, are handed to the {@code PyObject} method.
+ */
+public class Arithmetic {
+
+    private Arithmetic() {}
+
+    /** Whether {@code obj} is exactly an {@code int}. */
+    static boolean isInt(PyObject obj) {
+        return obj.getClass() == PyInteger.class;
+    }
+
+    /** Whether {@code obj} is exactly an {@code int} or a {@code float}. */
+    static boolean isNumber(PyObject obj) {
+        Class<?> c = obj.getClass();
+        return c == PyInteger.class || c == PyFloat.class;
+    }
+
+    /** Whether both objects are exactly {@code int}. */
+    static boolean bothInt(PyObject a, PyObject b) {
+        return a.getClass() == PyInteger.class && b.getClass() == PyInteger.class;
+    }
+
+    /** Whether both objects are exactly {@code int} or {@code float}. */
+    static boolean bothNumber(PyObject a, PyObject b) {
+        return isNumber(a) && isNumber(b);
+    }
+
+    /** The value of an object known to be an {@code int}. */
+    static int intValue(PyObject obj) {
+        return ((PyInteger)obj).getValue();
+    }
+
+    /** The value of an object known to be an {@code int} or a {@code float}. */
+    static double doubleValue(PyObject obj) {
+        if (obj.getClass() == PyInteger.class) {
+            return ((PyInteger)obj).getValue();
+        }
+        return ((PyFloat)obj).getValue();
+    }
+
+    // int operations, as in PyInteger
+
+    static PyObject add(int a, int b) {
+        int x = a + b;
+        if ((x ^ a) >= 0 || (x ^ b) >= 0) {
+            return Py.newInteger(x);
+        }
+        return new PyLong((long)a + (long)b);
+    }
+
+    static PyObject sub(int a, int b) {
+        int x = a - b;
+        if ((x ^ a) >= 0 || (x ^ ~b) >= 0) {
+            return Py.newInteger(x);
+        }
+        return new PyLong((long)a - (long)b);
+    }
+
+    static PyObject mul(int a, int b) {
+        long x = (long)a * (long)b;
+        if (x <= Integer.MAX_VALUE && x >= Integer.MIN_VALUE) {
+            return Py.newInteger((int)x);
+        }
+        return new PyLong(x);
+    }
+
+    static PyObject iadd(int a, int b) {
+        return add(a, b);
+    }
+
+    static PyObject isub(int a, int b) {
+        return sub(a, b);
+    }
+
+    static PyObject imul(int a, int b) {
+        return mul(a, b);
+    }
+
+    static PyObject eq(int a, int b) {
+        return Py.newBoolean(a == b);
+    }
+
+    static PyObject ne(int a, int b) {
+        return Py.newBoolean(a != b);
+    }
+
+    static PyObject lt(int a, int b) {
+        return Py.newBoolean(a < b);
+    }
+
+    static PyObject le(int a, int b) {
+        return Py.newBoolean(a <= b);
+    }
+
+    static PyObject gt(int a, int b) {
+        return Py.newBoolean(a > b);
+    }
+
+    static PyObject ge(int a, int b) {
+        return Py.newBoolean(a >= b);
+    }
+
+    // Operations on any objects. Java comparison of doubles treats NaN as Python does.
+
+    /** Equivalent to {@code a._add(b)}. */
+    public static PyObject add(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return add(intValue(a), intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newFloat(doubleValue(a) + doubleValue(b));
+        }
+        return a._add(b);
+    }
+
+    /** Equivalent to {@code a._sub(b)}. */
+    public static PyObject sub(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return sub(intValue(a), intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newFloat(doubleValue(a) - doubleValue(b));
+        }
+        return a._sub(b);
+    }
+
+    /** Equivalent to {@code a._mul(b)}. */
+    public static PyObject mul(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return mul(intValue(a), intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newFloat(doubleValue(a) * doubleValue(b));
+        }
+        return a._mul(b);
+    }
+
+    /** Equivalent to {@code a._iadd(b)}: {@code int} and {@code float} have no {@code __iadd__}. */
+    public static PyObject iadd(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return add(intValue(a), intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newFloat(doubleValue(a) + doubleValue(b));
+        }
+        return a._iadd(b);
+    }
+
+    /** Equivalent to {@code a._isub(b)}. */
+    public static PyObject isub(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return sub(intValue(a), intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newFloat(doubleValue(a) - doubleValue(b));
+        }
+        return a._isub(b);
+    }
+
+    /** Equivalent to {@code a._imul(b)}. */
+    public static PyObject imul(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return mul(intValue(a), intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newFloat(doubleValue(a) * doubleValue(b));
+        }
+        return a._imul(b);
+    }
+
+    /** Equivalent to {@code a._eq(b)}. */
+    public static PyObject eq(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return Py.newBoolean(intValue(a) == intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newBoolean(doubleValue(a) == doubleValue(b));
+        }
+        return a._eq(b);
+    }
+
+    /** Equivalent to {@code a._ne(b)}. */
+    public static PyObject ne(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return Py.newBoolean(intValue(a) != intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newBoolean(doubleValue(a) != doubleValue(b));
+        }
+        return a._ne(b);
+    }
+
+    /** Equivalent to {@code a._lt(b)}. */
+    public static PyObject lt(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return Py.newBoolean(intValue(a) < intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newBoolean(doubleValue(a) < doubleValue(b));
+        }
+        return a._lt(b);
+    }
+
+    /** Equivalent to {@code a._le(b)}. */
+    public static PyObject le(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return Py.newBoolean(intValue(a) <= intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newBoolean(doubleValue(a) <= doubleValue(b));
+        }
+        return a._le(b);
+    }
+
+    /** Equivalent to {@code a._gt(b)}. */
+    public static PyObject gt(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return Py.newBoolean(intValue(a) > intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newBoolean(doubleValue(a) > doubleValue(b));
+        }
+        return a._gt(b);
+    }
+
+    /** Equivalent to {@code a._ge(b)}. */
+    public static PyObject ge(PyObject a, PyObject b) {
+        if (bothInt(a, b)) {
+            return Py.newBoolean(intValue(a) >= intValue(b));
+        } else if (bothNumber(a, b)) {
+            return Py.newBoolean(doubleValue(a) >= doubleValue(b));
+        }
+        return a._ge(b);
+    }
+}
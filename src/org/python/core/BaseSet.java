@@ -133,22 +133,16 @@ public abstract class BaseSet extends PyObject implements Set, Traverseproc {
     }
 
     final PyObject baseset_difference(PyObject [] args) {
-        if (args.length == 0) {
-            return BaseSet.makeNewSet(getType(), this);
-        }
-
-        BaseSet o = BaseSet.makeNewSet(getType(), this);
+        CompactSet<PyObject> result = null;
         for (PyObject item: args) {
-            BaseSet bs = args[0] instanceof BaseSet ? (BaseSet)item : new PySet(item);
-            Set<PyObject> set = bs._set;
-
-            for (PyObject p : set) {
-                if (_set.contains(p)) {
-                    o._set.remove(p);
-                }
+            BaseSet bs = item instanceof BaseSet ? (BaseSet)item : new PySet(item);
+            if (result == null) {
+                result = compactSet().difference(bs._set);
+            } else {
+                result.removeAll(bs._set);
             }
         }
-        return o;
+        return makeNewSetOf(getType(), result != null ? result : compactSet().copy());
     }
 
     /**
@@ -387,47 +381,32 @@ public abstract class BaseSet extends PyObject implements Set, Traverseproc {
     }
 
     final PyObject baseset_union(PyObject other) {
-        BaseSet result = BaseSet.makeNewSet(getType(), this);
-        result._update(other);
-        return result;
+        return baseset_union(new PyObject[] {other});
     }
 
     final PyObject baseset_union(PyObject [] args) {
-        BaseSet result = BaseSet.makeNewSet(getType(), this);
+        CompactSet<PyObject> result = compactSet().copy();
         for (PyObject item: args) {
-            result._update(item);
+            _update(result, item);
         }
-        return result;
+        return makeNewSetOf(getType(), result);
     }
 
     final PyObject baseset_intersection(PyObject other) {
-        PyObject little, big;
-        if (!(other instanceof BaseSet)) {
-            other = new PySet(other);
-        }
-
-        if (size() <= __builtin__.len(other)) {
-            little = this;
-            big = other;
-        } else {
-            little = other;
-            big = this;
-        }
-
-        PyObject common = __builtin__.filter(big.__getattr__("__contains__"), little);
-        return BaseSet.makeNewSet(getType(), common);
+        BaseSet bs = other instanceof BaseSet ? (BaseSet)other : new PySet(other);
+        return makeNewSetOf(getType(), compactSet().intersection(bs._set));
     }
 
     final PyObject baseset_intersection(PyObject [] args) {
-        BaseSet result = BaseSet.makeNewSet(getType(), this);
         if (args.length == 0) {
-            return result;
+            return makeNewSetOf(getType(), compactSet().copy());
         }
-
+        CompactSet<PyObject> result = compactSet();
         for (PyObject other: args) {
-            result = (BaseSet)result.baseset_intersection(other);
+            BaseSet bs = other instanceof BaseSet ? (BaseSet)other : new PySet(other);
+            result = result.intersection(bs._set);
         }
-        return result;
+        return makeNewSetOf(getType(), result);
     }
 
     final PyObject baseset_copy() {
@@ -519,6 +498,43 @@ public abstract class BaseSet extends PyObject implements Set, Traverseproc {
         return tmp;
     }
 
+    /**
+     * The underlying set as a {@link CompactSet}, for the set algebra: the set itself, or a copy
+     * if it is of another kind (as a set made by {@code _jythonlib.set_builder} may be).
+     *
+     * @return the elements of this set
+     */
+    private CompactSet<PyObject> compactSet() {
+        if (_set instanceof CompactSet) {
+            return (CompactSet<PyObject>)_set;
+        }
+        return new CompactSet<PyObject>(_set);
+    }
+
+    /**
+     * Create a new set of type holding the elements of set, which becomes its underlying set when
+     * type is exactly <code>set</code> or <code>frozenset</code>.
+     *
+     * @param type a set type
+     * @param set a set no other object refers to
+     * @return a new set
+     */
+    private static BaseSet makeNewSetOf(PyType type, CompactSet<PyObject> set) {
+        BaseSet so;
+        if (type == PySet.TYPE) {
+            so = new PySet();
+        } else if (type == PyFrozenSet.TYPE) {
+            so = new PyFrozenSet();
+        } else {
+            // Subclasses are given the elements as an iterable, to construct as they do
+            PySet elements = new PySet();
+            elements._set = set;
+            return makeNewSet(type, elements);
+        }
+        so._set = set;
+        return so;
+    }
+
     /**
      * Create a new set of type.
      *
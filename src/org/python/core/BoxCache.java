@@ -0,0 +1,117 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared instances of immutable boxed values for a range of {@code int} keys. {@link Py} keeps one
+ * for {@code int} values, one for integral {@code float} values and one for single-character
+ * {@code unicode} strings, so that the common values are not allocated again each time they are
+ * created. The ranges are set from the registry when the system state is initialised; a cache is
+ * never changed, only replaced by one with a different range.
+ * <p>
+ * When {@link Options#cacheStats} is set the cache counts its hits and misses, which are reported
+ * by {@code sys._cache_stats()}.
+ */
+public final class BoxCache {
+
+    /** Lowest key cached. */
+    final int low;
+
+    /** Highest key cached (inclusive). */
+    final int high;
+
+    private final PyObject[] values;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** The most keys a cache may hold (a range wider than this is refused). */
+    static final int MAX_SIZE = 1 << 20;
+
+    private BoxCache(int low, int high) {
+        if (!isValidRange(low, high)) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid box cache range %d to %d", low, high));
+        }
+        this.low = low;
+        this.high = high;
+        values = new PyObject[high - low + 1];
+    }
+
+    /**
+     * Whether a cache may hold the keys {@code low} to {@code high} inclusive: at least one key,
+     * and no more than {@link #MAX_SIZE}.
+     */
+    static boolean isValidRange(int low, int high) {
+        long size = (long) high - low + 1;
+        return size >= 1 && size <= MAX_SIZE;
+    }
+
+    /** A cache of the {@code int} values from {@code low} to {@code high} inclusive. */
+    static BoxCache integers(int low, int high) {
+        BoxCache cache = new BoxCache(low, high);
+        for (int i = 0; i < cache.values.length; i++) {
+            cache.values[i] = new PyInteger(low + i);
+        }
+        return cache;
+    }
+
+    /** A cache of the {@code float} values of the integers from {@code low} to {@code high}. */
+    static BoxCache floats(int low, int high) {
+        BoxCache cache = new BoxCache(low, high);
+        for (int i = 0; i < cache.values.length; i++) {
+            cache.values[i] = new PyFloat(low + i);
+        }
+        return cache;
+    }
+
+    /** A cache of the {@code unicode} strings of one code point, from 0 to {@code high}. */
+    static BoxCache characters(int high) {
+        BoxCache cache = new BoxCache(0, Math.min(high, Character.MAX_CODE_POINT));
+        for (int i = 0; i < cache.values.length; i++) {
+            // Lone surrogates are not cached: PyUnicode may not be made from one
+            if (i < Character.MIN_SURROGATE || i > Character.MAX_SURROGATE) {
+                cache.values[i] = new PyUnicode(i);
+            }
+        }
+        return cache;
+    }
+
+    /** Whether this cache holds exactly the keys {@code low} to {@code high}. */
+    boolean hasRange(int low, int high) {
+        return this.low == low && this.high == high;
+    }
+
+    /**
+     * The cached value for key {@code i}, or {@code null} (which counts as a miss) if there is
+     * none.
+     */
+    PyObject get(int i) {
+        if (i >= low && i <= high) {
+            PyObject value = values[i - low];
+            if (value != null) {
+                if (Options.cacheStats) {
+                    hits.increment();
+                }
+                return value;
+            }
+        }
+        miss();
+        return null;
+    }
+
+    /** Count a value requested that this cache cannot supply. */
+    void miss() {
+        if (Options.cacheStats) {
+            misses.increment();
+        }
+    }
+
+    /** The range and counts as a tuple {@code (low, high, hits, misses)}. */
+    PyTuple stats() {
+        return new PyTuple(Py.newInteger(low), Py.newInteger(high), Py.newLong(hits.sum()),
+                Py.newLong(misses.sum()));
+    }
+}
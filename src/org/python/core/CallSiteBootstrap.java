@@ -0,0 +1,639 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.core;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bootstrap methods for the {@code invokedynamic} call sites emitted by
+ * {@link org.python.compiler.CodeCompiler} when {@link Options#invokedynamic} is set.
+ * <p>
+ * Each call site is an inline cache: the first objects seen at the site are recorded in a short
+ * chain of guarded entries, so a monomorphic or mildly polymorphic site runs straight into the
+ * cached code. Attribute entries are guarded on the Java class, the Python type and its
+ * {@link PyType#getVersionTag() version tag}, and remember the result of the MRO lookup of the
+ * name. They also remember the position of the name among the keys the instance dictionaries of
+ * the type share (see {@link CompactDictMap.SharedKeys}), which is in effect the shape of the
+ * instances and the slot of the attribute, and read it from the dictionary without hashing. A site
+ * that sees more than {@link #POLYMORPHIC_LIMIT} receivers, or is invalidated too often, becomes
+ * megamorphic and is relinked to the generic {@code PyObject} method.
+ */
+public class CallSiteBootstrap {
+
+    /** Name of the bootstrap for {@code obj.name} loads. */
+    public static final String GETATTR = "getattr";
+
+    /** Name of the bootstrap for {@code obj.name(args)} calls. */
+    public static final String CALLMETHOD = "callmethod";
+
+    /** Name of the bootstrap for {@code f(args)} calls. */
+    public static final String CALL = "call";
+
+    /** Name of the bootstrap for the binary operations of {@link Arithmetic}. */
+    public static final String BINOP = "binop";
+
+    /** Number of entries a site may hold before it is considered megamorphic. */
+    static final int POLYMORPHIC_LIMIT = 4;
+
+    /** Number of times a site may be relinked before it is considered megamorphic. */
+    static final int RELINK_LIMIT = 16;
+
+    private static final Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodHandle MISS;
+    private static final MethodHandle IS_CLASS;
+    private static final MethodHandle ENTRY_MATCHES;
+    private static final MethodHandle ENTRY_GETATTR;
+    private static final MethodHandle GENERIC_GETATTR;
+    private static final MethodHandle[] ENTRY_CALLMETHOD;
+    private static final MethodHandle[] GENERIC_CALLMETHOD;
+    private static final MethodHandle OBSERVE;
+    private static final MethodHandle BOTH_INT;
+    private static final MethodHandle BOTH_NUMBER;
+    private static final MethodHandle INT_VALUE;
+
+    static {
+        try {
+            MISS = LOOKUP.findVirtual(InlineCacheSite.class, "miss",
+                    MethodType.methodType(Object.class, Object[].class));
+            IS_CLASS = LOOKUP.findStatic(CallSiteBootstrap.class, "isClass",
+                    MethodType.methodType(boolean.class, Class.class, PyObject.class));
+            ENTRY_MATCHES = LOOKUP.findVirtual(AttributeEntry.class, "matches",
+                    MethodType.methodType(boolean.class, PyObject.class));
+            ENTRY_GETATTR = LOOKUP.findVirtual(AttributeEntry.class, "getattr",
+                    MethodType.methodType(PyObject.class, PyObject.class));
+            GENERIC_GETATTR = LOOKUP.findVirtual(PyObject.class, "__getattr__",
+                    MethodType.methodType(PyObject.class, String.class));
+            ENTRY_CALLMETHOD = new MethodHandle[5];
+            GENERIC_CALLMETHOD = new MethodHandle[5];
+            for (int arity = 0; arity < ENTRY_CALLMETHOD.length; arity++) {
+                MethodType type = callType(arity).insertParameterTypes(0, AttributeEntry.class);
+                ENTRY_CALLMETHOD[arity] = LOOKUP.findStatic(CallSiteBootstrap.class,
+                        CALLMETHOD, type);
+                GENERIC_CALLMETHOD[arity] = LOOKUP.findStatic(CallSiteBootstrap.class,
+                        CALLMETHOD, type.changeParameterType(0, String.class));
+            }
+            MethodType binary = MethodType.methodType(PyObject.class, PyObject.class,
+                    PyObject.class);
+            OBSERVE = LOOKUP.findVirtual(BinaryOpSite.class, "observe", binary);
+            BOTH_INT = LOOKUP.findStatic(Arithmetic.class, "bothInt",
+                    binary.changeReturnType(boolean.class));
+            BOTH_NUMBER = LOOKUP.findStatic(Arithmetic.class, "bothNumber",
+                    binary.changeReturnType(boolean.class));
+            INT_VALUE = LOOKUP.findStatic(Arithmetic.class, "intValue",
+                    MethodType.methodType(int.class, PyObject.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private CallSiteBootstrap() {}
+
+    /**
+     * The type of a call site taking a receiver, the thread state and {@code arity} positional
+     * arguments.
+     */
+    private static MethodType callType(int arity) {
+        MethodType type = MethodType.methodType(PyObject.class, PyObject.class, ThreadState.class);
+        for (int i = 0; i < arity; i++) {
+            type = type.appendParameterTypes(PyObject.class);
+        }
+        return type;
+    }
+
+    /** Bootstrap an attribute load {@code (PyObject)PyObject} of the attribute {@code attr}. */
+    public static CallSite getattr(Lookup caller, String name, MethodType type, String attr) {
+        return new AttributeSite(type, attr, false);
+    }
+
+    /**
+     * Bootstrap a method call {@code (PyObject, ThreadState, PyObject...)PyObject} of the attribute
+     * {@code attr} of the receiver, with up to four positional arguments.
+     */
+    public static CallSite callmethod(Lookup caller, String name, MethodType type, String attr) {
+        return new AttributeSite(type, attr, true);
+    }
+
+    /**
+     * Bootstrap a call {@code (PyObject, ThreadState, PyObject...)PyObject} of the receiver, with
+     * up to four positional arguments.
+     */
+    public static CallSite call(Lookup caller, String name, MethodType type) {
+        return new CallableSite(type);
+    }
+
+    /**
+     * Bootstrap a binary operation {@code (PyObject, PyObject)PyObject}, where {@code op} names the
+     * method of {@link Arithmetic} (and, prefixed with an underscore, of {@code PyObject}) that
+     * implements it.
+     */
+    public static CallSite binop(Lookup caller, String name, MethodType type, String op) {
+        return new BinaryOpSite(type, op);
+    }
+
+    static boolean isClass(Class<?> c, PyObject obj) {
+        return obj.getClass() == c;
+    }
+
+    /**
+     * Base of the inline cache call sites. The target is a chain of guards ending in the
+     * {@code miss} handle, which records the receiver and rebuilds the chain.
+     */
+    abstract static class InlineCacheSite<E> extends MutableCallSite {
+
+        /** Handle to {@link #miss(Object[])} bound to this site. */
+        private final MethodHandle fallback;
+
+        /** The current entries, in order of insertion. Guarded by this. */
+        private final List<E> entries = new ArrayList<E>(POLYMORPHIC_LIMIT);
+
+        private int relinks;
+
+        private boolean megamorphic;
+
+        InlineCacheSite(MethodType type) {
+            super(type);
+            fallback = MISS.bindTo(this).asCollector(Object[].class, type.parameterCount())
+                    .asType(type);
+            setTarget(fallback);
+        }
+
+        /** Whether {@code entry} applies to {@code obj}. */
+        abstract boolean matches(E entry, PyObject obj);
+
+        /** Whether {@code entry} is still valid for any receiver. */
+        abstract boolean isCurrent(E entry);
+
+        /** Create an entry for {@code obj}. */
+        abstract E createEntry(PyObject obj);
+
+        /** The guard for {@code entry}, taking the receiver as its only argument. */
+        abstract MethodHandle guard(E entry);
+
+        /** The cached code for {@code entry}, of the site type. */
+        abstract MethodHandle target(E entry);
+
+        /** The code used once the site is megamorphic, of the site type. */
+        abstract MethodHandle generic();
+
+        /**
+         * Called when no entry matches the receiver {@code args[0]}: record it and invoke the
+         * (new) target.
+         */
+        Object miss(Object[] args) throws Throwable {
+            relink((PyObject)args[0]);
+            return getTarget().invokeWithArguments(args);
+        }
+
+        private synchronized void relink(PyObject obj) {
+            if (megamorphic) {
+                return;
+            }
+            for (E entry : entries) {
+                if (matches(entry, obj)) {
+                    // Another thread got here first
+                    return;
+                }
+            }
+            for (Iterator<E> it = entries.iterator(); it.hasNext();) {
+                if (!isCurrent(it.next())) {
+                    it.remove();
+                }
+            }
+            if (entries.size() >= POLYMORPHIC_LIMIT || ++relinks > RELINK_LIMIT) {
+                megamorphic = true;
+                entries.clear();
+                setTarget(generic());
+                return;
+            }
+            entries.add(createEntry(obj));
+
+            MethodType type = type();
+            MethodHandle chain = fallback;
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                E entry = entries.get(i);
+                MethodHandle test = MethodHandles.dropArguments(guard(entry), 1,
+                        type.dropParameterTypes(0, 1).parameterList());
+                chain = MethodHandles.guardWithTest(test, target(entry), chain);
+            }
+            setTarget(chain);
+        }
+    }
+
+    /** How the Java class of a receiver implements {@code __findattr_ex__}. */
+    enum FindattrKind {
+        /** Inherited from {@code PyObject}: {@code object.__getattribute__} semantics. */
+        OBJECT,
+        /** A {@code Derived} class delegating to {@link Deriveds#__findattr_ex__}. */
+        DERIVED,
+        /** Anything else, which the cache does not attempt to model. */
+        OTHER;
+
+        private static final ClassValue<FindattrKind> kinds = new ClassValue<FindattrKind>() {
+
+            @Override
+            protected FindattrKind computeValue(Class<?> c) {
+                Class<?> declarer;
+                try {
+                    declarer = c.getMethod("__findattr_ex__", String.class).getDeclaringClass();
+                } catch (NoSuchMethodException e) {
+                    return OTHER;
+                }
+                if (declarer == PyObject.class) {
+                    return OBJECT;
+                } else if (declarer.getSimpleName().endsWith("Derived")
+                        && declarer.getPackage() == c.getPackage()) {
+                    return DERIVED;
+                }
+                return OTHER;
+            }
+        };
+
+        static FindattrKind of(Class<?> c) {
+            return kinds.get(c);
+        }
+    }
+
+    /**
+     * Cached result of looking up an attribute on the type of a receiver. An entry with a
+     * {@code null} {@link #type} is generic: it only selects the Java class and performs the full
+     * lookup.
+     */
+    static class AttributeEntry {
+
+        final Class<?> cls;
+        final PyType type;
+        final Object versionTag;
+        final String name;
+        final PyObject descr;
+
+        /**
+         * Position of {@link #name} in the shared keys of the last instance dictionary seen, or
+         * {@code null}. Replaced whenever it does not apply.
+         */
+        private CompactDictMap.KeyPosition position;
+
+        AttributeEntry(Class<?> cls, PyType type, Object versionTag, String name,
+                PyObject descr) {
+            this.cls = cls;
+            this.type = type;
+            this.versionTag = versionTag;
+            this.name = name;
+            this.descr = descr;
+        }
+
+        static AttributeEntry create(PyObject obj, String name) {
+            Class<?> cls = obj.getClass();
+            PyType type = obj.getType();
+            switch (FindattrKind.of(cls)) {
+                case DERIVED:
+                    if (!Deriveds.usesObjectGetattribute(type)) {
+                        break;
+                    }
+                    // Fall through
+                case OBJECT:
+                    // Read the tag before the lookup, as MethodCache does
+                    Object versionTag = type.getVersionTag();
+                    return new AttributeEntry(cls, type, versionTag, name, type.lookup(name));
+                default:
+                    break;
+            }
+            return new AttributeEntry(cls, null, null, name, null);
+        }
+
+        boolean isGeneric() {
+            return type == null;
+        }
+
+        boolean matches(PyObject obj) {
+            return obj.getClass() == cls && obj.getType() == type
+                    && type.getVersionTag() == versionTag;
+        }
+
+        boolean isCurrent() {
+            return isGeneric() || type.getVersionTag() == versionTag;
+        }
+
+        /**
+         * {@code object.__getattribute__} using the cached descriptor, and the full lookup (with
+         * any {@code __getattr__} hook) when the attribute is not found that way.
+         */
+        PyObject getattr(PyObject obj) {
+            boolean get = false;
+            if (descr != null) {
+                get = descr.implementsDescrGet();
+                if (get && descr.isDataDescr()) {
+                    return descr.__get__(obj, type);
+                }
+            }
+
+            PyObject obj_dict = obj.fastGetDict();
+            if (obj_dict != null) {
+                PyObject res = findInDict(obj_dict);
+                if (res != null) {
+                    return res;
+                }
+            }
+
+            if (get) {
+                return descr.__get__(obj, type);
+            } else if (descr != null) {
+                return descr;
+            }
+            return obj.__getattr__(name);
+        }
+
+        /**
+         * The plain Python function the attribute would bind as a method of {@code obj}, or
+         * {@code null} if the attribute is anything else. Calling the function directly with
+         * {@code obj} prepended saves allocating the bound method.
+         */
+        PyFunction function(PyObject obj) {
+            if (descr == null || descr.getClass() != PyFunction.class || obj == Py.None) {
+                return null;
+            }
+            PyObject obj_dict = obj.fastGetDict();
+            if (obj_dict != null && findInDict(obj_dict) != null) {
+                return null;
+            }
+            return (PyFunction)descr;
+        }
+
+        /**
+         * {@code dict.__finditem__(name)}, reading a split instance dictionary at the remembered
+         * {@link #position} of the name when it applies, and remembering a new one when not.
+         */
+        @SuppressWarnings("unchecked")
+        private PyObject findInDict(PyObject dict) {
+            if (dict instanceof PyStringMap
+                    && ((PyStringMap)dict).getMap() instanceof CompactDictMap) {
+                CompactDictMap<Object, PyObject> map =
+                        (CompactDictMap<Object, PyObject>)((PyStringMap)dict).getMap();
+                CompactDictMap.KeyPosition p = position;
+                if (p != null) {
+                    Object value = map.get(p);
+                    if (value != CompactDictMap.NOT_SPLIT) {
+                        return (PyObject)value;
+                    }
+                }
+                p = map.positionOf(name);
+                if (p != null) {
+                    position = p;
+                    Object value = map.get(p);
+                    if (value != CompactDictMap.NOT_SPLIT) {
+                        return (PyObject)value;
+                    }
+                }
+            }
+            return dict.__finditem__(name);
+        }
+    }
+
+    /** Inline cache for attribute loads and method calls on a named attribute. */
+    static class AttributeSite extends InlineCacheSite<AttributeEntry> {
+
+        private final String name;
+        private final boolean method;
+
+        AttributeSite(MethodType type, String name, boolean method) {
+            super(type);
+            this.name = name;
+            this.method = method;
+        }
+
+        @Override
+        boolean matches(AttributeEntry entry, PyObject obj) {
+            return entry.isGeneric() ? obj.getClass() == entry.cls : entry.matches(obj);
+        }
+
+        @Override
+        boolean isCurrent(AttributeEntry entry) {
+            return entry.isCurrent();
+        }
+
+        @Override
+        AttributeEntry createEntry(PyObject obj) {
+            return AttributeEntry.create(obj, name);
+        }
+
+        @Override
+        MethodHandle guard(AttributeEntry entry) {
+            if (entry.isGeneric()) {
+                return IS_CLASS.bindTo(entry.cls);
+            }
+            return ENTRY_MATCHES.bindTo(entry);
+        }
+
+        @Override
+        MethodHandle target(AttributeEntry entry) {
+            if (entry.isGeneric()) {
+                return generic();
+            } else if (method) {
+                return ENTRY_CALLMETHOD[arity()].bindTo(entry);
+            }
+            return ENTRY_GETATTR.bindTo(entry);
+        }
+
+        @Override
+        MethodHandle generic() {
+            if (method) {
+                return GENERIC_CALLMETHOD[arity()].bindTo(name);
+            }
+            return MethodHandles.insertArguments(GENERIC_GETATTR, 1, name);
+        }
+
+        private int arity() {
+            return type().parameterCount() - 2;
+        }
+    }
+
+    /**
+     * Inline cache for calls: entries select the Java class of the callable so that the call of
+     * {@code __call__} is direct.
+     */
+    static class CallableSite extends InlineCacheSite<Class<?>> {
+
+        CallableSite(MethodType type) {
+            super(type);
+        }
+
+        @Override
+        boolean matches(Class<?> entry, PyObject obj) {
+            return obj.getClass() == entry;
+        }
+
+        @Override
+        boolean isCurrent(Class<?> entry) {
+            return true;
+        }
+
+        @Override
+        Class<?> createEntry(PyObject obj) {
+            return obj.getClass();
+        }
+
+        @Override
+        MethodHandle guard(Class<?> entry) {
+            return IS_CLASS.bindTo(entry);
+        }
+
+        @Override
+        MethodHandle target(Class<?> entry) {
+            MethodType callType = type().dropParameterTypes(0, 1);
+            try {
+                return LOOKUP.findVirtual(entry, "__call__", callType).asType(type());
+            } catch (ReflectiveOperationException e) {
+                // Not accessible from here: the generic call is still correct
+                return generic();
+            }
+        }
+
+        @Override
+        MethodHandle generic() {
+            try {
+                return LOOKUP.findVirtual(PyObject.class, "__call__",
+                        type().dropParameterTypes(0, 1));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Binary operation specialised by the kinds of operand seen. While only {@code int} operands
+     * have been seen, the site unboxes them straight into the {@code int} operation; while only
+     * non-numeric operands have been seen, it calls the {@code PyObject} method without testing
+     * for numbers. Once it has seen both, or a {@code float}, it settles on the general
+     * {@link Arithmetic} method. Operands the current target was not specialised for fall back to
+     * {@link #observe(PyObject, PyObject)}.
+     */
+    static class BinaryOpSite extends MutableCallSite {
+
+        private final String op;
+
+        /** Handle to {@link #observe(PyObject, PyObject)} bound to this site. */
+        private final MethodHandle fallback;
+
+        // Kinds of operand seen. Guarded by this.
+        private boolean sawInt;
+        private boolean sawNumber;
+        private boolean sawOther;
+
+        BinaryOpSite(MethodType type, String op) {
+            super(type);
+            this.op = op;
+            fallback = OBSERVE.bindTo(this);
+            setTarget(fallback);
+        }
+
+        PyObject observe(PyObject a, PyObject b) throws Throwable {
+            relink(a, b);
+            return (PyObject)getTarget().invokeExact(a, b);
+        }
+
+        private synchronized void relink(PyObject a, PyObject b) {
+            if (Arithmetic.bothInt(a, b)) {
+                sawInt = true;
+            } else if (Arithmetic.bothNumber(a, b)) {
+                sawNumber = true;
+            } else {
+                sawOther = true;
+            }
+            MethodType type = type();
+            try {
+                if (sawNumber || sawInt && sawOther) {
+                    setTarget(LOOKUP.findStatic(Arithmetic.class, op, type));
+                } else if (sawInt) {
+                    MethodHandle intOp = LOOKUP.findStatic(Arithmetic.class, op,
+                            MethodType.methodType(PyObject.class, int.class, int.class));
+                    intOp = MethodHandles.filterArguments(intOp, 0, INT_VALUE, INT_VALUE);
+                    setTarget(MethodHandles.guardWithTest(BOTH_INT, intOp, fallback));
+                } else {
+                    MethodHandle generic = LOOKUP.findVirtual(PyObject.class, "_" + op,
+                            type.dropParameterTypes(0, 1));
+                    setTarget(MethodHandles.guardWithTest(BOTH_NUMBER, fallback, generic));
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    // Method call targets, by arity. The generic forms look the attribute up in full.
+
+    static PyObject callmethod(AttributeEntry entry, PyObject obj, ThreadState ts) {
+        PyFunction function = entry.function(obj);
+        if (function != null) {
+            return function.__call__(ts, obj);
+        }
+        return entry.getattr(obj).__call__(ts);
+    }
+
+    static PyObject callmethod(AttributeEntry entry, PyObject obj, ThreadState ts,
+            PyObject arg0) {
+        PyFunction function = entry.function(obj);
+        if (function != null) {
+            return function.__call__(ts, obj, arg0);
+        }
+        return entry.getattr(obj).__call__(ts, arg0);
+    }
+
+    static PyObject callmethod(AttributeEntry entry, PyObject obj, ThreadState ts,
+            PyObject arg0, PyObject arg1) {
+        PyFunction function = entry.function(obj);
+        if (function != null) {
+            return function.__call__(ts, obj, arg0, arg1);
+        }
+        return entry.getattr(obj).__call__(ts, arg0, arg1);
+    }
+
+    static PyObject callmethod(AttributeEntry entry, PyObject obj, ThreadState ts,
+            PyObject arg0, PyObject arg1, PyObject arg2) {
+        PyFunction function = entry.function(obj);
+        if (function != null) {
+            return function.__call__(ts, obj, arg0, arg1, arg2);
+        }
+        return entry.getattr(obj).__call__(ts, arg0, arg1, arg2);
+    }
+
+    static PyObject callmethod(AttributeEntry entry, PyObject obj, ThreadState ts,
+            PyObject arg0, PyObject arg1, PyObject arg2, PyObject arg3) {
+        PyFunction function = entry.function(obj);
+        if (function != null) {
+            return function.__call__(ts, obj, new PyObject[] {arg0, arg1, arg2, arg3},
+                    Py.NoKeywords);
+        }
+        return entry.getattr(obj).__call__(ts, arg0, arg1, arg2, arg3);
+    }
+
+    static PyObject callmethod(String name, PyObject obj, ThreadState ts) {
+        return obj.__getattr__(name).__call__(ts);
+    }
+
+    static PyObject callmethod(String name, PyObject obj, ThreadState ts, PyObject arg0) {
+        return obj.__getattr__(name).__call__(ts, arg0);
+    }
+
+    static PyObject callmethod(String name, PyObject obj, ThreadState ts, PyObject arg0,
+            PyObject arg1) {
+        return obj.__getattr__(name).__call__(ts, arg0, arg1);
+    }
+
+    static PyObject callmethod(String name, PyObject obj, ThreadState ts, PyObject arg0,
+            PyObject arg1, PyObject arg2) {
+        return obj.__getattr__(name).__call__(ts, arg0, arg1, arg2);
+    }
+
+    static PyObject callmethod(String name, PyObject obj, ThreadState ts, PyObject arg0,
+            PyObject arg1, PyObject arg2, PyObject arg3) {
+        return obj.__getattr__(name).__call__(ts, arg0, arg1, arg2, arg3);
+    }
+}
@@ -0,0 +1,436 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.python.Version;
+import org.python.antlr.base.mod;
+import org.python.core.util.FileUtil;
+
+/**
+ * A cache, shared by all interpreters in the JVM, of code compiled from source text. It allows an
+ * application that compiles the same script text many times (through {@code PythonInterpreter} or
+ * the JSR 223 engine) to parse it, generate a class and load it only the first time.
+ * <p>
+ * Entries are keyed by the source text, the file name, the compilation mode and the state of the
+ * compiler flags, and the flags are brought to the state the compilation left them in, so that a
+ * hit has the same effect as compiling again. The least recently used entries are evicted when
+ * there are more than {@link Options#compileCacheSize} of them, or when their classes and source
+ * text amount to more than {@link Options#compileCacheBytes}.
+ * <p>
+ * The cache is off unless {@link Options#compileCacheSize} is set. An entry holds the class loaded
+ * for the code, and so the class loader of the interpreter that compiled it, which is then not
+ * collected until the entry is evicted or {@link #clear()} is called. An application that creates
+ * and discards interpreters with their own class loaders should leave it off.
+ * <p>
+ * When {@link Options#compileCacheDir} is set, code is also kept in that directory between runs,
+ * in a file named by a digest of the source and everything else that determines the result. Code
+ * read from a file there is not parsed or generated again. Scripts compiled from a stream (as by
+ * {@code jython script.py} or {@code execfile}) are kept only in the directory. Each file that
+ * is used is touched, and after a file is written, the least recently used are deleted while the
+ * files amount to more than {@link Options#compileCacheDirBytes}. A file written by another
+ * version of Jython, or that cannot be read, is compiled again and replaced.
+ * <p>
+ * When {@link Options#cacheStats} is set the cache counts its hits and misses, and the bytes of
+ * class definition generated on a miss, which are reported by {@code sys._cache_stats()}.
+ */
+public final class CodeCache {
+
+    /** Parses source text as the caller would before compiling it (possibly changing flags). */
+    public interface Parser {
+
+        mod parse(CompilerFlags cflags);
+    }
+
+    /** Entries from least to most recently used. Guards itself and {@link #bytes}. */
+    private static final LinkedHashMap<Key, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Total size of the classes and source text of the entries. */
+    private static long bytes;
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder generated = new LongAdder();
+    private static final LongAdder diskHits = new LongAdder();
+    private static final LongAdder diskMisses = new LongAdder();
+
+    private static final Logger logger = Logger.getLogger("org.python.compiler");
+
+    /** Identifies a file written by this class (and the layout of its header). */
+    private static final int MAGIC = 0x4a594302;
+
+    /** Accepts the files named by {@link #digest}. */
+    private static final FileFilter CODE_FILES = new FileFilter() {
+
+        @Override
+        public boolean accept(File file) {
+            String name = file.getName();
+            return name.length() == 70 && name.endsWith(".class") && file.isFile();
+        }
+    };
+
+    private CodeCache() {}
+
+    /**
+     * Compile source text, or return the code from an earlier compilation of it with the same
+     * file name, mode and flags. On a miss, the text is parsed by {@code parser}, then compiled
+     * as by {@link Py#compile_flags(mod, String, CompileMode, CompilerFlags)}.
+     *
+     * @param source text to compile
+     * @param filename reported as the source of the code
+     * @param kind of compilation
+     * @param cflags compiler flags, updated as the compilation would
+     * @param parser to parse the source on a miss
+     * @return the compiled code
+     */
+    public static PyCode compile(String source, String filename, CompileMode kind,
+            CompilerFlags cflags, Parser parser) {
+        if (Options.compileCacheSize <= 0) {
+            if (Options.compileCacheDir == null) {
+                return Py.compile_flags(parser.parse(cflags), filename, kind, cflags);
+            }
+            return load(source.getBytes(StandardCharsets.UTF_8), true, filename, kind, cflags,
+                    parser).code;
+        }
+
+        Key key = new Key(source, filename, kind, cflags);
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        if (entry != null) {
+            if (Options.cacheStats) {
+                hits.increment();
+            }
+            cflags.copyFrom(entry.cflags);
+            return entry.code;
+        }
+        if (Options.cacheStats) {
+            misses.increment();
+        }
+
+        byte[] text = Options.compileCacheDir == null ? null
+                : source.getBytes(StandardCharsets.UTF_8);
+        entry = load(text, true, filename, kind, cflags, parser);
+        // The key holds the source, which counts against the limit as much as the class does
+        put(key, new Entry(entry.code, entry.cflags, entry.size + 2L * source.length()));
+        return entry.code;
+    }
+
+    /**
+     * Compile source bytes from a stream, or load the code compiled from them by an earlier run,
+     * if {@link Options#compileCacheDir} is set. The bytes are parsed by {@code parser} on a miss.
+     *
+     * @param source bytes to compile
+     * @param filename reported as the source of the code
+     * @param kind of compilation
+     * @param cflags compiler flags, updated as the compilation would
+     * @param parser to parse the source on a miss
+     * @return the compiled code
+     */
+    public static PyCode compile(byte[] source, String filename, CompileMode kind,
+            CompilerFlags cflags, Parser parser) {
+        if (Options.compileCacheDir == null) {
+            return Py.compile_flags(parser.parse(cflags), filename, kind, cflags);
+        }
+        return load(source, false, filename, kind, cflags, parser).code;
+    }
+
+    /**
+     * Read the compiled code from its file in {@link Options#compileCacheDir}, or compile it and
+     * write the file. The result holds {@code cflags} as the compilation left them.
+     *
+     * @param source bytes to compile, or {@code null} if there is no directory
+     * @param text whether the source was text (rather than the bytes of a stream)
+     */
+    private static Entry load(byte[] source, boolean text, String filename, CompileMode kind,
+            CompilerFlags cflags, Parser parser) {
+        File file = null;
+        if (source != null) {
+            file = new File(Options.compileCacheDir, digest(source, text, filename, kind, cflags));
+            Entry entry = read(file, filename);
+            if (entry != null) {
+                // Last modified stands for last used, when trimming the directory
+                file.setLastModified(System.currentTimeMillis());
+                if (Options.cacheStats) {
+                    diskHits.increment();
+                }
+                cflags.copyFrom(entry.cflags);
+                return entry;
+            }
+            if (Options.cacheStats) {
+                diskMisses.increment();
+            }
+        }
+
+        mod node = parser.parse(cflags);
+        String name = Py.getName();
+        PyCode code;
+        byte[] bytes;
+        try {
+            PythonCodeBundle bundle = CompilerFacade.compileBundle(node, name, filename, true,
+                    kind == CompileMode.single, cflags);
+            code = bundle.loadCode();
+            ByteArrayOutputStream ostream = new ByteArrayOutputStream();
+            bundle.writeTo(ostream);
+            bytes = ostream.toByteArray();
+        } catch (Throwable t) {
+            throw ParserFacade.fixParseError(null, t, filename);
+        }
+        if (Options.cacheStats) {
+            generated.add(bytes.length);
+        }
+
+        CompilerFlags after = new CompilerFlags();
+        after.copyFrom(cflags);
+        if (file != null) {
+            write(file, name, after, bytes);
+        }
+        return new Entry(code, after, bytes.length);
+    }
+
+    /**
+     * The name of the file for compiled code, from a digest of the source and everything else
+     * that affects the class generated from it.
+     */
+    private static String digest(byte[] source, boolean text, String filename, CompileMode kind,
+            CompilerFlags cflags) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw Py.JavaError(e);
+        }
+        String header = String.format("%d %s %b %b %s %d %s %d:%s\n", imp.getAPIVersion(),
+                Version.PY_VERSION, Options.invokedynamic, text, kind, cflags.toBits(),
+                cflags.encoding, filename == null ? -1 : filename.length(), filename);
+        md.update(header.getBytes(StandardCharsets.UTF_8));
+        StringBuilder name = new StringBuilder(72);
+        for (byte b : md.digest(source)) {
+            name.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return name.append(".class").toString();
+    }
+
+    /**
+     * Read code from a file written by {@link #write(File, String, CompilerFlags, byte[])}, or
+     * return {@code null} if it does not exist or cannot be used.
+     */
+    private static Entry read(File file, String filename) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != imp.getAPIVersion()) {
+                return null;
+            }
+            String name = in.readUTF();
+            CompilerFlags cflags = new CompilerFlags(in.readInt());
+            cflags.encoding = in.readBoolean() ? in.readUTF() : null;
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            PyCode code = BytecodeLoader.makeCode(name, bytes, filename);
+            logger.log(Level.FINE, "# compiled {0} read from {1}", new Object[] {filename, file});
+            return new Entry(code, cflags, bytes.length);
+        } catch (IOException | RuntimeException | LinkageError e) {
+            logger.log(Level.FINE, "Unable to use compiled code file ''{0}'' due to {1}",
+                    new Object[] {file, e});
+            return null;
+        }
+    }
+
+    /**
+     * Write a class and the state of the flags after compiling it to a file, by way of a temporary
+     * file, so that a concurrent reader never sees a partial file.
+     */
+    private static void write(File file, String name, CompilerFlags cflags, byte[] bytes) {
+        File tmp = null;
+        try {
+            File dir = file.getParentFile();
+            dir.mkdirs();
+            tmp = FileUtil.makePrivateRW(File.createTempFile("jyc", ".tmp", dir));
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+                out.writeInt(MAGIC);
+                out.writeInt(imp.getAPIVersion());
+                out.writeUTF(name);
+                out.writeInt(cflags.toBits());
+                out.writeBoolean(cflags.encoding != null);
+                if (cflags.encoding != null) {
+                    out.writeUTF(cflags.encoding);
+                }
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            // Where rename does not replace a file (one we could not use), delete it first
+            if (tmp.renameTo(file) || (file.delete() && tmp.renameTo(file))) {
+                tmp = null;
+                trim(dir);
+            }
+        } catch (IOException | SecurityException e) {
+            // If we can't write the cache file, just log and continue
+            logger.log(Level.FINE, "Unable to write compiled code file ''{0}'' due to {1}",
+                    new Object[] {file, e});
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used files of compiled code in {@code dir} while they amount to
+     * more than {@link Options#compileCacheDirBytes}.
+     */
+    private static void trim(File dir) {
+        File[] files = dir.listFiles(CODE_FILES);
+        if (files == null) {
+            return;
+        }
+        final long[] used = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        long total = 0;
+        for (int i = 0; i < files.length; i++) {
+            used[i] = files[i].lastModified();
+            order[i] = i;
+            total += files[i].length();
+        }
+        if (total <= Options.compileCacheDirBytes) {
+            return;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(used[a], used[b]);
+            }
+        });
+        for (int i = 0; i < order.length && total > Options.compileCacheDirBytes; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private static void put(Key key, Entry entry) {
+        synchronized (cache) {
+            Entry old = cache.put(key, entry);
+            bytes += entry.size - (old == null ? 0 : old.size);
+            Iterator<Entry> eldest = cache.values().iterator();
+            while (eldest.hasNext()
+                    && (cache.size() > Options.compileCacheSize
+                            || bytes > Options.compileCacheBytes)) {
+                bytes -= eldest.next().size;
+                eldest.remove();
+            }
+        }
+    }
+
+    /** Discard all entries (for example, after the compiler has been replaced). */
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * The sizes and counts as a tuple {@code (size, bytes, hits, misses, generated)}, where
+     * {@code bytes} is the total length of the classes held, and two bytes for each character of
+     * their source, and {@code generated} that of the classes generated on a miss.
+     */
+    static PyTuple stats() {
+        int size;
+        long held;
+        synchronized (cache) {
+            size = cache.size();
+            held = bytes;
+        }
+        return new PyTuple(Py.newInteger(size), Py.newLong(held), Py.newLong(hits.sum()),
+                Py.newLong(misses.sum()), Py.newLong(generated.sum()));
+    }
+
+    /** The counts of the directory as a tuple {@code (hits, misses)}. */
+    static PyTuple diskStats() {
+        return new PyTuple(Py.newLong(diskHits.sum()), Py.newLong(diskMisses.sum()));
+    }
+
+    /** What determines the result of a compilation. */
+    private static final class Key {
+
+        final String source;
+        final String filename;
+        final CompileMode kind;
+        final int flags;
+        final String encoding;
+        final int hash;
+
+        Key(String source, String filename, CompileMode kind, CompilerFlags cflags) {
+            this.source = source;
+            this.filename = filename;
+            this.kind = kind;
+            this.flags = cflags.toBits();
+            this.encoding = cflags.encoding;
+            int h = source.hashCode();
+            h = 31 * h + (filename == null ? 0 : filename.hashCode());
+            h = 31 * h + kind.hashCode();
+            hash = 31 * h + flags;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            return hash == other.hash && flags == other.flags && kind == other.kind
+                    && equal(filename, other.filename) && equal(encoding, other.encoding)
+                    && source.equals(other.source);
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /** The result of a compilation. */
+    private static final class Entry {
+
+        final PyCode code;
+        /** Flags as the compilation left them. */
+        final CompilerFlags cflags;
+        /** Bytes counted against {@link Options#compileCacheBytes}. */
+        final long size;
+
+        Entry(PyCode code, CompilerFlags cflags, long size) {
+            this.code = code;
+            this.cflags = cflags;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,858 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.core;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The table behind {@link PyDictionary} and {@link PyStringMap}: a compact, insertion-ordered,
+ * open-addressing hash map in the manner of the CPython 3.6 {@code dict}. Entries are appended to
+ * parallel arrays of hashes, keys and values, and a separate array of small integers (bytes while
+ * the table is small) maps hash slots to entry positions. This takes about two thirds of the
+ * memory of a {@code ConcurrentHashMap}, which allocates a node for every entry, and iterates in
+ * the order keys were first inserted.
+ * <p>
+ * A map created with {@link SharedKeys} is a split table (PEP 412): the index, hashes and keys
+ * belong to the {@code SharedKeys}, shared by every map created with it, and the map holds only
+ * its values. This suits the instance dictionaries of a class, which mostly have the same
+ * attributes, set in the same order. The map stays split while its {@code String} keys are added
+ * in the order of the shared keys (appending to them when it has all the shared keys so far). Any
+ * other change (a removal, a key out of order, a key not a {@code String}) makes it a combined
+ * table of its own first.
+ * <p>
+ * Like {@code ConcurrentHashMap} it is safe to use from many threads without external locking.
+ * Changes are made holding the lock of the map. Lookups and iteration take no lock: they read the
+ * current table through a {@code volatile} field, which is written again after every change, so
+ * they see every change completed before they began. A table is only changed in ways a concurrent
+ * reader tolerates: entries are appended and published in the index last, removed entries are
+ * cleared and their index slots marked, and a table that must grow or shrink is replaced by a new
+ * one. A reader therefore sees each key either present or absent, never throws
+ * {@code ConcurrentModificationException} and always terminates. Iterators are weakly consistent.
+ * <p>
+ * Neither keys nor values may be {@code null}.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public final class CompactDictMap<K, V> extends AbstractMap<K, V>
+        implements ConcurrentMap<K, V>, Serializable {
+
+    /** Index value of a slot never used. */
+    private static final int EMPTY = -1;
+    /** Index value of a slot whose entry has been removed. */
+    private static final int DUMMY = -2;
+
+    /** Smallest length of index (at two thirds full, it holds 5 entries). */
+    private static final int MIN_INDEX = 8;
+    /** Largest length of index stored as bytes (entry positions fit in a byte). */
+    private static final int MAX_BYTE_INDEX = 128;
+    /** Largest length of the index of {@link SharedKeys} (it holds 42 keys). */
+    private static final int MAX_SHARED_INDEX = 64;
+
+    /** Table of an empty map: shared, as having no room it is never changed. */
+    private static final Table EMPTY_TABLE = new Table(MIN_INDEX, 0);
+
+    /** The current table, written again after every change. */
+    private volatile Table table;
+
+    /** Create an empty map. */
+    public CompactDictMap() {
+        table = EMPTY_TABLE;
+    }
+
+    /** Create an empty map with room for {@code capacity} entries. */
+    public CompactDictMap(int capacity) {
+        table = capacity <= 0 ? EMPTY_TABLE : Table.forEntries(capacity);
+    }
+
+    /**
+     * Create an empty map that shares the index and keys of {@code keys} (or of the table that
+     * replaced them) with other maps created with them, for as long as its keys are the same.
+     */
+    public CompactDictMap(SharedKeys keys) {
+        table = new Table(keys.latest());
+    }
+
+    /** Create a map with the same entries as {@code map}. */
+    public CompactDictMap(Map<? extends K, ? extends V> map) {
+        this(map.size());
+        putAll(map);
+    }
+
+    /**
+     * The arrays of one generation of the map. The arrays never change length: the map replaces
+     * the table to change the capacity.
+     */
+    private static final class Table implements Serializable {
+
+        /** Index when {@code mask < MAX_BYTE_INDEX} (or {@code null}). */
+        final byte[] smallIndex;
+        /** Index when {@code mask >= MAX_BYTE_INDEX} (or {@code null}). */
+        final int[] largeIndex;
+        final int mask;
+
+        final int[] hashes;
+        final Object[] keys;
+        final Object[] values;
+        /** The keys whose index, hashes and keys this table uses, if it is split. */
+        final SharedKeys shared;
+
+        /** Number of entries used, including removed ones. */
+        int used;
+        /** Number of entries present. */
+        int size;
+        /**
+         * Incremented on every insertion or removal, to detect changes during a lookup. It is
+         * {@code volatile} so that a reader comparing keys sees a change made meanwhile by another
+         * thread, not only one made by a call back from {@code equals}.
+         */
+        volatile int mods;
+
+        Table(int indexLength, int capacity) {
+            if (indexLength <= MAX_BYTE_INDEX) {
+                smallIndex = new byte[indexLength];
+                Arrays.fill(smallIndex, (byte)EMPTY);
+                largeIndex = null;
+            } else {
+                smallIndex = null;
+                largeIndex = new int[indexLength];
+                Arrays.fill(largeIndex, EMPTY);
+            }
+            mask = indexLength - 1;
+            hashes = new int[capacity];
+            keys = new Object[capacity];
+            values = new Object[capacity];
+            shared = null;
+        }
+
+        /** A split table for a map created with {@code shared}, having no entries yet. */
+        Table(SharedKeys shared) {
+            Table k = shared.keys;
+            smallIndex = k.smallIndex;
+            largeIndex = k.largeIndex;
+            mask = k.mask;
+            hashes = k.hashes;
+            keys = k.keys;
+            values = new Object[keys.length];
+            this.shared = shared;
+        }
+
+        /**
+         * A table with room for at least {@code n} entries, and an index at most two thirds full
+         * when they are present. The room is as much as the index allows, so that a small map
+         * holds 5 entries before its first resize. (Growth by half each time keeps the cost of
+         * copying in proportion.)
+         */
+        static Table forEntries(int n) {
+            int indexLength = MIN_INDEX;
+            while (indexLength * 2 / 3 < n) {
+                indexLength <<= 1;
+            }
+            return new Table(indexLength, indexLength * 2 / 3);
+        }
+
+        int slot(int i) {
+            return smallIndex != null ? smallIndex[i] : largeIndex[i];
+        }
+
+        void setSlot(int i, int ix) {
+            if (smallIndex != null) {
+                smallIndex[i] = (byte)ix;
+            } else {
+                largeIndex[i] = ix;
+            }
+        }
+
+        /**
+         * The position in the index of the slot that refers to {@code key}, or of the empty slot
+         * at which the search ended, made negative as {@code -(i+1)}. If the table is changed
+         * while comparing keys (by a call back to the map in {@code equals}), return
+         * {@link #RETRY}.
+         */
+        int find(Object key, int h) {
+            return probe(key, h, false);
+        }
+
+        /**
+         * The position in the entries of {@code key}, or -1 if it is absent, or {@link #RETRY}.
+         * This is for readers without the lock: the entry is the one read from the index during
+         * the search, since a concurrent {@link #remove(int)} may since have marked the slot.
+         */
+        int findEntry(Object key, int h) {
+            return probe(key, h, true);
+        }
+
+        /** The search of {@link #find(Object, int)}, returning the entry if {@code entry}. */
+        private int probe(Object key, int h, boolean entry) {
+            int mods = this.mods;
+            int i = h & mask;
+            // After 7 shifts perturb is zero, and the probe visits every slot within mask+1
+            for (int perturb = h, n = mask + 8; n >= 0; n--) {
+                int ix = slot(i);
+                if (ix == EMPTY) {
+                    return entry ? -1 : -(i + 1);
+                } else if (ix >= 0) {
+                    Object k = keys[ix];
+                    if (k == key) {
+                        return entry ? ix : i;
+                    } else if (k != null && hashes[ix] == h) {
+                        boolean eq = key.equals(k);
+                        if (mods != this.mods || keys[ix] != k) {
+                            return RETRY;
+                        } else if (eq) {
+                            return entry ? ix : i;
+                        }
+                    }
+                }
+                perturb >>>= 5;
+                i = (i * 5 + 1 + perturb) & mask;
+            }
+            // Not reached, as a third of the index is always empty
+            return RETRY;
+        }
+
+        /** Append an entry known to be absent (there must be room). */
+        void insert(int emptySlot, int h, Object key, Object value) {
+            int ix = used;
+            hashes[ix] = h;
+            keys[ix] = key;
+            values[ix] = value;
+            // Publish in the index last, so a reader never finds a slot with no entry behind it
+            setSlot(emptySlot, ix);
+            used = ix + 1;
+            size += 1;
+            mods += 1;
+        }
+
+        /** Append a key known to be absent to the table of a {@link SharedKeys}. */
+        void appendKey(int emptySlot, int h, Object key) {
+            int ix = used;
+            hashes[ix] = h;
+            keys[ix] = key;
+            setSlot(emptySlot, ix);
+            used = ix + 1;
+            size += 1;
+        }
+
+        /** Set the value of the next entry of a split table. */
+        void appendValue(Object value) {
+            int ix = used;
+            values[ix] = value;
+            used = ix + 1;
+            size += 1;
+            mods += 1;
+        }
+
+        /** Remove the entry referred to by index slot {@code i}. */
+        Object remove(int i) {
+            int ix = slot(i);
+            Object old = values[ix];
+            setSlot(i, DUMMY);
+            keys[ix] = null;
+            values[ix] = null;
+            size -= 1;
+            mods += 1;
+            return old;
+        }
+
+        /**
+         * Copy the entries present into a new (combined) table, with room for at least {@code n}.
+         */
+        Table resize(int n) {
+            Table t = forEntries(n);
+            for (int ix = 0; ix < used; ix++) {
+                Object k = keys[ix];
+                if (k != null && values[ix] != null) {
+                    int h = hashes[ix];
+                    t.insert(t.emptySlot(h), h, k, values[ix]);
+                }
+            }
+            return t;
+        }
+
+        /** The position of the first empty slot in the probe sequence for {@code h}. */
+        int emptySlot(int h) {
+            int i = h & mask;
+            for (int perturb = h; slot(i) != EMPTY;) {
+                perturb >>>= 5;
+                i = (i * 5 + 1 + perturb) & mask;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * The index and keys shared by the split tables of maps that mostly have the same keys, as do
+     * the instance dictionaries of one class (see PEP 412). Keys are only ever added, in the
+     * order maps created with these keys first set them. When the table is full, it is replaced
+     * by a larger one (to which maps move when they add their next key), up to a limit beyond
+     * which a map adding a key makes itself a combined table.
+     */
+    public static final class SharedKeys implements Serializable {
+
+        /** The table whose index, hashes and keys (but not values) the maps use. */
+        private final Table keys;
+        /** The keys that replaced these when they were full (or {@code null}). */
+        private volatile SharedKeys next;
+
+        /** Create an empty set of keys. */
+        public SharedKeys() {
+            this(MIN_INDEX);
+        }
+
+        private SharedKeys(int indexLength) {
+            keys = new Table(indexLength, indexLength * 2 / 3);
+        }
+
+        /** Where {@code key} is among these keys, as far as they go now. */
+        synchronized KeyPosition positionOf(Object key) {
+            int i = keys.find(key, key.hashCode());
+            return new KeyPosition(this, i >= 0 ? keys.slot(i) : -1, keys.used);
+        }
+
+        /** These keys or, if they have been replaced, the most recent that replaced them. */
+        public SharedKeys latest() {
+            SharedKeys k = this;
+            for (SharedKeys n = next; n != null; n = n.next) {
+                k = n;
+            }
+            return k;
+        }
+
+        /**
+         * Set the value of {@code key} in the split table {@code t}, as the next entry, if it
+         * can stay split. Return the table with the entry added, which may be a new one using
+         * keys that replaced these, or {@code null} if the map must become combined to add it.
+         */
+        synchronized Table put(Table t, int h, Object key, Object value) {
+            if (key.getClass() != String.class) {
+                return null;
+            }
+            // The map lock is held and String.equals cannot call back: no RETRY
+            int i = keys.find(key, h);
+            if (i >= 0) {
+                // A key other maps have: it must be the next one for the order to be the same
+                if (keys.slot(i) != t.used) {
+                    return null;
+                }
+            } else if (t.used != keys.used) {
+                // Other maps added keys this one does not have
+                return null;
+            } else if (keys.used < keys.hashes.length) {
+                keys.appendKey(-(i + 1), h, key);
+            } else {
+                SharedKeys n = grow();
+                return n == null ? null : n.put(n.move(t), h, key, value);
+            }
+            t.appendValue(value);
+            return t;
+        }
+
+        /** The larger keys that replace these, or {@code null} if they are as large as allowed. */
+        private SharedKeys grow() {
+            if (next == null && keys.mask + 1 < MAX_SHARED_INDEX) {
+                SharedKeys n = new SharedKeys((keys.mask + 1) * 2);
+                for (int ix = 0; ix < keys.used; ix++) {
+                    int h = keys.hashes[ix];
+                    n.keys.appendKey(n.keys.emptySlot(h), h, keys.keys[ix]);
+                }
+                next = n;
+            }
+            return next;
+        }
+
+        /** A split table using these keys with the entries of {@code t}, whose are a prefix. */
+        private Table move(Table t) {
+            Table m = new Table(this);
+            System.arraycopy(t.values, 0, m.values, 0, t.used);
+            m.used = m.size = t.used;
+            return m;
+        }
+    }
+
+    /**
+     * The position of a key among {@link SharedKeys}, which does not change once the key is added,
+     * or that the key is absent from the first of them. A cache of this (in effect the shape of the
+     * instances of a class, and the slot of an attribute in it) lets a lookup in any split map
+     * using the same keys read the value without hashing the key. See {@link #get(KeyPosition)}.
+     */
+    static final class KeyPosition {
+
+        final SharedKeys keys;
+        /** Position of the key, or -1 if it is not among the first {@link #known} keys. */
+        final int index;
+        final int known;
+
+        KeyPosition(SharedKeys keys, int index, int known) {
+            this.keys = keys;
+            this.index = index;
+            this.known = known;
+        }
+    }
+
+    /** Returned by {@link #get(KeyPosition)} when the position does not apply to the map. */
+    static final Object NOT_SPLIT = new Object();
+
+    /**
+     * Where {@code key} would be found if this map is split, or {@code null} if it is combined.
+     */
+    KeyPosition positionOf(Object key) {
+        SharedKeys shared = table.shared;
+        return shared == null ? null : shared.positionOf(key);
+    }
+
+    /**
+     * The value of the key at {@code p}, or {@code null} if the map does not have it, when the map
+     * is split on the keys of {@code p}. Otherwise (the map having been made combined, or the keys
+     * replaced, or the map having more keys than were known when {@code p} was made) return
+     * {@link #NOT_SPLIT}, and the caller must look the key up by other means.
+     */
+    Object get(KeyPosition p) {
+        Table t = table;
+        if (t.shared != p.keys) {
+            return NOT_SPLIT;
+        } else if (p.index >= 0) {
+            // The keys of a split map are the first of the shared ones
+            return p.index < t.used ? t.values[p.index] : null;
+        }
+        return t.used <= p.known ? null : NOT_SPLIT;
+    }
+
+    /**
+     * Returned by {@link Table#find(Object, int)} when the table changed during the search. A
+     * writer also searches again if the map replaced the table meanwhile.
+     */
+    private static final int RETRY = Integer.MIN_VALUE;
+
+
+    @Override
+    public int size() {
+        return table.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        int h = key.hashCode();
+        for (;;) {
+            // On RETRY the table may have been replaced: search the current one
+            Table t = table;
+            int ix = t.findEntry(key, h);
+            if (ix != RETRY) {
+                // A value removed since the search reads as null: the key is then absent
+                return ix < 0 ? null : (V)t.values[ix];
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        Table t = table;
+        for (int ix = 0, n = Math.min(t.used, t.hashes.length); ix < n; ix++) {
+            Object v = t.values[ix];
+            if (v != null && (v == value || value.equals(v))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        int h = key.hashCode();
+        synchronized (this) {
+            Table t;
+            int i;
+            do {
+                t = table;
+                i = t.find(key, h);
+            } while (i == RETRY || t != table);
+            if (i >= 0) {
+                int ix = t.slot(i);
+                V old = (V)t.values[ix];
+                // In a split table the key may be one only other maps have
+                if (old != null) {
+                    if (!onlyIfAbsent) {
+                        t.values[ix] = value;
+                        table = t;
+                    }
+                    return old;
+                }
+            }
+            if (t.shared != null) {
+                Table s = t.shared.put(t, h, key, value);
+                if (s != null) {
+                    table = s;
+                    return null;
+                }
+                // Continue with a combined table of this map's own
+                t = t.resize(t.size + t.size / 2 + 1);
+                i = -(t.emptySlot(h) + 1);
+            } else if (t.used == t.hashes.length) {
+                // Grow when mostly full of live entries, otherwise just drop the removed ones
+                t = t.resize(t.size + t.size / 2 + 1);
+                i = -(t.emptySlot(h) + 1);
+            }
+            t.insert(-(i + 1), h, key, value);
+            table = t;
+            return null;
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        return remove(key, null, false);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return value != null && remove(key, value, true) != null;
+    }
+
+    /** Remove the entry for key (if it has the given value, when {@code matchValue}). */
+    @SuppressWarnings("unchecked")
+    private V remove(Object key, Object value, boolean matchValue) {
+        int h = key.hashCode();
+        synchronized (this) {
+            Table t;
+            int i;
+            do {
+                t = table;
+                i = t.find(key, h);
+            } while (i == RETRY || t != table);
+            if (i < 0) {
+                return null;
+            }
+            V old = (V)t.values[t.slot(i)];
+            if (old == null || matchValue && !value.equals(old)) {
+                return null;
+            }
+            if (t.shared != null) {
+                // A split table cannot have gaps: continue with a combined table of our own
+                t = t.resize(t.size);
+                table = t;
+                while ((i = t.find(key, h)) == RETRY || t != table) {
+                    t = table;
+                }
+                if (i < 0) {
+                    return null;
+                }
+                old = (V)t.values[t.slot(i)];
+            }
+            t.remove(i);
+            if (t.size == 0) {
+                t = EMPTY_TABLE;
+            } else if (t.size < t.hashes.length / 8 && t.mask >= MIN_INDEX * 4) {
+                // Mostly removed entries: don't keep a large table for a few
+                t = t.resize(2 * t.size);
+            }
+            table = t;
+            return old;
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (oldValue == null || newValue == null) {
+            throw new NullPointerException();
+        }
+        int h = key.hashCode();
+        synchronized (this) {
+            Table t;
+            int i;
+            do {
+                t = table;
+                i = t.find(key, h);
+            } while (i == RETRY || t != table);
+            if (i < 0) {
+                return false;
+            }
+            int ix = t.slot(i);
+            if (!oldValue.equals(t.values[ix])) {
+                return false;
+            }
+            t.values[ix] = newValue;
+            table = t;
+            return true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V replace(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        int h = key.hashCode();
+        synchronized (this) {
+            Table t;
+            int i;
+            do {
+                t = table;
+                i = t.find(key, h);
+            } while (i == RETRY || t != table);
+            if (i < 0) {
+                return null;
+            }
+            int ix = t.slot(i);
+            V old = (V)t.values[ix];
+            if (old != null) {
+                t.values[ix] = value;
+                table = t;
+            }
+            return old;
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        synchronized (this) {
+            int n = table.size + map.size();
+            if (table.shared == null && n > table.hashes.length) {
+                table = table.resize(n);
+            }
+            for (Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+                put(e.getKey(), e.getValue(), false);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        table = EMPTY_TABLE;
+    }
+
+    /**
+     * Iterator over a table, in order of insertion, skipping removed entries. It continues over
+     * the table it started with if the map replaces it.
+     */
+    private abstract class Iter<T> implements Iterator<T> {
+
+        private final Table t = table;
+        /** Position of the next entry to return, or {@code t.used} if none. */
+        private int next;
+        /** Key of the last entry returned (or {@code null}). */
+        private Object lastKey;
+        Object nextKey;
+        Object nextValue;
+
+        Iter() {
+            advance(0);
+        }
+
+        private void advance(int ix) {
+            int n = Math.min(t.used, t.hashes.length);
+            for (; ix < n; ix++) {
+                Object k = t.keys[ix], v = t.values[ix];
+                if (k != null && v != null) {
+                    nextKey = k;
+                    nextValue = v;
+                    break;
+                }
+            }
+            next = ix;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < Math.min(t.used, t.hashes.length);
+        }
+
+        /** Move to the next entry, setting {@link #lastKey} and returning the current value. */
+        Object step() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object value = nextValue;
+            lastKey = nextKey;
+            advance(next + 1);
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            CompactDictMap.this.remove(lastKey);
+            lastKey = null;
+        }
+
+        Object lastKey() {
+            return lastKey;
+        }
+    }
+
+    private final class KeyIter extends Iter<K> {
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public K next() {
+            step();
+            return (K)lastKey();
+        }
+    }
+
+    private final class ValueIter extends Iter<V> {
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public V next() {
+            return (V)step();
+        }
+    }
+
+    private final class EntryIter extends Iter<Map.Entry<K, V>> {
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Map.Entry<K, V> next() {
+            V value = (V)step();
+            return new MapEntry((K)lastKey(), value);
+        }
+    }
+
+    /** An entry returned by iteration, that writes through to the map. */
+    private final class MapEntry extends AbstractMap.SimpleEntry<K, V> {
+
+        MapEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIter();
+            }
+
+            @Override
+            public int size() {
+                return CompactDictMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+                Object v = get(e.getKey());
+                return v != null && v.equals(e.getValue());
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+                return CompactDictMap.this.remove(e.getKey(), e.getValue());
+            }
+
+            @Override
+            public void clear() {
+                CompactDictMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+
+            @Override
+            public Iterator<K> iterator() {
+                return new KeyIter();
+            }
+
+            @Override
+            public int size() {
+                return CompactDictMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return CompactDictMap.this.remove(o) != null;
+            }
+
+            @Override
+            public void clear() {
+                CompactDictMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIter();
+            }
+
+            @Override
+            public int size() {
+                return CompactDictMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsValue(o);
+            }
+
+            @Override
+            public void clear() {
+                CompactDictMap.this.clear();
+            }
+        };
+    }
+}
@@ -0,0 +1,581 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.core;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The store behind {@link PySet} and {@link PyFrozenSet}: an open-addressing hash set in the manner
+ * of the CPython {@code set}. Elements are held in an array of slots, beside an array of their
+ * hashes, probed as {@link CompactDictMap} probes its index. This takes less than half the memory
+ * of a set made from a {@code ConcurrentHashMap}, which allocates a node for every element.
+ * <p>
+ * The hashes are kept so that growing the table, copying the set and the set algebra between two
+ * of them never call {@code __hash__} again, and call {@code __eq__} only where the hashes match.
+ * {@link #copy()}, {@link #intersection(Collection)} and {@link #difference(Collection)}, and the
+ * bulk operations when given another {@code CompactSet}, iterate whichever set is the smaller.
+ * <p>
+ * Like {@code CompactDictMap} it is safe to use from many threads without external locking.
+ * Changes are made holding the lock of the set. Lookups and iteration take no lock: they read the
+ * current table through a {@code volatile} field, which is written again after every change. A
+ * slot is written with its hash first and its element last, a removed element is replaced by a
+ * marker, so that the probe for other elements continues past it, and a table that must grow or
+ * shrink is replaced by a new one. Iterators are weakly consistent.
+ * <p>
+ * Elements may not be {@code null}.
+ *
+ * @param <E> type of elements
+ */
+final class CompactSet<E> extends AbstractSet<E> implements Serializable {
+
+    /** Element of a slot whose element has been removed. */
+    private static final Object DUMMY = new Object();
+
+    /** Smallest length of table (at two thirds full, it holds 5 elements). */
+    private static final int MIN_LENGTH = 8;
+
+    /** Table of an empty set: shared, as having no room it is never changed. */
+    private static final Table EMPTY_TABLE = new Table(MIN_LENGTH, 0);
+
+    /** The current table, written again after every change. */
+    private transient volatile Table table;
+
+    /** Create an empty set. */
+    CompactSet() {
+        table = EMPTY_TABLE;
+    }
+
+    /** Create an empty set with room for {@code capacity} elements. */
+    CompactSet(int capacity) {
+        table = capacity <= 0 ? EMPTY_TABLE : Table.forElements(capacity);
+    }
+
+    /** Create a set of the elements of {@code c}. */
+    CompactSet(Collection<? extends E> c) {
+        this(c instanceof CompactSet ? 0 : c.size());
+        addAll(c);
+    }
+
+    private CompactSet(Table t) {
+        table = t;
+    }
+
+    /** The arrays of one generation of the set. The set replaces the table to change its length. */
+    private static final class Table {
+
+        final int[] hashes;
+        final Object[] keys;
+        final int mask;
+        /** The most slots that may be filled, leaving a third of them empty. */
+        final int limit;
+
+        /** Number of slots filled, including those of removed elements. */
+        int fill;
+        /** Number of elements present. */
+        int size;
+        /** Incremented on every insertion or removal, to detect changes during a lookup. */
+        int mods;
+        /** Slot at which {@link CompactSet#pop()} begins to look for an element. */
+        int finger;
+
+        Table(int length, int limit) {
+            hashes = new int[length];
+            keys = new Object[length];
+            mask = length - 1;
+            this.limit = limit;
+        }
+
+        /** A copy of {@code t}, having its own arrays. */
+        Table(Table t) {
+            hashes = t.hashes.clone();
+            keys = t.keys.clone();
+            mask = t.mask;
+            limit = t.limit;
+            fill = t.fill;
+            size = t.size;
+        }
+
+        /** A table with room for {@code n} elements, leaving at least a third of it empty. */
+        static Table forElements(int n) {
+            int length = MIN_LENGTH;
+            while (length * 2 / 3 < n) {
+                length <<= 1;
+            }
+            return new Table(length, length * 2 / 3);
+        }
+
+        /**
+         * The slot holding {@code key}, or a slot in which to insert it, made negative as
+         * {@code -(i+1)}: the first of removed elements passed in the search or the empty slot at
+         * which it ended. If the table is changed while comparing keys (by a call back to the set
+         * in {@code equals}), return {@link #RETRY}.
+         */
+        int find(Object key, int h) {
+            int mods = this.mods;
+            int i = h & mask;
+            int free = -1;
+            // After 7 shifts perturb is zero, and the probe visits every slot within mask+1
+            for (int perturb = h, n = mask + 8; n >= 0; n--) {
+                Object k = keys[i];
+                if (k == null) {
+                    return -((free < 0 ? i : free) + 1);
+                } else if (k == DUMMY) {
+                    if (free < 0) {
+                        free = i;
+                    }
+                } else if (k == key) {
+                    return i;
+                } else if (hashes[i] == h) {
+                    boolean eq = key.equals(k);
+                    if (mods != this.mods || keys[i] != k) {
+                        return RETRY;
+                    } else if (eq) {
+                        return i;
+                    }
+                }
+                perturb >>>= 5;
+                i = (i * 5 + 1 + perturb) & mask;
+            }
+            // Not reached, as a third of the table is always empty
+            return RETRY;
+        }
+
+        /** Put an element known to be absent in slot {@code i}, empty or removed. */
+        void insert(int i, int h, Object key) {
+            if (keys[i] == null) {
+                fill += 1;
+            }
+            hashes[i] = h;
+            // Publish the element last, so a reader never finds it with the wrong hash
+            keys[i] = key;
+            size += 1;
+            mods += 1;
+        }
+
+        /** Remove the element in slot {@code i}. */
+        void remove(int i) {
+            keys[i] = DUMMY;
+            size -= 1;
+            mods += 1;
+        }
+
+        /** Copy the elements present into a new table, with room for at least {@code n}. */
+        Table resize(int n) {
+            Table t = forElements(n);
+            for (int i = 0; i <= mask; i++) {
+                Object k = keys[i];
+                if (k != null && k != DUMMY) {
+                    int h = hashes[i];
+                    t.insert(t.emptySlot(h), h, k);
+                }
+            }
+            return t;
+        }
+
+        /** A copy for a new set, in which only the elements present take up room. */
+        Table copy() {
+            if (size == 0) {
+                return EMPTY_TABLE;
+            }
+            return fill == size ? new Table(this) : resize(size);
+        }
+
+        /** The position of the first empty slot in the probe sequence for {@code h}. */
+        int emptySlot(int h) {
+            int i = h & mask;
+            for (int perturb = h; keys[i] != null;) {
+                perturb >>>= 5;
+                i = (i * 5 + 1 + perturb) & mask;
+            }
+            return i;
+        }
+    }
+
+    /** Returned by {@link Table#find(Object, int)} when the table changed during the search. */
+    private static final int RETRY = Integer.MIN_VALUE;
+
+    /**
+     * Find the slot of {@code key} in {@code t} (negative if absent), when the caller holds the
+     * lock and works on that table. Readers without the lock use {@link #contains(Object, int)}.
+     */
+    private static int lookup(Table t, Object key, int h) {
+        int i;
+        while ((i = t.find(key, h)) == RETRY) {}
+        return i;
+    }
+
+    private static boolean isElement(Object k) {
+        return k != null && k != DUMMY;
+    }
+
+    @Override
+    public int size() {
+        return table.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return table.size == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return contains(o, o.hashCode());
+    }
+
+    private boolean contains(Object key, int h) {
+        for (;;) {
+            // On RETRY the table may have been replaced: search the current one
+            Table t = table;
+            int i = t.find(key, h);
+            if (i != RETRY) {
+                return i >= 0;
+            }
+        }
+    }
+
+    @Override
+    public boolean add(E e) {
+        return add(e, e.hashCode());
+    }
+
+    private synchronized boolean add(Object key, int h) {
+        Table t;
+        int i;
+        do {
+            t = table;
+            i = t.find(key, h);
+        } while (i == RETRY || t != table);
+        if (i >= 0) {
+            return false;
+        }
+        i = -(i + 1);
+        if (t.keys[i] == null && t.fill >= t.limit) {
+            // Grow when mostly full of elements, otherwise just drop the removed ones
+            t = t.resize(t.size + t.size / 2 + 1);
+            i = t.emptySlot(h);
+        }
+        t.insert(i, h, key);
+        table = t;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return remove(o, o.hashCode());
+    }
+
+    private synchronized boolean remove(Object key, int h) {
+        Table t;
+        int i;
+        do {
+            t = table;
+            i = t.find(key, h);
+        } while (i == RETRY || t != table);
+        if (i < 0) {
+            return false;
+        }
+        t.remove(i);
+        table = t.size == 0 ? EMPTY_TABLE : t;
+        return true;
+    }
+
+    /**
+     * Remove and return an element, continuing from where the last call left off, so that emptying
+     * the set in this way takes time in proportion to its size.
+     *
+     * @throws NoSuchElementException if the set is empty
+     */
+    @SuppressWarnings("unchecked")
+    synchronized E pop() {
+        Table t = table;
+        if (t.size == 0) {
+            throw new NoSuchElementException();
+        }
+        int i = t.finger & t.mask;
+        while (!isElement(t.keys[i])) {
+            i = (i + 1) & t.mask;
+        }
+        Object k = t.keys[i];
+        t.remove(i);
+        t.finger = i + 1;
+        table = t.size == 0 ? EMPTY_TABLE : t;
+        return (E)k;
+    }
+
+    @Override
+    public synchronized void clear() {
+        table = EMPTY_TABLE;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        if (!(c instanceof CompactSet)) {
+            return super.addAll(c);
+        }
+        CompactSet<?> other = (CompactSet<?>)c;
+        if (isEmpty() && other != this) {
+            // Take a copy of the other table whole (holding only one lock at a time)
+            Table copy;
+            synchronized (other) {
+                copy = other.table.copy();
+            }
+            synchronized (this) {
+                if (table.size == 0) {
+                    table = copy;
+                    return copy.size != 0;
+                }
+            }
+        }
+        Table o = other.table;
+        boolean changed = false;
+        synchronized (this) {
+            Table t = table;
+            if (t.fill + o.size > t.limit) {
+                // Make room for all of them, so as to grow the table at most once
+                table = t.resize(t.size + o.size);
+            }
+            for (int j = 0; j <= o.mask; j++) {
+                Object k = o.keys[j];
+                if (isElement(k)) {
+                    changed |= add(k, o.hashes[j]);
+                }
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        if (c == this) {
+            return false;
+        }
+        synchronized (this) {
+            Table t = table;
+            if (c instanceof CompactSet) {
+                Table o = ((CompactSet<?>)c).table;
+                if (o.size < t.size) {
+                    // Iterate the other set, keeping the elements of this one found from it
+                    Table r = Table.forElements(o.size);
+                    for (int j = 0; j <= o.mask; j++) {
+                        Object k = o.keys[j];
+                        if (isElement(k)) {
+                            int h = o.hashes[j];
+                            int i = lookup(t, k, h);
+                            if (i >= 0 && lookup(r, k, h) < 0) {
+                                r.insert(r.emptySlot(h), h, t.keys[i]);
+                            }
+                        }
+                    }
+                    table = r.size == 0 ? EMPTY_TABLE : r;
+                    return r.size != t.size;
+                }
+            }
+            boolean changed = false;
+            for (int i = 0; i <= t.mask; i++) {
+                Object k = t.keys[i];
+                if (isElement(k) && !contains(c, k, t.hashes[i]) && t.keys[i] == k) {
+                    t.remove(i);
+                    changed = true;
+                }
+            }
+            if (table == t) {
+                table = t.size == 0 ? EMPTY_TABLE : t;
+            }
+            return changed;
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        if (c == this) {
+            boolean changed = !isEmpty();
+            clear();
+            return changed;
+        } else if (!(c instanceof CompactSet)) {
+            return super.removeAll(c);
+        }
+        Table o = ((CompactSet<?>)c).table;
+        boolean changed = false;
+        synchronized (this) {
+            Table t = table;
+            // Iterate whichever set is the smaller
+            Table smaller = o.size <= t.size ? o : t;
+            for (int j = 0; j <= smaller.mask; j++) {
+                Object k = smaller.keys[j];
+                if (isElement(k)) {
+                    int h = smaller.hashes[j];
+                    if (smaller == o || contains(c, k, h)) {
+                        changed |= remove(k, h);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /** Whether {@code c} contains {@code key}, whose hash is {@code h}. */
+    private static boolean contains(Collection<?> c, Object key, int h) {
+        return c instanceof CompactSet ? ((CompactSet<?>)c).contains(key, h) : c.contains(key);
+    }
+
+    /** A new set of the same elements. */
+    CompactSet<E> copy() {
+        Table t;
+        synchronized (this) {
+            t = table.copy();
+        }
+        return new CompactSet<E>(t);
+    }
+
+    /**
+     * A new set of the elements of this set that are also in {@code c}, iterating whichever is
+     * the smaller, and taking the elements from it.
+     */
+    @SuppressWarnings("unchecked")
+    CompactSet<E> intersection(Collection<?> c) {
+        CompactSet<E> result = new CompactSet<E>();
+        Table t = table;
+        if (c instanceof CompactSet && c.size() < t.size) {
+            return ((CompactSet<E>)c).intersection(this);
+        } else if (c.size() < t.size) {
+            for (Object k : c) {
+                if (contains(k)) {
+                    result.add((E)k);
+                }
+            }
+            return result;
+        }
+        for (int i = 0; i <= t.mask; i++) {
+            Object k = t.keys[i];
+            if (isElement(k)) {
+                int h = t.hashes[i];
+                if (contains(c, k, h)) {
+                    result.add(k, h);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** A new set of the elements of this set that are not in {@code c}. */
+    CompactSet<E> difference(Collection<?> c) {
+        if (c instanceof CompactSet && c.size() < size()) {
+            // Fewer to look up in removing them from a copy
+            CompactSet<E> result = copy();
+            result.removeAll(c);
+            return result;
+        }
+        CompactSet<E> result = new CompactSet<E>();
+        Table t = table;
+        for (int i = 0; i <= t.mask; i++) {
+            Object k = t.keys[i];
+            if (isElement(k)) {
+                int h = t.hashes[i];
+                if (!contains(c, k, h)) {
+                    result.add(k, h);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        // As for any Set, the sum of the hashes of the elements, but from the table
+        Table t = table;
+        int sum = 0;
+        for (int i = 0; i <= t.mask; i++) {
+            if (isElement(t.keys[i])) {
+                sum += t.hashes[i];
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iter();
+    }
+
+    /** Iterator over a table, in order of slot. It continues over the table it started with. */
+    private final class Iter implements Iterator<E> {
+
+        private final Table t = table;
+        /** Slot of the next element to return, or {@code t.mask+1} if none. */
+        private int next;
+        private Object nextKey;
+        /** The last element returned (or {@code null}). */
+        private Object lastKey;
+
+        Iter() {
+            advance(0);
+        }
+
+        private void advance(int i) {
+            for (; i <= t.mask; i++) {
+                Object k = t.keys[i];
+                if (isElement(k)) {
+                    nextKey = k;
+                    break;
+                }
+            }
+            next = i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next <= t.mask;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastKey = nextKey;
+            advance(next + 1);
+            return (E)lastKey;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            CompactSet.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+
+    private synchronized void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        Table t = table;
+        s.writeInt(t.size);
+        for (int i = 0; i <= t.mask; i++) {
+            Object k = t.keys[i];
+            if (isElement(k)) {
+                s.writeObject(k);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        int n = s.readInt();
+        // Hashes are computed again, as they may differ in this process
+        table = n <= 0 ? EMPTY_TABLE : Table.forElements(n);
+        for (int i = 0; i < n; i++) {
+            add((E)s.readObject());
+        }
+    }
+}
@@ -19,6 +19,7 @@ public class CompilerFacade {
 
     public static void setCompiler(PythonCompiler compiler) {
         CompilerFacade.compiler = compiler;
+        CodeCache.clear();
     }
 
     private static PythonCompiler loadDefaultCompiler() {
@@ -35,4 +36,14 @@ public class CompilerFacade {
             throw ParserFacade.fixParseError(null, t, filename);
         }
     }
+
+    /**
+     * As {@link #compile(mod, String, String, boolean, boolean, CompilerFlags)}, but returning
+     * the bundle, so that the caller may also have the class definition. Exceptions are those of
+     * the current compiler.
+     */
+    static PythonCodeBundle compileBundle(mod node, String name, String filename,
+            boolean linenumbers, boolean printResults, CompilerFlags cflags) throws Exception {
+        return compiler.compile(node, name, filename, linenumbers, printResults, cflags);
+    }
 }
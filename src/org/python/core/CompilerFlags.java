@@ -35,6 +35,16 @@ public class CompilerFlags implements Serializable {
         source_is_utf8 = isEnabled(co_flags, PyCF_SOURCE_IS_UTF8);
     }
 
+    /** Make the state of this object the same as that of {@code other}. */
+    void copyFrom(CompilerFlags other) {
+        only_ast = other.only_ast;
+        dont_imply_dedent = other.dont_imply_dedent;
+        source_is_utf8 = other.source_is_utf8;
+        encoding = other.encoding;
+        flags.clear();
+        flags.addAll(other.flags);
+    }
+
     private boolean isEnabled(int co_flags, int codeConstant) {
         return (co_flags & codeConstant) != 0;
     }
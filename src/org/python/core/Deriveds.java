@@ -25,6 +25,21 @@ public class Deriveds {
         self.proxyInit();
     }
 
+    /**
+     * Determine whether instances of {@code type} use {@code object.__getattribute__}, recording
+     * the answer on the type as {@link #__findattr_ex__(PyObject, String)} does.
+     */
+    static boolean usesObjectGetattribute(PyType type) {
+        if (type.getUsesObjectGetattribute()) {
+            return true;
+        }
+        if (type.lookup("__getattribute__") == objectGetattribute) {
+            type.setUsesObjectGetattribute(true);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Deriveds' __findattr_ex__ implementation.
      *
@@ -0,0 +1,119 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.core;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * A cache of the value of a global name, as looked up by {@link PyFrame#getglobal(String)}, for
+ * use by compiled code. The compiler creates one for each global name loaded in a module.
+ * <p>
+ * The value found is remembered together with the dictionaries it was looked up in and their
+ * {@link PyStringMap#getVersion() versions}. While the frame has the same globals and builtins,
+ * and neither has been modified, the remembered value is still the right answer. Globals or
+ * builtins that are not a {@link PyStringMap} are never cached.
+ * <p>
+ * The cache is held by a static field of the compiled module, so it refers to the dictionaries
+ * and the value only weakly, and does not keep alive a namespace the code last ran in. While the
+ * dictionary in which the value was found has the same version, it holds the value too.
+ */
+public class GlobalCache {
+
+    /** The (interned) name looked up. */
+    private final String name;
+
+    /** The last successful lookup, or {@code null}. */
+    private volatile Entry entry;
+
+    public GlobalCache(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Equivalent to {@code frame.getglobal(name)}.
+     *
+     * @param frame in which to look up the name
+     * @param ts current thread state (source of builtins if the frame has none)
+     * @return the value of the name
+     * @throws PyException {@code NameError} if the name is not defined
+     */
+    public PyObject get(PyFrame frame, ThreadState ts) {
+        PyObject globals = frame.f_globals;
+        Entry e = entry;
+        if (e != null && globals != null && e.get() == globals
+                && e.globalsVersion == ((PyStringMap)globals).getVersion()) {
+            // The value is cleared only once the dictionary that held it has changed
+            PyObject value = e.value.get();
+            if (value != null && e.builtins == null) {
+                // Found in globals and they have not changed
+                return value;
+            } else if (value != null) {
+                PyStringMap b = e.builtins.get();
+                if (b != null && e.builtinsVersion == b.getVersion()
+                        && b == getBuiltins(frame, ts)) {
+                    return value;
+                }
+            }
+        }
+        return lookup(frame, ts);
+    }
+
+    private static PyObject getBuiltins(PyFrame frame, ThreadState ts) {
+        PyObject builtins = frame.f_builtins;
+        if (builtins == null) {
+            // As PyFrame.getglobal does on first use
+            builtins = frame.f_builtins = ts.getSystemState().builtins;
+        }
+        return builtins;
+    }
+
+    /** Look the name up in full, and remember the result if it may be cached. */
+    private PyObject lookup(PyFrame frame, ThreadState ts) {
+        PyObject globals = frame.f_globals;
+        if (globals == null || globals.getClass() != PyStringMap.class) {
+            return frame.getglobal(name);
+        }
+
+        // Read the version before the lookup, so a concurrent change will invalidate the entry
+        PyStringMap g = (PyStringMap)globals;
+        long globalsVersion = g.getVersion();
+        PyObject value = g.__finditem__(name);
+        if (value != null) {
+            entry = new Entry(value, g, globalsVersion, null, 0);
+            return value;
+        }
+
+        PyObject builtins = getBuiltins(frame, ts);
+        if (builtins == null || builtins.getClass() != PyStringMap.class) {
+            return frame.getglobal(name);
+        }
+        PyStringMap b = (PyStringMap)builtins;
+        long builtinsVersion = b.getVersion();
+        value = b.__finditem__(name);
+        if (value == null) {
+            // Raise the NameError in the usual way
+            return frame.getglobal(name);
+        }
+        entry = new Entry(value, g, globalsVersion, b, builtinsVersion);
+        return value;
+    }
+
+    /** The immutable result of a lookup, referring weakly to the globals. */
+    private static class Entry extends WeakReference<PyStringMap> {
+
+        final WeakReference<PyObject> value;
+        final long globalsVersion;
+        /** Builtins in which the name was found, or {@code null} if found in the globals. */
+        final WeakReference<PyStringMap> builtins;
+        final long builtinsVersion;
+
+        Entry(PyObject value, PyStringMap globals, long globalsVersion, PyStringMap builtins,
+                long builtinsVersion) {
+            super(globals);
+            this.value = new WeakReference<PyObject>(value);
+            this.globalsVersion = globalsVersion;
+            this.builtins = builtins == null ? null : new WeakReference<PyStringMap>(builtins);
+            this.builtinsVersion = builtinsVersion;
+        }
+    }
+}
@@ -157,6 +157,113 @@ public class Options {
      */
     public static int division_warning = 0;
 
+    /**
+     * If true, the compiler emits {@code invokedynamic} call sites with inline caches for attribute
+     * access and calls (see {@link CallSiteBootstrap}).
+     *
+     * @see org.python.core.RegistryKey#PYTHON_OPTIONS_INVOKEDYNAMIC
+     */
+    public static boolean invokedynamic = false;
+
+    /**
+     * If true, new lists are stored in a {@link StampedList}, so that {@code len}, indexing and
+     * iteration do not lock them.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_LIST_OPTIMISTIC_READS
+     */
+    public static boolean listOptimisticReads = false;
+
+    /**
+     * If true, new lists are stored in a {@link StrategyList}, which holds lists of only
+     * {@code int} or only {@code float} as arrays of Java primitives. Off by default, as the items
+     * are boxed again as they are read, which loses their identity.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_LIST_STRATEGIES
+     */
+    public static boolean listStrategies = false;
+
+    /**
+     * Lowest {@code int} value for which {@link Py#newInteger(int)} returns a shared instance.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_INTEGER_CACHE_LOW
+     */
+    public static int integerCacheLow = -100;
+
+    /**
+     * Highest {@code int} value for which {@link Py#newInteger(int)} returns a shared instance.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_INTEGER_CACHE_HIGH
+     */
+    public static int integerCacheHigh = 899;
+
+    /**
+     * Lowest integral value for which {@link Py#newFloat(double)} returns a shared instance.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_FLOAT_CACHE_LOW
+     */
+    public static int floatCacheLow = -16;
+
+    /**
+     * Highest integral value for which {@link Py#newFloat(double)} returns a shared instance.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_FLOAT_CACHE_HIGH
+     */
+    public static int floatCacheHigh = 255;
+
+    /**
+     * Highest code point for which {@link Py#newUnicode(char)} returns a shared instance.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_UNICODE_CACHE_HIGH
+     */
+    public static int unicodeCacheHigh = 255;
+
+    /**
+     * The largest number of attribute names whose MRO lookup is cached for each type.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_METHODCACHE_SIZE
+     */
+    public static int methodCacheSize = 1024;
+
+    /**
+     * The largest number of compiled scripts kept by {@link CodeCache}, or zero (the default) to
+     * disable it.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_COMPILE_CACHE_SIZE
+     */
+    public static int compileCacheSize = 0;
+
+    /**
+     * The largest total size of the classes and source text of the compiled scripts kept by
+     * {@link CodeCache}.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_COMPILE_CACHE_BYTES
+     */
+    public static int compileCacheBytes = 16 * 1024 * 1024;
+
+    /**
+     * The directory in which {@link CodeCache} keeps compiled scripts between runs, or
+     * {@code null} if they are not kept.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_COMPILE_CACHEDIR
+     */
+    public static String compileCacheDir = null;
+
+    /**
+     * The largest total size, in bytes, of the files {@link CodeCache} keeps in
+     * {@link #compileCacheDir}.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_COMPILE_CACHEDIR_BYTES
+     */
+    public static int compileCacheDirBytes = 64 * 1024 * 1024;
+
+    /**
+     * If true, the caches of the runtime count their hits and misses, for
+     * {@code sys._cache_stats()}.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_OPTIONS_CACHE_STATS
+     */
+    public static boolean cacheStats = false;
+
     /**
      * Cache spec for the SRE_STATE code point cache. The value maps to the CacheBuilderSpec string
      * and affects how the SRE_STATE cache will behave/evict cached {@code PyString -> int[]} code
@@ -166,6 +273,21 @@ public class Options {
             "weakKeys,concurrencyLevel=4,maximumWeight=2621440,expireAfterAccess=30s";
     public static String sreCacheSpec = sreCacheSpecDefault;
 
+    /**
+     * The number of times a regular expression is used before it is compiled to JVM bytecode, or
+     * a negative number never to compile it.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_SRE_JIT_THRESHOLD
+     */
+    public static int sreJitThreshold = 100;
+
+    /**
+     * The most steps a regular expression may take in one match or search, zero for no limit.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_SRE_MAX_STEPS
+     */
+    public static int sreMaxSteps = 0;
+
     //
     // ####### END OF OPTIONS
     //
@@ -180,6 +302,18 @@ public class Options {
         return prop.equalsIgnoreCase("true") || prop.equalsIgnoreCase("yes");
     }
 
+    private static int getIntOption(String name, int defaultValue) {
+        String prop = PySystemState.registry.getProperty(name);
+        if (prop == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(prop.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " option: '" + prop + "'");
+        }
+    }
+
     private static String getStringOption(String name, String defaultValue) {
         String prop = PySystemState.registry.getProperty(name);
         if (prop == null) {
@@ -207,10 +341,25 @@ public class Options {
 
         caseok = getBooleanOption(PYTHON_OPTIONS_CASE_OK, caseok);
         Qnew = getBooleanOption(PYTHON_OPTIONS_Q_NEW, Qnew);
+        invokedynamic = getBooleanOption(PYTHON_OPTIONS_INVOKEDYNAMIC, invokedynamic);
+        listOptimisticReads = getBooleanOption(PYTHON_LIST_OPTIMISTIC_READS, listOptimisticReads);
+        listStrategies = getBooleanOption(PYTHON_LIST_STRATEGIES, listStrategies);
 
         setDivisionWarningFromRegistry();
 
+        setBoxCacheRangesFromRegistry();
+        methodCacheSize = getIntOption(PYTHON_METHODCACHE_SIZE, methodCacheSize);
+        compileCacheSize = getIntOption(PYTHON_COMPILE_CACHE_SIZE, compileCacheSize);
+        compileCacheBytes = getIntOption(PYTHON_COMPILE_CACHE_BYTES, compileCacheBytes);
+        compileCacheDir = getStringOption(PYTHON_COMPILE_CACHEDIR, compileCacheDir);
+        compileCacheDirBytes =
+                getIntOption(PYTHON_COMPILE_CACHEDIR_BYTES, compileCacheDirBytes);
+        cacheStats = getBooleanOption(PYTHON_OPTIONS_CACHE_STATS, cacheStats);
+        Py.setBoxCaches();
+
         sreCacheSpec = getStringOption(PYTHON_SRE_CACHESPEC, sreCacheSpec);
+        sreJitThreshold = getIntOption(PYTHON_SRE_JIT_THRESHOLD, sreJitThreshold);
+        sreMaxSteps = getIntOption(PYTHON_SRE_MAX_STEPS, sreMaxSteps);
         inspect |= getStringOption(PYTHON_INSPECT, "").length() > 0;
         importSite = getBooleanOption(PYTHON_IMPORT_SITE, importSite);
         no_site = !importSite;
@@ -263,6 +412,39 @@ public class Options {
         }
     }
 
+    /**
+     * Set the ranges of the caches of boxed values from the registry, keeping the current range
+     * (with a warning) of any cache for which the registry gives one that is empty or too large.
+     */
+    private static void setBoxCacheRangesFromRegistry() {
+        int low = getIntOption(PYTHON_INTEGER_CACHE_LOW, integerCacheLow);
+        int high = getIntOption(PYTHON_INTEGER_CACHE_HIGH, integerCacheHigh);
+        if (checkBoxCacheRange("int", low, high)) {
+            integerCacheLow = low;
+            integerCacheHigh = high;
+        }
+        low = getIntOption(PYTHON_FLOAT_CACHE_LOW, floatCacheLow);
+        high = getIntOption(PYTHON_FLOAT_CACHE_HIGH, floatCacheHigh);
+        if (checkBoxCacheRange("float", low, high)) {
+            floatCacheLow = low;
+            floatCacheHigh = high;
+        }
+        high = getIntOption(PYTHON_UNICODE_CACHE_HIGH, unicodeCacheHigh);
+        if (checkBoxCacheRange("unicode", 0, high)) {
+            unicodeCacheHigh = high;
+        }
+    }
+
+    private static boolean checkBoxCacheRange(String type, int low, int high) {
+        if (BoxCache.isValidRange(low, high)) {
+            return true;
+        }
+        PrePy.writeWarning("initializer", String.format(
+                "ignoring the %s cache range %d to %d: a cache holds from 1 to %d values", type,
+                low, high, BoxCache.MAX_SIZE));
+        return false;
+    }
+
     /** Set {@link division_warning} from {@link RegistryKey#PYTHON_DIVISION_WARNING}. */
     private static void setDivisionWarningFromRegistry() {
         String prop;
@@ -1,6 +1,7 @@
 // Copyright (c) Corporation for National Research Initiatives
 package org.python.core;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.CharArrayWriter;
 import java.io.File;
@@ -30,6 +31,7 @@ import java.util.logging.Level;
 import org.python.antlr.base.mod;
 import org.python.core.adapter.ClassicPyObjectAdapter;
 import org.python.core.adapter.ExtensiblePyObjectAdapter;
+import org.python.core.util.FileUtil;
 import org.python.modules.posix.PosixModule;
 
 import com.google.common.base.CharMatcher;
@@ -589,17 +591,30 @@ public final class Py extends PrePy {
     /* Helper functions for PyProxy's */
 
     /* Convenience methods to create new constants without using "new" */
-    private final static PyInteger[] integerCache = new PyInteger[1000];
 
-    static {
-        for (int j = -100; j < 900; j++) {
-            integerCache[j + 100] = new PyInteger(j);
+    // Shared instances of common values, resized from the registry by setBoxCaches()
+    static BoxCache integerCache =
+            BoxCache.integers(Options.integerCacheLow, Options.integerCacheHigh);
+    static BoxCache floatCache = BoxCache.floats(Options.floatCacheLow, Options.floatCacheHigh);
+    static BoxCache unicodeCache = BoxCache.characters(Options.unicodeCacheHigh);
+
+    /** Replace the caches of boxed values whose range in {@link Options} has changed. */
+    static void setBoxCaches() {
+        if (!integerCache.hasRange(Options.integerCacheLow, Options.integerCacheHigh)) {
+            integerCache = BoxCache.integers(Options.integerCacheLow, Options.integerCacheHigh);
+        }
+        if (!floatCache.hasRange(Options.floatCacheLow, Options.floatCacheHigh)) {
+            floatCache = BoxCache.floats(Options.floatCacheLow, Options.floatCacheHigh);
+        }
+        if (!unicodeCache.hasRange(0, Options.unicodeCacheHigh)) {
+            unicodeCache = BoxCache.characters(Options.unicodeCacheHigh);
         }
     }
 
     public static final PyInteger newInteger(int i) {
-        if (i >= -100 && i < 900) {
-            return integerCache[i + 100];
+        PyObject cached = integerCache.get(i);
+        if (cached != null) {
+            return (PyInteger)cached;
         } else {
             return new PyInteger(i);
         }
@@ -634,10 +649,20 @@ public final class Py extends PrePy {
     }
 
     public static PyFloat newFloat(float v) {
-        return new PyFloat((double) v);
+        return newFloat((double) v);
     }
 
     public static PyFloat newFloat(double v) {
+        int i = (int) v;
+        // Only integral values are cached, and -0.0 is not 0.0
+        if (i == v && (i != 0 || Double.doubleToRawLongBits(v) == 0L)) {
+            PyObject cached = floatCache.get(i);
+            if (cached != null) {
+                return (PyFloat)cached;
+            }
+        } else {
+            floatCache.miss();
+        }
         return new PyFloat(v);
     }
 
@@ -2071,7 +2096,8 @@ public final class Py extends PrePy {
 
     static final PyString makeCharacter(int codepoint, boolean toUnicode) {
         if (toUnicode) {
-            return new PyUnicode(codepoint);
+            PyObject cached = unicodeCache.get(codepoint);
+            return cached != null ? (PyUnicode)cached : new PyUnicode(codepoint);
         } else if (codepoint < 0 || codepoint > 255) {
             // This will throw IllegalArgumentException since non-byte value
             return new PyString('\uffff');
@@ -2252,9 +2278,26 @@ public final class Py extends PrePy {
      * Compiles python source code coming from a file or another external stream
      */
     public static PyCode compile_flags(InputStream istream, String filename,
-                                         CompileMode kind, CompilerFlags cflags) {
-        mod node = ParserFacade.parse(istream, kind, filename, cflags);
-        return Py.compile_flags(node, filename, kind, cflags);
+                                         final CompileMode kind, CompilerFlags cflags) {
+        if (Options.compileCacheDir == null || cflags == null) {
+            mod node = ParserFacade.parse(istream, kind, filename, cflags);
+            return Py.compile_flags(node, filename, kind, cflags);
+        }
+        // Read the source, so that the compiled code may be found in the cache directory
+        final byte[] source;
+        try {
+            source = FileUtil.readBytes(istream);
+        } catch (IOException e) {
+            throw Py.IOError(e);
+        }
+        final String name = filename;
+        return CodeCache.compile(source, filename, kind, cflags, new CodeCache.Parser() {
+
+            @Override
+            public mod parse(CompilerFlags cf) {
+                return ParserFacade.parse(new ByteArrayInputStream(source), kind, name, cf);
+            }
+        });
     }
 
     /**
@@ -2265,6 +2308,18 @@ public final class Py extends PrePy {
      */
     public static PyCode compile_flags(String data, String filename,
                                          CompileMode kind, CompilerFlags cflags) {
+        if (cflags == null)
+            cflags = new CompilerFlags();
+        mod node = parse_flags(data, filename, kind, cflags);
+        return Py.compile_flags(node, filename, kind, cflags);
+    }
+
+    /**
+     * Parses python source code from String (raw bytes) data, as
+     * {@link #compile_flags(String, String, CompileMode, CompilerFlags)} does before compiling it.
+     */
+    public static mod parse_flags(String data, String filename,
+                                  CompileMode kind, CompilerFlags cflags) {
         if (data.contains("\0")) {
             throw Py.TypeError("compile() expected string without null bytes");
         }
@@ -2273,15 +2328,12 @@ public final class Py extends PrePy {
         } else {
             data += "\n\n";
         }
-        if (cflags == null)
-            cflags = new CompilerFlags();
         FeatureDetector fdet = new FeatureDetector(data);
         boolean print_stmt = fdet.getPrintStatement();
         cflags.setPrintFunction(!print_stmt);
         cflags.setUnicodeLiterals(!print_stmt);
         cflags.setRepeatLoop(fdet.getRepeatLoop());
-        mod node = ParserFacade.parse(data, kind, filename, cflags);
-        return Py.compile_flags(node, filename, kind, cflags);
+        return ParserFacade.parse(data, kind, filename, cflags);
     }
 
     public static PyObject compile_command_flags(String string, String filename,
@@ -1,5 +1,9 @@
 // Copyright (c) Corporation for National Research Initiatives
 package org.python.core;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.*;
 
 @Untraversable
@@ -8,6 +12,9 @@ public class PyBeanProperty extends PyReflectedField {
     public Class<?> myType;
     String __name__;
 
+    /** Handles on {@link #getMethod} and {@link #setMethod}, made on first use. */
+    private Accessor getter, setter;
+
     public PyBeanProperty(String name, Class<?> myType, Method getMethod, Method setMethod) {
         __name__ = name;
         this.getMethod = getMethod;
@@ -30,11 +37,16 @@ public class PyBeanProperty extends PyReflectedField {
 
         Object iself = Py.tojava(self, getMethod.getDeclaringClass());
 
+        Accessor a = getter;
+        if (a == null || a.method != getMethod) {
+            getter = a = new Accessor(getMethod, GETTER);
+        }
         try {
-            Object value = getMethod.invoke(iself, (Object[])Py.EmptyObjects);
+            Object value = a.handle != null ? (Object)a.handle.invokeExact(iself)
+                    : getMethod.invoke(iself, (Object[])Py.EmptyObjects);
             return Py.java2py(value);
-        } catch (Exception e) {
-            throw Py.JavaError(e);
+        } catch (Throwable t) {
+            throw Py.JavaError(t);
         }
     }
 
@@ -63,14 +75,51 @@ public class PyBeanProperty extends PyReflectedField {
         }
         Object jvalue = Py.tojava(value, myType);
 
+        Accessor a = setter;
+        if (a == null || a.method != setMethod) {
+            setter = a = new Accessor(setMethod, SETTER);
+        }
         try {
-            setMethod.invoke(iself, jvalue);
-        } catch (Exception e) {
-            throw Py.JavaError(e);
+            if (a.handle != null) {
+                a.handle.invokeExact(iself, jvalue);
+            } else {
+                setMethod.invoke(iself, jvalue);
+            }
+        } catch (Throwable t) {
+            throw Py.JavaError(t);
         }
         return true;
     }
 
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER =
+            MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * A bean method and a handle on it adapted to {@link #GETTER} or {@link #SETTER}, or a
+     * {@code null} handle if none may be made, in which case the method is called by reflection.
+     */
+    private static final class Accessor {
+
+        final Method method;
+        final MethodHandle handle;
+
+        Accessor(Method method, MethodType type) {
+            this.method = method;
+            MethodHandle h;
+            try {
+                h = MethodHandles.publicLookup().unreflect(method).asFixedArity();
+                if (Modifier.isStatic(method.getModifiers())) {
+                    h = MethodHandles.dropArguments(h, 0, Object.class);
+                }
+                h = h.asType(type);
+            } catch (IllegalAccessException | WrongMethodTypeException e) {
+                h = null;
+            }
+            handle = h;
+        }
+    }
+
     public PyBeanProperty copy() {
         return new PyBeanProperty(__name__, myType, getMethod, setMethod);
     }
@@ -25,6 +25,9 @@ public class PyClass extends PyObject implements Traverseproc {
     // Store these methods for performance optimization. These are only used by PyInstance
     PyObject __getattr__, __setattr__, __delattr__, __tojava__, __del__, __contains__;
 
+    /** Keys shared by the {@code __dict__} of instances of this class (created when needed). */
+    private transient CompactDictMap.SharedKeys instanceKeys;
+
     /**
      * Create a new instance of a Python classic class.
      */
@@ -86,6 +89,17 @@ public class PyClass extends PyObject implements Traverseproc {
         __contains__ = lookup("__contains__");
     }
 
+    /** A new {@code __dict__} for an instance, sharing its keys with other instances. */
+    PyObject instanceDict() {
+        CompactDictMap.SharedKeys keys = instanceKeys;
+        if (keys == null) {
+            instanceKeys = keys = new CompactDictMap.SharedKeys();
+        } else {
+            instanceKeys = keys = keys.latest();
+        }
+        return new PyStringMap(keys);
+    }
+
     PyObject lookup(String name) {
         PyObject result = __dict__.__finditem__(name);
         if (result == null && __bases__ != null) {
@@ -13,7 +13,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.python.core.AbstractDict.ValuesIter;
 import org.python.core.AbstractDict.KeysIter;
@@ -23,7 +22,6 @@ import org.python.expose.ExposedMethod;
 import org.python.expose.ExposedNew;
 import org.python.expose.ExposedType;
 import org.python.expose.MethodType;
-import org.python.util.Generic;
 
 
 /**
@@ -52,12 +50,11 @@ public class PyDictionary extends AbstractDict implements ConcurrentMap, Travers
     }
 
     /**
-     * Create a dictionary of type with the specified initial capacity.
+     * Create a dictionary of type with room for the specified number of entries.
      */
     public PyDictionary(PyType type, int capacity) {
         super(type);
-        internalMap = new ConcurrentHashMap<PyObject,PyObject>(capacity, Generic.CHM_LOAD_FACTOR,
-                                                               Generic.CHM_CONCURRENCY_LEVEL);
+        internalMap = new CompactDictMap<PyObject, PyObject>(capacity);
     }
 
     /**
@@ -65,7 +62,7 @@ public class PyDictionary extends AbstractDict implements ConcurrentMap, Travers
      */
     public PyDictionary(PyType type) {
         super(type);
-        internalMap = Generic.concurrentMap();
+        internalMap = new CompactDictMap<PyObject, PyObject>();
     }
 
     /**
@@ -89,8 +86,7 @@ public class PyDictionary extends AbstractDict implements ConcurrentMap, Travers
      * Create a new dictionary which is populated with entries the given map.
      */
     public PyDictionary(PyType type, Map<PyObject, PyObject> map) {
-        this(type, Math.max((int) (map.size() / Generic.CHM_LOAD_FACTOR) + 1,
-                            Generic.CHM_INITIAL_CAPACITY));
+        this(type, map.size());
         getMap().putAll(map);
     }
 
@@ -102,7 +98,7 @@ public class PyDictionary extends AbstractDict implements ConcurrentMap, Travers
     protected PyDictionary(PyType type, boolean initializeBacking) {
         super(type);
         if (initializeBacking) {
-            internalMap = Generic.concurrentMap();
+            internalMap = new CompactDictMap<PyObject, PyObject>();
         } else {
             internalMap = null; /* for later initialization */
         }
@@ -1,7 +1,6 @@
 package org.python.core;
 
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
 
 import org.python.expose.ExposedMethod;
@@ -15,7 +14,7 @@ public class PyFrozenSet extends BaseSet {
     public static final PyType TYPE = PyType.fromClass(PyFrozenSet.class);
 
     public PyFrozenSet() {
-        super(TYPE, new HashSet<PyObject>());
+        super(TYPE, new CompactSet<PyObject>());
     }
 
     public PyFrozenSet(PyObject data) {
@@ -23,7 +22,7 @@ public class PyFrozenSet extends BaseSet {
     }
 
     public PyFrozenSet(PyType type, PyObject data) {
-        super(type, _update(new HashSet<PyObject>(), data));
+        super(type, _update(new CompactSet<PyObject>(), data));
     }
 
     @ExposedNew
@@ -35,7 +35,7 @@ public class PyInstance extends PyObject implements FinalizablePyObject, Travers
         super(TYPE);
         instclass = iclass;
         if (dict == null) {
-            dict = new PyStringMap();
+            dict = iclass == null ? new PyStringMap() : iclass.instanceDict();
         }
         __dict__ = dict;
     }
@@ -37,7 +37,25 @@ public class PyList extends PySequenceList {
 
     public PyList(PyType type) {
         super(type);
-        list = Generic.list();
+        list = newList(0);
+    }
+
+    /**
+     * New storage for a list, with room for {@code capacity} items: a {@link StrategyList} if
+     * {@link Options#listStrategies} is set, otherwise an {@code ArrayList}, guarded by a
+     * {@link StampedList} if {@link Options#listOptimisticReads} is set.
+     */
+    private static List<PyObject> newList(int capacity) {
+        List<PyObject> storage;
+        if (Options.listStrategies) {
+            storage = new StrategyList(capacity);
+        } else {
+            storage = new ArrayList<PyObject>(capacity);
+        }
+        if (Options.listOptimisticReads) {
+            return new StampedList(storage);
+        }
+        return storage;
     }
 
     private PyList(List<?> list, boolean convert) {
@@ -45,7 +63,7 @@ public class PyList extends PySequenceList {
         if (!convert) {
             this.list = (List<PyObject>) list;
         } else {
-            this.list = Generic.list();
+            this.list = newList(list.size());
             for (Object o : list) {
                 add(o);
             }
@@ -54,12 +72,13 @@ public class PyList extends PySequenceList {
 
     public PyList(PyType type, PyObject[] elements) {
         super(type);
-        list = new ArrayList<PyObject>(Arrays.asList(elements));
+        list = newList(elements.length);
+        list.addAll(Arrays.asList(elements));
     }
 
     public PyList(PyType type, Collection c) {
         super(type);
-        list = new ArrayList<PyObject>(c.size());
+        list = newList(c.size());
         for (Object o : c) {
             add(o);
         }
@@ -75,8 +94,16 @@ public class PyList extends PySequenceList {
 
     public PyList(PyObject o) {
         this(TYPE);
-        for (PyObject item : o.asIterable()) {
-            list.add(item);
+        if (o.getType() == TYPE) {
+            // Copy the storage, as list___init__ does, rather than box every item
+            PyList other = (PyList)o;
+            synchronized (other) {
+                list.addAll(other.list);
+            }
+        } else {
+            for (PyObject item : o.asIterable()) {
+                list.add(item);
+            }
         }
     }
 
@@ -153,7 +180,7 @@ public class PyList extends PySequenceList {
     }
 
     @ExposedMethod(doc = BuiltinDocs.list___len___doc)
-    final synchronized int list___len__() {
+    final int list___len__() {
         return size();
     }
 
@@ -379,7 +406,7 @@ public class PyList extends PySequenceList {
         if (o instanceof PySequenceList && !(o instanceof PyTuple)) {
             if (o instanceof PyList) {
                 List<PyObject> oList = ((PyList) o).list;
-                ArrayList<PyObject> newList = new ArrayList<>(list.size() + oList.size());
+                List<PyObject> newList = newList(list.size() + oList.size());
                 newList.addAll(list);
                 newList.addAll(oList);
                 sum = fromList(newList);
@@ -440,12 +467,20 @@ public class PyList extends PySequenceList {
     }
 
     @ExposedMethod(doc = BuiltinDocs.list___getitem___doc)
-    final synchronized PyObject list___getitem__(PyObject o) {
-        PyObject ret = seq___finditem__(o);
-        if (ret == null) {
-            throw Py.IndexError("index out of range: " + o);
+    final PyObject list___getitem__(PyObject o) {
+        if (list instanceof StampedList && o.getClass() == PyInteger.class) {
+            PyObject item = ((StampedList)list).optimisticGet(((PyInteger)o).getValue());
+            if (item != null) {
+                return item;
+            }
+        }
+        synchronized (this) {
+            PyObject ret = seq___finditem__(o);
+            if (ret == null) {
+                throw Py.IndexError("index out of range: " + o);
+            }
+            return ret;
         }
-        return ret;
     }
 
     @ExposedGet(name = "head")
@@ -858,6 +893,15 @@ public class PyList extends PySequenceList {
 
     private synchronized void sort(boolean reverse) {
         gListAllocatedStatus = -1;
+        if (list instanceof StrategyList && ((StrategyList)list).sortPrimitive(reverse)) {
+            gListAllocatedStatus = list.size();
+            return;
+        }
+        PyObject[] items = list.toArray(Py.EmptyObjects);
+        if (TypedSort.sort(items, null, reverse)) {
+            replaceAll(items);
+            return;
+        }
         if (reverse) {
             Collections.reverse(list); // maintain stability of sort by reversing first
         }
@@ -1044,10 +1088,24 @@ public class PyList extends PySequenceList {
     private synchronized void sort(PyObject cmp, PyObject key, boolean reverse) {
         gListAllocatedStatus = -1;
 
-        int size = list.size();
+        // Call key once for each item, before any sorting
+        PyObject[] items = list.toArray(Py.EmptyObjects);
+        int size = items.length;
+        PyObject[] keys = new PyObject[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = key.__call__(items[i]);
+        }
+        // Not every change sets gListAllocatedStatus (pop does not): compare the items too
+        if (gListAllocatedStatus >= 0 || !holds(items)) {
+            throw Py.ValueError("list modified during sort");
+        }
+        if ((cmp == null || cmp == Py.None) && TypedSort.sort(items, keys, reverse)) {
+            replaceAll(items);
+            return;
+        }
         final ArrayList<KV> decorated = new ArrayList<KV>(size);
-        for (PyObject value : list) {
-            decorated.add(new KV(key.__call__(value), value));
+        for (int i = 0; i < size; i++) {
+            decorated.add(new KV(keys[i], items[i]));
         }
         list.clear();
         KVComparator c = new KVComparator(this, cmp);
@@ -1067,6 +1125,42 @@ public class PyList extends PySequenceList {
         gListAllocatedStatus = list.size();
     }
 
+    /** Whether the list holds exactly {@code items}, the same objects in the same order. */
+    private boolean holds(PyObject[] items) {
+        if (list.size() != items.length) {
+            return false;
+        }
+        for (int i = 0; i < items.length; i++) {
+            if (list.get(i) != items[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Replace the contents of the list with the sorted {@code items}, ending the sort. */
+    private void replaceAll(PyObject[] items) {
+        list.clear();
+        list.addAll(Arrays.asList(items));
+        gListAllocatedStatus = list.size();
+    }
+
+    /**
+     * {@code sum(self, start)} computed directly over the storage of a list of only {@code int} or
+     * only {@code float}, or {@code null} if the list is not stored so.
+     */
+    synchronized PyObject primitiveSum(PyObject start) {
+        return list instanceof StrategyList ? ((StrategyList)list).sum(start) : null;
+    }
+
+    /**
+     * {@code max(self)} (or {@code min(self)}) computed directly over the storage of a list of only
+     * {@code int} or only {@code float}, or {@code null} if the list is not stored so.
+     */
+    synchronized PyObject primitiveExtreme(boolean largest) {
+        return list instanceof StrategyList ? ((StrategyList)list).extreme(largest) : null;
+    }
+
     public int hashCode() {
         return list___hash__();
     }
@@ -1149,8 +1243,16 @@ public class PyList extends PySequenceList {
     }
 
     @Override
-    public synchronized PyObject[] getArray() {
-        return list.toArray(Py.EmptyObjects);
+    public PyObject[] getArray() {
+        if (list instanceof StampedList) {
+            PyObject[] array = ((StampedList)list).optimisticToArray();
+            if (array != null) {
+                return array;
+            }
+        }
+        synchronized (this) {
+            return list.toArray(Py.EmptyObjects);
+        }
     }
 
     @Override
@@ -1159,8 +1261,8 @@ public class PyList extends PySequenceList {
     }
 
     @Override
-    public synchronized boolean isEmpty() {
-        return list.isEmpty();
+    public boolean isEmpty() {
+        return size() == 0;
     }
 
     @Override
@@ -1249,8 +1351,37 @@ public class PyList extends PySequenceList {
     }
 
     @Override
-    public synchronized PyObject pyget(int index) {
-        return list.get(index);
+    public PyObject pyget(int index) {
+        if (list instanceof StampedList && index >= 0) {
+            PyObject item = ((StampedList)list).optimisticGet(index);
+            if (item != null) {
+                return item;
+            }
+        }
+        synchronized (this) {
+            return list.get(index);
+        }
+    }
+
+    /**
+     * The item at {@code index}, or {@code null} if there is none, read without locking if the
+     * list allows it. Iterators use this, in place of testing the size first, holding the lock.
+     */
+    PyObject optimisticGet(int index) {
+        if (list instanceof StampedList) {
+            PyObject item = ((StampedList)list).optimisticGet(index);
+            if (item != null) {
+                return item;
+            }
+        }
+        synchronized (this) {
+            return index < list.size() ? list.get(index) : null;
+        }
+    }
+
+    /** Whether {@link #optimisticGet(int)} reads without locking. */
+    boolean readsOptimistically() {
+        return list instanceof StampedList;
     }
 
     public synchronized void pyset(int index, PyObject element) {
@@ -1291,8 +1422,16 @@ public class PyList extends PySequenceList {
     }
 
     @Override
-    public synchronized int size() {
-        return list.size();
+    public int size() {
+        if (list instanceof StampedList) {
+            int size = ((StampedList)list).optimisticSize();
+            if (size >= 0) {
+                return size;
+            }
+        }
+        synchronized (this) {
+            return list.size();
+        }
     }
 
     @Override
@@ -1332,11 +1471,10 @@ public class PyList extends PySequenceList {
             stop = start;
         }
         int n = sliceLength(start, stop, step);
-        List<PyObject> newList;
+        List<PyObject> newList = newList(n);
         if (step == 1) {
-            newList = new ArrayList<PyObject>(list.subList(start, stop));
+            newList.addAll(list.subList(start, stop));
         } else {
-            newList = new ArrayList<PyObject>(n);
             for (int i = start, j = 0; j < n; i += step, j++) {
                 newList.add(list.get(i));
             }
@@ -15,6 +15,19 @@ public class PyListIterator extends PyIterator {
     }
 
     public PyObject __iternext__() {
+        if (list.readsOptimistically()) {
+            // The list need not be locked to read it: nor is this iterator (as a Java one is not)
+            if (stopped) {
+                return null;
+            }
+            PyObject item = list.optimisticGet(index);
+            if (item == null) {
+                stopped = true;
+            } else {
+                index++;
+            }
+            return item;
+        }
         synchronized (list) {
             if (stopped) {
                 // Need to prevent the iteration from restarting, even after a StopIteration,
@@ -4,6 +4,9 @@
  */
 package org.python.core;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 
@@ -12,6 +15,9 @@ public class PyReflectedField extends PyObject {
 
     public Field field;
 
+    /** Handles on {@link #field}, made on first use. */
+    private Accessors accessors;
+
     public PyReflectedField() {
     }
 
@@ -33,15 +39,25 @@ public class PyReflectedField extends PyObject {
         }
         Object value;
 
+        Accessors a = getAccessors();
         try {
-            value = field.get(iself);
-        } catch (IllegalAccessException exc) {
+            value = a.getter != null ? (Object)a.getter.invokeExact(iself) : field.get(iself);
+        } catch (Throwable exc) {
             throw Py.JavaError(exc);
         }
 
         return Py.java2py(value);
     }
 
+    private Accessors getAccessors() {
+        Accessors a = accessors;
+        if (a == null || a.field != field) {
+            // field may be replaced (by PyJavaType when making bean properties)
+            accessors = a = new Accessors(field);
+        }
+        return a;
+    }
+
     @Override
     public boolean _doset(PyObject self, PyObject value) {
         Object iself = null;
@@ -56,14 +72,63 @@ public class PyReflectedField extends PyObject {
         }
         Object fvalue = Py.tojava(value, field.getType());
 
+        Accessors a = getAccessors();
         try {
-            field.set(iself, fvalue);
-        } catch (IllegalAccessException exc) {
+            if (a.setter != null) {
+                a.setter.invokeExact(iself, fvalue);
+            } else {
+                field.set(iself, fvalue);
+            }
+        } catch (Throwable exc) {
             throw Py.JavaError(exc);
         }
         return true;
     }
 
+    /**
+     * Method handles that read and write a field, taking the instance (ignored if the field is
+     * static) as an {@code Object}, and the value as an {@code Object} boxed as by reflection.
+     * Where a handle cannot be made (it is not accessible, or the field is final), it is
+     * {@code null} and reflection is used, to report the problem in the usual way.
+     */
+    private static final class Accessors {
+
+        private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType SETTER =
+                MethodType.methodType(void.class, Object.class, Object.class);
+
+        final Field field;
+        final MethodHandle getter;
+        final MethodHandle setter;
+
+        Accessors(Field field) {
+            this.field = field;
+            boolean isStatic = Modifier.isStatic(field.getModifiers());
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodHandle g, s;
+            try {
+                g = lookup.unreflectGetter(field);
+                if (isStatic) {
+                    g = MethodHandles.dropArguments(g, 0, Object.class);
+                }
+                g = g.asType(GETTER);
+            } catch (IllegalAccessException e) {
+                g = null;
+            }
+            try {
+                s = lookup.unreflectSetter(field);
+                if (isStatic) {
+                    s = MethodHandles.dropArguments(s, 0, Object.class);
+                }
+                s = s.asType(SETTER);
+            } catch (IllegalAccessException e) {
+                s = null;
+            }
+            getter = g;
+            setter = s;
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("<reflected field %s at %s>", field, Py.idstr(this));
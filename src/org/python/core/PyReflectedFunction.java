@@ -5,7 +5,9 @@ package org.python.core;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.python.util.Generic;
 
@@ -24,6 +26,16 @@ public class PyReflectedFunction extends PyObject implements Traverseproc {
     /** Whether __call__ should act as if this is called as a static method. */
     private boolean calledStatically;
 
+    /** Largest number of argument signatures for which {@link #dispatch} remembers the form. */
+    private static final int DISPATCH_LIMIT = 64;
+
+    /**
+     * The form chosen for each signature of the arguments to a call, when the choice depended only
+     * on their classes. Made when first needed, and shared with copies of this function having the
+     * same forms.
+     */
+    private ConcurrentHashMap<Signature, ReflectedArgs> dispatch;
+
     protected PyReflectedFunction(String name) {
         __name__ = name;
     }
@@ -72,6 +84,7 @@ public class PyReflectedFunction extends PyObject implements Traverseproc {
         func.nargs = nargs;
         func.argslist = new ReflectedArgs[nargs];
         System.arraycopy(argslist, 0, func.argslist, 0, nargs);
+        func.dispatch = getDispatch();
         return func;
     }
 
@@ -156,15 +169,30 @@ public class PyReflectedFunction extends PyObject implements Traverseproc {
         }
         argslist[i] = args;
         nargs = nn;
+        // Copies keep the old forms, and the choices made among them
+        dispatch = null;
+    }
+
+    private ConcurrentHashMap<Signature, ReflectedArgs> getDispatch() {
+        ConcurrentHashMap<Signature, ReflectedArgs> d = dispatch;
+        if (d == null) {
+            dispatch = d = new ConcurrentHashMap<Signature, ReflectedArgs>();
+        }
+        return d;
     }
 
     @Override
     public PyObject __call__(PyObject self, PyObject[] args, String[] keywords) {
         ReflectedCallData callData = new ReflectedCallData();
         ReflectedArgs match = null;
-        for (int i = 0; i < nargs && match == null; i++) {
-            if (argslist[i].matches(self, args, keywords, callData)) {
-                match = argslist[i];
+        if (nargs > 1 && keywords.length == 0) {
+            match = chooseForm(self, args, callData);
+        } else {
+            // Nothing to choose, or too unusual a call to remember
+            for (int i = 0; i < nargs && match == null; i++) {
+                if (argslist[i].matches(self, args, keywords, callData)) {
+                    match = argslist[i];
+                }
             }
         }
         if (match == null) {
@@ -187,13 +215,49 @@ public class PyReflectedFunction extends PyObject implements Traverseproc {
         }
         Object o;
         try {
-            o = m.invoke(cself, callData.getArgsArray());
+            if (m == match.method) {
+                o = match.invoke(cself, callData.getArgsArray());
+            } else {
+                o = m.invoke(cself, callData.getArgsArray());
+            }
         } catch (Throwable t) {
             throw Py.JavaError(t);
         }
         return Py.java2py(o);
     }
 
+    /**
+     * Choose the form to call for these arguments, converting them into {@code callData}. The form
+     * chosen last time for arguments of the same classes is tried first, if there was one. When
+     * the choice turns out to depend only on the classes of the arguments, it is remembered.
+     *
+     * @return the form chosen or {@code null} if none matches
+     */
+    private ReflectedArgs chooseForm(PyObject self, PyObject[] args, ReflectedCallData callData) {
+        Signature signature = new Signature(self, args);
+        ConcurrentHashMap<Signature, ReflectedArgs> d = getDispatch();
+        ReflectedArgs form = d.get(signature);
+        if (form != null) {
+            // Conversion may still fail for these values, then we must look at every form
+            ReflectedCallData formData = new ReflectedCallData();
+            if (form.matches(self, args, Py.NoKeywords, formData)) {
+                callData.self = formData.self;
+                callData.args = formData.args;
+                callData.length = formData.length;
+                return form;
+            }
+        }
+        for (int i = 0; i < nargs; i++) {
+            if (argslist[i].matches(self, args, Py.NoKeywords, callData)) {
+                if (!callData.rejectedByValue && d.size() < DISPATCH_LIMIT) {
+                    d.put(signature, argslist[i]);
+                }
+                return argslist[i];
+            }
+        }
+        return null;
+    }
+
     @Override
     public PyObject __call__(PyObject[] args, String[] keywords) {
         PyObject self;
@@ -341,6 +405,42 @@ public class PyReflectedFunction extends PyObject implements Traverseproc {
     }
 
 
+    /**
+     * The Java classes of the receiver (if any) and arguments of a call, or of the Java objects they
+     * wrap. These determine the form of a method that is called, unless a form was rejected
+     * because of the value of an argument.
+     */
+    private static final class Signature {
+
+        private final Class<?>[] classes;
+        private final int hash;
+
+        Signature(PyObject self, PyObject[] args) {
+            classes = new Class<?>[args.length + 1];
+            classes[0] = self == null ? null : classOf(self);
+            for (int i = 0; i < args.length; i++) {
+                classes[i + 1] = classOf(args[i]);
+            }
+            hash = Arrays.hashCode(classes);
+        }
+
+        private static Class<?> classOf(PyObject obj) {
+            Object proxy = JyAttribute.getAttr(obj, JyAttribute.JAVA_PROXY_ATTR);
+            return proxy != null ? proxy.getClass() : obj.getClass();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Signature
+                    && Arrays.equals(classes, ((Signature)other).classes);
+        }
+    }
+
     /* Traverseproc implementation */
     @Override
     public int traverse(Visitproc visit, Object arg) {
@@ -8,7 +8,6 @@ import org.python.expose.ExposedMethod;
 import org.python.expose.ExposedNew;
 import org.python.expose.ExposedType;
 import org.python.expose.MethodType;
-import org.python.util.Generic;
 
 @ExposedType(name = "set", base = PyObject.class, doc = BuiltinDocs.set_doc)
 public class PySet extends BaseSet {
@@ -24,15 +23,15 @@ public class PySet extends BaseSet {
     }
 
     public PySet(PyType type) {
-        super(type, Generic.<PyObject>concurrentSet());
+        super(type, new CompactSet<PyObject>());
     }
 
     public PySet(PyObject data) {
-        super(TYPE, _update(Generic.<PyObject>concurrentSet(), data));
+        super(TYPE, _update(new CompactSet<PyObject>(), data));
     }
 
     public PySet(PyObject[] data) {
-        super(TYPE, _update(Generic.<PyObject>concurrentSet(), data));
+        super(TYPE, _update(new CompactSet<PyObject>(), data));
     }
 
     public PySet(Set backing_set, PyObject data) {
@@ -216,7 +215,7 @@ public class PySet extends BaseSet {
         if (!(other instanceof BaseSet)) {
             return null;
         }
-        _set = ((BaseSet)__and__(other))._set;
+        _set.retainAll(((BaseSet)other)._set);
         return this;
     }
 
@@ -273,8 +272,11 @@ public class PySet extends BaseSet {
 
     @ExposedMethod(doc = BuiltinDocs.set_pop_doc)
     final synchronized PyObject set_pop() {
-        Iterator<PyObject> iterator = _set.iterator();
         try {
+            if (_set instanceof CompactSet) {
+                return ((CompactSet<PyObject>)_set).pop();
+            }
+            Iterator<PyObject> iterator = _set.iterator();
             Object first = iterator.next();
             _set.remove(first);
             return (PyObject)first;
@@ -305,12 +307,8 @@ public class PySet extends BaseSet {
         }
         
     	for (PyObject other: args) {
-    		if (other instanceof BaseSet) {
-    			set___iand__(other);
-    		} else {
-    			BaseSet set = (BaseSet)baseset_intersection(other);
-    			_set = set._set;
-    		}
+    		BaseSet bs = other instanceof BaseSet ? (BaseSet)other : new PySet(other);
+    		_set.retainAll(bs._set);
     	}
     }
 
@@ -344,6 +342,7 @@ public class PySet extends BaseSet {
     	for (PyObject other: args) {
     		if (other instanceof BaseSet) {
                 set___isub__(other);
+                continue;
     		}
     		for (PyObject o : other.asIterable()) {
     			if (__contains__(o)) {
@@ -12,6 +12,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.python.core.buffer.BaseBuffer;
+import org.python.core.buffer.SimpleBuffer;
 import org.python.core.buffer.SimpleStringBuffer;
 import org.python.core.stringlib.FieldNameIterator;
 import org.python.core.stringlib.FloatFormatter;
@@ -32,13 +33,28 @@ import org.python.expose.*;
 public class PyString extends PyBaseString implements BufferProtocol {
 
     public static final PyType TYPE = PyType.fromClass(PyString.class);
+    /**
+     * The characters of the string, or <code>null</code> until it is first needed if the string
+     * was made from {@link #bytes}. Use {@link #getString()} to read it.
+     */
     protected String string; // cannot make final because of Python intern support
+    /**
+     * The bytes of a string made from a <code>byte[]</code> (see {@link #fromBytes(byte[])}), or
+     * <code>null</code>. They are kept at one byte each whether or not the JVM has compact strings,
+     * and are exported without copying through {@link #getBuffer(int)}.
+     */
+    private final byte[] bytes;
     protected transient boolean interned = false;
     /** Supports the buffer API, see {@link #getBuffer(int)}. */
     private Reference<BaseBuffer> export;
 
     public String getString() {
-        return string;
+        String s = string;
+        if (s == null) {
+            // Made from bytes: create the String (concurrent callers may each create an equal one)
+            string = s = StringUtil.fromBytes(bytes);
+        }
+        return s;
     }
 
     // for PyJavaClass.init()
@@ -54,6 +70,7 @@ public class PyString extends PyBaseString implements BufferProtocol {
             throw new IllegalArgumentException("Cannot create PyString with non-byte value");
         }
         this.string = string;
+        this.bytes = null;
     }
 
     /**
@@ -95,11 +112,24 @@ public class PyString extends PyBaseString implements BufferProtocol {
         super(TYPE);
         if (isBytes || isBytes(string)) {
             this.string = string;
+            this.bytes = null;
         } else {
             throw new IllegalArgumentException("Cannot create PyString with non-byte value");
         }
     }
 
+    /**
+     * Construct a <code>PyString</code> holding the given bytes, without creating a Java
+     * <code>String</code> until one is needed.
+     *
+     * @param bytes of the string (not null), which will not be copied
+     */
+    private PyString(byte[] bytes) {
+        super(TYPE);
+        this.string = null;
+        this.bytes = bytes;
+    }
+
     /**
      * Determine whether a string consists entirely of characters in the range 0 to 255. Only such
      * characters are allowed in the <code>PyString</code> (<code>str</code>) type, when it is not a
@@ -134,6 +164,22 @@ public class PyString extends PyBaseString implements BufferProtocol {
         }
     }
 
+    /**
+     * Creates a PyString of the given bytes, which it holds as they are, one byte each, until a
+     * Java <code>String</code> is needed. Indexing, slicing, <code>len()</code> and the buffer API
+     * work on the bytes themselves, the buffer without copying them. This suits data read from
+     * files and sockets. The caller must not change the array afterwards.
+     *
+     * @param bytes of the string (not null)
+     * @return a <code>str</code> of those bytes
+     */
+    public static PyString fromBytes(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Cannot create PyString from null");
+        }
+        return new PyString(bytes);
+    }
+
     /**
      * Creates a PyString from an already interned String. Just means it won't be reinterned if used
      * in a place that requires interned Strings.
@@ -210,7 +256,12 @@ public class PyString extends PyBaseString implements BufferProtocol {
              * No existing export we can re-use. Return a buffer, but specialised to defer
              * construction of the buf object, and cache a soft reference to it.
              */
-            pybuf = new SimpleStringBuffer(flags, this, getString());
+            if (bytes != null) {
+                // The bytes are never changed, so may be exported as they are
+                pybuf = new SimpleBuffer(flags, this, bytes);
+            } else {
+                pybuf = new SimpleStringBuffer(flags, this, getString());
+            }
             export = new SoftReference<BaseBuffer>(pybuf);
         }
         return pybuf;
@@ -273,7 +324,7 @@ public class PyString extends PyBaseString implements BufferProtocol {
 
     @ExposedMethod(doc = BuiltinDocs.str___len___doc)
     final int str___len__() {
-        return getString().length();
+        return length();
     }
 
     @Override
@@ -805,11 +856,11 @@ public class PyString extends PyBaseString implements BufferProtocol {
     @Override
     protected PyObject pyget(int i) {
         // Method is overridden in PyUnicode, so definitely a PyString
-        return Py.makeCharacter(string.charAt(i));
+        return Py.makeCharacter(charAt(i));
     }
 
     public int getInt(int i) {
-        return string.charAt(i);
+        return charAt(i);
     }
 
     @Override
@@ -824,7 +875,7 @@ public class PyString extends PyBaseString implements BufferProtocol {
             char new_chars[] = new char[n];
             int j = 0;
             for (int i = start; j < n; i += step) {
-                new_chars[j++] = getString().charAt(i);
+                new_chars[j++] = charAt(i);
             }
 
             return createInstance(new String(new_chars), true);
@@ -2194,6 +2245,9 @@ public class PyString extends PyBaseString implements BufferProtocol {
      */
     protected PyString fromSubstring(int begin, int end) {
         // Method is overridden in PyUnicode, so definitely a PyString
+        if (bytes != null) {
+            return new PyString(Arrays.copyOfRange(bytes, begin, end));
+        }
         return new PyString(getString().substring(begin, end), true);
     }
 
@@ -4332,17 +4386,20 @@ public class PyString extends PyBaseString implements BufferProtocol {
 
     @Override
     public char charAt(int index) {
+        if (bytes != null) {
+            return (char)(bytes[index] & 0xff);
+        }
         return string.charAt(index);
     }
 
     @Override
     public int length() {
-        return string.length();
+        return bytes != null ? bytes.length : string.length();
     }
 
     @Override
     public CharSequence subSequence(int start, int end) {
-        return string.subSequence(start, end);
+        return getString().subSequence(start, end);
     }
 
     /**
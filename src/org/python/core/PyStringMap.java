@@ -10,7 +10,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.AbstractSet;
 import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.python.core.AbstractDict.ValuesIter;
@@ -22,7 +21,6 @@ import org.python.expose.ExposedMethod;
 import org.python.expose.ExposedNew;
 import org.python.expose.ExposedType;
 import org.python.expose.MethodType;
-import org.python.util.Generic;
 
 /**
  * Special fast dict implementation for __dict__ instances. Allows interned String keys in addition
@@ -39,23 +37,61 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
 
     private final ConcurrentMap<Object, PyObject> table;
 
+    /**
+     * Incremented after every modification of {@link #table}, so that a cache of a lookup (see
+     * {@link GlobalCache}) remains valid while the version is unchanged. It is only written
+     * holding the lock of {@link #table}, under which the table makes its own changes, so the
+     * increment need not be atomic.
+     */
+    private volatile long version;
+
+    /**
+     * Return the underlying map. Note that changes made directly to the returned map are not
+     * reflected in {@link #getVersion()}: call {@link #modified()} after making them.
+     */
     public ConcurrentMap<Object, PyObject> getMap() {
         return table;
     }
 
+    /**
+     * The modification count of this map. A lookup made when the version was {@code v} is still
+     * valid if the version is still {@code v}.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Record a modification of this map made through {@link #getMap()}, invalidating cached
+     * lookups.
+     */
+    public void modified() {
+        synchronized (table) {
+            version++;
+        }
+    }
+
     public PyStringMap() {
-        this(4);
+        this(0);
     }
 
     public PyStringMap(int capacity) {
         super(getLazyType());
-        table = new ConcurrentHashMap<Object, PyObject>(capacity, Generic.CHM_LOAD_FACTOR,
-                                                        Generic.CHM_CONCURRENCY_LEVEL);
+        table = new CompactDictMap<Object, PyObject>(capacity);
+    }
+
+    /**
+     * Create an empty map for the {@code __dict__} of an instance, that shares its keys with the
+     * other instances of the class for as long as it has the same attributes (see
+     * {@link CompactDictMap.SharedKeys}).
+     */
+    public PyStringMap(CompactDictMap.SharedKeys keys) {
+        super(getLazyType());
+        table = new CompactDictMap<Object, PyObject>(keys);
     }
 
     public PyStringMap(Map<Object, PyObject> map) {
-        this(Math.max((int) (map.size() / Generic.CHM_LOAD_FACTOR) + 1,
-                      Generic.CHM_INITIAL_CAPACITY));
+        this(map.size());
         table.putAll(map);
     }
 
@@ -169,10 +205,13 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
 
     @Override
     public void __setitem__(String key, PyObject value) {
-        if (value == null) {
-            table.remove(key);
-        } else {
-            table.put(key, value);
+        synchronized (table) {
+            if (value == null) {
+                table.remove(key);
+            } else {
+                table.put(key, value);
+            }
+            version++;
         }
     }
 
@@ -183,21 +222,29 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
 
     @ExposedMethod(doc = BuiltinDocs.dict___setitem___doc)
     final void stringmap___setitem__(PyObject key, PyObject value) {
-        if (value == null) {
-            table.remove(pyToKey(key));
-        } else if (key instanceof PyString) {
+        if (key instanceof PyString) {
             __setitem__(((PyString)key).internedString(), value);
         } else {
-            table.put(key, value);
+            synchronized (table) {
+                if (value == null) {
+                    table.remove(pyToKey(key));
+                } else {
+                    table.put(key, value);
+                }
+                version++;
+            }
         }
     }
 
     @Override
     public void __delitem__(String key) {
-        Object ret = table.remove(key);
-        if (ret == null) {
-            throw Py.KeyError(key);
+        synchronized (table) {
+            if (table.remove(key) != null) {
+                version++;
+                return;
+            }
         }
+        throw Py.KeyError(key);
     }
 
     @Override
@@ -210,10 +257,13 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
         if (key instanceof PyString) {
             __delitem__(((PyString)key).internedString());
         } else {
-            Object ret = table.remove(key);
-            if (ret == null) {
-                throw Py.KeyError(key);
+            synchronized (table) {
+                if (table.remove(key) != null) {
+                    version++;
+                    return;
+                }
             }
+            throw Py.KeyError(key);
         }
     }
 
@@ -226,7 +276,10 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
 
     @ExposedMethod(doc = BuiltinDocs.dict_clear_doc)
     final void stringmap_clear() {
-        table.clear();
+        synchronized (table) {
+            table.clear();
+            version++;
+        }
     }
 
     @Override
@@ -401,7 +454,10 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
      */
     private void merge(PyObject other) {
         if (other instanceof PyStringMap) {
-            table.putAll(((PyStringMap)other).table);
+            synchronized (table) {
+                table.putAll(((PyStringMap)other).table);
+                version++;
+            }
         } else if (other instanceof PyDictionary) {
             mergeFromKeys(other, ((PyDictionary)other).keys());
         } else {
@@ -429,6 +485,7 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
                             table.put(ent.getKey(), ent.getValue());
                         }
                     }
+                    version++;
                 } else if (other instanceof PyDictionary) {
                     mergeFromKeys(other, ((PyDictionary)other).keys(), override);
                 } else {
@@ -564,8 +621,14 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
     @ExposedMethod(defaults = "Py.None", doc = BuiltinDocs.dict_setdefault_doc)
     final PyObject stringmap_setdefault(PyObject key, PyObject failobj) {
         Object internedKey = (key instanceof PyString) ? ((PyString)key).internedString() : key;
-        PyObject oldValue = table.putIfAbsent(internedKey, failobj);
-        return oldValue == null ? failobj : oldValue;
+        synchronized (table) {
+            PyObject oldValue = table.putIfAbsent(internedKey, failobj);
+            if (oldValue == null) {
+                version++;
+                return failobj;
+            }
+            return oldValue;
+        }
     }
 
     /**
@@ -577,13 +640,16 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
 
     @ExposedMethod(doc = BuiltinDocs.dict_popitem_doc)
     final PyObject stringmap_popitem() {
-        Iterator<Entry<Object, PyObject>> it = table.entrySet().iterator();
-        if (!it.hasNext()) {
-            throw Py.KeyError("popitem(): dictionary is empty");
+        synchronized (table) {
+            Iterator<Entry<Object, PyObject>> it = table.entrySet().iterator();
+            if (it.hasNext()) {
+                PyTuple tuple = itemTuple(it.next());
+                it.remove();
+                version++;
+                return tuple;
+            }
         }
-        PyTuple tuple = itemTuple(it.next());
-        it.remove();
-        return tuple;
+        throw Py.KeyError("popitem(): dictionary is empty");
     }
 
     /* not correct - we need to determine size and remove at the same time! */
@@ -600,15 +666,17 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
 
     @ExposedMethod(defaults = "null", doc = BuiltinDocs.dict_pop_doc)
     final PyObject stringmap_pop(PyObject key, PyObject failobj) {
-        PyObject value = table.remove(pyToKey(key));
-        if (value == null) {
-            if (failobj == null) {
-                throw Py.KeyError(key);
-            } else {
-                return failobj;
+        synchronized (table) {
+            PyObject value = table.remove(pyToKey(key));
+            if (value != null) {
+                version++;
+                return value;
             }
         }
-        return value;
+        if (failobj == null) {
+            throw Py.KeyError(key);
+        }
+        return failobj;
     }
 
     /**
@@ -782,10 +850,12 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
 
     private static class PyStringMapKeySetWrapper extends AbstractSet<PyObject>
     {
+        PyStringMap map;
         Set<Object> backend;
 
-        PyStringMapKeySetWrapper(Set<Object> backend) {
-            this.backend = backend;
+        PyStringMapKeySetWrapper(PyStringMap map) {
+            this.map = map;
+            this.backend = map.table.keySet();
         }
 
         class PyStringMapKeySetIter implements Iterator<PyObject> {
@@ -805,6 +875,7 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
 
             public void remove() {
                 itr.remove();
+                map.modified();
             }
         }
 
@@ -820,7 +891,7 @@ public class PyStringMap extends AbstractDict implements Traverseproc {
     }
 
     public Set<PyObject> pyKeySet() {
-        return new PyStringMapKeySetWrapper(table.keySet());
+        return new PyStringMapKeySetWrapper(this);
     }
 
     /** @see java.util.Map#entrySet() */
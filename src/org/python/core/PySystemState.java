@@ -1645,6 +1645,25 @@ public class PySystemState extends PyObject
         return ThreadStateMapping._current_frames();
     }
 
+    /**
+     * Jython-specific: report on the caches of the runtime, as a dict from the name of each cache
+     * to a tuple of its size settings followed by its hit and miss counts: {@code (low, high, hits,
+     * misses)} for the caches of boxed values, {@code (size, hits, misses)} for the per-type
+     * method cache, {@code (size, bytes, hits, misses, generated)} for the cache of compiled
+     * scripts and {@code (hits, misses)} for the directory of compiled scripts. Hits and misses
+     * are only counted while {@link Options#cacheStats} is set.
+     */
+    public static PyDictionary _cache_stats() {
+        PyDictionary stats = new PyDictionary();
+        stats.__setitem__("int", Py.integerCache.stats());
+        stats.__setitem__("float", Py.floatCache.stats());
+        stats.__setitem__("unicode", Py.unicodeCache.stats());
+        stats.__setitem__("method", PyType.MethodCache.stats());
+        stats.__setitem__("compile", CodeCache.stats());
+        stats.__setitem__("compiledir", CodeCache.diskStats());
+        return stats;
+    }
+
     public void registerCloser(Callable<Void> resourceCloser) {
         closer.registerCloser(resourceCloser);
     }
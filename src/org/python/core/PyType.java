@@ -14,7 +14,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.python.antlr.ast.cmpopType;
 import org.python.expose.ExposeAsSuperclass;
@@ -142,11 +143,14 @@ public class PyType extends PyObject implements Serializable, Traverseproc {
     /** Whether finalization is required for this type's instances (implements __del__). */
     protected boolean needs_finalizer;
 
+    /** Keys shared by the {@code __dict__} of instances (see {@link #instDict()}). */
+    private transient CompactDictMap.SharedKeys instanceKeys;
+
     /** Whether this type's __getattribute__ is object.__getattribute__. */
     private volatile boolean usesObjectGetattribute;
 
-    /** MethodCacheEntry version tag. */
-    private volatile Object versionTag = new Object();
+    /** MethodCache version tag, and the table of lookups cached for this version. */
+    private volatile MethodCache.Table versionTag = new MethodCache.Table();
 
     /** The number of __slots__ defined by this type + bases. */
     private int numSlots;
@@ -1591,7 +1595,14 @@ public class PyType extends PyObject implements Serializable, Traverseproc {
 
     public PyObject instDict() {
         if (needs_userdict) {
-            return new PyStringMap();
+            CompactDictMap.SharedKeys keys = instanceKeys;
+            if (keys == null) {
+                instanceKeys = keys = new CompactDictMap.SharedKeys();
+            } else {
+                // Keys that filled up are replaced: give new instances the current ones
+                instanceKeys = keys = keys.latest();
+            }
+            return new PyStringMap(keys);
         }
         return null;
     }
@@ -2001,7 +2012,7 @@ public class PyType extends PyObject implements Serializable, Traverseproc {
      * @return found object or null
      */
     public PyObject lookup_where(String name, PyObject[] where) {
-        return MethodCache.methodCache.lookup_where(this, name, where);
+        return MethodCache.lookup_where(this, name, where);
     }
 
     /**
@@ -2388,7 +2399,7 @@ public class PyType extends PyObject implements Serializable, Traverseproc {
 
             @Override
             public boolean onType(PyType type) {
-                type.versionTag = new Object();
+                type.versionTag = new MethodCache.Table();
                 return false;
             }
         });
@@ -2518,6 +2529,15 @@ public class PyType extends PyObject implements Serializable, Traverseproc {
         this.usesObjectGetattribute = usesObjectGetattribute;
     }
 
+    /**
+     * The current version tag of this type. A new tag is assigned whenever the type (or one of its
+     * bases) is modified in a way that affects attribute lookup, so a cache entry recorded against
+     * a tag is valid for as long as the tag is unchanged.
+     */
+    Object getVersionTag() {
+        return versionTag;
+    }
+
     @Override
     public Object __tojava__(Class<?> c) {
         if (underlying_class != null
@@ -2765,38 +2785,30 @@ public class PyType extends PyObject implements Serializable, Traverseproc {
     }
 
     /**
-     * A thread safe, non-blocking version of Armin Rigo's mro cache.
+     * A thread safe, non-blocking version of Armin Rigo's mro cache. Each type has its own table of
+     * the results of MRO lookups, which is also its version tag: invalidating the type replaces the
+     * table, so entries need no version of their own and may hold strong references (they die with
+     * the type or its next version). A table holds at most {@link Options#methodCacheSize} names.
      */
     static class MethodCache {
 
-        /** Global mro cache. See {@link PyType#lookup_where(String, PyObject[])}. */
-        private static final MethodCache methodCache = new MethodCache();
+        private static final LongAdder hits = new LongAdder();
+        private static final LongAdder misses = new LongAdder();
 
-        /** The fixed size cache. */
-        private final AtomicReferenceArray<MethodCacheEntry> table;
-
-        /** Size of the cache exponent (2 ** SIZE_EXP). */
-        private static final int SIZE_EXP = 12;
-
-        public MethodCache() {
-            table = new AtomicReferenceArray<MethodCacheEntry>(1 << SIZE_EXP);
-            clear();
-        }
-
-        public void clear() {
-            int length = table.length();
-            for (int i = 0; i < length; i++) {
-                table.set(i, MethodCacheEntry.EMPTY);
-            }
-        }
+        private MethodCache() {}
 
-        public PyObject lookup_where(PyType type, String name, PyObject where[]) {
-            Object versionTag = type.versionTag;
-            int index = indexFor(versionTag, name);
-            MethodCacheEntry entry = table.get(index);
+        static PyObject lookup_where(PyType type, String name, PyObject where[]) {
+            // Use the table from before the lookup: if the type changes meanwhile it is discarded
+            Table table = type.versionTag;
+            MethodCacheEntry entry = table.get(name);
 
-            if (entry.isValid(versionTag, name)) {
+            if (entry != null) {
+                if (Options.cacheStats) {
+                    hits.increment();
+                }
                 return entry.get(where);
+            } else if (Options.cacheStats) {
+                misses.increment();
             }
 
             // Always cache where
@@ -2805,24 +2817,16 @@ public class PyType extends PyObject implements Serializable, Traverseproc {
             }
             PyObject value = type.lookup_where_mro(name, where);
             if (isCacheableName(name)) {
-                /*
-                 * CAS isn't totally necessary here but is possibly more correct. Cache by the
-                 * original version before the lookup, if it's changed since then we'll cache a bad
-                 * entry. Bad entries and CAS failures aren't a concern as subsequent lookups will
-                 * sort themselves out.
-                 */
-                table.compareAndSet(index, entry,
-                        new MethodCacheEntry(versionTag, name, where[0], value));
+                table.add(name, new MethodCacheEntry(where[0], value));
             }
 
             return value;
         }
 
-        /**
-         * Return the table index for type version/name.
-         */
-        private static int indexFor(Object version, String name) {
-            return (version.hashCode() ^ name.hashCode()) & ((1 << SIZE_EXP) - 1);
+        /** The size and counts as a tuple {@code (size, hits, misses)}. */
+        static PyTuple stats() {
+            return new PyTuple(Py.newInteger(Options.methodCacheSize), Py.newLong(hits.sum()),
+                    Py.newLong(misses.sum()));
         }
 
         /**
@@ -2835,39 +2839,42 @@ public class PyType extends PyObject implements Serializable, Traverseproc {
             return name.length() <= 100;
         }
 
-        static class MethodCacheEntry extends WeakReference<PyObject> {
+        /** The cached lookups for one version of a type. */
+        static class Table {
 
-            /** Version of the entry, a PyType.versionTag. */
-            private final Object version;
+            private final ConcurrentHashMap<String, MethodCacheEntry> entries =
+                    new ConcurrentHashMap<String, MethodCacheEntry>();
 
-            /** The name of the attribute. */
-            private final String name;
+            MethodCacheEntry get(String name) {
+                return entries.get(name);
+            }
 
-            /** Where in the mro the value was found. */
-            private final WeakReference<PyObject> where;
+            void add(String name, MethodCacheEntry entry) {
+                // A full table just stops growing: its type is probably probed for many names
+                if (entries.size() < Options.methodCacheSize) {
+                    entries.putIfAbsent(name, entry);
+                }
+            }
+        }
 
-            static final MethodCacheEntry EMPTY = new MethodCacheEntry();
+        static class MethodCacheEntry {
 
-            private MethodCacheEntry() {
-                this(null, null, null, null);
-            }
+            /** Where in the mro the value was found. */
+            private final PyObject where;
 
-            public MethodCacheEntry(Object version, String name, PyObject where, PyObject value) {
-                super(value);
-                this.version = version;
-                this.name = name;
-                this.where = new WeakReference<PyObject>(where);
-            }
+            /** The value found, or {@code null} if there is none. */
+            private final PyObject value;
 
-            public boolean isValid(Object version, String name) {
-                return this.version == version && this.name == name;
+            MethodCacheEntry(PyObject where, PyObject value) {
+                this.where = where;
+                this.value = value;
             }
 
             public PyObject get(PyObject[] where) {
                 if (where != null) {
-                    where[0] = this.where.get();
+                    where[0] = this.where;
                 }
-                return get();
+                return value;
             }
         }
     }
@@ -731,6 +731,11 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
             stop = start;
         }
 
+        if (step == 1) {
+            // The characters are contiguous in the UTF-16 too
+            return createInstance(getString().substring(translator.utf16Index(start),
+                    translator.utf16Index(stop)));
+        }
         StringBuilder buffer = new StringBuilder(sliceLength(start, stop, step));
         for (Iterator<Integer> iter = newSubsequenceIterator(start, stop, step); iter.hasNext();) {
             buffer.appendCodePoint(iter.next());
@@ -845,8 +850,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
 
     @Override
     protected PyObject pyget(int i) {
-        int codepoint = getString().codePointAt(translator.utf16Index(i));
-        return Py.makeCharacter(codepoint, true);
+        return Py.makeCharacter(getInt(i), true);
     }
 
     @Override
@@ -1051,7 +1055,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         if (o instanceof PyUnicode) {
             return ((PyUnicode) o).getString();
         } else if (o instanceof PyString) {
-            String s = ((PyString)o).string;
+            String s = ((PyString)o).getString();
             boolean is_ascii = true;
             for (int i = 0; i < s.length(); i++)
                 if (s.charAt(i) >= 0x80) {
@@ -1838,39 +1842,22 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     final int unicode_index(PyObject subObj, PyObject start, PyObject end) {
         final String sub = coerceToString(subObj);
         // Now use the mechanics of the PyString on the UTF-16.
-        return checkIndex(_find(sub, start, end));
+        return translator.codePointIndex(checkIndex(_find(sub, start, end)));
     }
 
     @ExposedMethod(defaults = {"null", "null"}, doc = BuiltinDocs.unicode_index_doc)
     final int unicode_rindex(PyObject subObj, PyObject start, PyObject end) {
         final String sub = coerceToString(subObj);
         // Now use the mechanics of the PyString on the UTF-16.
-        return checkIndex(_rfind(sub, start, end));
+        return translator.codePointIndex(checkIndex(_rfind(sub, start, end)));
     }
 
     @ExposedMethod(defaults = {"null", "null"}, doc = BuiltinDocs.unicode_count_doc)
     final int unicode_count(PyObject subObj, PyObject start, PyObject end) {
         final PyUnicode sub = coerceToUnicode(subObj);
-        if (isBasicPlane()) {
-            return _count(sub.getString(), start, end);
-        }
-        int[] indices = super.translateIndices(start, end); // do not convert to utf-16 indices.
-        int count = 0;
-        for (Iterator<Integer> mainIter =
-                newSubsequenceIterator(indices[0], indices[1], 1); mainIter.hasNext();) {
-            int matched = sub.getCodePointCount();
-            for (Iterator<Integer> subIter = sub.newSubsequenceIterator(); mainIter.hasNext()
-                    && subIter.hasNext();) {
-                if (mainIter.next() != subIter.next()) {
-                    break;
-                }
-                matched--;
-            }
-            if (matched == 0) {
-                count++;
-            }
-        }
-        return count;
+        // Matches in the UTF-16 are matches of whole characters, as neither string has lone
+        // surrogates.
+        return _count(sub.getString(), start, end);
     }
 
     @ExposedMethod(defaults = {"null", "null"}, doc = BuiltinDocs.unicode_find_doc)
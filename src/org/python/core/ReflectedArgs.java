@@ -3,7 +3,14 @@
 // Licensed to PSF under a Contributor Agreement.
 package org.python.core;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /** Map the signature of a method to the {@code Method} itself, within the context of a given simple name. This is used in support of signature polymorphism in Java methods and constructors reflected into Python. **/
 public class ReflectedArgs {
@@ -28,6 +35,44 @@ public class ReflectedArgs {
 
     public static final int PyArgsKeywordsCall = 2;
 
+    /** Type of {@link #invoker}: {@code (Object self, Object[] args)Object}. */
+    private static final MethodType INVOKER_TYPE =
+            MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    /** Primitive types and their wrappers, to which a {@code long} converts only if in range. */
+    private static final Set<Class<?>> NUMERIC_CONVERSIONS = new HashSet<Class<?>>(Arrays.asList(
+            Boolean.TYPE, Byte.TYPE, Short.TYPE, Integer.TYPE, Long.TYPE, Float.TYPE, Double.TYPE,
+            Boolean.class, Byte.class, Short.class, Integer.class, Long.class, Float.class,
+            Double.class));
+
+    /**
+     * Classes whose {@code __tojava__} converts (or fails to) by the target class alone, apart from
+     * the cases {@link #noteRejection(PyObject, Class, ReflectedCallData)} tests for by value.
+     */
+    private static final Set<Class<?>> TYPE_CONVERSIONS = new HashSet<Class<?>>(Arrays.asList(
+            PyObject.class, PyInteger.class, PyLong.class, PyBoolean.class, PyFloat.class,
+            PyComplex.class, PyNone.class, PyString.class));
+
+    /** Whether {@code __tojava__} of objects of a class may decide by value, not by target. */
+    private static final ClassValue<Boolean> CONVERTS_BY_VALUE = new ClassValue<Boolean>() {
+
+        @Override
+        protected Boolean computeValue(Class<?> c) {
+            try {
+                Method tojava = c.getMethod("__tojava__", Class.class);
+                return !TYPE_CONVERSIONS.contains(tojava.getDeclaringClass());
+            } catch (NoSuchMethodException e) {
+                return true;
+            }
+        }
+    };
+
+    /** {@link #method} as a handle of type {@link #INVOKER_TYPE}, made on first use. */
+    private MethodHandle invoker;
+
+    /** Whether {@link #method} must be invoked by reflection, as no handle could be made. */
+    private boolean reflective;
+
     public ReflectedArgs(Member method, Class<?>[] args, Class<?> declaringClass, boolean isStatic) {
         this(method, args, declaringClass, isStatic, false);
     }
@@ -132,6 +177,7 @@ public class ReflectedArgs {
         if (self != null) {
             Object tmp = self.__tojava__(this.declaringClass);
             if (tmp == Py.NoConversion) {
+                noteRejection(self, this.declaringClass, callData);
                 return false;
             }
             callData.self = tmp;
@@ -151,12 +197,64 @@ public class ReflectedArgs {
                 if (i > callData.errArg) {
                     callData.errArg = i;
                 }
+                noteRejection(pyArg, targetClass, callData);
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Record in {@code callData} whether the failure to convert {@code pyArg} to
+     * {@code targetClass} might not happen for another object of the same class. That is so for
+     * conversions to {@code char} (which depend on length), to arrays (which depend on content),
+     * of a {@code long} to a number (which depends on range), of files to streams (which depend on
+     * the mode), for types themselves and objects of types defined in Python (which may define
+     * {@code __tojava__}), and for other objects whose own {@code __tojava__} may look at the
+     * value (as that of bound methods does).
+     */
+    private static void noteRejection(PyObject pyArg, Class<?> targetClass,
+            ReflectedCallData callData) {
+        if (targetClass == Character.TYPE || targetClass == Character.class
+                || targetClass.isArray()
+                || pyArg instanceof PyLong && NUMERIC_CONVERSIONS.contains(targetClass)
+                || pyArg instanceof PyFile || pyArg instanceof PyInstance
+                || pyArg instanceof PyType || !pyArg.getType().builtin
+                || CONVERTS_BY_VALUE.get(pyArg.getClass())) {
+            callData.rejectedByValue = true;
+        }
+    }
+
+    /**
+     * Invoke the method with the given receiver (ignored if the method is static) and arguments, as
+     * {@code Method.invoke} would, but through a method handle where one can be made. Exceptions
+     * thrown by the method may or may not be wrapped in an {@code InvocationTargetException}.
+     */
+    Object invoke(Object self, Object[] javaArgs) throws Throwable {
+        if (reflective) {
+            return ((Method)method).invoke(self, javaArgs);
+        }
+        MethodHandle mh = invoker;
+        if (mh == null) {
+            try {
+                invoker = mh = makeInvoker((Method)method);
+            } catch (IllegalAccessException e) {
+                // Including caller-sensitive methods: reflection is right for those
+                reflective = true;
+                return ((Method)method).invoke(self, javaArgs);
+            }
+        }
+        return (Object)mh.invokeExact(self, javaArgs);
+    }
+
+    private MethodHandle makeInvoker(Method m) throws IllegalAccessException {
+        MethodHandle mh = MethodHandles.publicLookup().unreflect(m).asFixedArity();
+        if (isStatic) {
+            mh = MethodHandles.dropArguments(mh, 0, Object.class);
+        }
+        return mh.asSpreader(Object[].class, args.length).asType(INVOKER_TYPE);
+    }
+
     /* Boxes argument in the varargs position if not already boxed */
     private PyObject[] ensureBoxedVarargs(PyObject[] pyArgs, int n) {
         if (pyArgs.length == 0) {
@@ -21,6 +21,12 @@ class ReflectedCallData {
      */
     public int errArg = BAD_ARG_COUNT;
 
+    /**
+     * Set when a form was rejected because of the value of an argument, not just its class. The
+     * form chosen for this call may then be wrong for other arguments of the same classes.
+     */
+    public boolean rejectedByValue;
+
     public void setLength(int newLength) {
         this.length = newLength;
         if (newLength <= this.args.length) {
@@ -183,6 +183,31 @@ public class RegistryKey {
     public static final String PYTHON_OPTIONS_SHOW_PYTHON_PROXY_EXCEPTIONS =
             "python.options.showPythonProxyExceptions";
 
+    /**
+     * {@code python.options.invokedynamic} controls whether the compiler emits
+     * {@code invokedynamic} call sites, with inline caches, for attribute access and calls,
+     * instead of plain virtual calls on {@code PyObject}. Only code compiled while the option is
+     * set is affected. Boolean, false by default.
+     */
+    public static final String PYTHON_OPTIONS_INVOKEDYNAMIC = "python.options.invokedynamic";
+
+    /**
+     * {@code python.list.optimisticReads} makes lists created from then on read their length and
+     * items, and iterate, without locking: the reads are validated against a stamp that every
+     * change moves on, and only made again holding the lock if a change intervened. Changes are
+     * still made holding the lock. Boolean, false by default.
+     */
+    public static final String PYTHON_LIST_OPTIMISTIC_READS = "python.list.optimisticReads";
+
+    /**
+     * {@code python.list.strategies} makes lists created from then on hold their items in an
+     * {@code int[]} while all are {@code int}, or a {@code double[]} while all are {@code float},
+     * boxing them as they are read, and changing to an array of objects when an item of another
+     * type is added. An item read back is then equal to the one stored, but may not be the same
+     * object. Boolean, false by default.
+     */
+    public static final String PYTHON_LIST_STRATEGIES = "python.list.strategies";
+
     /**
      * {@code python.options.proxyDebugDirectory} is the directory where dynamically generated
      * classes are written. Nothing is ever read from here, it is only for debugging purposes.
@@ -246,14 +271,103 @@ public class RegistryKey {
     public static final String PYTHON_SECURITY_RESPECT_JAVA_ACCESSIBILITY =
             "python.security.respectJavaAccessibility";
 
+    /**
+     * {@code python.integer.cache.low} is the lowest {@code int} value of which the runtime keeps a
+     * shared instance, rather than creating a new object each time it occurs. Default -100.
+     */
+    public static final String PYTHON_INTEGER_CACHE_LOW = "python.integer.cache.low";
+
+    /**
+     * {@code python.integer.cache.high} is the highest {@code int} value of which the runtime keeps
+     * a shared instance. Default 899.
+     */
+    public static final String PYTHON_INTEGER_CACHE_HIGH = "python.integer.cache.high";
+
+    /**
+     * {@code python.float.cache.low} is the lowest integral {@code float} value of which the runtime
+     * keeps a shared instance. Default -16.
+     */
+    public static final String PYTHON_FLOAT_CACHE_LOW = "python.float.cache.low";
+
+    /**
+     * {@code python.float.cache.high} is the highest integral {@code float} value of which the
+     * runtime keeps a shared instance. Default 255.
+     */
+    public static final String PYTHON_FLOAT_CACHE_HIGH = "python.float.cache.high";
+
+    /**
+     * {@code python.unicode.cache.high} is the highest code point of which the runtime keeps a
+     * shared single-character {@code unicode} string. Default 255.
+     */
+    public static final String PYTHON_UNICODE_CACHE_HIGH = "python.unicode.cache.high";
+
+    /**
+     * {@code python.methodcache.size} is the largest number of attribute names for which each type
+     * caches the result of looking the name up along its MRO. Default 1024.
+     */
+    public static final String PYTHON_METHODCACHE_SIZE = "python.methodcache.size";
+
+    /**
+     * {@code python.compile.cache.size} is the largest number of compiled scripts that
+     * {@code PythonInterpreter} and the JSR 223 engine keep, shared by all interpreters, so that
+     * the same text is not compiled again. The cache holds the class loaders of the interpreters
+     * that compiled the scripts. Default 0, which disables the cache.
+     */
+    public static final String PYTHON_COMPILE_CACHE_SIZE = "python.compile.cache.size";
+
+    /**
+     * {@code python.compile.cache.bytes} is the largest total size, in bytes of class definition
+     * and two for each character of source text, of the compiled scripts kept by the cache that
+     * {@code python.compile.cache.size} limits.
+     * Default 16777216 (16MB).
+     */
+    public static final String PYTHON_COMPILE_CACHE_BYTES = "python.compile.cache.bytes";
+
+    /**
+     * {@code python.compile.cachedir} is a directory in which scripts compiled by
+     * {@code PythonInterpreter}, the JSR 223 engine, {@code execfile} or from the command line are
+     * kept between runs, named by a digest of their source, so that they need not be compiled
+     * again. Unlike {@code python.cachedir}, not set by default, and then not used.
+     */
+    public static final String PYTHON_COMPILE_CACHEDIR = "python.compile.cachedir";
+
+    /**
+     * {@code python.compile.cachedir.bytes} is the largest total size, in bytes, of the files in
+     * {@code python.compile.cachedir}. The least recently used are deleted when it is exceeded.
+     * Default 67108864 (64MB).
+     */
+    public static final String PYTHON_COMPILE_CACHEDIR_BYTES = "python.compile.cachedir.bytes";
+
+    /**
+     * {@code python.options.cacheStats} makes the caches of the runtime count their hits and
+     * misses, which {@code sys._cache_stats()} reports. Boolean, false by default.
+     */
+    public static final String PYTHON_OPTIONS_CACHE_STATS = "python.options.cacheStats";
+
     /**
      * {@code python.sre.cachespec} is the specification for the SRE_STATE code point cache used by
-     * regular expressions. The spec string is in the comma separated key=value format of
-     * {@code com.google.common.cache.CacheBuilder}, within guava (which is also the source of the
-     * cache implementation).
+     * regular expressions on unicode with characters beyond the BMP. The spec string is in the
+     * comma separated key=value format of {@code com.google.common.cache.CacheBuilder}, within
+     * guava (which is also the source of the cache implementation).
      */
     public static final String PYTHON_SRE_CACHESPEC = "python.sre.cachespec";
 
+    /**
+     * {@code python.sre.jitThreshold} is the number of times a regular expression may be used
+     * (for a match, search, split and so on) before it is compiled to JVM bytecode. Patterns the
+     * compiler cannot translate, and any used fewer times, are interpreted. Zero compiles each
+     * pattern when first used, and a negative number disables the compiler. Default 100.
+     */
+    public static final String PYTHON_SRE_JIT_THRESHOLD = "python.sre.jitThreshold";
+
+    /**
+     * {@code python.sre.maxSteps} limits the work of a regular expression in each match or search
+     * (and each item found by findall, split or sub). A step is a way to match part of the pattern
+     * tried (each alternative, each length of a repeat), so backtracking that would take minutes
+     * raises {@code RuntimeError} instead. Zero, the default, means no limit.
+     */
+    public static final String PYTHON_SRE_MAX_STEPS = "python.sre.maxSteps";
+
     /**
      * {@code python.startup} is the name of a file to be run at the start of each interactive
      * session, but not when dropping in with the -i flag in after a script has run.
@@ -0,0 +1,216 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.core;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The storage of a {@link PyList} when {@link Options#listOptimisticReads} is set: a list (an
+ * {@code ArrayList} or a {@link StrategyList}) whose every change is made holding the write lock of
+ * a {@link StampedLock}, so that the commonest reads ({@code len}, indexing, iteration) may be made
+ * without the lock of the {@code PyList}, as optimistic reads validated against the stamp.
+ * <p>
+ * Writers still hold the lock of the {@code PyList} (all its mutating methods are
+ * {@code synchronized}), which keeps operations such as {@code append} and {@code pop} atomic with
+ * respect to each other. The write lock here only excludes optimistic readers, and is never held
+ * while Python code runs. (The stamped lock is not reentrant: {@link #sort(Comparator)} sorts a copy
+ * for this reason.) The ordinary {@code List} reads take no lock at all: callers hold the lock of
+ * the {@code PyList}. Only the {@code optimistic} methods may be called without it.
+ */
+final class StampedList extends AbstractList<PyObject> implements RandomAccess, Serializable {
+
+    private final List<PyObject> items;
+
+    private final StampedLock lock = new StampedLock();
+
+    /** Guard {@code items}, which must not be changed afterwards except through this list. */
+    StampedList(List<PyObject> items) {
+        this.items = items;
+    }
+
+    /**
+     * The item at {@code index}, counting from the end if negative, read without locking, or
+     * {@code null} if the index is out of range or a write intervened (when the caller should
+     * read it holding the lock of the list).
+     */
+    PyObject optimisticGet(int index) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                int size = items.size();
+                if (index < 0) {
+                    index += size;
+                }
+                if (index >= 0 && index < size) {
+                    PyObject item = items.get(index);
+                    if (lock.validate(stamp)) {
+                        return item;
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Inconsistent state seen during a write: fall back to locking
+            }
+        }
+        return null;
+    }
+
+    /** The size read without locking, or -1 if a write intervened. */
+    int optimisticSize() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            int size = items.size();
+            if (lock.validate(stamp)) {
+                return size;
+            }
+        }
+        return -1;
+    }
+
+    /** The items read without locking, or {@code null} if a write intervened. */
+    PyObject[] optimisticToArray() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                PyObject[] array = items.toArray(Py.EmptyObjects);
+                if (lock.validate(stamp)) {
+                    return array;
+                }
+            } catch (RuntimeException e) {
+                // Inconsistent state seen during a write: fall back to locking
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public PyObject get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public Object[] toArray() {
+        return items.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return items.toArray(a);
+    }
+
+    @Override
+    public PyObject set(int index, PyObject item) {
+        long stamp = lock.writeLock();
+        try {
+            return items.set(index, item);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean add(PyObject item) {
+        long stamp = lock.writeLock();
+        try {
+            modCount++;
+            return items.add(item);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void add(int index, PyObject item) {
+        long stamp = lock.writeLock();
+        try {
+            modCount++;
+            items.add(index, item);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public PyObject remove(int index) {
+        long stamp = lock.writeLock();
+        try {
+            modCount++;
+            return items.remove(index);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        long stamp = lock.writeLock();
+        try {
+            modCount++;
+            items.subList(fromIndex, toIndex).clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends PyObject> c) {
+        return addAll(size(), c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends PyObject> c) {
+        // Copy first, outside the lock, as c may be this list or a view of it
+        List<PyObject> added = new ArrayList<PyObject>(c);
+        long stamp = lock.writeLock();
+        try {
+            modCount++;
+            return items.addAll(index, added);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            modCount++;
+            items.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void sort(Comparator<? super PyObject> c) {
+        // The comparison may run Python code that reads or changes the list: sort a copy
+        PyObject[] sorted = items.toArray(Py.EmptyObjects);
+        int expectedModCount = modCount;
+        Arrays.sort(sorted, c);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        long stamp = lock.writeLock();
+        try {
+            modCount++;
+            for (int i = 0; i < sorted.length; i++) {
+                items.set(i, sorted[i]);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
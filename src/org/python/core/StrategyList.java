@@ -0,0 +1,414 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.core;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.RandomAccess;
+
+/**
+ * The storage of a {@link PyList} when {@link Options#listStrategies} is set: an array whose type
+ * follows the items stored, after the storage strategies of PyPy. While every item is an
+ * {@code int} the items are held in an {@code int[]}, and while every item is a {@code float}
+ * (other than NaN) in a {@code double[]}. The first item of any other type converts the storage,
+ * once, to a {@code PyObject[]}. Items are boxed only as they are read.
+ * <p>
+ * Only the exact types count: a {@code bool}, or an instance of a subclass of {@code int}, is held
+ * as an object. Emptying the list lets it choose again with the next item added.
+ * <p>
+ * As with the {@code ArrayList} it replaces, callers hold the lock of the {@code PyList}.
+ */
+final class StrategyList extends AbstractList<PyObject> implements RandomAccess, Serializable {
+
+    // Strategies
+    private static final int EMPTY = 0;
+    private static final int INTS = 1;
+    private static final int FLOATS = 2;
+    private static final int OBJECTS = 3;
+
+    private static final int DEFAULT_CAPACITY = 10;
+
+    private int strategy = EMPTY;
+
+    /** The storage of the current strategy: only that one of these is not {@code null}. */
+    private int[] ints;
+    private double[] floats;
+    private PyObject[] objects;
+
+    private int size;
+
+    /** The capacity to allocate when the first item is added. */
+    private final int initialCapacity;
+
+    StrategyList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    StrategyList(int capacity) {
+        initialCapacity = capacity > 0 ? capacity : DEFAULT_CAPACITY;
+    }
+
+    /** The strategy able to hold {@code item}, taking the fewest bytes. */
+    private static int strategyFor(PyObject item) {
+        if (item != null) {
+            Class<?> c = item.getClass();
+            if (c == PyInteger.class) {
+                return INTS;
+            } else if (c == PyFloat.class && !Double.isNaN(((PyFloat)item).getValue())) {
+                return FLOATS;
+            }
+        }
+        return OBJECTS;
+    }
+
+    @Override
+    public PyObject get(int index) {
+        checkIndex(index);
+        switch (strategy) {
+            case INTS:
+                return Py.newInteger(ints[index]);
+            case FLOATS:
+                return Py.newFloat(floats[index]);
+            default:
+                return objects[index];
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public PyObject set(int index, PyObject item) {
+        PyObject old = get(index);
+        accept(strategyFor(item));
+        put(index, item);
+        return old;
+    }
+
+    @Override
+    public void add(int index, PyObject item) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        modCount++;
+        accept(strategyFor(item));
+        makeRoom(index, 1);
+        put(index, item);
+    }
+
+    @Override
+    public PyObject remove(int index) {
+        PyObject old = get(index);
+        removeRange(index, index + 1);
+        return old;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        modCount++;
+        Object array = array();
+        if (array != null) {
+            System.arraycopy(array, toIndex, array, fromIndex, size - toIndex);
+        }
+        int newSize = size - (toIndex - fromIndex);
+        if (objects != null) {
+            Arrays.fill(objects, newSize, size, null);
+        }
+        size = newSize;
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        ints = null;
+        floats = null;
+        objects = null;
+        strategy = EMPTY;
+        size = 0;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends PyObject> c) {
+        return addAll(size, c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends PyObject> c) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (c instanceof StrategyList) {
+            StrategyList other = (StrategyList)c;
+            int n = other.size;
+            if (n == 0) {
+                return false;
+            } else if ((other.strategy == INTS || other.strategy == FLOATS)
+                    && (size == 0 || strategy == other.strategy)) {
+                // Copy first, as other may be this list
+                Object source = other.strategy == INTS ? Arrays.copyOf(other.ints, n)
+                        : Arrays.copyOf(other.floats, n);
+                modCount++;
+                accept(other.strategy, n);
+                makeRoom(index, n);
+                System.arraycopy(source, 0, array(), index, n);
+                return true;
+            }
+        }
+        Object[] items = c.toArray();
+        int n = items.length;
+        if (n == 0) {
+            return false;
+        }
+        int kind = size == 0 ? strategyFor((PyObject)items[0]) : strategy;
+        for (int i = 0; i < n && kind != OBJECTS; i++) {
+            if (strategyFor((PyObject)items[i]) != kind) {
+                kind = OBJECTS;
+            }
+        }
+        modCount++;
+        accept(kind, n);
+        makeRoom(index, n);
+        for (int i = 0; i < n; i++) {
+            put(index + i, (PyObject)items[i]);
+        }
+        return true;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return toArray(new Object[size]);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size) {
+            a = Arrays.copyOf(a, size);
+        } else if (a.length > size) {
+            a[size] = null;
+        }
+        if (strategy == OBJECTS) {
+            System.arraycopy(objects, 0, a, 0, size);
+        } else {
+            for (int i = 0; i < size; i++) {
+                a[i] = (T)get(i);
+            }
+        }
+        return a;
+    }
+
+    @Override
+    public void sort(Comparator<? super PyObject> c) {
+        // As ArrayList does, detect changes made by the comparison
+        PyObject[] sorted = toArray(new PyObject[size]);
+        int expectedModCount = modCount;
+        Arrays.sort(sorted, c);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        // The same items, so the strategy can hold them
+        for (int i = 0; i < sorted.length; i++) {
+            put(i, sorted[i]);
+        }
+        modCount++;
+    }
+
+    /**
+     * Sort int or float storage in place, returning {@code false}, having done nothing, if the
+     * items are objects. Floats are not sorted here if any is {@code -0.0}, as the order of that
+     * and {@code 0.0}, which compare equal, must be kept as it was.
+     */
+    boolean sortPrimitive(boolean reverse) {
+        if (strategy == INTS) {
+            Arrays.sort(ints, 0, size);
+            if (reverse) {
+                for (int i = 0, j = size - 1; i < j; i++, j--) {
+                    int t = ints[i];
+                    ints[i] = ints[j];
+                    ints[j] = t;
+                }
+            }
+        } else if (strategy == FLOATS) {
+            for (int i = 0; i < size; i++) {
+                if (floats[i] == 0.0 && Double.doubleToRawLongBits(floats[i]) != 0L) {
+                    return false;
+                }
+            }
+            Arrays.sort(floats, 0, size);
+            if (reverse) {
+                for (int i = 0, j = size - 1; i < j; i++, j--) {
+                    double t = floats[i];
+                    floats[i] = floats[j];
+                    floats[j] = t;
+                }
+            }
+        } else {
+            return false;
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * {@code sum} of int or float storage, added in order to {@code start}, or {@code null} if the
+     * items are objects or {@code start} is not an {@code int}, or for floats a {@code float}.
+     */
+    PyObject sum(PyObject start) {
+        Class<?> c = start.getClass();
+        if (size == 0) {
+            return null;
+        } else if (strategy == INTS && c == PyInteger.class) {
+            long sum = ((PyInteger)start).getValue();
+            // Once a sum overflows int, adding more ints to it gives a long
+            boolean overflowed = false;
+            for (int i = 0; i < size; i++) {
+                sum += ints[i];
+                overflowed |= sum != (int)sum;
+            }
+            return overflowed ? Py.newLong(sum) : Py.newInteger((int)sum);
+        } else if (strategy == FLOATS && (c == PyInteger.class || c == PyFloat.class)) {
+            double sum = start.asDouble();
+            for (int i = 0; i < size; i++) {
+                sum += floats[i];
+            }
+            return Py.newFloat(sum);
+        }
+        return null;
+    }
+
+    /**
+     * The largest (or smallest) of int or float storage, the first of them if several are equal,
+     * or {@code null} if the items are objects or there are none.
+     */
+    PyObject extreme(boolean largest) {
+        if (size == 0) {
+            return null;
+        } else if (strategy == INTS) {
+            int best = ints[0];
+            for (int i = 1; i < size; i++) {
+                int v = ints[i];
+                if (largest ? v > best : v < best) {
+                    best = v;
+                }
+            }
+            return Py.newInteger(best);
+        } else if (strategy == FLOATS) {
+            double best = floats[0];
+            for (int i = 1; i < size; i++) {
+                double v = floats[i];
+                if (largest ? v > best : v < best) {
+                    best = v;
+                }
+            }
+            return Py.newFloat(best);
+        }
+        return null;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /** The array of the current strategy. */
+    private Object array() {
+        switch (strategy) {
+            case INTS:
+                return ints;
+            case FLOATS:
+                return floats;
+            case OBJECTS:
+                return objects;
+            default:
+                return null;
+        }
+    }
+
+    /** Make the storage able to hold an item of {@code kind}, when at most one is to be added. */
+    private void accept(int kind) {
+        accept(kind, 1);
+    }
+
+    /**
+     * Make the storage able to hold items of {@code kind}, with room for {@code n} more: choosing
+     * the strategy if the list is empty, or generalising it to objects if it cannot hold them.
+     */
+    private void accept(int kind, int n) {
+        if (size == 0 && strategy != kind) {
+            int capacity = Math.max(initialCapacity, n);
+            ints = null;
+            floats = null;
+            objects = null;
+            switch (kind) {
+                case INTS:
+                    ints = new int[capacity];
+                    break;
+                case FLOATS:
+                    floats = new double[capacity];
+                    break;
+                default:
+                    objects = new PyObject[capacity];
+                    break;
+            }
+            strategy = kind;
+        } else if (strategy != kind && strategy != OBJECTS) {
+            PyObject[] boxed = new PyObject[Math.max(size + n, Array.getLength(array()))];
+            for (int i = 0; i < size; i++) {
+                boxed[i] = get(i);
+            }
+            ints = null;
+            floats = null;
+            objects = boxed;
+            strategy = OBJECTS;
+        }
+    }
+
+    /** Open a gap of {@code n} at {@code index}, growing the storage if needed. */
+    private void makeRoom(int index, int n) {
+        int needed = size + n;
+        if (needed < 0) {
+            throw new OutOfMemoryError();
+        }
+        int capacity = Array.getLength(array());
+        if (needed > capacity) {
+            int grown = Math.max(needed, capacity + (capacity >> 1));
+            switch (strategy) {
+                case INTS:
+                    ints = Arrays.copyOf(ints, grown);
+                    break;
+                case FLOATS:
+                    floats = Arrays.copyOf(floats, grown);
+                    break;
+                default:
+                    objects = Arrays.copyOf(objects, grown);
+                    break;
+            }
+        }
+        Object array = array();
+        System.arraycopy(array, index, array, index + n, size - index);
+        size = needed;
+    }
+
+    /** Store {@code item} at {@code index}: the strategy must be able to hold it. */
+    private void put(int index, PyObject item) {
+        switch (strategy) {
+            case INTS:
+                ints[index] = ((PyInteger)item).getValue();
+                break;
+            case FLOATS:
+                floats[index] = ((PyFloat)item).getValue();
+                break;
+            default:
+                objects[index] = item;
+                break;
+        }
+    }
+}
@@ -442,7 +442,7 @@ import org.python.modules.gc;
  * <br>
  * org.python.modules._collections:<br>
  *   PyDefaultDict                   - Traverseproc (with call to super)<br>
- *   PyDeque                         - Traverseproc (assuming, Nodes can't build cycles)<br>
+ *   PyDeque                         - Traverseproc<br>
  *     PyDequeIter                   - Traverseproc (with call to super)<br>
  * <br>
  * org.python.modules._csv:<br>
@@ -0,0 +1,331 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.core;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Sorting for {@link PyList#sort()} when the items, or the keys computed for them, are all of one
+ * built-in type whose comparison needs no dispatch: {@code int} (with {@code long} values that fit
+ * in a Java {@code long}), {@code float} (other than NaN), {@code str}, {@code unicode}, or tuples
+ * whose items at each position are all of one of these. The keys are compared directly as Java
+ * values, and integers in the range of {@code int} are sorted as a primitive {@code long[]}.
+ * <p>
+ * The sort is stable, and with {@code reverse} sorts as if each comparison were reversed, as
+ * {@code list.sort} does. Lists of any other items are left to the general sort, which calls
+ * {@code __lt__}.
+ */
+final class TypedSort {
+
+    private TypedSort() {}
+
+    // Kinds of key
+    private static final int OTHER = 0;
+    private static final int INTEGRAL = 1;
+    private static final int FLOAT = 2;
+    private static final int STR = 3;
+    private static final int UNICODE = 4;
+    private static final int TUPLE = 5;
+
+    /** Below this many items, insertion sort is used in place of merging. */
+    private static final int INSERTION_LIMIT = 16;
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    /**
+     * Sort {@code items} in place by {@code keys} (or by the items themselves if {@code keys} is
+     * {@code null}), if the keys are all of one kind this class can compare. Return {@code false},
+     * leaving the items as they were, if they are not.
+     */
+    static boolean sort(PyObject[] items, PyObject[] keys, boolean reverse) {
+        PyObject[] k = keys == null ? items : keys;
+        int n = k.length;
+        if (n < 2) {
+            return false;
+        }
+        int kind = kindOf(k[0]);
+        for (int i = 1; i < n && kind != OTHER; i++) {
+            if (kindOf(k[i]) != kind) {
+                kind = OTHER;
+            }
+        }
+        int[] order;
+        switch (kind) {
+            case INTEGRAL:
+                order = sortIntegral(k, reverse);
+                break;
+            case FLOAT:
+                double[] d = new double[n];
+                for (int i = 0; i < n; i++) {
+                    d[i] = ((PyFloat)k[i]).getValue();
+                    if (Double.isNaN(d[i])) {
+                        return false;
+                    }
+                }
+                order = mergeSort(new DoubleOrder(d, reverse), n);
+                break;
+            case STR:
+            case UNICODE:
+                String[] s = new String[n];
+                for (int i = 0; i < n; i++) {
+                    s[i] = ((PyString)k[i]).getString();
+                }
+                order = mergeSort(new StringOrder(s, reverse), n);
+                break;
+            case TUPLE:
+                TupleOrder tupleOrder = TupleOrder.create(k, reverse);
+                if (tupleOrder == null) {
+                    return false;
+                }
+                order = mergeSort(tupleOrder, n);
+                break;
+            default:
+                return false;
+        }
+        PyObject[] sorted = new PyObject[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = items[order[i]];
+        }
+        System.arraycopy(sorted, 0, items, 0, n);
+        return true;
+    }
+
+    /** The kind of key {@code obj} is, by its exact class. */
+    private static int kindOf(PyObject obj) {
+        Class<?> c = obj.getClass();
+        if (c == PyInteger.class) {
+            return INTEGRAL;
+        } else if (c == PyLong.class) {
+            return fitsLong(((PyLong)obj).getValue()) ? INTEGRAL : OTHER;
+        } else if (c == PyFloat.class) {
+            return FLOAT;
+        } else if (c == PyString.class) {
+            return STR;
+        } else if (c == PyUnicode.class) {
+            return UNICODE;
+        } else if (c == PyTuple.class) {
+            return TUPLE;
+        }
+        return OTHER;
+    }
+
+    private static boolean fitsLong(BigInteger v) {
+        return v.compareTo(LONG_MIN) >= 0 && v.compareTo(LONG_MAX) <= 0;
+    }
+
+    /** The value of a key of kind {@link #INTEGRAL}. */
+    private static long longValue(PyObject obj) {
+        if (obj.getClass() == PyInteger.class) {
+            return ((PyInteger)obj).getValue();
+        }
+        return ((PyLong)obj).getValue().longValue();
+    }
+
+    /**
+     * The order of integral keys. When all are in the range of {@code int}, each is packed with its
+     * position into a {@code long} and the array of these sorted: equal keys are then ordered by
+     * position, which makes the result stable.
+     */
+    private static int[] sortIntegral(PyObject[] k, boolean reverse) {
+        int n = k.length;
+        long[] values = new long[n];
+        boolean small = true;
+        for (int i = 0; i < n; i++) {
+            long v = longValue(k[i]);
+            values[i] = v;
+            small &= v == (int)v;
+        }
+        if (!small) {
+            return mergeSort(new LongOrder(values, reverse), n);
+        }
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            // ~v reverses the order of int values without overflow
+            long v = reverse ? ~values[i] : values[i];
+            packed[i] = (v << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int)packed[i];
+        }
+        return order;
+    }
+
+    /** Comparison of keys by their position in the list. */
+    private abstract static class Order {
+
+        final boolean reverse;
+
+        Order(boolean reverse) {
+            this.reverse = reverse;
+        }
+
+        /** Whether the key at {@code i} must come after the key at {@code j}. */
+        final boolean after(int i, int j) {
+            int c = compare(i, j);
+            return reverse ? c < 0 : c > 0;
+        }
+
+        abstract int compare(int i, int j);
+    }
+
+    private static final class LongOrder extends Order {
+
+        private final long[] keys;
+
+        LongOrder(long[] keys, boolean reverse) {
+            super(reverse);
+            this.keys = keys;
+        }
+
+        @Override
+        int compare(int i, int j) {
+            long a = keys[i], b = keys[j];
+            return a < b ? -1 : a > b ? 1 : 0;
+        }
+    }
+
+    private static final class DoubleOrder extends Order {
+
+        private final double[] keys;
+
+        DoubleOrder(double[] keys, boolean reverse) {
+            super(reverse);
+            this.keys = keys;
+        }
+
+        @Override
+        int compare(int i, int j) {
+            // Not Double.compare, which does not hold -0.0 and 0.0 equal, as Python does
+            double a = keys[i], b = keys[j];
+            return a < b ? -1 : a > b ? 1 : 0;
+        }
+    }
+
+    private static final class StringOrder extends Order {
+
+        private final String[] keys;
+
+        StringOrder(String[] keys, boolean reverse) {
+            super(reverse);
+            this.keys = keys;
+        }
+
+        @Override
+        int compare(int i, int j) {
+            return keys[i].compareTo(keys[j]);
+        }
+    }
+
+    /**
+     * Lexicographic order of tuples whose items at each position are all of one kind, comparing
+     * each pair of items as the kind requires.
+     */
+    private static final class TupleOrder extends Order {
+
+        private final PyObject[][] keys;
+        private final int[] kinds;
+
+        private TupleOrder(PyObject[][] keys, int[] kinds, boolean reverse) {
+            super(reverse);
+            this.keys = keys;
+            this.kinds = kinds;
+        }
+
+        /** The order of {@code keys}, all tuples, or {@code null} if their items do not suit. */
+        static TupleOrder create(PyObject[] k, boolean reverse) {
+            PyObject[][] keys = new PyObject[k.length][];
+            int width = 0;
+            for (int i = 0; i < k.length; i++) {
+                keys[i] = ((PyTuple)k[i]).getArray();
+                width = Math.max(width, keys[i].length);
+            }
+            int[] kinds = new int[width];
+            for (PyObject[] t : keys) {
+                for (int j = 0; j < t.length; j++) {
+                    int kind = kindOf(t[j]);
+                    if (kind == OTHER || kind == TUPLE
+                            || kind == FLOAT && Double.isNaN(((PyFloat)t[j]).getValue())) {
+                        return null;
+                    } else if (kinds[j] == OTHER) {
+                        kinds[j] = kind;
+                    } else if (kinds[j] != kind) {
+                        return null;
+                    }
+                }
+            }
+            return new TupleOrder(keys, kinds, reverse);
+        }
+
+        @Override
+        int compare(int i, int j) {
+            PyObject[] a = keys[i], b = keys[j];
+            int n = Math.min(a.length, b.length);
+            for (int p = 0; p < n; p++) {
+                int c;
+                switch (kinds[p]) {
+                    case INTEGRAL:
+                        long x = longValue(a[p]), y = longValue(b[p]);
+                        c = x < y ? -1 : x > y ? 1 : 0;
+                        break;
+                    case FLOAT:
+                        double u = ((PyFloat)a[p]).getValue(), v = ((PyFloat)b[p]).getValue();
+                        c = u < v ? -1 : u > v ? 1 : 0;
+                        break;
+                    default:
+                        c = ((PyString)a[p]).getString().compareTo(((PyString)b[p]).getString());
+                        break;
+                }
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return a.length - b.length;
+        }
+    }
+
+    /** The positions {@code 0..n-1} in the order {@code order}, by a stable merge sort. */
+    private static int[] mergeSort(Order order, int n) {
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = i;
+        }
+        // Sort short runs by insertion, then merge runs of doubling width
+        for (int lo = 0; lo < n; lo += INSERTION_LIMIT) {
+            int hi = Math.min(lo + INSERTION_LIMIT, n);
+            for (int i = lo + 1; i < hi; i++) {
+                int x = a[i], j = i - 1;
+                for (; j >= lo && order.after(a[j], x); j--) {
+                    a[j + 1] = a[j];
+                }
+                a[j + 1] = x;
+            }
+        }
+        int[] b = new int[n];
+        for (int width = INSERTION_LIMIT; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+                int i = lo, j = mid, out = lo;
+                if (mid < hi && order.after(a[mid - 1], a[mid])) {
+                    while (i < mid && j < hi) {
+                        // Take from the right only if strictly before: keeps the sort stable
+                        b[out++] = order.after(a[i], a[j]) ? a[j++] : a[i++];
+                    }
+                }
+                while (i < mid) {
+                    b[out++] = a[i++];
+                }
+                while (j < hi) {
+                    b[out++] = a[j++];
+                }
+            }
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -1100,6 +1100,12 @@ public class __builtin__ {
         if (result instanceof PyString) {
             throw Py.TypeError("sum() can't sum strings [use ''.join(seq) instead]");
         }
+        if (seq.getType() == PyList.TYPE) {
+            PyObject sum = ((PyList)seq).primitiveSum(result);
+            if (sum != null) {
+                return sum;
+            }
+        }
         for (PyObject item : seq.asIterable()) {
             result = result._add(item);
         }
@@ -1508,6 +1514,12 @@ class MaxFunction extends PyBuiltinFunction {
     }
 
     private static PyObject max(PyObject o, PyObject key) {
+        if (key == null && o.getType() == PyList.TYPE) {
+            PyObject max = ((PyList)o).primitiveExtreme(true);
+            if (max != null) {
+                return max;
+            }
+        }
         PyObject max = null;
         PyObject maxKey = null;
         for (PyObject item : o.asIterable()) {
@@ -1567,6 +1579,12 @@ class MinFunction extends PyBuiltinFunction {
     }
 
     private static PyObject min(PyObject o, PyObject key) {
+        if (key == null && o.getType() == PyList.TYPE) {
+            PyObject min = ((PyList)o).primitiveExtreme(false);
+            if (min != null) {
+                return min;
+            }
+        }
         PyObject min = null;
         PyObject minKey = null;
         for (PyObject item : o.asIterable()) {
@@ -31,7 +31,7 @@ public class imp {
 
     private static final String UNKNOWN_SOURCEFILE = "<unknown>";
 
-    private static final int APIVersion = 38;
+    private static final int APIVersion = 40;
 
     public static final int NO_MTIME = -1;
 
@@ -799,7 +799,7 @@ public class imp {
     }
 
     private static PyObject _decodePath(PyString p) {
-        String s = p.string;
+        String s = p.getString();
         if (s != null && s.length() > 0) {
             byte[] b = new byte[s.length()];
             for (int i = 0; i < s.length(); i++)
@@ -1484,7 +1484,7 @@ public class imp {
         } catch (PyException e) {
             if (e.match(Py.UnicodeDecodeError)) {
                 if (p instanceof PyString) {
-                    return ((PyString)p).string;
+                    return ((PyString)p).getString();
                 }
                 // p is bytes we cannot convert to a String using the FS encoding
                 if (raiseImportError) {
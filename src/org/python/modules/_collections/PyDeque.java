@@ -1,5 +1,8 @@
 package org.python.modules._collections;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
 import org.python.core.ArgParser;
 import org.python.core.PyIterator;
 import org.python.core.PyList;
@@ -23,28 +26,47 @@ import org.python.expose.MethodType;
  * generalization of stacks and queues (the name is pronounced 'deck' and is short for 'double-ended
  * queue'). Deques support thread-safe, memory efficient appends and pops from either side of the
  * deque with approximately the same O(1) performance in either direction.
- * 
+ *
  * Though list objects support similar operations, they are optimized for fast fixed-length
  * operations and incur O(n) memory movement costs for pop(0) and insert(0, v) operations which
  * change both the size and position of the underlying data representation.
- * 
+ *
  * collections.deque([iterable[, maxlen]]) - returns a new deque object initialized left-to-right
  * (using append()) with data from iterable. If iterable is not specified, the new deque is empty.
  * If maxlen is not specified or is None, deques may grow to an arbitrary length. Otherwise, the
  * deque is bounded to the specified maximum length. Once a bounded length deque is full, when new
  * items are added, a corresponding number of items are discarded from the opposite end.
+ *
+ * The items are held in a circular array, which doubles in size when full. So that a deque may
+ * serve as a queue between threads without producers and consumers contending for one lock, the
+ * two ends have a lock each: append() to an unbounded deque holds only {@code rightLock}, and
+ * popleft() only {@code leftLock}, while every other operation holds both (always taking
+ * {@code rightLock} first). The count of items is atomic, since these two change it concurrently,
+ * and publishes each item appended to the thread that pops it.
  */
 @ExposedType(name = "collections.deque")
 public class PyDeque extends PyObject implements Traverseproc {
 
     public static final PyType TYPE = PyType.fromClass(PyDeque.class);
 
-    private long state = 0;
-    private int size = 0;
+    private static final int INITIAL_CAPACITY = 8;
 
-    private int maxlen = -1;
+    private final ReentrantLock rightLock = new ReentrantLock();
+    private final ReentrantLock leftLock = new ReentrantLock();
+
+    /** The items, from {@code head} round to {@code tail}, in an array a power of two long. */
+    private PyObject[] items = new PyObject[INITIAL_CAPACITY];
+    /** Index of the leftmost item, guarded by {@code leftLock}. */
+    private int head = 0;
+    /** Index after the rightmost item, guarded by {@code rightLock}. */
+    private int tail = 0;
+    private final AtomicInteger count = new AtomicInteger();
+
+    /** Counts of changes at each end, guarded by the lock of that end, and read holding both. */
+    private long leftState = 0;
+    private long rightState = 0;
 
-    private Node header = new Node(null, null, null);
+    private int maxlen = -1;
 
     public PyDeque() {
         this(TYPE);
@@ -52,35 +74,38 @@ public class PyDeque extends PyObject implements Traverseproc {
 
     public PyDeque(PyType subType) {
         super(subType);
-        header.left = header.right = header;
     }
 
     @ExposedNew
     @ExposedMethod
-    public synchronized final void deque___init__(PyObject[] args, String[] kwds) {
+    public final void deque___init__(PyObject[] args, String[] kwds) {
         ArgParser ap = new ArgParser("deque", args, kwds, new String[] {"iterable", "maxlen",}, 0);
-
-        PyObject maxlenobj = ap.getPyObject(1, null);
-        if (maxlenobj != null) {
-            if (maxlenobj == Py.None) {
-                maxlen = -1;
-            } else {
-                maxlen = ap.getInt(1);
-                if (maxlen < 0) {
-                    throw Py.ValueError("maxlen must be non-negative");
+        lockBoth();
+        try {
+            PyObject maxlenobj = ap.getPyObject(1, null);
+            if (maxlenobj != null) {
+                if (maxlenobj == Py.None) {
+                    maxlen = -1;
+                } else {
+                    maxlen = ap.getInt(1);
+                    if (maxlen < 0) {
+                        throw Py.ValueError("maxlen must be non-negative");
+                    }
                 }
+            } else {
+                maxlen = -1;
             }
-        } else {
-            maxlen = -1;
-        }
 
-        PyObject iterable = ap.getPyObject(0, null);
-        if (iterable != null) {
-            if (size != 0) {
-                // initializing a deque with an iterator when this deque is not empty means that we discard to empty first
-                deque_clear();
+            PyObject iterable = ap.getPyObject(0, null);
+            if (iterable != null) {
+                if (count.get() != 0) {
+                    // initializing a deque with an iterator when this deque is not empty means that we discard to empty first
+                    deque_clear();
+                }
+                deque_extend(iterable);
             }
-            deque_extend(iterable);
+        } finally {
+            unlockBoth();
         }
     }
 
@@ -107,206 +132,339 @@ public class PyDeque extends PyObject implements Traverseproc {
 
     /**
      * Add obj to the right side of the deque.
-     */    
+     */
     @ExposedMethod
-    public synchronized final void deque_append(PyObject obj) {
-        if (maxlen >= 0) {
-            assert (size <= maxlen);
-            if (maxlen == 0) {
-                // do nothing; this deque will always be empty
+    public final void deque_append(PyObject obj) {
+        rightLock.lock();
+        try {
+            if (maxlen < 0) {
+                addRight(obj);
                 return;
-            } else if (size == maxlen) {
-                deque_popleft();
             }
+            // A bounded deque may have to discard from the left too
+            leftLock.lock();
+            try {
+                assert (count.get() <= maxlen);
+                if (maxlen == 0) {
+                    // do nothing; this deque will always be empty
+                    return;
+                } else if (count.get() == maxlen) {
+                    removeLeft();
+                }
+                addRight(obj);
+            } finally {
+                leftLock.unlock();
+            }
+        } finally {
+            rightLock.unlock();
         }
-        addBefore(obj, header);
     }
 
     /**
      * Add obj to the left side of the deque.
      */
     @ExposedMethod
-    public synchronized final void deque_appendleft(PyObject obj) {
-        if (maxlen >= 0) {
-            assert (size <= maxlen);
-            if (maxlen == 0) {
-                // do nothing; this deque will always be empty
-                return;
-            } else if (size == maxlen) {
-                deque_pop();
+    public final void deque_appendleft(PyObject obj) {
+        lockBoth();
+        try {
+            if (maxlen >= 0) {
+                assert (count.get() <= maxlen);
+                if (maxlen == 0) {
+                    // do nothing; this deque will always be empty
+                    return;
+                } else if (count.get() == maxlen) {
+                    removeRight();
+                }
             }
+            addLeft(obj);
+        } finally {
+            unlockBoth();
         }
-        addBefore(obj, header.right);
-    }
-
-    private Node addBefore(PyObject obj, Node node) {
-        // should ALWAYS be called inside a synchronized block
-        Node newNode = new Node(obj, node, node.left);
-        newNode.left.right = newNode;
-        newNode.right.left = newNode;
-        size++;
-        state++;
-        return newNode;
     }
 
     /**
      * Remove all elements from the deque leaving it with length 0.
      */
     @ExposedMethod
-    public synchronized final void deque_clear() {
-        Node node = header.right;
-        while (node != header) {
-            Node right = node.right;
-            node.left = null;
-            node.right = null;
-            node.data = null;
-            node = right;
-            state++;
+    public final void deque_clear() {
+        lockBoth();
+        try {
+            items = new PyObject[INITIAL_CAPACITY];
+            head = tail = 0;
+            count.set(0);
+            leftState++;
+        } finally {
+            unlockBoth();
         }
-        header.right = header.left = header;
-        size = 0;
     }
 
     /**
-     * Extend the right side of the deque by appending elements from the 
+     * Extend the right side of the deque by appending elements from the
      * iterable argument.
      */
     @ExposedMethod
-    public synchronized final void deque_extend(PyObject iterable) {
+    public final void deque_extend(PyObject iterable) {
         // handle case where iterable == this
         if (this == iterable) {
             deque_extend(new PyList(iterable));
-        } else {
+            return;
+        }
+        // Hold off other producers, but not consumers
+        rightLock.lock();
+        try {
             for (PyObject item : iterable.asIterable()) {
                 deque_append(item);
             }
+        } finally {
+            rightLock.unlock();
         }
     }
 
     /**
-     * Extend the left side of the deque by appending elements from iterable. 
-     * Note, the series of left appends results in reversing the order of 
+     * Extend the left side of the deque by appending elements from iterable.
+     * Note, the series of left appends results in reversing the order of
      * elements in the iterable argument.
      */
     @ExposedMethod
-    public synchronized final void deque_extendleft(PyObject iterable) {
+    public final void deque_extendleft(PyObject iterable) {
         // handle case where iterable == this
         if (this == iterable) {
             deque_extendleft(new PyList(iterable));
-        } else {
+            return;
+        }
+        lockBoth();
+        try {
             for (PyObject item : iterable.asIterable()) {
                 deque_appendleft(item);
             }
+        } finally {
+            unlockBoth();
         }
     }
 
     /**
-     * Remove and return an element from the right side of the deque. If no 
+     * Remove and return an element from the right side of the deque. If no
      * elements are present, raises an IndexError.
      */
     @ExposedMethod
-    public synchronized final PyObject deque_pop() {
-        return removeNode(header.left);
+    public final PyObject deque_pop() {
+        lockBoth();
+        try {
+            return removeRight();
+        } finally {
+            unlockBoth();
+        }
     }
 
     /**
-     * Remove and return an element from the left side of the deque. If no 
+     * Remove and return an element from the left side of the deque. If no
      * elements are present, raises an IndexError.
      */
     @ExposedMethod
-    public synchronized final PyObject deque_popleft() {
-        return removeNode(header.right);
+    public final PyObject deque_popleft() {
+        leftLock.lock();
+        try {
+            return removeLeft();
+        } finally {
+            leftLock.unlock();
+        }
+    }
+
+    private void lockBoth() {
+        rightLock.lock();
+        leftLock.lock();
+    }
+
+    private void unlockBoth() {
+        leftLock.unlock();
+        rightLock.unlock();
+    }
+
+    /** A count that every change moves on: read holding both locks. */
+    private long state() {
+        return leftState + rightState;
+    }
+
+    private void addRight(PyObject obj) {
+        // should ALWAYS be called holding rightLock
+        if (count.get() == items.length) {
+            grow();
+        }
+        items[tail] = obj;
+        tail = (tail + 1) & (items.length - 1);
+        rightState++;
+        // Publishes the item to a consumer at the left
+        count.incrementAndGet();
     }
 
-    private PyObject removeNode(Node node) {
-        // should ALWAYS be called inside a synchronized block
-        if (node == header) {
+    private void addLeft(PyObject obj) {
+        // should ALWAYS be called holding both locks
+        if (count.get() == items.length) {
+            grow();
+        }
+        head = (head - 1) & (items.length - 1);
+        items[head] = obj;
+        leftState++;
+        count.incrementAndGet();
+    }
+
+    private PyObject removeLeft() {
+        // should ALWAYS be called holding leftLock
+        if (count.get() == 0) {
+            throw Py.IndexError("pop from an empty deque");
+        }
+        PyObject obj = items[head];
+        items[head] = null;
+        head = (head + 1) & (items.length - 1);
+        leftState++;
+        // Frees the slot to a producer at the right
+        count.decrementAndGet();
+        return obj;
+    }
+
+    private PyObject removeRight() {
+        // should ALWAYS be called holding both locks
+        if (count.get() == 0) {
             throw Py.IndexError("pop from an empty deque");
         }
-        PyObject obj = node.data;
-        node.left.right = node.right;
-        node.right.left = node.left;
-        node.right = null;
-        node.left = null;
-        node.data = null;
-        size--;
-        state++;
+        tail = (tail - 1) & (items.length - 1);
+        PyObject obj = items[tail];
+        items[tail] = null;
+        rightState++;
+        count.decrementAndGet();
         return obj;
-    } 
+    }
+
+    /** Double the capacity, holding {@code rightLock}: the left end is held off while copying. */
+    private void grow() {
+        leftLock.lock();
+        try {
+            int n = count.get();
+            PyObject[] grown = new PyObject[items.length * 2];
+            int split = Math.min(n, items.length - head);
+            System.arraycopy(items, head, grown, 0, split);
+            System.arraycopy(items, 0, grown, split, n - split);
+            items = grown;
+            head = 0;
+            tail = n;
+        } finally {
+            leftLock.unlock();
+        }
+    }
+
+    /** The item at position {@code i} from the left, which must be in range. */
+    private PyObject get(int i) {
+        // should ALWAYS be called holding both locks
+        return items[(head + i) & (items.length - 1)];
+    }
+
+    /** Remove the item at position {@code i} from the left, moving the shorter side up. */
+    private PyObject removeAt(int i) {
+        // should ALWAYS be called holding both locks
+        int mask = items.length - 1;
+        int n = count.get();
+        PyObject obj = get(i);
+        if (i < n >> 1) {
+            for (int j = i; j > 0; j--) {
+                items[(head + j) & mask] = items[(head + j - 1) & mask];
+            }
+            items[head] = null;
+            head = (head + 1) & mask;
+            leftState++;
+        } else {
+            for (int j = i; j < n - 1; j++) {
+                items[(head + j) & mask] = items[(head + j + 1) & mask];
+            }
+            tail = (tail - 1) & mask;
+            items[tail] = null;
+            rightState++;
+        }
+        count.decrementAndGet();
+        return obj;
+    }
 
     /**
-     * Removed the first occurrence of value. If not found, raises a 
+     * Removed the first occurrence of value. If not found, raises a
      * ValueError.
      */
     @ExposedMethod
-    public synchronized final PyObject deque_remove(PyObject value) {
-        int n = size;
-        Node tmp = header.right;
-        boolean match = false;
-        long startState = state;
-        for (int i = 0; i < n; i++) {
-            if (tmp.data.equals(value)) {
-                match = true;
-            }
-            if (startState != state) {
-                throw Py.IndexError("deque mutated during remove().");
-            }
-            if (match) {
-                return removeNode(tmp);
+    public final PyObject deque_remove(PyObject value) {
+        lockBoth();
+        try {
+            int n = count.get();
+            long startState = state();
+            for (int i = 0; i < n; i++) {
+                boolean match = get(i).equals(value);
+                if (startState != state()) {
+                    throw Py.IndexError("deque mutated during remove().");
+                }
+                if (match) {
+                    return removeAt(i);
+                }
             }
-            tmp = tmp.right;
+            throw Py.ValueError("deque.remove(x): x not in deque");
+        } finally {
+            unlockBoth();
         }
-        throw Py.ValueError("deque.remove(x): x not in deque");
     }
 
     /**
      * Count the number of deque elements equal to x.
      */
     @ExposedMethod
-    public synchronized final PyObject deque_count(PyObject x) {
-        int n = size;
-        int count = 0;
-        Node tmp = header.right;
-        long startState = state;
-        for (int i = 0; i < n; i++) {
-            if (tmp.data.equals(x)) {
-                count++;
-            }
-            if (startState != state) {
-                throw Py.RuntimeError("deque mutated during count().");
+    public final PyObject deque_count(PyObject x) {
+        lockBoth();
+        try {
+            int n = count.get();
+            int found = 0;
+            long startState = state();
+            for (int i = 0; i < n; i++) {
+                if (get(i).equals(x)) {
+                    found++;
+                }
+                if (startState != state()) {
+                    throw Py.RuntimeError("deque mutated during count().");
+                }
             }
-            tmp = tmp.right;
+            return Py.newInteger(found);
+        } finally {
+            unlockBoth();
         }
-        return Py.newInteger(count);
     }
 
     /**
-     * Rotate the deque n steps to the right. If n is negative, rotate to the 
+     * Rotate the deque n steps to the right. If n is negative, rotate to the
      * left. Rotating one step to the right is equivalent to: d.appendleft(d.pop()).
      */
     @ExposedMethod(defaults = {"1"})
-    public synchronized final void deque_rotate(int steps) {
-        if (size == 0) {
-            return;
-        }
+    public final void deque_rotate(int steps) {
+        lockBoth();
+        try {
+            int size = count.get();
+            if (size == 0) {
+                return;
+            }
 
-        int halfsize = (size + 1) >> 1;
-        if (steps > halfsize || steps < -halfsize) {
-            steps %= size;
-            if (steps > halfsize) {
-                steps -= size;
-            } else if (steps < -halfsize) {
-                steps += size;
+            int halfsize = (size + 1) >> 1;
+            if (steps > halfsize || steps < -halfsize) {
+                steps %= size;
+                if (steps > halfsize) {
+                    steps -= size;
+                } else if (steps < -halfsize) {
+                    steps += size;
+                }
             }
-        }
 
-        //rotate right
-        for (int i = 0; i < steps; i++) {
-            deque_appendleft(deque_pop());
-        }
-        //rotate left
-        for (int i = 0; i > steps; i--) {
-            deque_append(deque_popleft());
+            //rotate right
+            for (int i = 0; i < steps; i++) {
+                addLeft(removeRight());
+            }
+            //rotate left
+            for (int i = 0; i > steps; i--) {
+                addRight(removeLeft());
+            }
+        } finally {
+            unlockBoth();
         }
     }
 
@@ -315,21 +473,21 @@ public class PyDeque extends PyObject implements Traverseproc {
      * @return Py.None
      */
     @ExposedMethod
-    public synchronized final PyObject deque_reverse() {
-        Node headerRight = header.right;
-        Node headerLeft = header.left;
-        Node node = header.right;
-        while (node != header) {
-            Node right = node.right;
-            Node left = node.left;
-            node.right = left;
-            node.left = right;
-            node = right;
-        }
-        header.right = headerLeft;
-        header.left = headerRight;
-        state++;
-        return Py.None;
+    public final PyObject deque_reverse() {
+        lockBoth();
+        try {
+            int mask = items.length - 1;
+            for (int i = 0, j = count.get() - 1; i < j; i++, j--) {
+                int a = (head + i) & mask, b = (head + j) & mask;
+                PyObject t = items[a];
+                items[a] = items[b];
+                items[b] = t;
+            }
+            leftState++;
+            return Py.None;
+        } finally {
+            unlockBoth();
+        }
     }
 
     @Override
@@ -338,30 +496,35 @@ public class PyDeque extends PyObject implements Traverseproc {
     }
 
     @ExposedMethod(names = "__repr__")
-    synchronized final String deque_toString() {
+    final String deque_toString() {
         ThreadState ts = Py.getThreadState();
-        if (!ts.enterRepr(this)) { 
+        if (!ts.enterRepr(this)) {
             return "[...]";
         }
-        long startState = state;
-        StringBuilder buf = new StringBuilder("deque").append("([");
-        for (Node tmp = header.right; tmp != header; tmp = tmp.right) {
-            buf.append(tmp.data.__repr__().toString());
-            if (startState != state) {
-                throw Py.RuntimeError("deque mutated during iteration.");
+        lockBoth();
+        try {
+            long startState = state();
+            StringBuilder buf = new StringBuilder("deque").append("([");
+            for (int i = 0; i < count.get(); i++) {
+                buf.append(get(i).__repr__().toString());
+                if (startState != state()) {
+                    throw Py.RuntimeError("deque mutated during iteration.");
+                }
+                if (i < count.get() - 1) {
+                    buf.append(", ");
+                }
             }
-            if (tmp.right != header) {
-                buf.append(", ");
+            buf.append("]");
+            if (maxlen >= 0) {
+                buf.append(", maxlen=");
+                buf.append(maxlen);
             }
+            buf.append(")");
+            ts.exitRepr(this);
+            return buf.toString();
+        } finally {
+            unlockBoth();
         }
-        buf.append("]");
-        if (maxlen >= 0) {
-            buf.append(", maxlen=");
-            buf.append(maxlen);
-        }
-        buf.append(")");
-        ts.exitRepr(this);
-        return buf.toString();
     }
 
     @Override
@@ -370,8 +533,8 @@ public class PyDeque extends PyObject implements Traverseproc {
     }
 
     @ExposedMethod
-    synchronized final int deque___len__() {
-        return size;
+    final int deque___len__() {
+        return count.get();
     }
 
     @Override
@@ -380,8 +543,8 @@ public class PyDeque extends PyObject implements Traverseproc {
     }
 
     @ExposedMethod
-    synchronized final boolean deque___nonzero__() {
-        return size != 0;
+    final boolean deque___nonzero__() {
+        return count.get() != 0;
     }
 
     @Override
@@ -397,8 +560,13 @@ public class PyDeque extends PyObject implements Traverseproc {
     }
 
     @ExposedMethod
-    synchronized final PyObject deque___getitem__(PyObject index) {
-        return getNode(index).data;
+    final PyObject deque___getitem__(PyObject index) {
+        lockBoth();
+        try {
+            return get(checkIndex(index));
+        } finally {
+            unlockBoth();
+        }
     }
 
     @Override
@@ -407,10 +575,13 @@ public class PyDeque extends PyObject implements Traverseproc {
     }
 
     @ExposedMethod
-    synchronized final void deque___setitem__(PyObject index, PyObject value) {
-        Node node = getNode(index).right;
-        removeNode(node.left);
-        addBefore(value, node);
+    final void deque___setitem__(PyObject index, PyObject value) {
+        lockBoth();
+        try {
+            items[(head + checkIndex(index)) & (items.length - 1)] = value;
+        } finally {
+            unlockBoth();
+        }
     }
 
     @Override
@@ -419,12 +590,17 @@ public class PyDeque extends PyObject implements Traverseproc {
     }
 
     @ExposedMethod
-    synchronized final void deque___delitem__(PyObject key) {
-            removeNode(getNode(key));
+    final void deque___delitem__(PyObject key) {
+        lockBoth();
+        try {
+            removeAt(checkIndex(key));
+        } finally {
+            unlockBoth();
+        }
     }
 
-    private Node getNode(PyObject index) {
-        // must ALWAYS be called inside a synchronized block
+    private int checkIndex(PyObject index) {
+        // must ALWAYS be called holding both locks
         int pos = 0;
         if (!index.isIndex()) {
             throw Py.TypeError(String.format("sequence index must be integer, not '%.200s'",
@@ -432,24 +608,14 @@ public class PyDeque extends PyObject implements Traverseproc {
         }
         pos = index.asIndex(Py.IndexError);
 
+        int size = count.get();
         if (pos < 0) {
             pos += size;
         }
         if (pos < 0 || pos >= size) {
             throw Py.IndexError("index out of range: " + index);
         }
-
-        Node tmp = header;
-        if (pos < (size >> 1)) {
-            for (int i = 0; i <= pos; i++) {
-                tmp = tmp.right;
-            }
-        } else {
-            for (int i = size - 1; i >= pos; i--) {
-                tmp = tmp.left;
-            }
-        }
-        return tmp;
+        return pos;
     }
 
     @Override
@@ -463,118 +629,148 @@ public class PyDeque extends PyObject implements Traverseproc {
     }
 
     @Override
-    public synchronized PyObject __eq__(PyObject o) {
+    public PyObject __eq__(PyObject o) {
         return deque___eq__(o);
     }
 
     @ExposedMethod(type = MethodType.BINARY)
-    final synchronized PyObject deque___eq__(PyObject o) {
+    final PyObject deque___eq__(PyObject o) {
         if (!(getType() == o.getType()) && !(getType().isSubType(o.getType()))) {
             return null;
         }
-        int tl = __len__();
-        int ol = o.__len__();
-        if (tl != ol) {
-            return Py.False;
+        lockBoth();
+        try {
+            int tl = __len__();
+            int ol = o.__len__();
+            if (tl != ol) {
+                return Py.False;
+            }
+            int i = cmp(this, tl, o, ol);
+            return (i < 0) ? Py.True : Py.False;
+        } finally {
+            unlockBoth();
         }
-        int i = cmp(this, tl, o, ol);
-        return (i < 0) ? Py.True : Py.False;
     }
 
     @Override
-    public synchronized PyObject __ne__(PyObject o) {
+    public PyObject __ne__(PyObject o) {
         return deque___ne__(o);
     }
 
     @ExposedMethod(type = MethodType.BINARY)
-    final synchronized PyObject deque___ne__(PyObject o) {
+    final PyObject deque___ne__(PyObject o) {
         if (!(getType() == o.getType()) && !(getType().isSubType(o.getType()))) {
             return null;
         }
-        int tl = __len__();
-        int ol = o.__len__();
-        if (tl != ol) {
-            return Py.True;
+        lockBoth();
+        try {
+            int tl = __len__();
+            int ol = o.__len__();
+            if (tl != ol) {
+                return Py.True;
+            }
+            int i = cmp(this, tl, o, ol);
+            return (i < 0) ? Py.False : Py.True;
+        } finally {
+            unlockBoth();
         }
-        int i = cmp(this, tl, o, ol);
-        return (i < 0) ? Py.False : Py.True;
     }
 
     @Override
-    public synchronized PyObject __lt__(PyObject o) {
+    public PyObject __lt__(PyObject o) {
         return deque___lt__(o);
     }
 
     @ExposedMethod(type = MethodType.BINARY)
-    final synchronized PyObject deque___lt__(PyObject o) {
+    final PyObject deque___lt__(PyObject o) {
         if (!(getType() == o.getType()) && !(getType().isSubType(o.getType()))) {
             return null;
         }
-        int i = cmp(this, -1, o, -1);
-        if (i < 0) {
-            return (i == -1) ? Py.True : Py.False;
+        lockBoth();
+        try {
+            int i = cmp(this, -1, o, -1);
+            if (i < 0) {
+                return (i == -1) ? Py.True : Py.False;
+            }
+            return __finditem__(i)._lt(o.__finditem__(i));
+        } finally {
+            unlockBoth();
         }
-        return __finditem__(i)._lt(o.__finditem__(i));
     }
 
     @Override
-    public synchronized PyObject __le__(PyObject o) {
+    public PyObject __le__(PyObject o) {
         return deque___le__(o);
     }
 
     @ExposedMethod(type = MethodType.BINARY)
-    final synchronized PyObject deque___le__(PyObject o) {
+    final PyObject deque___le__(PyObject o) {
         if (!(getType() == o.getType()) && !(getType().isSubType(o.getType()))) {
             return null;
         }
-        int i = cmp(this, -1, o, -1);
-        if (i < 0) {
-            return (i == -1 || i == -2) ? Py.True : Py.False;
+        lockBoth();
+        try {
+            int i = cmp(this, -1, o, -1);
+            if (i < 0) {
+                return (i == -1 || i == -2) ? Py.True : Py.False;
+            }
+            return __finditem__(i)._le(o.__finditem__(i));
+        } finally {
+            unlockBoth();
         }
-        return __finditem__(i)._le(o.__finditem__(i));
     }
 
     @Override
-    public synchronized PyObject __gt__(PyObject o) {
+    public PyObject __gt__(PyObject o) {
         return deque___gt__(o);
     }
 
     @ExposedMethod(type = MethodType.BINARY)
-    final synchronized PyObject deque___gt__(PyObject o) {
+    final PyObject deque___gt__(PyObject o) {
         if (!(getType() == o.getType()) && !(getType().isSubType(o.getType()))) {
             return null;
         }
-        int i = cmp(this, -1, o, -1);
-        if (i < 0) {
-            return (i == -3) ? Py.True : Py.False;
+        lockBoth();
+        try {
+            int i = cmp(this, -1, o, -1);
+            if (i < 0) {
+                return (i == -3) ? Py.True : Py.False;
+            }
+            return __finditem__(i)._gt(o.__finditem__(i));
+        } finally {
+            unlockBoth();
         }
-        return __finditem__(i)._gt(o.__finditem__(i));
     }
 
     @Override
-    public synchronized PyObject __ge__(PyObject o) {
+    public PyObject __ge__(PyObject o) {
         return deque___ge__(o);
     }
 
     @ExposedMethod(type = MethodType.BINARY)
-    final synchronized PyObject deque___ge__(PyObject o) {
+    final PyObject deque___ge__(PyObject o) {
         if (!(getType() == o.getType()) && !(getType().isSubType(o.getType()))) {
             return null;
         }
-        int i = cmp(this, -1, o, -1);
-        if (i < 0) {
-            return (i == -3 || i == -2) ? Py.True : Py.False;
+        lockBoth();
+        try {
+            int i = cmp(this, -1, o, -1);
+            if (i < 0) {
+                return (i == -3 || i == -2) ? Py.True : Py.False;
+            }
+            return __finditem__(i)._ge(o.__finditem__(i));
+        } finally {
+            unlockBoth();
         }
-        return __finditem__(i)._ge(o.__finditem__(i));
     }
 
     @Override
-    public synchronized PyObject __iadd__(PyObject o) {
+    public PyObject __iadd__(PyObject o) {
         return deque___iadd__(o);
     }
 
     @ExposedMethod(type = MethodType.BINARY)
-    final synchronized PyObject deque___iadd__(PyObject o) {
+    final PyObject deque___iadd__(PyObject o) {
         deque_extend(o);
         return this;
     }
@@ -627,7 +823,7 @@ public class PyDeque extends PyObject implements Traverseproc {
 
     @ExposedMethod
     final PyObject deque___copy__() {
-        PyDeque pd = (PyDeque)this.getType().__call__();    
+        PyDeque pd = (PyDeque)this.getType().__call__();
         pd.deque_extend(this);
         return pd;
     }
@@ -642,38 +838,33 @@ public class PyDeque extends PyObject implements Traverseproc {
         return true;
     }
 
-    private static class Node {
-        private Node left;
-        private Node right;
-        private PyObject data;
-
-        Node(PyObject data, Node right, Node left) {
-            this.data = data;
-            this.right = right;
-            this.left = left;
-        }
-    }
-
     private class PyDequeIter extends PyIterator {
 
-        private Node lastReturned = header;
+        private int index = 0;
         private long startState;
 
         public PyDequeIter() {
-            startState = state;
+            lockBoth();
+            try {
+                startState = state();
+            } finally {
+                unlockBoth();
+            }
         }
 
         @Override
         public PyObject __iternext__() {
-            synchronized (PyDeque.this) {
-                if (startState != state) {
+            lockBoth();
+            try {
+                if (startState != state()) {
                     throw Py.RuntimeError("deque changed size during iteration");
                 }
-                if (lastReturned.right != header) {
-                    lastReturned = lastReturned.right;
-                    return lastReturned.data;
+                if (index < count.get()) {
+                    return get(index++);
                 }
                 return null;
+            } finally {
+                unlockBoth();
             }
         }
 
@@ -685,11 +876,8 @@ public class PyDeque extends PyObject implements Traverseproc {
             if (retVal != 0) {
                 return retVal;
             }
-            /* On first thought one would traverse the circular list
-             * starting with lastReturned. However due to synchronization
-             * it is guaranteed that this would traverse the same objects
-             * as starting with header would do. So we can simply call the
-             * traverse-method of PyDeque.this.
+            /* The iterator refers to the items only through the deque, so
+             * traversing the deque visits all it can reach.
              */
             return PyDeque.this.traverse(visit, arg);
         }
@@ -709,28 +897,23 @@ public class PyDeque extends PyObject implements Traverseproc {
 
     /* Traverseproc implementation */
     @Override
-    public synchronized int traverse(Visitproc visit, Object arg) {
-    	if (header == null) {
-            return 0;
-        }
-        int retVal = 0;
-        if (header.data != null) {
-            retVal = visit.visit(header.data, arg);
-            if (retVal != 0) {
-                return retVal;
-            }
-        }
-        Node tmp = header.right;
-        while (tmp != header) {
-            if (tmp.data != null) {
-                retVal = visit.visit(tmp.data, arg);
-                if (retVal != 0) {
-                    return retVal;
+    public int traverse(Visitproc visit, Object arg) {
+        lockBoth();
+        try {
+            int retVal = 0;
+            for (int i = 0; i < count.get(); i++) {
+                PyObject item = get(i);
+                if (item != null) {
+                    retVal = visit.visit(item, arg);
+                    if (retVal != 0) {
+                        return retVal;
+                    }
                 }
             }
-            tmp = tmp.right;
+            return retVal;
+        } finally {
+            unlockBoth();
         }
-        return retVal;
     }
 
     @Override
@@ -1,8 +1,13 @@
 package org.python.modules._json;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.python.core.ArgParser;
 import org.python.core.Py;
 import org.python.core.PyDictionary;
+import org.python.core.PyFloat;
+import org.python.core.PyInteger;
 import org.python.core.PyList;
 import org.python.core.PyNewWrapper;
 import org.python.core.PyObject;
@@ -93,17 +98,25 @@ public class Scanner extends PyObject implements Traverseproc {
         return new PyTuple(obj, Py.newInteger(i));
     }
 
-    public PyTuple _parse_object(PyString pystr, int idx) { // }, Py_ssize_t *next_idx_ptr) {
+    public PyTuple _parse_object(PyString pystr, int idx) {
+        int[] next_idx_ptr = new int[1];
+        PyObject rval = _parse_object(new HashMap<String, PyObject>(), pystr, idx, next_idx_ptr);
+        return valIndex(rval, next_idx_ptr[0]);
+    }
+
+    PyObject _parse_object(Map<String, PyObject> memo, PyString pystr, int idx,
+            int[] next_idx_ptr) {
         /* Read a JSON object from PyString pystr.
         idx is the index of the first character after the opening curly brace.
+        *next_idx_ptr is a return-by-reference index to the first character after
+            the closing curly brace.
 
-        Returns a new PyTuple of a PyObject (usually a dict, but object_hook can change that)
-        and the next_idx to the first character after
-        the closing curly brace.
+        Returns a new PyObject (usually a dict, but object_hook can change that)
         */
         PyString str = pystr;
         int end_idx = pystr.__len__() - 1;
-        PyList pairs = new PyList();
+        PyList pairs = pairs_hook != Py.None ? new PyList() : null;
+        PyDictionary rval = pairs == null ? new PyDictionary() : null;
         PyObject key;
         PyObject val;
 
@@ -117,9 +130,17 @@ public class Scanner extends PyObject implements Traverseproc {
                 if (str.getInt(idx) != '"') {
                     _json.raise_errmsg("Expecting property name", pystr, idx);
                 }
-                PyTuple key_idx = _json.scanstring(pystr, idx + 1, encoding, strict);
-                key = key_idx.pyget(0);
-                idx = key_idx.pyget(1).asInt();
+                key = _json.scanstring(pystr, idx + 1, encoding, strict, next_idx_ptr);
+                idx = next_idx_ptr[0];
+
+                /* share one string between the keys that are equal (the memo in _json.c) */
+                String k = ((PyString) key).getString();
+                PyObject memokey = memo.get(k);
+                if (memokey == null) {
+                    memo.put(k, key);
+                } else {
+                    key = memokey;
+                }
 
                 /* skip whitespace between key and : delimiter, read :, skip whitespace */
                 while (idx <= end_idx && IS_WHITESPACE(str.getInt(idx))) idx++;
@@ -130,10 +151,13 @@ public class Scanner extends PyObject implements Traverseproc {
                 while (idx <= end_idx && IS_WHITESPACE(str.getInt(idx))) idx++;
 
                 /* read any JSON data type */
-                PyTuple val_idx = _scan_once(pystr, idx);
-                val = val_idx.pyget(0);
-                idx = val_idx.pyget(1).asInt();
-                pairs.append(new PyTuple(key, val));
+                val = _scan_once(memo, pystr, idx, next_idx_ptr);
+                idx = next_idx_ptr[0];
+                if (pairs != null) {
+                    pairs.append(new PyTuple(key, val));
+                } else {
+                    rval.__setitem__(key, val);
+                }
 
                 /* skip whitespace before } or , */
                 while (idx <= end_idx && IS_WHITESPACE(str.getInt(idx))) idx++;
@@ -155,29 +179,34 @@ public class Scanner extends PyObject implements Traverseproc {
         if (idx > end_idx || str.getInt(idx) != '}') {
             _json.raise_errmsg("Expecting object", pystr, end_idx);
         }
+        next_idx_ptr[0] = idx + 1;
 
         /* if pairs_hook is not None: rval = object_pairs_hook(pairs) */
-        if (pairs_hook != Py.None) {
-            return valIndex(pairs_hook.__call__(pairs), idx + 1);
+        if (pairs != null) {
+            return pairs_hook.__call__(pairs);
         }
 
-        PyObject rval = new PyDictionary();
-        ((PyDictionary)rval).update(pairs);
-
         /* if object_hook is not None: rval = object_hook(rval) */
         if (object_hook != Py.None) {
-            rval = object_hook.__call__(rval);
+            return object_hook.__call__(rval);
         }
-
-        return valIndex(rval, idx + 1);
+        return rval;
     }
 
     public PyTuple _parse_array(PyString pystr, int idx) {
-        /* Read a JSON array from PyString pystr.
+        int[] next_idx_ptr = new int[1];
+        PyObject rval = _parse_array(new HashMap<String, PyObject>(), pystr, idx, next_idx_ptr);
+        return valIndex(rval, next_idx_ptr[0]);
+    }
 
+    PyObject _parse_array(Map<String, PyObject> memo, PyString pystr, int idx,
+            int[] next_idx_ptr) {
+        /* Read a JSON array from PyString pystr.
+        idx is the index of the first character after the opening brace.
+        *next_idx_ptr is a return-by-reference index to the first character after
+            the closing brace.
 
-        Returns a new PyTuple of a PyList and next_idx (first character after
-        the closing brace.)
+        Returns a new PyList
         */
         PyString str = pystr;
         int end_idx = pystr.__len__() - 1;
@@ -190,10 +219,9 @@ public class Scanner extends PyObject implements Traverseproc {
         if (idx <= end_idx && str.getInt(idx) != ']') {
             while (idx <= end_idx) {
 
-                /* read any JSON term and de-tuplefy the (rval, idx) */
-                PyTuple val_idx = _scan_once(pystr, idx);
-                PyObject val = val_idx.pyget(0);
-                idx = val_idx.pyget(1).asInt();
+                /* read any JSON term */
+                PyObject val = _scan_once(memo, pystr, idx, next_idx_ptr);
+                idx = next_idx_ptr[0];
                 rval.append(val);
 
                 /* skip whitespace between term and , */
@@ -217,16 +245,25 @@ public class Scanner extends PyObject implements Traverseproc {
         if (idx > end_idx || str.getInt(idx) != ']') {
             _json.raise_errmsg("Expecting object", pystr, end_idx);
         }
-        return valIndex(rval, idx + 1);
+        next_idx_ptr[0] = idx + 1;
+        return rval;
     }
 
 
     public PyTuple _scan_once(PyString pystr, int idx) {
+        int[] next_idx_ptr = new int[1];
+        PyObject rval = _scan_once(new HashMap<String, PyObject>(), pystr, idx, next_idx_ptr);
+        return valIndex(rval, next_idx_ptr[0]);
+    }
+
+    PyObject _scan_once(Map<String, PyObject> memo, PyString pystr, int idx,
+            int[] next_idx_ptr) {
         /* Read one JSON term (of any kind) from PyString pystr.
         idx is the index of the first character of the term
+        *next_idx_ptr is a return-by-reference index to the first character after
+            the term.
 
-        Returns a new PyTuple of a PyObject representation of the term along
-        with the next_idx
+        Returns a new PyObject representation of the term.
         */
         PyString str = pystr;
         int length = pystr.__len__();
@@ -236,67 +273,83 @@ public class Scanner extends PyObject implements Traverseproc {
         switch (str.getInt(idx)) {
             case '"':
                 /* string */
-                return _json.scanstring(pystr, idx + 1, encoding, strict);
+                return _json.scanstring(pystr, idx + 1, encoding, strict, next_idx_ptr);
             case '{':
                 /* object */
-                return _parse_object(pystr, idx + 1);
+                return _parse_object(memo, pystr, idx + 1, next_idx_ptr);
             case '[':
                 /* array */
-                return _parse_array(pystr, idx + 1);
+                return _parse_array(memo, pystr, idx + 1, next_idx_ptr);
             case 'n':
                 /* null */
                 if ((idx + 3 < length) && str.getInt(idx + 1) == 'u' && str.getInt(idx + 2) == 'l' && str.getInt(idx + 3) == 'l') {
-                    return valIndex(Py.None, idx + 4);
+                    next_idx_ptr[0] = idx + 4;
+                    return Py.None;
                 }
                 break;
             case 't':
                 /* true */
                 if ((idx + 3 < length) && str.getInt(idx + 1) == 'r' && str.getInt(idx + 2) == 'u' && str.getInt(idx + 3) == 'e') {
-                    return valIndex(Py.True, idx + 4);
+                    next_idx_ptr[0] = idx + 4;
+                    return Py.True;
                 }
                 break;
             case 'f':
                 /* false */
                 if ((idx + 4 < length) && str.getInt(idx + 1) == 'a' && str.getInt(idx + 2) == 'l' && str.getInt(idx + 3) == 's' && str.getInt(idx + 4) == 'e') {
-                    return valIndex(Py.False, idx + 5);
+                    next_idx_ptr[0] = idx + 5;
+                    return Py.False;
                 }
                 break;
             case 'N':
                 /* NaN */
                 if ((idx + 2 < length) && str.getInt(idx + 1) == 'a' && str.getInt(idx + 2) == 'N') {
-                    return _parse_constant("NaN", idx + 3);
+                    next_idx_ptr[0] = idx + 3;
+                    return _parse_constant("NaN");
                 }
                 break;
             case 'I':
                 /* Infinity */
                 if ((idx + 7 < length) && str.getInt(idx + 1) == 'n' && str.getInt(idx + 2) == 'f' && str.getInt(idx + 3) == 'i' && str.getInt(idx + 4) == 'n' && str.getInt(idx + 5) == 'i' && str.getInt(idx + 6) == 't' && str.getInt(idx + 7) == 'y') {
-                    return _parse_constant("Infinity", idx + 8);
+                    next_idx_ptr[0] = idx + 8;
+                    return _parse_constant("Infinity");
                 }
                 break;
             case '-':
                 /* -Infinity */
                 if ((idx + 8 < length) && str.getInt(idx + 1) == 'I' && str.getInt(idx + 2) == 'n' && str.getInt(idx + 3) == 'f' && str.getInt(idx + 4) == 'i' && str.getInt(idx + 5) == 'n' && str.getInt(idx + 6) == 'i' && str.getInt(idx + 7) == 't' && str.getInt(idx + 8) == 'y') {
-                    return _parse_constant("-Infinity", idx + 9);
+                    next_idx_ptr[0] = idx + 9;
+                    return _parse_constant("-Infinity");
                 }
                 break;
         }
         /* Didn't find a string, object, array, or named constant. Look for a number. */
-        return _match_number(pystr, idx);
+        return _match_number(pystr, idx, next_idx_ptr);
     }
 
     public PyTuple _parse_constant(String constant, int idx) {
-        return valIndex(parse_constant.__call__(Py.newString(constant)), idx);
+        return valIndex(_parse_constant(constant), idx);
+    }
+
+    private PyObject _parse_constant(String constant) {
+        return parse_constant.__call__(Py.newString(constant));
     }
 
     public PyTuple _match_number(PyString pystr, int start) {
+        int[] next_idx_ptr = new int[1];
+        PyObject rval = _match_number(pystr, start, next_idx_ptr);
+        return valIndex(rval, next_idx_ptr[0]);
+    }
+
+    PyObject _match_number(PyString pystr, int start, int[] next_idx_ptr) {
         /* Read a JSON number from PyString pystr.
         idx is the index of the first character of the number
+        *next_idx_ptr is a return-by-reference index to the first character after
+            the number.
 
         Returns a new PyObject representation of that number:
         PyInt, PyLong, or PyFloat.
         May return other types if parse_int or parse_float are set
-        along with index to the first character after
-        the number.
         */
         PyString str = pystr;
         int end_idx = pystr.__len__() - 1;
@@ -352,18 +405,34 @@ public class Scanner extends PyObject implements Traverseproc {
                 idx = e_start;
             }
         }
+        next_idx_ptr[0] = idx;
 
-        /* copy the section we determined to be a number */
-        PyString numstr = (PyString) str.__getslice__(Py.newInteger(start), Py.newInteger(idx));
         if (is_float) {
             /* parse as a float using a fast path if available, otherwise call user defined method */
-            return valIndex(parse_float.__call__(numstr), idx);
+            if (parse_float == PyFloat.TYPE) {
+                return new PyFloat(Double.parseDouble(numstr(str, start, idx)));
+            }
+            return parse_float.__call__(str.__getslice__(Py.newInteger(start), Py.newInteger(idx)));
         } else {
             /* parse as an int using a fast path if available, otherwise call user defined method */
-            return valIndex(parse_int.__call__(numstr), idx);
+            if (parse_int == PyInteger.TYPE && idx - start <= MAX_LONG_DIGITS) {
+                return Py.newInteger(Long.parseLong(numstr(str, start, idx)));
+            }
+            return parse_int.__call__(str.__getslice__(Py.newInteger(start), Py.newInteger(idx)));
         }
     }
 
+    /* the most characters (sign included) of an integer that must fit a long */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /** The characters of a number (all ASCII) from the string, as a Java string. */
+    private static String numstr(PyString str, int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = (char) str.getInt(i);
+        }
+        return new String(chars);
+    }
 
     /* Traverseproc implementation */
     @Override
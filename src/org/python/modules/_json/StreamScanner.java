@@ -0,0 +1,447 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.python.core.BufferProtocol;
+import org.python.core.JyAttribute;
+import org.python.core.Py;
+import org.python.core.PyBUF;
+import org.python.core.PyBuffer;
+import org.python.core.PyException;
+import org.python.core.PyIterator;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyUnicode;
+import org.python.core.Visitproc;
+import org.python.core.util.StringUtil;
+
+/**
+ * The iterator {@code _json.iterload} returns: it decodes a stream of JSON text one value at a
+ * time, so that a file of many values (one a line, say) or a single large array of them, with
+ * {@code items=True}, may be read in memory bounded by the largest value, not by the stream.
+ * <p>
+ * The stream is read in chunks. A light scan of the text (strings, escapes and the depth of
+ * brackets) finds where each value ends, and the value is then decoded from its own text by the
+ * {@link Scanner}, so that it follows every rule and hook of {@code json.loads}. Text is read as
+ * bytes (each a character from 0 to 255, decoded in strings by the encoding of the decoder, as
+ * for a {@code str}), unless the source is or reads {@code unicode}.
+ */
+class StreamScanner extends PyIterator {
+
+    /* how much of the stream to read at a time */
+    private static final int CHUNK = 8192;
+
+    /* how many keys to share between values before the memo is started again */
+    private static final int MEMO_LIMIT = 4096;
+
+    /* where an items=True stream is in its array */
+    private static final int ITEMS_START = 0;
+    private static final int ITEMS_NEXT = 1;
+    private static final int ITEMS_END = 2;
+    private static final int DONE = 3;
+
+    private final Scanner scanner;
+    private final Source source;
+    private final boolean items;
+    private int state;
+
+    /* keys shared between the objects of all the values decoded */
+    private final Map<String, PyObject> memo = new HashMap<String, PyObject>();
+    private final int[] next_idx_ptr = new int[1];
+
+    /* the text read and not yet decoded, from the character at mark on */
+    private final StringBuilder buf = new StringBuilder();
+    private int pos;
+    private int mark;
+    private boolean eof;
+    private boolean unicode;
+
+    /* where buf begins in the stream, and the line it is on */
+    private long discarded;
+    private int line = 1;
+    private long lineStart;
+
+    StreamScanner(Scanner scanner, PyObject source, boolean items) {
+        this.scanner = scanner;
+        this.source = Source.of(source);
+        this.items = items;
+        this.state = items ? ITEMS_START : ITEMS_NEXT;
+        this.unicode = source instanceof PyUnicode;
+    }
+
+    @Override
+    public PyObject __iternext__() {
+        if (state == DONE) {
+            return null;
+        }
+        try {
+            return items ? nextItem() : nextValue();
+        } catch (PyException e) {
+            state = DONE;
+            source.close();
+            throw e;
+        }
+    }
+
+    /** The next value of a stream of values, or null at its end. */
+    private PyObject nextValue() {
+        if (!skipWhitespace()) {
+            state = DONE;
+            source.close();
+            return null;
+        }
+        return decode("No JSON object could be decoded");
+    }
+
+    /** The next element of the array that is the stream, or null at its end. */
+    private PyObject nextItem() {
+        switch (state) {
+            case ITEMS_START:
+                if (!skipWhitespace() || buf.charAt(pos) != '[') {
+                    raise("Expecting array");
+                }
+                pos++;
+                if (skipWhitespace() && buf.charAt(pos) == ']') {
+                    pos++;
+                    state = ITEMS_END;
+                    return nextItem();
+                }
+                break;
+            case ITEMS_NEXT:
+                /* skip whitespace before ] or , */
+                if (!skipWhitespace()) {
+                    raise("Expecting object");
+                } else if (buf.charAt(pos) == ']') {
+                    pos++;
+                    state = ITEMS_END;
+                    return nextItem();
+                } else if (buf.charAt(pos) != ',') {
+                    raise("Expecting , delimiter");
+                }
+                pos++;
+                break;
+            case ITEMS_END:
+                state = DONE;
+                if (skipWhitespace()) {
+                    raise("Extra data");
+                }
+                source.close();
+                return null;
+        }
+        if (!skipWhitespace()) {
+            raise("Expecting object");
+        }
+        state = ITEMS_NEXT;
+        return decode("Expecting object");
+    }
+
+    /**
+     * Decode the value that begins at {@code pos} (which is not whitespace) and move past it.
+     *
+     * @param noValue the message if no value begins there
+     */
+    private PyObject decode(String noValue) {
+        long at = discarded + pos;
+        mark = pos;
+        int length = scanValue();
+        mark = 0;
+        String text = buf.substring(pos, pos + length);
+        pos += length;
+
+        PyString pystr = unicode ? new PyUnicode(text) : new PyString(text);
+        if (memo.size() > MEMO_LIMIT) {
+            memo.clear();
+        }
+        PyObject rval;
+        try {
+            rval = scanner._scan_once(memo, pystr, 0, next_idx_ptr);
+        } catch (PyException e) {
+            if (e.match(Py.StopIteration)) {
+                raise(noValue, at);
+            } else if (e.match(Py.ValueError)) {
+                /* the position of the value in the stream (errmsg knows only its own text) */
+                throw Py.ValueError(String.format("%s, in the value at %s", e.value.__str__(),
+                        position(at)));
+            }
+            throw e;
+        }
+        /* the scanner indexes a unicode value by code point, and buf by UTF-16 unit */
+        if (next_idx_ptr[0] != pystr.__len__()) {
+            int end = next_idx_ptr[0];
+            raise("Extra data", at + (unicode ? text.offsetByCodePoints(0, end) : end));
+        }
+        return rval;
+    }
+
+    /**
+     * Find the end of the value that begins at {@code pos}, reading more of the stream as
+     * necessary: the end of a string or of the outermost bracket, or of a bare word. A value
+     * cut short by the end of the stream ends there, and what is out of place (a stray delimiter)
+     * is a value of one character, so that decoding it raises the right error. Reading more may
+     * move the text in {@code buf}, and {@code pos} with it, so the value is found by its offset
+     * from {@code pos}.
+     *
+     * @return the length of the value
+     */
+    private int scanValue() {
+        char c = buf.charAt(pos);
+        if (c == ',' || c == ':' || c == ']' || c == '}') {
+            return 1;
+        }
+        int k = 0;
+        if (c != '"' && c != '[' && c != '{') {
+            /* a number or named constant */
+            for (;;) {
+                if (pos + k == buf.length() && !fill()) {
+                    return k;
+                }
+                c = buf.charAt(pos + k);
+                if (isWhitespace(c) || c == ',' || c == ':' || c == '"' || c == '[' || c == ']'
+                        || c == '{' || c == '}') {
+                    return k;
+                }
+                k++;
+            }
+        }
+
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        for (;;) {
+            if (pos + k == buf.length() && !fill()) {
+                return k;
+            }
+            c = buf.charAt(pos + k++);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (depth == 0) {
+                        return k;
+                    }
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '[' || c == '{') {
+                depth++;
+            } else if ((c == ']' || c == '}') && --depth == 0) {
+                return k;
+            }
+        }
+    }
+
+    /** Skip whitespace, reading more as necessary: whether there is more than whitespace. */
+    private boolean skipWhitespace() {
+        for (;;) {
+            if (pos == buf.length()) {
+                mark = pos;
+                boolean more = fill();
+                mark = 0;
+                if (!more) {
+                    return false;
+                }
+            }
+            if (!isWhitespace(buf.charAt(pos))) {
+                return true;
+            }
+            pos++;
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\r');
+    }
+
+    /**
+     * Read the next chunk of the stream onto {@code buf}, first dropping what comes before
+     * {@code mark} (and moving {@code pos} with it).
+     *
+     * @return whether anything was read
+     */
+    private boolean fill() {
+        if (eof) {
+            return false;
+        }
+        if (mark > 0) {
+            for (int i = 0; i < mark; i++) {
+                if (buf.charAt(i) == '\n') {
+                    line++;
+                    lineStart = discarded + i + 1;
+                }
+            }
+            discarded += mark;
+            buf.delete(0, mark);
+            pos -= mark;
+            mark = 0;
+        }
+        PyObject chunk = source.read(CHUNK);
+        if (chunk == null) {
+            eof = true;
+            source.close();
+            return false;
+        }
+        if (chunk instanceof PyUnicode) {
+            if (!unicode && discarded + buf.length() > 0) {
+                throw Py.TypeError("read() returned unicode after str");
+            }
+            unicode = true;
+        }
+        buf.append(((PyString) chunk).getString());
+        return true;
+    }
+
+    private void raise(String msg) {
+        raise(msg, discarded + pos);
+    }
+
+    private void raise(String msg, long at) {
+        throw Py.ValueError(String.format("%s: %s", msg, position(at)));
+    }
+
+    /** The position in the stream as {@code json.decoder.errmsg} gives it. */
+    private String position(long at) {
+        int lineno = line;
+        long linestart = lineStart;
+        for (int i = 0; discarded + i < at; i++) {
+            if (buf.charAt(i) == '\n') {
+                lineno++;
+                linestart = discarded + i + 1;
+            }
+        }
+        return String.format("line %d column %d (char %d)", lineno, at - linestart + 1, at);
+    }
+
+    /* Traverseproc implementation */
+    @Override
+    public int traverse(Visitproc visit, Object arg) {
+        int retVal = super.traverse(visit, arg);
+        if (retVal != 0) {
+            return retVal;
+        }
+        retVal = visit.visit(scanner, arg);
+        if (retVal != 0) {
+            return retVal;
+        }
+        return source.obj == null ? 0 : visit.visit(source.obj, arg);
+    }
+
+    @Override
+    public boolean refersDirectlyTo(PyObject ob) {
+        return ob != null && (ob == scanner || ob == source.obj || super.refersDirectlyTo(ob));
+    }
+
+    /** Where the text comes from: a string, an object with a read method, a buffer or a stream. */
+    private static abstract class Source {
+
+        /** The object read from, if it is a Python object. */
+        final PyObject obj;
+
+        Source(PyObject obj) {
+            this.obj = obj;
+        }
+
+        /** Read up to {@code n} characters (a {@code str} or {@code unicode}), or null at end. */
+        abstract PyObject read(int n);
+
+        void close() {}
+
+        static Source of(final PyObject obj) {
+            if (obj instanceof PyString) {
+                return new Source(obj) {
+                    final String s = ((PyString) obj).getString();
+                    int at;
+
+                    @Override
+                    PyObject read(int n) {
+                        if (at == s.length()) {
+                            return null;
+                        }
+                        int end = Math.min(at + n, s.length());
+                        if (end < s.length() && Character.isHighSurrogate(s.charAt(end - 1))) {
+                            /* keep a surrogate pair in one chunk */
+                            end--;
+                        }
+                        String chunk = s.substring(at, end);
+                        at = end;
+                        return obj instanceof PyUnicode ? new PyUnicode(chunk)
+                                : new PyString(chunk);
+                    }
+                };
+            }
+
+            /* a Java stream (which has a read method of its own) */
+            Object stream = JyAttribute.getAttr(obj, JyAttribute.JAVA_PROXY_ATTR);
+            if (stream instanceof InputStream) {
+                final InputStream in = (InputStream) stream;
+                return new Source(obj) {
+                    final byte[] bytes = new byte[CHUNK];
+
+                    @Override
+                    PyObject read(int n) {
+                        try {
+                            int count = in.read(bytes, 0, Math.min(n, bytes.length));
+                            return count < 0 ? null
+                                    : new PyString(StringUtil.fromBytes(bytes, 0, count));
+                        } catch (IOException e) {
+                            throw Py.IOError(e);
+                        }
+                    }
+                };
+            }
+
+            final PyObject readMethod = obj.__findattr__("read");
+            if (readMethod != null) {
+                return new Source(obj) {
+                    @Override
+                    PyObject read(int n) {
+                        PyObject chunk = readMethod.__call__(Py.newInteger(n));
+                        if (!(chunk instanceof PyString)) {
+                            throw Py.TypeError(String.format(
+                                    "read() should return a string, not %.80s",
+                                    chunk.getType().fastGetName()));
+                        }
+                        return chunk.__len__() == 0 ? null : chunk;
+                    }
+                };
+            }
+
+            if (obj instanceof BufferProtocol) {
+                return new Source(obj) {
+                    PyBuffer buffer = ((BufferProtocol) obj).getBuffer(PyBUF.SIMPLE);
+                    final byte[] bytes = new byte[CHUNK];
+                    int at;
+
+                    @Override
+                    PyObject read(int n) {
+                        int count = buffer == null ? 0 : Math.min(n, buffer.getLen() - at);
+                        if (count <= 0) {
+                            return null;
+                        }
+                        buffer.copyTo(at, bytes, 0, count);
+                        at += count;
+                        return new PyString(StringUtil.fromBytes(bytes, 0, count));
+                    }
+
+                    @Override
+                    void close() {
+                        if (buffer != null) {
+                            buffer.release();
+                            buffer = null;
+                        }
+                    }
+                };
+            }
+
+            throw Py.TypeError(String.format(
+                    "expected a string, a file, a buffer or an InputStream, not %.80s",
+                    obj.getType().fastGetName()));
+        }
+    }
+}
@@ -34,6 +34,7 @@ public class _json implements ClassDictInit {
         dict.__setitem__("make_encoder", Encoder.TYPE);
         dict.__setitem__("make_scanner", Scanner.TYPE);
         dict.__setitem__("scanstring", new ScanstringFunction());
+        dict.__setitem__("iterload", new IterloadFunction());
         dict.__setitem__("__module__", new PyString("_json"));
 
         // ensure __module__ is set properly in these modules,
@@ -129,14 +130,79 @@ public class _json implements ClassDictInit {
 
     }
 
+    @Untraversable
+    static class IterloadFunction extends PyBuiltinFunctionNarrow {
+        IterloadFunction() {
+            super("iterload", 1, 3, "iterload(source, decoder=None, items=False) -> iterator\n\n"
+                    + "Decode the JSON values of source, one at a time: a str or unicode, a file\n"
+                    + "(or anything with a read method), a buffer or a java.io.InputStream.\n"
+                    + "Values are decoded as decoder.decode would (json's default decoder if\n"
+                    + "None). If items is true, source is one array, and its elements are\n"
+                    + "decoded one at a time.");
+        }
+
+        @Override
+        public PyObject getModule() {
+            return module;
+        }
+
+        @Override
+        public PyObject __call__(PyObject source) {
+            return __call__(source, Py.None, Py.False);
+        }
+
+        @Override
+        public PyObject __call__(PyObject source, PyObject decoder) {
+            return __call__(source, decoder, Py.False);
+        }
+
+        @Override
+        public PyObject __call__(PyObject[] args, String[] kwds) {
+            ArgParser ap = new ArgParser("iterload", args, kwds, new String[]{
+                    "source", "decoder", "items"}, 1);
+            return __call__(
+                    ap.getPyObject(0),
+                    ap.getPyObject(1, Py.None),
+                    ap.getPyObject(2, Py.False));
+        }
+
+        @Override
+        public PyObject __call__(PyObject source, PyObject decoder, PyObject items) {
+            if (decoder == Py.None) {
+                PyObject json = org.python.core.__builtin__.__import__("json");
+                decoder = json.__getattr__("_default_decoder");
+            }
+            PyObject scan_once = decoder.__findattr__("scan_once");
+            Scanner scanner = scan_once instanceof Scanner ? (Scanner) scan_once
+                    : new Scanner(decoder);
+            return new StreamScanner(scanner, source, items.__nonzero__());
+        }
+    }
+
     static PyTuple scanstring(PyString pystr, int end, String encoding, boolean strict) {
+        int[] next_end_ptr = new int[1];
+        PyObject rval = scanstring(pystr, end, encoding, strict, next_end_ptr);
+        return new PyTuple(rval, Py.newInteger(next_end_ptr[0]));
+    }
+
+    static PyObject scanstring(PyString pystr, int end, String encoding, boolean strict,
+            int[] next_end_ptr) {
+        /* Read the JSON string from PyString pystr.
+        end is the index of the first character after the quote.
+        *next_end_ptr is a return-by-reference index of the character
+            after the end quote
+
+        Return value is a new PyUnicode
+        */
         int len = pystr.__len__();
         int begin = end - 1;
         if (end < 0 || len <= end) {
             throw Py.ValueError("end is out of bounds");
         }
         int next;
-        final PyList chunks = new PyList();
+        /* the string if it has no escapes, otherwise its chunks so far are collected */
+        PyObject first = null;
+        StringBuilder chunks = null;
         while (true) {
             /* Find the end of the string or the next escape */
             int c = 0;
@@ -155,11 +221,14 @@ public class _json implements ClassDictInit {
 
             /* Pick up this chunk if it's not zero length */
             if (next != end) {
-                PyString strchunk = (PyString) pystr.__getslice__(Py.newInteger(end), Py.newInteger(next));
-                if (strchunk instanceof PyUnicode) {
-                    chunks.append(strchunk);
+                PyObject chunk = pystr.__getslice__(Py.newInteger(end), Py.newInteger(next));
+                if (!(chunk instanceof PyUnicode)) {
+                    chunk = codecs.decode((PyString) chunk, encoding, null);
+                }
+                if (chunks == null) {
+                    first = chunk;
                 } else {
-                    chunks.append(codecs.decode(strchunk, encoding, null));
+                    chunks.append(((PyString) chunk).getString());
                 }
             }
             next++;
@@ -301,10 +370,22 @@ public class _json implements ClassDictInit {
                     raise_errmsg("Unpaired low surrogate", pystr, end - 5);
                 }
             }
-            chunks.append(new PyUnicode(c));
+            if (chunks == null) {
+                chunks = new StringBuilder();
+                if (first != null) {
+                    chunks.append(((PyString) first).getString());
+                }
+            }
+            chunks.appendCodePoint(c);
         }
 
-        return new PyTuple(Py.EmptyUnicode.join(chunks), Py.newInteger(end));
+        next_end_ptr[0] = end;
+        if (chunks != null) {
+            return new PyUnicode(chunks.toString());
+        } else if (first != null && first.getType() == PyUnicode.TYPE) {
+            return first;
+        }
+        return first == null ? Py.EmptyUnicode : new PyUnicode(((PyString) first).getString());
     }
 
     @Untraversable
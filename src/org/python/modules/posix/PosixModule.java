@@ -25,6 +25,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.DosFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -64,7 +65,6 @@ import org.python.core.io.FileIO;
 import org.python.core.io.IOBase;
 import org.python.core.io.RawIOBase;
 import org.python.core.io.StreamIO;
-import org.python.core.util.StringUtil;
 
 /**
  * The posix/nt module, depending on the platform.
@@ -843,14 +843,18 @@ public class PosixModule implements ClassDictInit {
         Object javaobj = fd.__tojava__(RawIOBase.class);
         if (javaobj != Py.NoConversion) {
             try {
-                return new PyString(StringUtil.fromBytes(((RawIOBase) javaobj).read(buffersize)));
+                ByteBuffer buffer = ((RawIOBase) javaobj).read(buffersize);
+                return PyString.fromBytes(Arrays.copyOfRange(buffer.array(),
+                        buffer.arrayOffset() + buffer.position(),
+                        buffer.arrayOffset() + buffer.limit()));
             } catch (PyException pye) {
                 throw badFD();
             }
         } else {
             ByteBuffer buffer = ByteBuffer.allocate(buffersize);
             posix.read(getFD(fd).getIntFD(), buffer, buffersize);
-            return new PyString(StringUtil.fromBytes(buffer));
+            return PyString.fromBytes(Arrays.copyOfRange(buffer.array(), buffer.position(),
+                    buffer.limit()));
         }
     }
 
@@ -1250,7 +1254,7 @@ public class PosixModule implements ClassDictInit {
     public static PyObject urandom(int n) {
         byte[] buf = new byte[n];
         UrandomSource.INSTANCE.nextBytes(buf);
-        return new PyString(StringUtil.fromBytes(buf));
+        return PyString.fromBytes(buf);
     }
 
     /**
@@ -0,0 +1,139 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.modules.sre;
+
+/**
+ * A regular expression translated into JVM bytecode by {@link PatternCompiler}: the generated
+ * subclass matches the pattern as straight-line code, where {@link SRE_STATE#SRE_MATCH(int[], int)}
+ * interprets it. The subclass is defined by a class loader of its own, so it reaches the
+ * state of the match only through the protected methods here, which the JVM will inline.
+ */
+public abstract class CompiledPattern {
+
+    /** The code of the pattern, as made by {@code sre_compile.py}, which this was compiled from. */
+    protected final int[] code;
+
+    protected CompiledPattern(int[] code) {
+        this.code = code;
+    }
+
+    /**
+     * Match the pattern at {@code state.ptr}, with the same result as matching it from the start of
+     * its code by {@link SRE_STATE#SRE_MATCH(int[], int)}.
+     *
+     * @param state of the match
+     * @return 1 on success (when {@code state.ptr} is the end of the match), 0 on failure, or an
+     *         error code less than 0
+     */
+    public abstract int match(SRE_STATE state);
+
+    protected static int ptr(SRE_STATE state) {
+        return state.ptr;
+    }
+
+    protected static int end(SRE_STATE state) {
+        return state.end;
+    }
+
+    protected static int success(SRE_STATE state, int ptr) {
+        state.ptr = ptr;
+        return 1;
+    }
+
+    /** Count a step of the match, as {@link SRE_STATE#SRE_STEP()} does. */
+    protected static boolean step(SRE_STATE state) {
+        return state.SRE_STEP();
+    }
+
+    protected static int charAt(SRE_STATE state, int index) {
+        return state.charAt(index);
+    }
+
+    protected static int lower(SRE_STATE state, int ch) {
+        return state.lower(ch);
+    }
+
+    protected static boolean category(SRE_STATE state, int category, int ch) {
+        return state.sre_category(category, ch);
+    }
+
+    protected static boolean at(SRE_STATE state, int ptr, int at) {
+        return state.SRE_AT(ptr, at);
+    }
+
+    protected final boolean charset(SRE_STATE state, int setidx, int ch) {
+        return state.SRE_CHARSET(code, setidx, ch);
+    }
+
+    /** Set a mark, as the operation {@code MARK} does. */
+    protected static void mark(SRE_STATE state, int i, int ptr) {
+        if ((i & 1) != 0) {
+            state.lastindex = i / 2 + 1;
+        }
+        if (i > state.lastmark) {
+            state.lastmark = i;
+        }
+        state.mark[i] = ptr;
+    }
+
+    protected static int lastmark(SRE_STATE state) {
+        return state.lastmark;
+    }
+
+    protected static int lastindex(SRE_STATE state) {
+        return state.lastindex;
+    }
+
+    protected static void restore(SRE_STATE state, int lastmark, int lastindex) {
+        state.LASTMARK_RESTORE(lastmark, lastindex);
+    }
+
+    /**
+     * Match a back reference, as the operations {@code GROUPREF} and {@code GROUPREF_IGNORE} do.
+     *
+     * @return the position after the text matched, or -1 if it does not match
+     */
+    protected static int groupref(SRE_STATE state, int group, int ptr, boolean ignore) {
+        int p = state.mark[group + group];
+        int e = state.mark[group + group + 1];
+        if (p == -1 || e == -1 || e < p) {
+            return -1;
+        }
+        int end = state.end;
+        while (p < e) {
+            if (ptr >= end) {
+                return -1;
+            }
+            int a = state.charAt(ptr++);
+            int b = state.charAt(p++);
+            if (ignore ? state.lower(a) != state.lower(b) : a != b) {
+                return -1;
+            }
+        }
+        return ptr;
+    }
+
+    /**
+     * Test a look-ahead or look-behind assertion, {@code <ASSERT> <skip> <back> <pattern>} or the
+     * same with {@code ASSERT_NOT}, by interpreting its pattern.
+     *
+     * @param pidx index in the code of the skip after the operation
+     * @return 1 if the assertion holds, 0 if it does not, or an error code less than 0
+     */
+    protected final int assertion(SRE_STATE state, int pidx, int ptr, boolean not) {
+        state.ptr = ptr - code[pidx + 1];
+        if (!not) {
+            if (state.ptr < state.beginning) {
+                return 0;
+            }
+            int i = state.SRE_MATCH(code, pidx + 2);
+            return i <= 0 ? i : 1;
+        } else if (state.ptr >= state.beginning) {
+            int i = state.SRE_MATCH(code, pidx + 2);
+            if (i != 0) {
+                return i < 0 ? i : 0;
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,737 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.modules.sre;
+
+import static org.objectweb.asm.Opcodes.*;
+import static org.python.modules.sre.SRE_STATE.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.python.core.BytecodeLoader;
+
+/**
+ * Translates the code of a regular expression into a subclass of {@link CompiledPattern}, whose
+ * {@code match} method does what {@link SRE_STATE#SRE_MATCH(int[], int)} does for that code,
+ * but as straight-line code with the characters, sets and counts of the pattern as constants.
+ * <p>
+ * Where the interpreter pushes a context to try each way a repeat or an alternation might match, the
+ * generated code keeps the position of each such choice in a local variable, and a failure jumps
+ * back to the latest choice still open. Each such return counts as a step of the match. This works for patterns made of literals, sets,
+ * categories, marks, anchors, alternations and repeats of a single character, which are most of
+ * those used in practice. Assertions are tested by the interpreter. Patterns with general repeats
+ * (of a group, say) or conditional groups are not compiled, and the interpreter runs them.
+ */
+final class PatternCompiler {
+
+    /** Thrown when the code has an operation that is not translated. */
+    private static class Unsupported extends Exception {
+
+        Unsupported(String message) {
+            super(message);
+        }
+    }
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private static final String BASE = Type.getInternalName(CompiledPattern.class);
+    private static final String MATCH = Type.getMethodDescriptor(Type.INT_TYPE,
+            Type.getType(SRE_STATE.class));
+    private static final String STATE_INT = "(" + Type.getDescriptor(SRE_STATE.class) + ")I";
+    private static final String STATE_INT_INT =
+            "(" + Type.getDescriptor(SRE_STATE.class) + "I)I";
+    private static final String STATE_INT_INT_Z =
+            "(" + Type.getDescriptor(SRE_STATE.class) + "II)Z";
+    private static final String STATE_INT_INT_V =
+            "(" + Type.getDescriptor(SRE_STATE.class) + "II)V";
+    private static final String STATE_Z = "(" + Type.getDescriptor(SRE_STATE.class) + ")Z";
+
+    /* Local variables of the generated match method */
+    private static final int THIS = 0;
+    private static final int STATE = 1;
+    private static final int PTR = 2;
+    private static final int END = 3;
+
+    private final int[] code;
+    private MethodVisitor mv;
+    private int nextLocal = END + 1;
+
+    private PatternCompiler(int[] code) {
+        this.code = code;
+    }
+
+    /**
+     * Compile the code of a pattern.
+     *
+     * @param code of the pattern, as made by {@code sre_compile.py}
+     * @return the compiled pattern, or null if the code cannot be compiled
+     */
+    static CompiledPattern compile(int[] code) {
+        String name = "org.python.modules.sre.CompiledPattern$" + nextId.getAndIncrement();
+        try {
+            byte[] bytes = new PatternCompiler(code).generate(name.replace('.', '/'));
+            Class<?> c = BytecodeLoader.makeClass(name, bytes, CompiledPattern.class);
+            return (CompiledPattern)c.getConstructor(int[].class).newInstance((Object)code);
+        } catch (Unsupported e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not expected, but a very long pattern might make a method too large for the JVM
+            return null;
+        }
+    }
+
+    private byte[] generate(String className) throws Unsupported {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cw.visit(V1_7, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, BASE, null);
+
+        mv = cw.visitMethod(ACC_PUBLIC, "<init>", "([I)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, THIS);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESPECIAL, BASE, "<init>", "([I)V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "match", MATCH, null, null);
+        mv.visitCode();
+        Label init = new Label();
+        Label body = new Label();
+        mv.visitJumpInsn(GOTO, init);
+        mv.visitLabel(body);
+        callState("ptr", STATE_INT);
+        mv.visitVarInsn(ISTORE, PTR);
+        callState("end", STATE_INT);
+        mv.visitVarInsn(ISTORE, END);
+
+        Label fail = new Label();
+        int pidx = 0;
+        if (code[0] == SRE_OP_INFO) {
+            /* <INFO> <1=skip> <2=flags> <3=min> ... */
+            if (code[3] != 0) {
+                mv.visitVarInsn(ILOAD, END);
+                mv.visitVarInsn(ILOAD, PTR);
+                mv.visitInsn(ISUB);
+                push(code[3]);
+                mv.visitJumpInsn(IF_ICMPLT, fail);
+            }
+            pidx = code[1] + 1;
+        }
+        if (sequence(pidx, code.length, fail) != code.length) {
+            throw new Unsupported("pattern does not end with SUCCESS");
+        }
+
+        mv.visitLabel(fail);
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(IRETURN);
+
+        /*
+         * Give every other local variable a value first, as the verifier cannot tell that a
+         * failure only returns into an alternative of a branch after that alternative has set the
+         * variables of its choice points.
+         */
+        mv.visitLabel(init);
+        for (int i = END + 1; i < nextLocal; i++) {
+            mv.visitInsn(ICONST_0);
+            mv.visitVarInsn(ISTORE, i);
+        }
+        mv.visitJumpInsn(GOTO, body);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Generate the code for the operations from {@code pidx} up to {@code end}, or to a
+     * {@code SUCCESS}. A failure jumps to {@code fail}, or to the latest choice point opened by
+     * these operations, which the next failure after them must also jump to. This is left in
+     * {@link #lastFail}.
+     *
+     * @return {@code code.length} if the operations end with {@code SUCCESS}, otherwise
+     *         {@code end}
+     */
+    private int sequence(int pidx, int end, Label fail) throws Unsupported {
+        while (pidx < end) {
+            int op = code[pidx];
+            switch (op) {
+
+                case SRE_OP_SUCCESS:
+                    mv.visitVarInsn(ALOAD, STATE);
+                    mv.visitVarInsn(ILOAD, PTR);
+                    callState("success", STATE_INT_INT);
+                    mv.visitInsn(IRETURN);
+                    lastFail = fail;
+                    return code.length;
+
+                case SRE_OP_FAILURE:
+                    mv.visitJumpInsn(GOTO, fail);
+                    lastFail = fail;
+                    return code.length;
+
+                case SRE_OP_MARK:
+                    /* <MARK> <gid> */
+                    mv.visitVarInsn(ALOAD, STATE);
+                    push(code[pidx + 1]);
+                    mv.visitVarInsn(ILOAD, PTR);
+                    callState("mark", STATE_INT_INT_V);
+                    pidx += 2;
+                    break;
+
+                case SRE_OP_AT:
+                    /* <AT> <code> */
+                    mv.visitVarInsn(ALOAD, STATE);
+                    mv.visitVarInsn(ILOAD, PTR);
+                    push(code[pidx + 1]);
+                    callState("at", STATE_INT_INT_Z);
+                    mv.visitJumpInsn(IFEQ, fail);
+                    pidx += 2;
+                    break;
+
+                case SRE_OP_LITERAL:
+                case SRE_OP_NOT_LITERAL:
+                case SRE_OP_LITERAL_IGNORE:
+                case SRE_OP_NOT_LITERAL_IGNORE:
+                case SRE_OP_CATEGORY:
+                case SRE_OP_ANY:
+                case SRE_OP_ANY_ALL:
+                case SRE_OP_IN:
+                case SRE_OP_IN_IGNORE:
+                    mv.visitVarInsn(ILOAD, PTR);
+                    mv.visitVarInsn(ILOAD, END);
+                    mv.visitJumpInsn(IF_ICMPGE, fail);
+                    testChar(pidx, PTR, fail, false);
+                    mv.visitIincInsn(PTR, 1);
+                    pidx += width(pidx);
+                    break;
+
+                case SRE_OP_INFO:
+                    pidx += code[pidx + 1] + 1;
+                    break;
+
+                case SRE_OP_BRANCH:
+                    pidx = branch(pidx, fail);
+                    fail = lastFail;
+                    break;
+
+                case SRE_OP_REPEAT_ONE:
+                case SRE_OP_MIN_REPEAT_ONE:
+                    if (code[pidx + 1 + code[pidx + 1]] == SRE_OP_SUCCESS) {
+                        // Nothing follows the repeat, so it need not be a choice point
+                        repeatOne(pidx, fail, null);
+                    } else {
+                        Label retry = new Label();
+                        repeatOne(pidx, fail, retry);
+                        fail = retry;
+                    }
+                    pidx += 1 + code[pidx + 1];
+                    break;
+
+                case SRE_OP_GROUPREF:
+                case SRE_OP_GROUPREF_IGNORE:
+                    mv.visitVarInsn(ALOAD, STATE);
+                    push(code[pidx + 1]);
+                    mv.visitVarInsn(ILOAD, PTR);
+                    push(op == SRE_OP_GROUPREF_IGNORE ? 1 : 0);
+                    mv.visitMethodInsn(INVOKESTATIC, BASE, "groupref",
+                            "(" + Type.getDescriptor(SRE_STATE.class) + "IIZ)I", false);
+                    mv.visitVarInsn(ISTORE, PTR);
+                    mv.visitVarInsn(ILOAD, PTR);
+                    mv.visitJumpInsn(IFLT, fail);
+                    pidx += 2;
+                    break;
+
+                case SRE_OP_ASSERT:
+                case SRE_OP_ASSERT_NOT:
+                    /* <ASSERT> <skip> <back> <pattern> */
+                    assertion(pidx, op == SRE_OP_ASSERT_NOT, fail);
+                    pidx += 1 + code[pidx + 1];
+                    break;
+
+                default:
+                    throw new Unsupported("operation " + op);
+            }
+        }
+        lastFail = fail;
+        return end;
+    }
+
+    /** The latest choice point left by {@link #sequence(int, int, Label)} or a branch. */
+    private Label lastFail;
+
+    /** The number of code words taken by the single character operation at {@code pidx}. */
+    private int width(int pidx) {
+        switch (code[pidx]) {
+            case SRE_OP_ANY:
+            case SRE_OP_ANY_ALL:
+                return 1;
+            case SRE_OP_IN:
+            case SRE_OP_IN_IGNORE:
+                return 1 + code[pidx + 1];
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * Test the character at the index in the given local variable against the single character
+     * operation at {@code pidx}, and jump to {@code fail} if it does not match. The index must be
+     * less than the end.
+     *
+     * @param counting if the test is in a repeat (where a literal is not made lower case again)
+     */
+    private void testChar(int pidx, int index, Label fail, boolean counting) throws Unsupported {
+        int op = code[pidx];
+        switch (op) {
+            case SRE_OP_ANY_ALL:
+                break;
+
+            case SRE_OP_LITERAL:
+            case SRE_OP_NOT_LITERAL:
+                loadChar(index);
+                push(code[pidx + 1]);
+                mv.visitJumpInsn(op == SRE_OP_LITERAL ? IF_ICMPNE : IF_ICMPEQ, fail);
+                break;
+
+            case SRE_OP_LITERAL_IGNORE:
+            case SRE_OP_NOT_LITERAL_IGNORE:
+                mv.visitVarInsn(ALOAD, STATE);
+                loadChar(index);
+                callState("lower", STATE_INT_INT);
+                if (counting) {
+                    push(code[pidx + 1]);
+                } else {
+                    mv.visitVarInsn(ALOAD, STATE);
+                    push(code[pidx + 1]);
+                    callState("lower", STATE_INT_INT);
+                }
+                mv.visitJumpInsn(op == SRE_OP_LITERAL_IGNORE ? IF_ICMPNE : IF_ICMPEQ, fail);
+                break;
+
+            case SRE_OP_ANY:
+                loadChar(index);
+                push('\n');
+                mv.visitJumpInsn(IF_ICMPEQ, fail);
+                break;
+
+            case SRE_OP_CATEGORY:
+                mv.visitVarInsn(ALOAD, STATE);
+                push(code[pidx + 1]);
+                loadChar(index);
+                callState("category", STATE_INT_INT_Z);
+                mv.visitJumpInsn(IFEQ, fail);
+                break;
+
+            case SRE_OP_IN:
+                loadChar(index);
+                charset(pidx + 2, fail);
+                break;
+
+            case SRE_OP_IN_IGNORE:
+                mv.visitVarInsn(ALOAD, STATE);
+                loadChar(index);
+                callState("lower", STATE_INT_INT);
+                charset(pidx + 2, fail);
+                break;
+
+            default:
+                throw new Unsupported("single character operation " + op);
+        }
+    }
+
+    /** Push the character at the index in the given local variable. */
+    private void loadChar(int index) {
+        mv.visitVarInsn(ALOAD, STATE);
+        mv.visitVarInsn(ILOAD, index);
+        callState("charAt", STATE_INT_INT);
+    }
+
+    /**
+     * Test the character on the stack for membership of the set at {@code setidx}, as
+     * {@link SRE_STATE#SRE_CHARSET(int[], int, int)} does, and jump to {@code fail} if it is not
+     * in the set. The items of the set become tests of constants, unless there is one we do not
+     * translate, when the whole test is left to {@code SRE_CHARSET}.
+     */
+    private void charset(int setidx, Label fail) {
+        int c = nextLocal++;
+        mv.visitVarInsn(ISTORE, c);
+        if (!simpleCharset(setidx)) {
+            mv.visitVarInsn(ALOAD, THIS);
+            mv.visitVarInsn(ALOAD, STATE);
+            push(setidx);
+            mv.visitVarInsn(ILOAD, c);
+            mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "charset", STATE_INT_INT_Z, false);
+            mv.visitJumpInsn(IFEQ, fail);
+            return;
+        }
+
+        Label in = new Label();
+        boolean ok = true;
+        for (int p = setidx;;) {
+            Label hit = ok ? in : fail;
+            switch (code[p++]) {
+                case SRE_OP_FAILURE:
+                    mv.visitJumpInsn(GOTO, ok ? fail : in);
+                    mv.visitLabel(in);
+                    return;
+
+                case SRE_OP_LITERAL:
+                    mv.visitVarInsn(ILOAD, c);
+                    push(code[p++]);
+                    mv.visitJumpInsn(IF_ICMPEQ, hit);
+                    break;
+
+                case SRE_OP_CATEGORY:
+                    mv.visitVarInsn(ALOAD, STATE);
+                    push(code[p++]);
+                    mv.visitVarInsn(ILOAD, c);
+                    callState("category", STATE_INT_INT_Z);
+                    mv.visitJumpInsn(IFNE, hit);
+                    break;
+
+                case SRE_OP_CHARSET: {
+                    /* <CHARSET> <bitmap> (32 bits per code word) */
+                    Label miss = new Label();
+                    mv.visitVarInsn(ILOAD, c);
+                    push(256);
+                    mv.visitJumpInsn(IF_ICMPGE, miss);
+                    mv.visitVarInsn(ALOAD, THIS);
+                    mv.visitFieldInsn(GETFIELD, BASE, "code", "[I");
+                    mv.visitVarInsn(ILOAD, c);
+                    mv.visitInsn(ICONST_5);
+                    mv.visitInsn(ISHR);
+                    push(p);
+                    mv.visitInsn(IADD);
+                    mv.visitInsn(IALOAD);
+                    mv.visitInsn(ICONST_1);
+                    mv.visitVarInsn(ILOAD, c);
+                    mv.visitInsn(ISHL);
+                    mv.visitInsn(IAND);
+                    mv.visitJumpInsn(IFNE, hit);
+                    mv.visitLabel(miss);
+                    p += 8;
+                    break;
+                }
+
+                case SRE_OP_RANGE: {
+                    /* <RANGE> <lower> <upper> */
+                    Label miss = new Label();
+                    mv.visitVarInsn(ILOAD, c);
+                    push(code[p]);
+                    mv.visitJumpInsn(IF_ICMPLT, miss);
+                    mv.visitVarInsn(ILOAD, c);
+                    push(code[p + 1]);
+                    mv.visitJumpInsn(IF_ICMPLE, hit);
+                    mv.visitLabel(miss);
+                    p += 2;
+                    break;
+                }
+
+                case SRE_OP_NEGATE:
+                    ok = !ok;
+                    break;
+            }
+        }
+    }
+
+    /** Whether every item of the set at {@code setidx} is one {@link #charset} translates. */
+    private boolean simpleCharset(int setidx) {
+        for (int p = setidx;;) {
+            switch (code[p++]) {
+                case SRE_OP_FAILURE:
+                    return true;
+                case SRE_OP_LITERAL:
+                case SRE_OP_CATEGORY:
+                    p++;
+                    break;
+                case SRE_OP_CHARSET:
+                    p += 8;
+                    break;
+                case SRE_OP_RANGE:
+                    p += 2;
+                    break;
+                case SRE_OP_NEGATE:
+                    break;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Generate an alternation {@code <BRANCH> <0=skip> code <JUMP> ... <NULL>}. Each alternative
+     * is tried in turn from the same position, and the code after the branch follows each. A local
+     * variable records which alternative matched, so that a later failure may return into it, and
+     * then on to the next alternative. The label for that is left in {@link #lastFail}.
+     *
+     * @return the index of the code after the branch
+     */
+    private int branch(int pidx, Label fail) throws Unsupported {
+        int start = nextLocal++;
+        int lastmark = nextLocal++;
+        int lastindex = nextLocal++;
+        int alternative = nextLocal++;
+        saveMarks(lastmark, lastindex);
+        mv.visitVarInsn(ILOAD, PTR);
+        mv.visitVarInsn(ISTORE, start);
+
+        // Find the alternatives
+        int count = 0;
+        for (int p = pidx + 1; code[p] != 0; p += code[p]) {
+            if (code[p + code[p] - 2] != SRE_OP_JUMP) {
+                throw new Unsupported("alternative does not end with JUMP");
+            }
+            count++;
+        }
+        if (count == 0) {
+            throw new Unsupported("empty branch");
+        }
+        Label[] resume = new Label[count];
+        Label join = new Label();
+        Label next = new Label();
+        int k = 0;
+        int p = pidx + 1;
+        for (; code[p] != 0; p += code[p], k++) {
+            mv.visitLabel(next);
+            next = new Label();
+            if (k > 0) {
+                restoreMarks(lastmark, lastindex);
+                step();
+            }
+            push(k);
+            mv.visitVarInsn(ISTORE, alternative);
+            mv.visitVarInsn(ILOAD, start);
+            mv.visitVarInsn(ISTORE, PTR);
+            sequence(p + 1, p + code[p] - 2, next);
+            resume[k] = lastFail;
+            mv.visitJumpInsn(GOTO, join);
+        }
+        // All alternatives failed
+        mv.visitLabel(next);
+        restoreMarks(lastmark, lastindex);
+        mv.visitJumpInsn(GOTO, fail);
+
+        // A later failure returns into the alternative that matched
+        Label dispatch = new Label();
+        mv.visitLabel(dispatch);
+        mv.visitVarInsn(ILOAD, alternative);
+        mv.visitTableSwitchInsn(0, count - 1, fail, resume);
+
+        mv.visitLabel(join);
+        lastFail = dispatch;
+        return p + 1;
+    }
+
+    /**
+     * Generate a repeat of a single character, {@code <REPEAT_ONE> <skip> <1=min> <2=max> item
+     * <SUCCESS> tail}, or the same with {@code MIN_REPEAT_ONE}, as far as the tail. If
+     * {@code retry} is not null, a failure in the tail should jump to it, to try the tail again
+     * after one character fewer (or more, if minimizing).
+     */
+    private void repeatOne(int pidx, Label fail, Label retry) throws Unsupported {
+        int min = code[pidx + 2];
+        int max = code[pidx + 3];
+        int item = pidx + 4;
+        boolean minimizing = code[pidx] == SRE_OP_MIN_REPEAT_ONE;
+        if (code[item + width(item)] != SRE_OP_SUCCESS) {
+            throw new Unsupported("repeated item is not a single character");
+        }
+        switch (code[item]) {
+            case SRE_OP_LITERAL:
+            case SRE_OP_NOT_LITERAL:
+            case SRE_OP_LITERAL_IGNORE:
+            case SRE_OP_NOT_LITERAL_IGNORE:
+            case SRE_OP_CATEGORY:
+            case SRE_OP_ANY:
+            case SRE_OP_ANY_ALL:
+            case SRE_OP_IN:
+            case SRE_OP_IN_IGNORE:
+                break;
+            default:
+                throw new Unsupported("repeated item " + code[item]);
+        }
+
+        // if (ptr + min > end) fail
+        mv.visitVarInsn(ILOAD, PTR);
+        push(min);
+        mv.visitInsn(IADD);
+        mv.visitVarInsn(ILOAD, END);
+        mv.visitJumpInsn(IF_ICMPGT, fail);
+
+        int base = nextLocal++;
+        mv.visitVarInsn(ILOAD, PTR);
+        mv.visitVarInsn(ISTORE, base);
+
+        // Count the items, as many as may be or (if minimizing) the fewest
+        int limit = nextLocal++;
+        if (minimizing) {
+            mv.visitVarInsn(ILOAD, PTR);
+            push(min);
+            mv.visitInsn(IADD);
+            mv.visitVarInsn(ISTORE, limit);
+        } else if (max == 65535) {
+            mv.visitVarInsn(ILOAD, END);
+            mv.visitVarInsn(ISTORE, limit);
+        } else {
+            Label toEnd = new Label();
+            Label done = new Label();
+            mv.visitVarInsn(ILOAD, END);
+            mv.visitVarInsn(ILOAD, PTR);
+            mv.visitInsn(ISUB);
+            push(max);
+            mv.visitJumpInsn(IF_ICMPLE, toEnd);
+            mv.visitVarInsn(ILOAD, PTR);
+            push(max);
+            mv.visitInsn(IADD);
+            mv.visitVarInsn(ISTORE, limit);
+            mv.visitJumpInsn(GOTO, done);
+            mv.visitLabel(toEnd);
+            mv.visitVarInsn(ILOAD, END);
+            mv.visitVarInsn(ISTORE, limit);
+            mv.visitLabel(done);
+        }
+        if (!minimizing || min > 0) {
+            Label loop = new Label();
+            Label counted = new Label();
+            mv.visitLabel(loop);
+            mv.visitVarInsn(ILOAD, PTR);
+            mv.visitVarInsn(ILOAD, limit);
+            mv.visitJumpInsn(IF_ICMPGE, counted);
+            testChar(item, PTR, counted, true);
+            mv.visitIincInsn(PTR, 1);
+            mv.visitJumpInsn(GOTO, loop);
+            mv.visitLabel(counted);
+        }
+
+        // if (ptr - base < min) fail
+        if (min > 0) {
+            mv.visitVarInsn(ILOAD, PTR);
+            mv.visitVarInsn(ILOAD, base);
+            mv.visitInsn(ISUB);
+            push(min);
+            mv.visitJumpInsn(IF_ICMPLT, fail);
+        }
+        if (retry == null) {
+            return;
+        }
+
+        /*
+         * The tail follows. A failure in it comes back to retry, which moves the end of the repeat
+         * (in position) one back, or if minimizing one on, and tries the tail again from there.
+         */
+        int position = nextLocal++;
+        int lastmark = nextLocal++;
+        int lastindex = nextLocal++;
+        mv.visitVarInsn(ILOAD, PTR);
+        mv.visitVarInsn(ISTORE, position);
+        saveMarks(lastmark, lastindex);
+        Label tail = new Label();
+        mv.visitJumpInsn(GOTO, tail);
+
+        mv.visitLabel(retry);
+        step();
+        if (minimizing) {
+            // if (max != 65535 && position - base >= max) fail
+            if (max != 65535) {
+                mv.visitVarInsn(ILOAD, position);
+                mv.visitVarInsn(ILOAD, base);
+                mv.visitInsn(ISUB);
+                push(max);
+                mv.visitJumpInsn(IF_ICMPGE, fail);
+            }
+            mv.visitVarInsn(ILOAD, position);
+            mv.visitVarInsn(ILOAD, END);
+            mv.visitJumpInsn(IF_ICMPGE, fail);
+            testChar(item, position, fail, true);
+            mv.visitIincInsn(position, 1);
+            restoreMarks(lastmark, lastindex);
+        } else {
+            // if (--position - base < min) fail
+            mv.visitIincInsn(position, -1);
+            restoreMarks(lastmark, lastindex);
+            mv.visitVarInsn(ILOAD, position);
+            mv.visitVarInsn(ILOAD, base);
+            mv.visitInsn(ISUB);
+            push(min);
+            mv.visitJumpInsn(IF_ICMPLT, fail);
+        }
+
+        mv.visitLabel(tail);
+        mv.visitVarInsn(ILOAD, position);
+        mv.visitVarInsn(ISTORE, PTR);
+    }
+
+    /** Generate a test of an assertion (by the interpreter), {@code <ASSERT> <skip> ...}. */
+    private void assertion(int pidx, boolean not, Label fail) {
+        Label holds = new Label();
+        int status = nextLocal++;
+        mv.visitVarInsn(ALOAD, THIS);
+        mv.visitVarInsn(ALOAD, STATE);
+        push(pidx + 1);
+        mv.visitVarInsn(ILOAD, PTR);
+        push(not ? 1 : 0);
+        mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "assertion",
+                "(" + Type.getDescriptor(SRE_STATE.class) + "IIZ)I", false);
+        mv.visitVarInsn(ISTORE, status);
+        mv.visitVarInsn(ILOAD, status);
+        mv.visitJumpInsn(IFGT, holds);
+        mv.visitVarInsn(ILOAD, status);
+        mv.visitJumpInsn(IFEQ, fail);
+        // An error in the interpreter
+        mv.visitVarInsn(ILOAD, status);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(holds);
+    }
+
+    /** Generate the count of a step (a way to match tried again), returning if out of steps. */
+    private void step() {
+        Label more = new Label();
+        mv.visitVarInsn(ALOAD, STATE);
+        mv.visitMethodInsn(INVOKESTATIC, BASE, "step", STATE_Z, false);
+        mv.visitJumpInsn(IFNE, more);
+        push(SRE_ERROR_STEP_LIMIT);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(more);
+    }
+
+    private void saveMarks(int lastmark, int lastindex) {
+        callState("lastmark", STATE_INT);
+        mv.visitVarInsn(ISTORE, lastmark);
+        callState("lastindex", STATE_INT);
+        mv.visitVarInsn(ISTORE, lastindex);
+    }
+
+    private void restoreMarks(int lastmark, int lastindex) {
+        mv.visitVarInsn(ALOAD, STATE);
+        mv.visitVarInsn(ILOAD, lastmark);
+        mv.visitVarInsn(ILOAD, lastindex);
+        callState("restore", STATE_INT_INT_V);
+    }
+
+    /**
+     * Call a static method of {@link CompiledPattern}. Those taking only the state are given it
+     * here; the arguments of others must be on the stack already.
+     */
+    private void callState(String name, String descriptor) {
+        if (descriptor.equals(STATE_INT)) {
+            mv.visitVarInsn(ALOAD, STATE);
+        }
+        mv.visitMethodInsn(INVOKESTATIC, BASE, name, descriptor, false);
+    }
+
+    private void push(int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+}
@@ -33,6 +33,13 @@ public class PatternObject extends PyObject implements Traverseproc {
     org.python.core.PyObject indexgroup;
     public int codesize;
 
+    /** Number of times the pattern has been used, until it is compiled (or fails to compile). */
+    private int uses;
+    /** The pattern compiled to bytecode once it is hot, or null. */
+    private volatile CompiledPattern program;
+    /** What is known of the pattern for searching with it, made when it is first used. */
+    private SearchPlan plan;
+
 
     public PatternObject(PyString pattern, int flags, int[] code,
             int groups, PyObject groupindex, PyObject indexgroup) {
@@ -77,10 +84,10 @@ public class PatternObject extends PyObject implements Traverseproc {
         PyString string = extractPyString(ap, 0);
         int start = ap.getInt(1, 0);
         int end = ap.getInt(2, string.__len__());
-        SRE_STATE state = new SRE_STATE(string, start, end, flags);
+        SRE_STATE state = state(string, start, end);
 
         state.ptr = state.start;
-        int status = state.SRE_MATCH(code, 0, 1);
+        int status = state.SRE_MATCH_START(code, 0);
 
         MatchObject matchObject = _pattern_new_match(state, string, status);
         return matchObject != null ? matchObject : Py.None;
@@ -94,7 +101,7 @@ public class PatternObject extends PyObject implements Traverseproc {
         int start = ap.getInt(1, 0);
         int end = ap.getInt(2, string.__len__());
 
-        SRE_STATE state = new SRE_STATE(string, start, end, flags);
+        SRE_STATE state = state(string, start, end);
 
         int status = state.SRE_SEARCH(code, 0);
 
@@ -149,7 +156,7 @@ public class PatternObject extends PyObject implements Traverseproc {
             }
         }
 
-        SRE_STATE state = new SRE_STATE(string, 0, Integer.MAX_VALUE, flags);
+        SRE_STATE state = state(string, 0, Integer.MAX_VALUE);
 
         PyList list = new PyList();
 
@@ -221,7 +228,7 @@ public class PatternObject extends PyObject implements Traverseproc {
         PyString string = extractPyString(ap, 0);
         int maxsplit = ap.getInt(1, 0);
 
-        SRE_STATE state = new SRE_STATE(string, 0, Integer.MAX_VALUE, flags);
+        SRE_STATE state = state(string, 0, Integer.MAX_VALUE);
 
         PyList list = new PyList();
 
@@ -278,7 +285,7 @@ public class PatternObject extends PyObject implements Traverseproc {
         int start = ap.getInt(1, 0);
         int end = ap.getInt(2, Integer.MAX_VALUE);
 
-        SRE_STATE state = new SRE_STATE(string, start, end, flags);
+        SRE_STATE state = state(string, start, end);
 
         final List<PyObject> list = new ArrayList<PyObject>();
 
@@ -336,10 +343,7 @@ public class PatternObject extends PyObject implements Traverseproc {
         PyString string = extractPyString(ap, 0);
 
         ScannerObject self = new ScannerObject();
-        self.state = new SRE_STATE(string,
-                                   ap.getInt(1, 0),
-                                   ap.getInt(2, Integer.MAX_VALUE),
-                                   flags);
+        self.state = state(string, ap.getInt(1, 0), ap.getInt(2, Integer.MAX_VALUE));
         self.pattern = this;
         self.string = string;
         return self;
@@ -347,9 +351,35 @@ public class PatternObject extends PyObject implements Traverseproc {
 
 
 
+    /**
+     * Create the state for matching this pattern in the given string, with the plan for searching
+     * with the pattern, and its compiled form once it has been used {@link Options#sreJitThreshold}
+     * times.
+     */
+    private SRE_STATE state(PyString string, int start, int end) {
+        SRE_STATE state = new SRE_STATE(string, start, end, flags, groups);
+        SearchPlan plan = this.plan;
+        if (plan == null) {
+            // The plan is immutable, so a race only makes it twice
+            this.plan = plan = SearchPlan.of(code, state);
+        }
+        state.plan = plan;
+        CompiledPattern program = this.program;
+        if (program == null && uses >= 0 && Options.sreJitThreshold >= 0
+                && ++uses > Options.sreJitThreshold) {
+            // Only try once (a race may compile twice, harmlessly)
+            uses = -1;
+            this.program = program = PatternCompiler.compile(code);
+        }
+        state.program = program;
+        return state;
+    }
+
     private void _error(int status) {
         if (status == SRE_STATE.SRE_ERROR_RECURSION_LIMIT)
             throw Py.RuntimeError("maximum recursion limit exceeded");
+        if (status == SRE_STATE.SRE_ERROR_STEP_LIMIT)
+            throw Py.RuntimeError("maximum steps exceeded in regular expression");
 
         throw Py.RuntimeError("internal error in regular expression engine");
     }
@@ -409,8 +439,10 @@ public class PatternObject extends PyObject implements Traverseproc {
         } else {
             // Try to get a byte-oriented buffer
             try (PyBuffer buf = ((BufferProtocol) obj).getBuffer(PyBUF.SIMPLE)) {
-                // ... and wrap those bytes as a PyString
-                return new PyString(buf.toString());
+                // ... and wrap a copy of those bytes (one byte each) as a PyString
+                byte[] bytes = new byte[buf.getLen()];
+                buf.copyTo(bytes, 0);
+                return PyString.fromBytes(bytes);
             } catch (ClassCastException e) {
                 throw Py.TypeError("expected string or buffer, but got " + obj.getType());
             }
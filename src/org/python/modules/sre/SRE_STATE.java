@@ -113,12 +113,14 @@ for line in sys.stdin:
     //END generated code
 
     //From here we're including things from _sre.c in the order they're defined there
-    public static final int USE_RECURSION_LIMIT = 5000;
+    /* contexts, not Java frames, so far more than the 5000 frames of _sre.c */
+    public static final int USE_RECURSION_LIMIT = 200000;
 
     /* error codes */
     public static final int SRE_ERROR_ILLEGAL = -1;
     public static final int SRE_ERROR_STATE   = -2;
     public static final int SRE_ERROR_RECURSION_LIMIT = -3;
+    public static final int SRE_ERROR_STEP_LIMIT = -4;
 
     /* default character predicates (run sre_chars.py to regenerate tables) */
     static final int SRE_DIGIT_MASK = 1;
@@ -319,13 +321,13 @@ for line in sys.stdin:
             return ptr == beginning;
 
         case SRE_AT_BEGINNING_LINE:
-            return (ptr == beginning || SRE_IS_LINEBREAK(str[ptr-1]));
+            return (ptr == beginning || SRE_IS_LINEBREAK(charAt(ptr-1)));
 
         case SRE_AT_END:
-            return (ptr+1 == end && SRE_IS_LINEBREAK(str[ptr])) || ptr == end;
+            return (ptr+1 == end && SRE_IS_LINEBREAK(charAt(ptr))) || ptr == end;
 
         case SRE_AT_END_LINE:
-            return ptr == end || SRE_IS_LINEBREAK(str[ptr]);
+            return ptr == end || SRE_IS_LINEBREAK(charAt(ptr));
 
         case SRE_AT_END_STRING:
             return ptr == end;
@@ -334,24 +336,24 @@ for line in sys.stdin:
             /* word boundary */
             if (beginning == end)
                 return false;
-            thatp = (ptr > beginning) ? SRE_IS_WORD(str[ptr-1]) : false;
-            thisp = (ptr < end) ? SRE_IS_WORD(str[ptr]) : false;
+            thatp = (ptr > beginning) ? SRE_IS_WORD(charAt(ptr-1)) : false;
+            thisp = (ptr < end) ? SRE_IS_WORD(charAt(ptr)) : false;
             return thisp != thatp;
 
         case SRE_AT_NON_BOUNDARY:
             /* word non-boundary */
             if (beginning == end)
                 return false;
-            thatp = (ptr > beginning) ? SRE_IS_WORD(str[ptr-1]) : false;
-            thisp = (ptr < end) ? SRE_IS_WORD(str[ptr]) : false;
+            thatp = (ptr > beginning) ? SRE_IS_WORD(charAt(ptr-1)) : false;
+            thisp = (ptr < end) ? SRE_IS_WORD(charAt(ptr)) : false;
             return thisp == thatp;
 
         case SRE_AT_LOC_BOUNDARY:
         case SRE_AT_UNI_BOUNDARY:
             if (beginning == end)
                 return false;
-            thatp = (ptr > beginning) ? SRE_LOC_IS_WORD(str[ptr-1]) : false;
-            thisp = (ptr < end) ? SRE_LOC_IS_WORD(str[ptr]) : false;
+            thatp = (ptr > beginning) ? SRE_LOC_IS_WORD(charAt(ptr-1)) : false;
+            thisp = (ptr < end) ? SRE_LOC_IS_WORD(charAt(ptr)) : false;
             return thisp != thatp;
 
         case SRE_AT_LOC_NON_BOUNDARY:
@@ -359,8 +361,8 @@ for line in sys.stdin:
             /* word non-boundary */
             if (beginning == end)
                 return false;
-            thatp = (ptr > beginning) ? SRE_LOC_IS_WORD(str[ptr-1]) : false;
-            thisp = (ptr < end) ? SRE_LOC_IS_WORD(str[ptr]) : false;
+            thatp = (ptr > beginning) ? SRE_LOC_IS_WORD(charAt(ptr-1)) : false;
+            thisp = (ptr < end) ? SRE_LOC_IS_WORD(charAt(ptr)) : false;
             return thisp == thatp;
         }
 
@@ -458,7 +460,7 @@ for line in sys.stdin:
         }
     }
 
-    private int SRE_COUNT(int[] pattern, int pidx, int maxcount, int level) {
+    private int SRE_COUNT(int[] pattern, int pidx, int maxcount) {
         int chr;
         int ptr = this.ptr;
         int end = this.end;
@@ -473,14 +475,14 @@ for line in sys.stdin:
         case SRE_OP_IN:
             /* repeated set */
 //            TRACE(pidx, ptr, "COUNT IN");
-            while (ptr < end && SRE_CHARSET(pattern, pidx + 2, str[ptr]))
+            while (ptr < end && SRE_CHARSET(pattern, pidx + 2, charAt(ptr)))
                 ptr++;
             break;
 
         case SRE_OP_ANY:
             /* repeated dot wildcard. */
 //            TRACE(pidx, ptr, "COUNT ANY");
-            while (ptr < end && !SRE_IS_LINEBREAK(str[ptr]))
+            while (ptr < end && !SRE_IS_LINEBREAK(charAt(ptr)))
                 ptr++;
             break;
 
@@ -495,7 +497,7 @@ for line in sys.stdin:
             /* repeated literal */
             chr = pattern[pidx+1];
 //            TRACE(pidx, ptr, "COUNT LITERAL " + chr);
-            while (ptr < end && str[ptr] == chr)
+            while (ptr < end && charAt(ptr) == chr)
                 ptr++;
             break;
 
@@ -503,7 +505,7 @@ for line in sys.stdin:
             /* repeated literal */
             chr = pattern[pidx+1];
 //            TRACE(pidx, ptr, "COUNT LITERAL_IGNORE " + chr);
-            while (ptr < end && lower(str[ptr]) == chr)
+            while (ptr < end && lower(charAt(ptr)) == chr)
                 ptr++;
             break;
 
@@ -511,7 +513,7 @@ for line in sys.stdin:
             /* repeated non-literal */
             chr = pattern[pidx+1];
 //            TRACE(pidx, ptr, "COUNT NOT_LITERAL " + chr);
-            while (ptr < end && str[ptr] != chr)
+            while (ptr < end && charAt(ptr) != chr)
                 ptr++;
             break;
 
@@ -519,7 +521,7 @@ for line in sys.stdin:
             /* repeated non-literal */
             chr = pattern[pidx+1];
 //            TRACE(pidx, ptr, "COUNT NOT_LITERAL_IGNORE " + chr);
-            while (ptr < end && lower(str[ptr]) != chr)
+            while (ptr < end && lower(charAt(ptr)) != chr)
                 ptr++;
             break;
 
@@ -528,7 +530,7 @@ for line in sys.stdin:
             /* repeated single character pattern */
 //            TRACE(pidx, ptr, "COUNT SUBPATTERN");
             while (this.ptr < end) {
-                i = SRE_MATCH(pattern, pidx, level);
+                i = SRE_MATCH(pattern, pidx);
                 if (i < 0)
                     return i;
                 if (i == 0)
@@ -539,550 +541,792 @@ for line in sys.stdin:
         return ptr - this.ptr;
     }
 
-    final int SRE_MATCH(int[] pattern, int pidx, int level) {
-        /* check if string matches the given pattern.  returns <0 for
-           error, 0 for failure, and 1 for success */
+    /*
+     * SRE_MATCH does not call itself where _sre.c recurses: each (would be) recursive call saves
+     * the variables of the caller in a Context on a stack and goes on with the code called. When
+     * that returns, the Context on top is restored, and resumes at the point its jump names with
+     * the result. The depth of a match is so limited by USE_RECURSION_LIMIT on its contexts, not
+     * by the Java stack, and each call is a step counted against the budget set by
+     * python.sre.maxSteps.
+     */
 
-        int end = this.end;
-        int ptr = this.ptr;
-        int i, count;
-        int chr;
+    /* where a context resumes when the code it called returns (negative, unlike the operators) */
+    private static final int JUMP_BRANCH = -1;
+    private static final int JUMP_BRANCH_NEXT = -2;
+    private static final int JUMP_REPEAT_ONE = -3;
+    private static final int JUMP_REPEAT_ONE_NEXT = -4;
+    private static final int JUMP_REPEAT_ONE_LITERAL = -5;
+    private static final int JUMP_REPEAT_ONE_LITERAL_NEXT = -6;
+    private static final int JUMP_MIN_REPEAT_ONE = -7;
+    private static final int JUMP_MIN_REPEAT_ONE_NEXT = -8;
+    private static final int JUMP_REPEAT = -9;
+    private static final int JUMP_UNTIL_ITEM = -10;
+    private static final int JUMP_MAX_UNTIL_MORE = -11;
+    private static final int JUMP_MAX_UNTIL_TAIL = -12;
+    private static final int JUMP_MAX_UNTIL_TAIL_DONE = -13;
+    private static final int JUMP_MIN_UNTIL_TAIL = -14;
+    private static final int JUMP_ASSERT = -15;
+    private static final int JUMP_ASSERT_NOT = -16;
+
+    /** The variables of a context of SRE_MATCH that has called another, and where it resumes. */
+    private static final class Context {
+        int jump;
+        int pidx;
+        int ptr;
+        int count;
+        int lastmark;
+        int lastindex;
+        int mark_stack_base;
+        SRE_REPEAT rp;
+    }
 
-        int lastmark, lastindex, mark_stack_base = 0;
+    /**
+     * The contexts of the matches in progress on a thread, of which the top is
+     * {@code context[depth - 1]}. The states used on a thread share them, since no match can
+     * start while another is in progress, except one nested within it.
+     */
+    private static final class ContextStack {
+        /* the most contexts a thread keeps between matches */
+        static final int KEEP = 1024;
+
+        Context[] context = new Context[16];
+        int depth;
+
+        /** Push a context, or return null if that exceeds USE_RECURSION_LIMIT. */
+        Context push() {
+            Context ctx;
+            if (depth == context.length || (ctx = context[depth]) == null) {
+                if ((ctx = grow()) == null)
+                    return null;
+            }
+            depth++;
+            return ctx;
+        }
 
-//        TRACE(pidx, ptr, "ENTER " + level);
+        private Context grow() {
+            if (depth == context.length) {
+                if (depth >= USE_RECURSION_LIMIT)
+                    return null;
+                Context[] grown = new Context[Math.min(depth * 2, USE_RECURSION_LIMIT)];
+                System.arraycopy(context, 0, grown, 0, depth);
+                context = grown;
+            }
+            return context[depth] = new Context();
+        }
 
-        if (level > USE_RECURSION_LIMIT)
-           return SRE_ERROR_RECURSION_LIMIT;
+        /**
+         * End the outermost match on the thread, dropping the contexts beyond {@link #KEEP} a deep
+         * match made, so that the thread does not hold them (and the repeats they refer to).
+         */
+        void release() {
+            depth = 0;
+            if (context.length > KEEP)
+                context = new Context[KEEP];
+        }
+    }
 
-        if (pattern[pidx] == SRE_OP_INFO) {
-            /* optimization info block */
-            /* args: <1=skip> <2=flags> <3=min> ... */
-            if (pattern[pidx+3] != 0 && (end - ptr) < pattern[pidx+3]) {
-                return 0;
-            }
-            pidx += pattern[pidx+1] + 1;
+    private static final ThreadLocal<ContextStack> STACKS = new ThreadLocal<ContextStack>() {
+        @Override
+        protected ContextStack initialValue() {
+            return new ContextStack();
         }
+    };
 
+    /* the contexts of the thread this state was last reset on */
+    private ContextStack stack;
 
-        for (;;) {
+    /* steps the match may yet take (see python.sre.maxSteps) */
+    private long steps;
 
-            switch (pattern[pidx++]) {
-
-            case SRE_OP_MARK:
-                /* set mark */
-                /* <MARK> <gid> */
-//                TRACE(pidx, ptr, "MARK " + pattern[pidx]);
-                i = pattern[pidx];
-                if ((i & 1) != 0)
-                    this.lastindex = i / 2 + 1;
-                if (i > this.lastmark)
-                    this.lastmark = i;
-                mark[i] = ptr;
-                pidx++;
-                break;
+    /** Count a step, returning false if that exceeds the budget of the match. */
+    final boolean SRE_STEP() {
+        return --steps >= 0;
+    }
 
-            case SRE_OP_LITERAL:
-                /* match literal character */
-                /* <LITERAL> <code> */
-//                TRACE(pidx, ptr, "LITERAL " + pattern[pidx]);
+    final int SRE_MATCH(int[] pattern, int pidx) {
+        /* check if string matches the given pattern.  returns <0 for
+           error, 0 for failure, and 1 for success */
 
-                if (ptr >= end || str[ptr] != pattern[pidx])
-                    return 0;
-                pidx++;
-                ptr++;
-                break;
+        int end = this.end;
+        int ptr = this.ptr;
+        int i, count = 0;
+        int lastmark = 0, lastindex = 0, mark_stack_base = 0;
+        SRE_REPEAT rp = null;
+
+        int op = SRE_OP_FAILURE, ret = 0;
+        int jump = 0, child = 0;
+        boolean enter = true;
+
+        /* SRE_COUNT and compiled patterns run a match above the one in progress */
+        final ContextStack stack = this.stack;
+        final int base = stack.depth;
+        if (!SRE_STEP())
+            return SRE_ERROR_STEP_LIMIT;
+
+        main: for (;;) {
+
+            if (enter) {
+//                TRACE(pidx, ptr, "ENTER " + (stack.depth - base));
+                if (pattern[pidx] == SRE_OP_INFO) {
+                    /* optimization info block */
+                    /* args: <1=skip> <2=flags> <3=min> ... */
+                    if (pattern[pidx+3] != 0 && (end - ptr) < pattern[pidx+3])
+                        pidx = -1;
+                    else
+                        pidx += pattern[pidx+1] + 1;
+                }
+                op = pidx < 0 ? SRE_OP_FAILURE : pattern[pidx++];
+            }
 
-            case SRE_OP_NOT_LITERAL:
-                /* match anything that is not literal character */
-                /* args: <code> */
-//                TRACE(pidx, ptr, "NOT_LITERAL " + pattern[pidx]);
-                if (ptr >= end || str[ptr] == pattern[pidx])
-                    return 0;
-                pidx++;
-                ptr++;
-                break;
+            dispatch: for (;;) {
+
+                switch (op) {
+
+                case SRE_OP_MARK:
+                    /* set mark */
+                    /* <MARK> <gid> */
+//                    TRACE(pidx, ptr, "MARK " + pattern[pidx]);
+                    i = pattern[pidx];
+                    if ((i & 1) != 0)
+                        this.lastindex = i / 2 + 1;
+                    if (i > this.lastmark)
+                        this.lastmark = i;
+                    mark[i] = ptr;
+                    pidx++;
+                    break;
 
-            case SRE_OP_SUCCESS:
-                /* end of pattern */
-//                TRACE(pidx, ptr, "SUCCESS");
-                this.ptr = ptr;
-                return 1;
+                case SRE_OP_LITERAL:
+                    /* match literal character */
+                    /* <LITERAL> <code> */
+//                    TRACE(pidx, ptr, "LITERAL " + pattern[pidx]);
 
-            case SRE_OP_AT:
-                /* match at given position */
-                /* <AT> <code> */
-//                TRACE(pidx, ptr, "AT " + pattern[pidx]);
-                if (!SRE_AT(ptr, pattern[pidx]))
-                    return 0;
-                pidx++;
-                break;
+                    if (ptr >= end || charAt(ptr) != pattern[pidx]) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    pidx++;
+                    ptr++;
+                    break;
 
-            case SRE_OP_CATEGORY:
-                /* match at given category */
-                /* <CATEGORY> <code> */
-//                TRACE(pidx, ptr, "CATEGORY " + pattern[pidx]);
+                case SRE_OP_NOT_LITERAL:
+                    /* match anything that is not literal character */
+                    /* args: <code> */
+//                    TRACE(pidx, ptr, "NOT_LITERAL " + pattern[pidx]);
+                    if (ptr >= end || charAt(ptr) == pattern[pidx]) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    pidx++;
+                    ptr++;
+                    break;
 
-                if (ptr >= end || !sre_category(pattern[pidx], str[ptr]))
-                    return 0;
+                case SRE_OP_SUCCESS:
+                    /* end of pattern */
+//                    TRACE(pidx, ptr, "SUCCESS");
+                    this.ptr = ptr;
+                    ret = 1;
+                    break dispatch;
+
+                case SRE_OP_AT:
+                    /* match at given position */
+                    /* <AT> <code> */
+//                    TRACE(pidx, ptr, "AT " + pattern[pidx]);
+                    if (!SRE_AT(ptr, pattern[pidx])) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    pidx++;
+                    break;
 
-                pidx++;
-                ptr++;
-                break;
+                case SRE_OP_CATEGORY:
+                    /* match at given category */
+                    /* <CATEGORY> <code> */
+//                    TRACE(pidx, ptr, "CATEGORY " + pattern[pidx]);
 
-            case SRE_OP_ANY:
-                /* match anything */
-//                TRACE(pidx, ptr, "ANY");
-                if (ptr >= end || SRE_IS_LINEBREAK(str[ptr]))
-                    return 0;
-                ptr++;
-                break;
+                    if (ptr >= end || !sre_category(pattern[pidx], charAt(ptr))) {
+                        ret = 0;
+                        break dispatch;
+                    }
 
-            case SRE_OP_ANY_ALL:
-                /* match anything */
-                /* <ANY_ALL> */
-//                TRACE(pidx, ptr, "ANY_ALL");
-                if (ptr >= end)
-                    return 0;
-                ptr++;
-                break;
+                    pidx++;
+                    ptr++;
+                    break;
 
-            case SRE_OP_IN:
-                /* match set member (or non_member) */
-                /* <IN> <skip> <set> */
-//                TRACE(pidx, ptr, "IN");
-                if (ptr >= end || !SRE_CHARSET(pattern, pidx + 1, str[ptr]))
-                    return 0;
-                pidx += pattern[pidx];
-                ptr++;
-                break;
+                case SRE_OP_ANY:
+                    /* match anything */
+//                    TRACE(pidx, ptr, "ANY");
+                    if (ptr >= end || SRE_IS_LINEBREAK(charAt(ptr))) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    ptr++;
+                    break;
 
-            case SRE_OP_LITERAL_IGNORE:
-//                TRACE(pidx, ptr, "LITERAL_IGNORE " + pattern[pidx]);
-                if (ptr >= end || lower(str[ptr]) != lower(pattern[pidx]))
-                    return 0;
-                pidx++;
-                ptr++;
-                break;
+                case SRE_OP_ANY_ALL:
+                    /* match anything */
+                    /* <ANY_ALL> */
+//                    TRACE(pidx, ptr, "ANY_ALL");
+                    if (ptr >= end) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    ptr++;
+                    break;
 
-            case SRE_OP_NOT_LITERAL_IGNORE:
-//                TRACE(pidx, ptr, "NOT_LITERAL_IGNORE " + pattern[pidx]);
-                if (ptr >= end || lower(str[ptr]) == lower(pattern[pidx]))
-                    return 0;
-                pidx++;
-                ptr++;
-                break;
+                case SRE_OP_IN:
+                    /* match set member (or non_member) */
+                    /* <IN> <skip> <set> */
+//                    TRACE(pidx, ptr, "IN");
+                    if (ptr >= end || !SRE_CHARSET(pattern, pidx + 1, charAt(ptr))) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    pidx += pattern[pidx];
+                    ptr++;
+                    break;
 
-            case SRE_OP_IN_IGNORE:
-//                TRACE(pidx, ptr, "IN_IGNORE");
-                if (ptr >= end ||
-                        !SRE_CHARSET(pattern, pidx + 1, lower(str[ptr])))
-                    return 0;
-                pidx += pattern[pidx];
-                ptr++;
-                break;
+                case SRE_OP_LITERAL_IGNORE:
+//                    TRACE(pidx, ptr, "LITERAL_IGNORE " + pattern[pidx]);
+                    if (ptr >= end || lower(charAt(ptr)) != lower(pattern[pidx])) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    pidx++;
+                    ptr++;
+                    break;
 
+                case SRE_OP_NOT_LITERAL_IGNORE:
+//                    TRACE(pidx, ptr, "NOT_LITERAL_IGNORE " + pattern[pidx]);
+                    if (ptr >= end || lower(charAt(ptr)) == lower(pattern[pidx])) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    pidx++;
+                    ptr++;
+                    break;
+
+                case SRE_OP_IN_IGNORE:
+//                    TRACE(pidx, ptr, "IN_IGNORE");
+                    if (ptr >= end ||
+                            !SRE_CHARSET(pattern, pidx + 1, lower(charAt(ptr)))) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    pidx += pattern[pidx];
+                    ptr++;
+                    break;
 
-            case SRE_OP_JUMP:
-            case SRE_OP_INFO:
-                /* jump forward */
-                /* <JUMP> <offset> */
-//                TRACE(pidx, ptr, "JUMP " + pattern[pidx]);
-                pidx += pattern[pidx];
-                break;
 
-            case SRE_OP_BRANCH:
-                /* try an alternate branch */
+                case SRE_OP_JUMP:
+                case SRE_OP_INFO:
+                    /* jump forward */
+                    /* <JUMP> <offset> */
+//                    TRACE(pidx, ptr, "JUMP " + pattern[pidx]);
+                    pidx += pattern[pidx];
+                    break;
+
+                case SRE_OP_BRANCH:
+                    /* try an alternate branch */
                     /* <BRANCH> <0=skip> code <JUMP> ... <NULL> */
-                    // TRACE(pidx, ptr, "BRANCH");
+//                    TRACE(pidx, ptr, "BRANCH");
                     lastmark = this.lastmark;
                     lastindex = this.lastindex;
-                    if(this.repeat != null) {
+                    if (this.repeat != null)
                         mark_stack_base = mark_save(0, lastmark);
-                    }
-                    for(; pattern[pidx] != 0; pidx += pattern[pidx]) {
-                        if(pattern[pidx + 1] == SRE_OP_LITERAL
-                                && (ptr >= end || str[ptr] != pattern[pidx + 2]))
+                    op = JUMP_BRANCH_NEXT;
+                    continue dispatch;
+
+                case JUMP_BRANCH_NEXT:
+                    for (; pattern[pidx] != 0; pidx += pattern[pidx]) {
+                        if (pattern[pidx + 1] == SRE_OP_LITERAL
+                                && (ptr >= end || charAt(ptr) != pattern[pidx + 2]))
                             continue;
-                        if(pattern[pidx + 1] == SRE_OP_IN
-                                && (ptr >= end || !SRE_CHARSET(pattern,
-                                                               pidx + 3,
-                                                               str[ptr])))
+                        if (pattern[pidx + 1] == SRE_OP_IN
+                                && (ptr >= end || !SRE_CHARSET(pattern, pidx + 3, charAt(ptr))))
                             continue;
                         this.ptr = ptr;
-                        i = SRE_MATCH(pattern, pidx + 1, level + 1);
-                        if(i != 0)
-                            return i;
-                        if(this.repeat != null) {
-                            mark_restore(0, lastmark, mark_stack_base);
-                        }
-                        LASTMARK_RESTORE(lastmark, lastindex);
+                        jump = JUMP_BRANCH;
+                        child = pidx + 1;
+                        break dispatch;
                     }
-                    return 0;
-
-            case SRE_OP_REPEAT_ONE:
-                /* match repeated sequence (maximizing regexp) */
+                    ret = 0;
+                    break dispatch;
+
+                case JUMP_BRANCH:
+                    if (ret != 0)
+                        break dispatch;
+                    if (this.repeat != null)
+                        mark_restore(0, lastmark, mark_stack_base);
+                    LASTMARK_RESTORE(lastmark, lastindex);
+                    pidx += pattern[pidx];
+                    op = JUMP_BRANCH_NEXT;
+                    continue dispatch;
 
-                /* this operator only works if the repeated item is
-                   exactly one character wide, and we're not already
-                   collecting backtracking points.  for other cases,
-                   use the MAX_REPEAT operator */
+                case SRE_OP_REPEAT_ONE:
+                    /* match repeated sequence (maximizing regexp) */
 
-                /* <REPEAT_ONE> <skip> <1=min> <2=max> item <SUCCESS> tail */
+                    /* this operator only works if the repeated item is
+                       exactly one character wide, and we're not already
+                       collecting backtracking points.  for other cases,
+                       use the MAX_REPEAT operator */
 
-                int mincount = pattern[pidx+1];
+                    /* <REPEAT_ONE> <skip> <1=min> <2=max> item <SUCCESS> tail */
 
-//                TRACE(pidx, ptr, "REPEAT_ONE " + mincount + " " + pattern[pidx+2]);
-                if (ptr + mincount > end)
-                    return 0; /* cannot match */
+//                    TRACE(pidx, ptr, "REPEAT_ONE " + pattern[pidx+1] + " " + pattern[pidx+2]);
+                    ret = 0;
+                    if (ptr + pattern[pidx+1] > end)
+                        break dispatch; /* cannot match */
 
-                this.ptr = ptr;
+                    this.ptr = ptr;
 
-                count = SRE_COUNT(pattern, pidx + 3, pattern[pidx+2],
-                                  level + 1);
-                if (count < 0)
-                    return count;
+                    count = SRE_COUNT(pattern, pidx + 3, pattern[pidx+2]);
+                    if (count < 0) {
+                        ret = count;
+                        break dispatch;
+                    }
 
-                ptr += count;
+                    ptr += count;
 
-                /* when we arrive here, count contains the number of
-                   matches, and ptr points to the tail of the target
-                   string.  check if the rest of the pattern matches,
-                   and backtrack if not. */
+                    /* when we arrive here, count contains the number of
+                       matches, and ptr points to the tail of the target
+                       string.  check if the rest of the pattern matches,
+                       and backtrack if not. */
 
-                if (count < mincount)
-                    return 0;
+                    if (count < pattern[pidx+1])
+                        break dispatch;
 
-                if (pattern[pidx + pattern[pidx]] == SRE_OP_SUCCESS) {
-                    /* tail is empty.  we're finished */
-                    this.ptr = ptr;
-                    return 1;
-                }
-                lastmark = this.lastmark;
-                lastindex = this.lastindex;
+                    if (pattern[pidx + pattern[pidx]] == SRE_OP_SUCCESS) {
+                        /* tail is empty.  we're finished */
+                        this.ptr = ptr;
+                        ret = 1;
+                        break dispatch;
+                    }
+                    lastmark = this.lastmark;
+                    lastindex = this.lastindex;
 
-                if (pattern[pidx + pattern[pidx]] == SRE_OP_LITERAL) {
                     /* tail starts with a literal. skip positions where
                        the rest of the pattern cannot possibly match */
-                    chr = pattern[pidx + pattern[pidx]+1];
-                    for (;;) {
-                        while (count >= mincount &&
-                               (ptr >= end || str[ptr] != chr)) {
-                            ptr--;
-                            count--;
-                        }
-                        if (count < mincount)
-                            break;
-                        this.ptr = ptr;
-                        i = SRE_MATCH(pattern, pidx + pattern[pidx],
-                                     level + 1);
-                        if (i != 0)
-                            return 1;
+                    op = pattern[pidx + pattern[pidx]] == SRE_OP_LITERAL
+                            ? JUMP_REPEAT_ONE_LITERAL_NEXT : JUMP_REPEAT_ONE_NEXT;
+                    continue dispatch;
+
+                case JUMP_REPEAT_ONE_LITERAL_NEXT:
+                    i = pattern[pidx + pattern[pidx]+1];
+                    while (count >= pattern[pidx+1] &&
+                           (ptr >= end || charAt(ptr) != i)) {
                         ptr--;
                         count--;
-                        LASTMARK_RESTORE(lastmark, lastindex);
                     }
+                    if (count < pattern[pidx+1]) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    this.ptr = ptr;
+                    jump = JUMP_REPEAT_ONE_LITERAL;
+                    child = pidx + pattern[pidx];
+                    break dispatch;
+
+                case JUMP_REPEAT_ONE_LITERAL:
+                    if (ret != 0) {
+                        ret = 1;
+                        break dispatch;
+                    }
+                    ptr--;
+                    count--;
+                    LASTMARK_RESTORE(lastmark, lastindex);
+                    op = JUMP_REPEAT_ONE_LITERAL_NEXT;
+                    continue dispatch;
 
-                } else {
+                case JUMP_REPEAT_ONE_NEXT:
                     /* general case */
-                    lastmark = this.lastmark;
-                    while (count >= mincount) {
-                        this.ptr = ptr;
-                        i = SRE_MATCH(pattern, pidx + pattern[pidx],
-                                      level + 1);
-                        if (i != 0)
-                            return i;
-                        ptr--;
-                        count--;
-                        LASTMARK_RESTORE(lastmark, lastindex);
+                    if (count < pattern[pidx+1]) {
+                        ret = 0;
+                        break dispatch;
                     }
-                }
-                return 0;
-
-            case SRE_OP_MIN_REPEAT_ONE:
-                /* match repeated sequence (minimizing regexp) */
-
-                /* this operator only works if the repeated item is
-                   exactly one character wide, and we're not already
-                   collecting backtracking points.  for other cases,
-                   use the MIN_REPEAT operator */
+                    this.ptr = ptr;
+                    jump = JUMP_REPEAT_ONE;
+                    child = pidx + pattern[pidx];
+                    break dispatch;
+
+                case JUMP_REPEAT_ONE:
+                    if (ret != 0)
+                        break dispatch;
+                    ptr--;
+                    count--;
+                    LASTMARK_RESTORE(lastmark, lastindex);
+                    op = JUMP_REPEAT_ONE_NEXT;
+                    continue dispatch;
 
-                /* <MIN_REPEAT_ONE> <skip> <1=min> <2=max> item <SUCCESS> tail */
+                case SRE_OP_MIN_REPEAT_ONE:
+                    /* match repeated sequence (minimizing regexp) */
 
+                    /* this operator only works if the repeated item is
+                       exactly one character wide, and we're not already
+                       collecting backtracking points.  for other cases,
+                       use the MIN_REPEAT operator */
 
-//                TRACE(pidx, ptr, "MIN_REPEAT_ONE");
+                    /* <MIN_REPEAT_ONE> <skip> <1=min> <2=max> item <SUCCESS> tail */
 
-                if (ptr + pattern[pidx+1] > end)
-                    return 0; /* cannot match */
 
-                this.ptr = ptr;
+//                    TRACE(pidx, ptr, "MIN_REPEAT_ONE");
+                    ret = 0;
+                    if (ptr + pattern[pidx+1] > end)
+                        break dispatch; /* cannot match */
 
-                if (pattern[pidx+1] == 0)
-                    count = 0;
-                else {
+                    this.ptr = ptr;
 
-                    count = SRE_COUNT(pattern, pidx + 3, pattern[pidx+1],
-                                      level + 1);
+                    if (pattern[pidx+1] == 0)
+                        count = 0;
+                    else {
 
-                    if (count < 0)
-                        return count;   /* exception */
-                    if (count < pattern[pidx+1])
-                        return 0;       /* did not match minimum number of times */
-                    ptr += count;       /* advance past minimum matches of repeat */
-                }
+                        count = SRE_COUNT(pattern, pidx + 3, pattern[pidx+1]);
 
-                if (pattern[pidx + pattern[pidx]] == SRE_OP_SUCCESS) {
-                    /* tail is empty.  we're finished */
-                    this.ptr = ptr;
-                    return 1;
+                        if (count < 0) {
+                            ret = count;   /* exception */
+                            break dispatch;
+                        }
+                        if (count < pattern[pidx+1])
+                            break dispatch;    /* did not match minimum number of times */
+                        ptr += count;      /* advance past minimum matches of repeat */
+                    }
 
-                } else {
+                    if (pattern[pidx + pattern[pidx]] == SRE_OP_SUCCESS) {
+                        /* tail is empty.  we're finished */
+                        this.ptr = ptr;
+                        ret = 1;
+                        break dispatch;
+                    }
                     /* general case */
-                    boolean matchmax = (pattern[pidx + 2] == 65535);
-                    int c;
                     lastmark = this.lastmark;
                     lastindex = this.lastindex;
-                    while (matchmax || count <= pattern[pidx + 2]) {
-                        this.ptr = ptr;
-                        i = SRE_MATCH(pattern, pidx + pattern[pidx], level + 1);
-                        if (i != 0)
-                            return i;
-                        this.ptr = ptr;
-                        c = SRE_COUNT(pattern, pidx+3, 1, level+1);
-                        if (c < 0)
-                            return c;
-                        if (c == 0)
-                            break;
-                        if(c != 1){
-                            throw new IllegalStateException("c should be 1!");
-                        }
-                        ptr++;
-                        count++;
-                        LASTMARK_RESTORE(lastmark, lastindex);
-                    }
-                }
-                return 0;
+                    op = JUMP_MIN_REPEAT_ONE_NEXT;
+                    continue dispatch;
 
-            case SRE_OP_REPEAT:
-                /* create repeat context.  all the hard work is done
-                   by the UNTIL operator (MAX_UNTIL, MIN_UNTIL) */
-                /* <REPEAT> <skip> <1=min> <2=max> item <UNTIL> tail */
+                case JUMP_MIN_REPEAT_ONE_NEXT:
+                    if (pattern[pidx + 2] != 65535 && count > pattern[pidx + 2]) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    this.ptr = ptr;
+                    jump = JUMP_MIN_REPEAT_ONE;
+                    child = pidx + pattern[pidx];
+                    break dispatch;
 
-//                TRACE(pidx, ptr, "REPEAT " + pattern[pidx+1] + " " + pattern[pidx+2]);
+                case JUMP_MIN_REPEAT_ONE:
+                    if (ret != 0)
+                        break dispatch;
+                    this.ptr = ptr;
+                    ret = SRE_COUNT(pattern, pidx+3, 1);
+                    if (ret <= 0)
+                        break dispatch;
+                    if (ret != 1) {
+                        throw new IllegalStateException("c should be 1!");
+                    }
+                    ptr++;
+                    count++;
+                    LASTMARK_RESTORE(lastmark, lastindex);
+                    op = JUMP_MIN_REPEAT_ONE_NEXT;
+                    continue dispatch;
 
-                SRE_REPEAT rep = new SRE_REPEAT(repeat);
-                rep.count = -1;
-                rep.pidx = pidx;
-                repeat = rep;
+                case SRE_OP_REPEAT:
+                    /* create repeat context.  all the hard work is done
+                       by the UNTIL operator (MAX_UNTIL, MIN_UNTIL) */
+                    /* <REPEAT> <skip> <1=min> <2=max> item <UNTIL> tail */
 
-                this.ptr = ptr;
-                i = SRE_MATCH(pattern, pidx + pattern[pidx], level + 1);
+//                    TRACE(pidx, ptr, "REPEAT " + pattern[pidx+1] + " " + pattern[pidx+2]);
 
-                repeat = rep.prev;
-                return i;
+                    SRE_REPEAT rep = new SRE_REPEAT(repeat);
+                    rep.count = -1;
+                    rep.pidx = pidx;
+                    repeat = rep;
+                    rp = rep;
 
-            case SRE_OP_MAX_UNTIL:
-                /* maximizing repeat */
-                /* <REPEAT> <skip> <1=min> <2=max> item <MAX_UNTIL> tail */
+                    this.ptr = ptr;
+                    jump = JUMP_REPEAT;
+                    child = pidx + pattern[pidx];
+                    break dispatch;
+
+                case JUMP_REPEAT:
+                    repeat = rp.prev;
+                    break dispatch;
+
+                case SRE_OP_MAX_UNTIL:
+                    /* maximizing repeat */
+                    /* <REPEAT> <skip> <1=min> <2=max> item <MAX_UNTIL> tail */
+
+                    rp = this.repeat;
+                    if (rp == null) {
+                        ret = SRE_ERROR_STATE;
+                        break dispatch;
+                    }
 
-                SRE_REPEAT rp = this.repeat;
-                if (rp == null)
-                    return SRE_ERROR_STATE;
+                    this.ptr = ptr;
 
-                this.ptr = ptr;
+                    count = rp.count + 1;
 
-                count = rp.count + 1;
+//                    TRACE(pidx, ptr, "MAX_UNTIL " + count);
 
-//                TRACE(pidx, ptr, "MAX_UNTIL " + count);
+                    if (count < pattern[rp.pidx + 1]) {
+                        /* not enough matches */
+                        rp.count = count;
+                        jump = JUMP_UNTIL_ITEM;
+                        child = rp.pidx + 3;
+                        break dispatch;
+                    }
 
-                if (count < pattern[rp.pidx + 1]) {
-                    /* not enough matches */
+                    if ((count < pattern[rp.pidx+2] ||
+                            pattern[rp.pidx+2] == 65535) &&
+                            // see: http://git.io/v4Q0I for zero-width match protection
+                            ptr != rp.last_ptr) {
+                        /* we may have enough matches, but if we can
+                           match another item, do so */
+                        rp.count = count;
+                        rp.last_ptr = ptr;
+                        lastmark = this.lastmark;
+                        lastindex = this.lastindex;
+                        mark_stack_base = mark_save(0, lastmark);
+                        jump = JUMP_MAX_UNTIL_MORE;
+                        child = rp.pidx + 3;
+                        break dispatch;
+                    }
+                    op = JUMP_MAX_UNTIL_TAIL;
+                    continue dispatch;
 
-                    rp.count = count;
-                    i = SRE_MATCH(pattern, rp.pidx + 3, level + 1);
-                    if (i != 0)
-                        return i;
+                case JUMP_MAX_UNTIL_MORE:
+                    if (ret != 0)
+                        break dispatch;
+                    mark_restore(0, lastmark, mark_stack_base);
+                    LASTMARK_RESTORE(lastmark, lastindex);
                     rp.count = count - 1;
                     this.ptr = ptr;
-                    return 0;
-                }
+                    op = JUMP_MAX_UNTIL_TAIL;
+                    continue dispatch;
+
+                case JUMP_MAX_UNTIL_TAIL:
+                    /* cannot match more repeated items here.  make sure the
+                       tail matches */
+                    this.repeat = rp.prev;
+                    jump = JUMP_MAX_UNTIL_TAIL_DONE;
+                    child = pidx;
+                    break dispatch;
+
+                case JUMP_MAX_UNTIL_TAIL_DONE:
+                    if (ret != 0)
+                        break dispatch;
+                    this.repeat = rp;
+                    this.ptr = ptr;
+                    break dispatch;
 
-                if ((count < pattern[rp.pidx+2] ||
-                        pattern[rp.pidx+2] == 65535) &&
-                        // see: http://git.io/v4Q0I for zero-width match protection
-                        ptr != rp.last_ptr) {
-                    /* we may have enough matches, but if we can
-                       match another item, do so */
-                    rp.count = count;
-                    rp.last_ptr = ptr;
-                    lastmark = this.lastmark;
-                    lastindex = this.lastindex;
-                    mark_stack_base = mark_save(0, lastmark);
-                    /* RECURSIVE */
-                    i = SRE_MATCH(pattern, rp.pidx + 3, level + 1);
-                    if (i != 0)
-                        return i;
-                    mark_restore(0, lastmark, mark_stack_base);
-                    LASTMARK_RESTORE(lastmark, lastindex);
+                case JUMP_UNTIL_ITEM:
+                    if (ret != 0)
+                        break dispatch;
                     rp.count = count - 1;
                     this.ptr = ptr;
-                }
+                    break dispatch;
 
-                /* cannot match more repeated items here.  make sure the
-                   tail matches */
-                this.repeat = rp.prev;
-                /* RECURSIVE */
-                i = SRE_MATCH(pattern, pidx, level + 1);
-                if (i != 0)
-                    return i;
-                this.repeat = rp;
-                this.ptr = ptr;
-                return 0;
+                case SRE_OP_MIN_UNTIL:
+                    /* minimizing repeat */
+                    /* <REPEAT> <skip> <1=min> <2=max> item <MIN_UNTIL> tail */
 
-            case SRE_OP_MIN_UNTIL:
-                /* minimizing repeat */
-                /* <REPEAT> <skip> <1=min> <2=max> item <MIN_UNTIL> tail */
+                    rp = this.repeat;
+                    if (rp == null) {
+                        ret = SRE_ERROR_STATE;
+                        break dispatch;
+                    }
 
-                rp = this.repeat;
-                if (rp == null)
-                    return SRE_ERROR_STATE;
+                    this.ptr = ptr;
 
-                this.ptr = ptr;
+                    count = rp.count + 1;
 
-                count = rp.count + 1;
+//                    TRACE(pidx, ptr, "MIN_UNTIL " + count + " " + rp.pidx);
 
-//               TRACE(pidx, ptr, "MIN_UNTIL " + count + " " + rp.pidx);
+                    if (count < pattern[rp.pidx + 1]) {
+                        /* not enough matches */
+                        rp.count = count;
+                        jump = JUMP_UNTIL_ITEM;
+                        child = rp.pidx + 3;
+                        break dispatch;
+                    }
 
-                if (count < pattern[rp.pidx + 1]) {
-                    /* not enough matches */
-                    rp.count = count;
-                    /* RECURSIVE */
-                    i = SRE_MATCH(pattern, rp.pidx + 3, level + 1);
-                    if (i != 0)
-                        return i;
-                    rp.count = count-1;
-                    this.ptr = ptr;
-                    return 0;
-                }
+                    lastmark = this.lastmark;
+                    lastindex = this.lastindex;
 
-                lastmark = this.lastmark;
-                lastindex = this.lastindex;
+                    /* see if the tail matches */
+                    this.repeat = rp.prev;
+                    jump = JUMP_MIN_UNTIL_TAIL;
+                    child = pidx;
+                    break dispatch;
 
-                /* see if the tail matches */
-                this.repeat = rp.prev;
-                i = SRE_MATCH(pattern, pidx, level + 1);
-                if (i != 0)
-                    return i;
+                case JUMP_MIN_UNTIL_TAIL:
+                    if (ret != 0)
+                        break dispatch;
 
-                this.ptr = ptr;
-                this.repeat = rp;
+                    this.ptr = ptr;
+                    this.repeat = rp;
 
-                if (count >= pattern[rp.pidx+2] &&
-                                                pattern[rp.pidx+2] != 65535)
-                    return 0;
-                LASTMARK_RESTORE(lastmark, lastindex);
+                    if (count >= pattern[rp.pidx+2] && pattern[rp.pidx+2] != 65535)
+                        break dispatch;
+                    LASTMARK_RESTORE(lastmark, lastindex);
 
-                rp.count = count;
-                /* RECURSIVE */
-                i = SRE_MATCH(pattern, rp.pidx + 3, level + 1);
-                if (i != 0)
-                    return i;
-                rp.count = count - 1;
-                this.ptr = ptr;
-                return 0;
+                    rp.count = count;
+                    jump = JUMP_UNTIL_ITEM;
+                    child = rp.pidx + 3;
+                    break dispatch;
+
+
+                case SRE_OP_GROUPREF:
+                    /* match backreference */
+                    i = pattern[pidx];
+//                    TRACE(pidx, ptr, "GROUPREF " + i);
+                    int p = mark[i+i];
+                    int e = mark[i+i+1];
+                    ret = 0;
+                    if (p == -1 || e == -1 || e < p)
+                        break dispatch;
+                    while (p < e) {
+                        if (ptr >= end || charAt(ptr) != charAt(p))
+                            break dispatch;
+                        p++;
+                        ptr++;
+                    }
+                    pidx++;
+                    break;
 
+                case SRE_OP_GROUPREF_IGNORE:
+                    /* match backreference */
+                    i = pattern[pidx];
+//                    TRACE(pidx, ptr, "GROUPREF_IGNORE " + i);
+                    p = mark[i+i];
+                    e = mark[i+i+1];
+                    ret = 0;
+                    if (p == -1 || e == -1 || e < p)
+                        break dispatch;
+                    while (p < e) {
+                        if (ptr >= end || lower(charAt(ptr)) != lower(charAt(p)))
+                            break dispatch;
+                        p++;
+                        ptr++;
+                    }
+                    pidx++;
+                    break;
 
-            case SRE_OP_GROUPREF:
-                /* match backreference */
-                i = pattern[pidx];
-//                TRACE(pidx, ptr, "GROUPREF " + i);
-                int p = mark[i+i];
-                int e = mark[i+i+1];
-                if (p == -1 || e == -1 || e < p)
-                    return 0;
-                while (p < e) {
-                    if (ptr >= end || str[ptr] != str[p])
-                        return 0;
-                    p++;
-                    ptr++;
-                }
-                pidx++;
-                break;
+                case SRE_OP_GROUPREF_EXISTS:
+                    i = pattern[pidx];
+//                    TRACE(pidx, ptr, "GROUPREF_EXISTS " + i);
+                    p = mark[i+i];
+                    e = mark[i+i+1];
+                    if (p == -1 || e == -1 || e < p) {
+                        pidx += pattern[pidx + 1];
+                        break;
+                    }
+                    pidx += 2;
+                    break;
 
-            case SRE_OP_GROUPREF_IGNORE:
-                /* match backreference */
-                i = pattern[pidx];
-//                TRACE(pidx, ptr, "GROUPREF_IGNORE " + i);
-                p = mark[i+i];
-                e = mark[i+i+1];
-                if (p == -1 || e == -1 || e < p)
-                    return 0;
-                while (p < e) {
-                    if (ptr >= end || lower(str[ptr]) != lower(str[p]))
-                        return 0;
-                    p++;
-                    ptr++;
-                }
-                pidx++;
-                break;
+                case SRE_OP_ASSERT:
+                    /* assert subpattern */
+                    /* args: <skip> <back> <pattern> */
+//                    TRACE(pidx, ptr, "ASSERT " + pattern[pidx+1]);
 
-            case SRE_OP_GROUPREF_EXISTS:
-                i = pattern[pidx];
-//                TRACE(pidx, ptr, "GROUPREF_EXISTS " + i);
-                p = mark[i+i];
-                e = mark[i+i+1];
-                if (p == -1 || e == -1 || e < p) {
-                    pidx += pattern[pidx + 1];
+                    this.ptr = ptr - pattern[pidx + 1];
+                    if (this.ptr < this.beginning) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    jump = JUMP_ASSERT;
+                    child = pidx + 2;
+                    break dispatch;
+
+                case JUMP_ASSERT:
+                    if (ret <= 0)
+                        break dispatch;
+                    pidx += pattern[pidx];
                     break;
-                }
-                pidx += 2;
-                break;
 
-            case SRE_OP_ASSERT:
-                /* assert subpattern */
-                /* args: <skip> <back> <pattern> */
-//                TRACE(pidx, ptr, "ASSERT " + pattern[pidx+1]);
+                case SRE_OP_ASSERT_NOT:
+                    /* assert not subpattern */
+                    /* args: <skip> <pattern> */
+//                    TRACE(pidx, ptr, "ASSERT_NOT " + pattern[pidx]);
+                    this.ptr = ptr - pattern[pidx + 1];
+                    if (this.ptr >= this.beginning) {
+                        jump = JUMP_ASSERT_NOT;
+                        child = pidx + 2;
+                        break dispatch;
+                    }
+                    pidx += pattern[pidx];
+                    break;
 
-                this.ptr = ptr - pattern[pidx + 1];
-                if (this.ptr < this.beginning)
-                    return 0;
-                i = SRE_MATCH(pattern, pidx + 2, level + 1);
-                if (i <= 0)
-                    return i;
-                pidx += pattern[pidx];
-                break;
+                case JUMP_ASSERT_NOT:
+                    if (ret < 0)
+                        break dispatch;
+                    if (ret != 0) {
+                        ret = 0;
+                        break dispatch;
+                    }
+                    pidx += pattern[pidx];
+                    break;
 
-            case SRE_OP_ASSERT_NOT:
-                /* assert not subpattern */
-                /* args: <skip> <pattern> */
-//                TRACE(pidx, ptr, "ASSERT_NOT " + pattern[pidx]);
-                this.ptr = ptr - pattern[pidx + 1];
-                if (this.ptr >= this.beginning) {
-                    i = SRE_MATCH(pattern, pidx + 2, level + 1);
-                    if (i < 0)
-                        return i;
-                    if (i != 0)
-                        return 0;
+                case SRE_OP_FAILURE:
+                    /* immediate failure */
+//                    TRACE(pidx, ptr, "FAILURE");
+                    ret = 0;
+                    break dispatch;
+
+                default:
+//                    TRACE(pidx, ptr, "UNKNOWN " + pattern[pidx-1]);
+                    ret = SRE_ERROR_ILLEGAL;
+                    break dispatch;
                 }
-                pidx += pattern[pidx];
-                break;
 
-            case SRE_OP_FAILURE:
-                /* immediate failure */
-//                TRACE(pidx, ptr, "FAILURE");
-                return 0;
+                op = pattern[pidx++];
+            }
 
-            default:
-//                TRACE(pidx, ptr, "UNKNOWN " + pattern[pidx-1]);
-                return SRE_ERROR_ILLEGAL;
+            Context ctx;
+            if (jump != 0) {
+                /* call: save this context, match from child, and resume at jump with the result */
+                if (!SRE_STEP() || (ctx = stack.push()) == null)
+                    break main;
+                ctx.jump = jump;
+                ctx.pidx = pidx;
+                ctx.ptr = ptr;
+                ctx.count = count;
+                ctx.lastmark = lastmark;
+                ctx.lastindex = lastindex;
+                ctx.mark_stack_base = mark_stack_base;
+                ctx.rp = rp;
+                jump = 0;
+                pidx = child;
+                ptr = this.ptr;
+                enter = true;
+                continue main;
+            }
+
+            /* return: hand ret to the context that called this one */
+            if (stack.depth == base) {
+                if (base == 0)
+                    stack.release();
+                return ret;
             }
+            ctx = stack.context[--stack.depth];
+            op = ctx.jump;
+            pidx = ctx.pidx;
+            ptr = ctx.ptr;
+            count = ctx.count;
+            lastmark = ctx.lastmark;
+            lastindex = ctx.lastindex;
+            mark_stack_base = ctx.mark_stack_base;
+            rp = ctx.rp;
+            enter = false;
         }
 
-        /* can't end up here */
-        /* return SRE_ERROR_ILLEGAL; -- see python-dev discussion */
+        /* out of steps or too deep: abandon the whole match */
+        if (base == 0)
+            stack.release();
+        else
+            stack.depth = base;
+        return steps < 0 ? SRE_ERROR_STEP_LIMIT : SRE_ERROR_RECURSION_LIMIT;
     }
 
-    private void LASTMARK_RESTORE(int lastmark, int lastindex) {
+    void LASTMARK_RESTORE(int lastmark, int lastindex) {
         if(this.lastmark > lastmark) {
             while(this.lastmark > lastmark)
                 mark[this.lastmark--] = -1;
@@ -1090,6 +1334,39 @@ for line in sys.stdin:
         }
     }
 
+    /**
+     * Match the pattern from the start of the current slice, as {@link #SRE_MATCH(int[], int)}
+     * does from {@code ptr} and {@code pidx}. If the pattern has been compiled to {@link #program},
+     * that runs instead, from the start of the pattern: it matches again whatever part of the
+     * pattern precedes {@code pidx} (an information block or a prefix already found at
+     * {@code start}).
+     */
+    int SRE_MATCH_START(int[] pattern, int pidx) {
+        if (program != null && program.code == pattern) {
+            if (!SRE_STEP())
+                return SRE_ERROR_STEP_LIMIT;
+            this.ptr = this.start;
+            return program.match(this);
+        }
+        return SRE_MATCH(pattern, pidx);
+    }
+
+    /* where the character every match holds (see SearchPlan) was last found, or end if not */
+    private int required = -1;
+
+    /** Whether the string holds the character from {@code ptr} on. */
+    private boolean SRE_HOLDS(int ch, int ptr) {
+        int i = required;
+        if (i < ptr) {
+            /* searches with a state only move on, so it need only be found again if passed */
+            i = ptr;
+            while (i < end && charAt(i) != ch)
+                i++;
+            required = i;
+        }
+        return i < end;
+    }
+
     int SRE_SEARCH(int[] pattern, int pidx) {
         int ptr = this.start;
         int end = this.end;
@@ -1132,6 +1409,43 @@ for line in sys.stdin:
         }
 
 
+        SearchPlan plan = this.plan;
+        if (plan != null && plan.code != pattern)
+            plan = null;
+
+        if (plan != null && plan.required >= 0 && !SRE_HOLDS(plan.required, ptr))
+            return 0; /* no match can be found without it */
+
+        if (prefix_len > 1 && plan != null) {
+            /* pattern starts with a known prefix.  look for it from its
+               last character back, then move it along as far as the
+               character under that allows (Boyer-Moore-Horspool) */
+            int[] shift = plan.shift;
+            int last = prefix + prefix_len - 1;
+            end = this.end;
+            ptr += prefix_len - 1;
+            while (ptr < end) {
+                int c = charAt(ptr);
+                if (c == pattern[last]) {
+                    int i = 1;
+                    while (i < prefix_len && charAt(ptr - i) == pattern[last - i])
+                        i++;
+                    if (i == prefix_len) {
+                        /* found a potential match */
+                        this.start = ptr + 1 - prefix_len;
+                        this.ptr = ptr + 1 - prefix_len + prefix_skip;
+                        if ((flags & SRE_INFO_LITERAL) != 0)
+                            return 1; /* we got all of it */
+                        status = SRE_MATCH_START(pattern, pidx + 2*prefix_skip);
+                        if (status != 0)
+                            return status;
+                    }
+                }
+                ptr += shift[c & 0xff];
+            }
+            return 0;
+        }
+
         if (prefix_len > 1) {
             /* pattern starts with a known prefix.  use the overlap
                table to skip forward as fast as we possibly can */
@@ -1139,7 +1453,7 @@ for line in sys.stdin:
             end = this.end;
             while (ptr < end) {
                 for (;;) {
-                    if (str[ptr] != pattern[prefix+i]) {
+                    if (charAt(ptr) != pattern[prefix+i]) {
                         if (i == 0)
                             break;
                         else
@@ -1152,8 +1466,7 @@ for line in sys.stdin:
                             this.ptr = ptr + 1 - prefix_len + prefix_skip;
                             if ((flags & SRE_INFO_LITERAL) != 0)
                                 return 1; /* we got all of it */
-                            status = SRE_MATCH(pattern,
-                                               pidx + 2*prefix_skip, 1);
+                            status = SRE_MATCH_START(pattern, pidx + 2*prefix_skip);
                             if (status != 0)
                                 return status;
                             /* close but no cigar -- try again */
@@ -1173,7 +1486,7 @@ for line in sys.stdin:
             int chr = pattern[pidx + 1];
             end = this.end;
             for (;;) {
-                while (ptr < end && str[ptr] != chr)
+                while (ptr < end && charAt(ptr) != chr)
                     ptr++;
                 if (ptr == end)
                     return 0;
@@ -1182,7 +1495,23 @@ for line in sys.stdin:
                 this.ptr = ++ptr;
                 if ((flags & SRE_INFO_LITERAL) != 0)
                     return 1;
-                status = SRE_MATCH(pattern, pidx + 2, 1);
+                status = SRE_MATCH_START(pattern, pidx + 2);
+                if (status != 0)
+                    break;
+            }
+
+        } else if (plan != null && plan.hasFirst()) {
+            /* pattern starts with a character the plan knows: skip to
+               each place one is, up to the last a match could begin at */
+            int last = Math.min(end, this.end - 1);
+            for (;;) {
+                while (ptr <= last && !plan.canStart(charAt(ptr)))
+                    ptr++;
+                if (ptr > last)
+                    return 0;
+//                TRACE(pidx, ptr, "SEARCH PLAN");
+                this.start = this.ptr = ptr++;
+                status = SRE_MATCH_START(pattern, pidx);
                 if (status != 0)
                     break;
             }
@@ -1191,14 +1520,14 @@ for line in sys.stdin:
             /* pattern starts with a character from a known set */
             end = this.end;
             for (;;) {
-                while (ptr < end && !SRE_CHARSET(pattern, charset, str[ptr]))
+                while (ptr < end && !SRE_CHARSET(pattern, charset, charAt(ptr)))
                     ptr++;
                 if (ptr == end)
                     return 0;
 //                TRACE(pidx, ptr, "SEARCH CHARSET");
                 this.start = ptr;
                 this.ptr = ptr;
-                status = SRE_MATCH(pattern, pidx, 1);
+                status = SRE_MATCH_START(pattern, pidx);
                 if (status != 0)
                     break;
                 ptr++;
@@ -1209,7 +1538,7 @@ for line in sys.stdin:
             while (ptr <= end) {
 //                TRACE(pidx, ptr, "SEARCH");
                 this.start = this.ptr = ptr++;
-                status = SRE_MATCH(pattern, pidx, 1);
+                status = SRE_MATCH_START(pattern, pidx);
                 if (status != 0)
                     break;
             }
@@ -1225,7 +1554,10 @@ for line in sys.stdin:
     int end; /* end of original string */
 
     /* attributes for the match object */
-    int[] str;
+    /** The string matched, read through {@link #charAt(int)}. */
+    private final CharSequence text;
+    /** Code points of {@link #text} if it has characters beyond the BMP, otherwise null. */
+    private final int[] codePoints;
     int pos;
     int endpos;
 
@@ -1236,8 +1568,8 @@ for line in sys.stdin:
     int lastindex;
     int lastmark;
 
-    /* FIXME: <fl> should be dynamically allocated! */
-    int[] mark = new int[200];
+    /* two marks for each group of the pattern */
+    final int[] mark;
 
     /* dynamically allocated stuff */
     int[] mark_stack;
@@ -1252,6 +1584,12 @@ for line in sys.stdin:
     /* duplicated from the PatternObject */
     int flags;
 
+    /** The pattern compiled to bytecode, if it has been, to run in place of the interpreter. */
+    CompiledPattern program;
+
+    /** What is known of the pattern for searching with it, or null. */
+    SearchPlan plan;
+
     private enum CACHE {
         INSTANCE(Options.sreCacheSpec);
         private LoadingCache<PyString, int[]> cache;
@@ -1294,7 +1632,22 @@ for line in sys.stdin:
     }
 
     public SRE_STATE(PyString str, int start, int end, int flags) {
-        this.str = CACHE.INSTANCE.get(str);
+        this(str, start, end, flags, 100);
+    }
+
+    /**
+     * Create the state for matching a pattern with the given number of groups in {@code str}
+     * between {@code start} and {@code end}.
+     */
+    public SRE_STATE(PyString str, int start, int end, int flags, int groups) {
+        this.mark = new int[2 * groups];
+        /*
+         * A str, or unicode of only BMP characters, is matched where it lies: indices into it are
+         * already those of characters. Other unicode is matched on a (cached) array of its code
+         * points, since the same index must pick out a whole character of it.
+         */
+        this.text = str;
+        this.codePoints = str.isBasicPlane() ? null : CACHE.INSTANCE.get(str);
         int size = str.__len__();
 
         this.charsize = 1;
@@ -1321,6 +1674,11 @@ for line in sys.stdin:
         this.flags = flags;
     }
 
+    /** The character at the given index of the string matched, as a code point. */
+    final int charAt(int index) {
+        return codePoints == null ? text.charAt(index) : codePoints[index];
+    }
+
     public static int getlower(int ch, int flags) {
         if ((flags & SRE_FLAG_LOCALE) != 0)
              return ((ch) < 256 ? Character.toLowerCase((char) ch) : ch);
@@ -1354,13 +1712,17 @@ for line in sys.stdin:
     void state_reset() {
         lastmark = 0;
 
-        /* FIXME: dynamic! */
         for (int i = 0; i < mark.length; i++)
             mark[i] = -1;
 
         lastindex = -1;
         repeat = null;
 
+        /* no match is in progress on this thread, or one ended by an exception */
+        stack = STACKS.get();
+        stack.release();
+        steps = Options.sreMaxSteps > 0 ? Options.sreMaxSteps : Long.MAX_VALUE;
+
         mark_fini();
     }
 
@@ -26,7 +26,7 @@ public class ScannerObject extends PyObject implements Traverseproc {
         state.state_reset();
         state.ptr = state.start;
 
-        int status = state.SRE_MATCH(pattern.code, 0, 1);
+        int status = state.SRE_MATCH_START(pattern.code, 0);
         MatchObject match = pattern._pattern_new_match(state, string, status);
 
         if (status == 0 || state.ptr == state.start)
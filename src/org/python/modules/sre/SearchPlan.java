@@ -0,0 +1,364 @@
+// Copyright (c)2019 Jython Developers.
+// Licensed to PSF under a Contributor Agreement.
+package org.python.modules.sre;
+
+import static org.python.modules.sre.SRE_STATE.*;
+
+/**
+ * What {@link SRE_STATE#SRE_SEARCH(int[], int)} knows of a pattern before trying it at each
+ * position of a string: the characters a match can begin with, found by reading the code of the
+ * pattern, so that positions no match can begin at are skipped without entering the matcher; and
+ * for a pattern with a literal prefix, a table of how far the prefix may move along the string
+ * (Boyer-Moore-Horspool) in place of the overlap table of {@code sre_compile.py}, which only
+ * ever moves it by one; and a character every match holds, without which the string need not be
+ * searched at all. A plan is made once for each pattern, by {@link #of(int[], SRE_STATE)}.
+ */
+final class SearchPlan {
+
+    /* what reading the code from a given point shows */
+    private static final int CONSUMES = 1; /* each match takes a character, now in the set */
+    private static final int NULLABLE = 0; /* it may reach the end of the item or pattern */
+    private static final int UNKNOWN = -1; /* it is too hard to say (or to read) */
+
+    /* how many operations to read before giving up: branches may read their tail many times */
+    private static final int MAX_READ = 1000;
+
+    /** The code of the pattern this is the plan for. */
+    final int[] code;
+
+    /** The characters below 256 a match can begin with (a bitmap), or null if it may be any. */
+    private final long[] first;
+    /** Whether a match can begin with a character from 256 up (if {@link #first} is not null). */
+    private final boolean wide;
+
+    /**
+     * How far the literal prefix of the pattern may move along the string, by the character under
+     * its last (taken modulo 256), or null if the pattern has no prefix of two or more.
+     */
+    final int[] shift;
+
+    /** A character every match of the pattern holds, or -1 if none is known. */
+    final int required;
+
+    private SearchPlan(int[] code, long[] first, boolean wide, int[] shift, int required) {
+        this.code = code;
+        this.first = first;
+        this.wide = wide;
+        this.shift = shift;
+        this.required = required;
+    }
+
+    /** Whether the plan knows the characters a match can begin with. */
+    boolean hasFirst() {
+        return first != null;
+    }
+
+    /** Whether a match can begin with the given character (if {@link #hasFirst()}). */
+    boolean canStart(int ch) {
+        return ch < 256 ? (first[ch >> 6] & (1L << ch)) != 0 : wide;
+    }
+
+    /**
+     * Make the plan for searching with the given code, reading its character sets and categories
+     * as the state (which has the flags of the pattern) will when matching.
+     */
+    static SearchPlan of(int[] code, SRE_STATE state) {
+        Reader reader = new Reader(code, state);
+        boolean known = reader.read(0) == CONSUMES;
+        return new SearchPlan(code, known ? reader.first : null, reader.wide, prefixShift(code),
+                required(code, 0));
+    }
+
+    /**
+     * Find a literal character any match of the code from {@code pidx} must take, reading on
+     * through what must be matched, to the end of the item or pattern it is part of.
+     *
+     * @return the character, or -1 if none is found
+     */
+    private static int required(int[] code, int pidx) {
+        for (;;) {
+            switch (code[pidx]) {
+
+            case SRE_OP_LITERAL:
+                return code[pidx + 1];
+
+            case SRE_OP_INFO:
+            case SRE_OP_IN:
+            case SRE_OP_IN_IGNORE:
+            case SRE_OP_ASSERT:
+            case SRE_OP_ASSERT_NOT:
+                pidx += 1 + code[pidx + 1];
+                break;
+
+            case SRE_OP_ANY:
+            case SRE_OP_ANY_ALL:
+                pidx += 1;
+                break;
+
+            case SRE_OP_MARK:
+            case SRE_OP_AT:
+            case SRE_OP_NOT_LITERAL:
+            case SRE_OP_LITERAL_IGNORE:
+            case SRE_OP_NOT_LITERAL_IGNORE:
+            case SRE_OP_CATEGORY:
+            case SRE_OP_GROUPREF:
+            case SRE_OP_GROUPREF_IGNORE:
+                pidx += 2;
+                break;
+
+            case SRE_OP_BRANCH: {
+                /* <BRANCH> <0=skip> code <JUMP> ... <NULL>: no alternative must be taken */
+                int alt = pidx + 1;
+                while (code[alt] != 0) {
+                    alt += code[alt];
+                }
+                pidx = alt + 1;
+                break;
+            }
+
+            case SRE_OP_REPEAT_ONE:
+            case SRE_OP_MIN_REPEAT_ONE:
+            case SRE_OP_REPEAT: {
+                /* <REPEAT> <skip> <1=min> <2=max> item <UNTIL> tail: the item must be matched
+                   if its minimum is not zero */
+                if (code[pidx + 2] > 0) {
+                    int ch = required(code, pidx + 4);
+                    if (ch >= 0) {
+                        return ch;
+                    }
+                }
+                pidx += 1 + code[pidx + 1] + (code[pidx] == SRE_OP_REPEAT ? 1 : 0);
+                break;
+            }
+
+            default:
+                /* the end of the item or pattern, or what cannot simply be read past */
+                return -1;
+            }
+        }
+    }
+
+    /** The shift table for the prefix in the information block of the code, if it has one. */
+    private static int[] prefixShift(int[] code) {
+        /* <INFO> <1=skip> <2=flags> <3=min> <4=max> <5=prefix info> */
+        if (code[0] != SRE_OP_INFO || (code[2] & SRE_INFO_PREFIX) == 0 || code[5] < 2) {
+            return null;
+        }
+        /* <length> <skip> <prefix data> <overlap data> */
+        int length = code[5];
+        int prefix = 7;
+        int[] shift = new int[256];
+        for (int i = 0; i < 256; i++) {
+            shift[i] = length;
+        }
+        /* where characters share a slot, the least shift is kept, which is safe for either */
+        for (int i = 0; i < length - 1; i++) {
+            shift[code[prefix + i] & 0xff] = length - 1 - i;
+        }
+        return shift;
+    }
+
+    /** Reads the code for the characters a match can begin with. */
+    private static final class Reader {
+
+        final int[] code;
+        final SRE_STATE state;
+        final long[] first = new long[4];
+        boolean wide;
+        int reads;
+
+        Reader(int[] code, SRE_STATE state) {
+            this.code = code;
+            this.state = state;
+        }
+
+        /**
+         * Read the code from {@code pidx} to the end of the item or pattern it is part of, adding
+         * the characters any match of it can begin with.
+         */
+        int read(int pidx) {
+            for (;;) {
+                if (++reads > MAX_READ) {
+                    return UNKNOWN;
+                }
+                switch (code[pidx]) {
+
+                case SRE_OP_SUCCESS:
+                case SRE_OP_MAX_UNTIL:
+                case SRE_OP_MIN_UNTIL:
+                    return NULLABLE;
+
+                case SRE_OP_FAILURE:
+                    return CONSUMES;
+
+                case SRE_OP_INFO:
+                case SRE_OP_JUMP:
+                    pidx += 1 + code[pidx + 1];
+                    break;
+
+                case SRE_OP_MARK:
+                case SRE_OP_AT:
+                    /* take no character (and an AT only limits where a match begins) */
+                    pidx += 2;
+                    break;
+
+                case SRE_OP_ASSERT:
+                case SRE_OP_ASSERT_NOT:
+                    /* <ASSERT> <skip> <back> <pattern>: take no character */
+                    pidx += 1 + code[pidx + 1];
+                    break;
+
+                case SRE_OP_ANY:
+                case SRE_OP_ANY_ALL:
+                case SRE_OP_LITERAL:
+                case SRE_OP_NOT_LITERAL:
+                case SRE_OP_LITERAL_IGNORE:
+                case SRE_OP_NOT_LITERAL_IGNORE:
+                case SRE_OP_IN:
+                case SRE_OP_IN_IGNORE:
+                case SRE_OP_CATEGORY:
+                    addCharacter(pidx);
+                    return CONSUMES;
+
+                case SRE_OP_BRANCH: {
+                    /* <BRANCH> <0=skip> code <JUMP> ... <NULL>: an alternative taking no
+                       character reads on through its JUMP to what follows the branch */
+                    int result = CONSUMES;
+                    for (int alt = pidx + 1; code[alt] != 0; alt += code[alt]) {
+                        int r = read(alt + 1);
+                        if (r == UNKNOWN) {
+                            return UNKNOWN;
+                        } else if (r == NULLABLE) {
+                            result = NULLABLE;
+                        }
+                    }
+                    return result;
+                }
+
+                case SRE_OP_REPEAT_ONE:
+                case SRE_OP_MIN_REPEAT_ONE:
+                case SRE_OP_REPEAT: {
+                    /* <REPEAT> <skip> <1=min> <2=max> item <UNTIL> tail, or for REPEAT_ONE
+                       <REPEAT_ONE> <skip> <1=min> <2=max> item <SUCCESS> tail */
+                    int r = read(pidx + 4);
+                    if (r == UNKNOWN) {
+                        return UNKNOWN;
+                    } else if (r == CONSUMES && code[pidx + 2] > 0) {
+                        return CONSUMES;
+                    }
+                    boolean until = code[pidx] == SRE_OP_REPEAT;
+                    pidx += 1 + code[pidx + 1] + (until ? 1 : 0);
+                    break;
+                }
+
+                default:
+                    /* back references and the like */
+                    return UNKNOWN;
+                }
+            }
+        }
+
+        /** Add the characters the single character operation at {@code pidx} matches. */
+        private void addCharacter(int pidx) {
+            for (int ch = 0; ch < 256; ch++) {
+                if (matches(pidx, ch)) {
+                    first[ch >> 6] |= 1L << ch;
+                }
+            }
+            wide |= matchesWide(pidx);
+        }
+
+        /** Whether the operation at {@code pidx} may match {@code ch}, as SRE_MATCH tests it. */
+        private boolean matches(int pidx, int ch) {
+            switch (code[pidx]) {
+            case SRE_OP_ANY:
+                return !state.SRE_IS_LINEBREAK(ch);
+            case SRE_OP_ANY_ALL:
+                return true;
+            case SRE_OP_LITERAL:
+                return ch == code[pidx + 1];
+            case SRE_OP_NOT_LITERAL:
+                return ch != code[pidx + 1];
+            case SRE_OP_LITERAL_IGNORE:
+                /* SRE_MATCH lowers the literal too, SRE_COUNT does not: allow either */
+                ch = state.lower(ch);
+                return ch == code[pidx + 1] || ch == state.lower(code[pidx + 1]);
+            case SRE_OP_IN:
+                return state.SRE_CHARSET(code, pidx + 2, ch);
+            case SRE_OP_IN_IGNORE:
+                return state.SRE_CHARSET(code, pidx + 2, state.lower(ch));
+            case SRE_OP_CATEGORY:
+                return state.sre_category(code[pidx + 1], ch);
+            default:
+                return true;
+            }
+        }
+
+        /** Whether the operation at {@code pidx} may match a character from 256 up. */
+        private boolean matchesWide(int pidx) {
+            /* only in unicode mode does lower() change characters from 256 up */
+            boolean unicode = (state.flags & SRE_FLAG_UNICODE) != 0;
+            switch (code[pidx]) {
+            case SRE_OP_LITERAL:
+                return code[pidx + 1] >= 256;
+            case SRE_OP_LITERAL_IGNORE:
+                return unicode || code[pidx + 1] >= 256 || state.lower(code[pidx + 1]) >= 256;
+            case SRE_OP_IN:
+                return setWide(pidx + 2);
+            case SRE_OP_IN_IGNORE:
+                return unicode || setWide(pidx + 2);
+            case SRE_OP_CATEGORY:
+                return categoryWide(code[pidx + 1]);
+            default:
+                return true;
+            }
+        }
+
+        /** Whether the set at {@code setidx} may hold a character from 256 up. */
+        private boolean setWide(int setidx) {
+            for (;;) {
+                switch (code[setidx]) {
+                case SRE_OP_FAILURE:
+                    return false;
+                case SRE_OP_LITERAL:
+                    if (code[setidx + 1] >= 256) {
+                        return true;
+                    }
+                    setidx += 2;
+                    break;
+                case SRE_OP_CATEGORY:
+                    if (categoryWide(code[setidx + 1])) {
+                        return true;
+                    }
+                    setidx += 2;
+                    break;
+                case SRE_OP_CHARSET:
+                    setidx += 1 + 8;
+                    break;
+                case SRE_OP_RANGE:
+                    if (code[setidx + 2] >= 256) {
+                        return true;
+                    }
+                    setidx += 3;
+                    break;
+                default:
+                    /* NEGATE, BIGCHARSET */
+                    return true;
+                }
+            }
+        }
+
+        /** Whether a category may hold a character from 256 up (only the ASCII ones do not). */
+        private static boolean categoryWide(int category) {
+            switch (category) {
+            case SRE_CATEGORY_DIGIT:
+            case SRE_CATEGORY_SPACE:
+            case SRE_CATEGORY_WORD:
+            case SRE_CATEGORY_LINEBREAK:
+                return false;
+            default:
+                return true;
+            }
+        }
+    }
+}
@@ -248,9 +248,17 @@ public class PythonInterpreter implements AutoCloseable, Closeable {
      * PythonInterpreter.compile(), and using the overridden form of this method which takes a
      * PyCode object. Code page declarations are not supported.
      */
-    public void exec(String s) {
+    public void exec(final String s) {
         setSystemState();
-        Py.exec(Py.compile_flags(s, "<string>", CompileMode.exec, cflags), getLocals(), null);
+        PyCode code = CodeCache.compile(s, "<string>", CompileMode.exec, cflags,
+                new CodeCache.Parser() {
+
+                    @Override
+                    public mod parse(CompilerFlags cf) {
+                        return Py.parse_flags(s, "<string>", CompileMode.exec, cf);
+                    }
+                });
+        Py.exec(code, getLocals(), null);
         Py.flushLine();
     }
 
@@ -298,13 +306,22 @@ public class PythonInterpreter implements AutoCloseable, Closeable {
         return compile(reader, "<script>");
     }
 
-    public PyCode compile(String script, String filename) {
+    public PyCode compile(final String script, final String filename) {
         FeatureDetector fdet = new FeatureDetector(script);
         boolean print_stmt = fdet.getPrintStatement();
         cflags.setPrintFunction(!print_stmt);
         cflags.setUnicodeLiterals(!print_stmt);
         cflags.setRepeatLoop(fdet.getRepeatLoop());
-        return compile(new StringReader(script), filename);
+        setSystemState();
+        return CodeCache.compile(script, filename, CompileMode.eval, cflags,
+                new CodeCache.Parser() {
+
+                    @Override
+                    public mod parse(CompilerFlags cf) {
+                        return ParserFacade.parseExpressionOrModule(new StringReader(script),
+                                filename, cf);
+                    }
+                });
     }
 
     public PyCode compile(Reader reader, String filename) {
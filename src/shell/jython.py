@@ -96,6 +96,7 @@ def parse_launcher_args(args):
         pass
     parsed = Namespace()
     parsed.boot = False # --boot flag given
+    parsed.cds = False # --cds flag given
     parsed.jdb = False # --jdb flag given
     parsed.help = False # --help or -h flag given
     parsed.print_requested = False # --print flag given
@@ -139,7 +140,7 @@ def parse_launcher_args(args):
             i += 1
         elif arg in (u"-h", u"--help"):
             parsed.help = True
-        elif arg in (u"--boot", u"--jdb", u"--profile"):
+        elif arg in (u"--boot", u"--cds", u"--jdb", u"--profile"):
             setattr(parsed, arg[2:], True)
             i += 1
         elif len(arg) >= 2 and arg[0] == u'-' and arg[1] in u"BEisSuvV3":
@@ -301,6 +302,10 @@ setting JYTHON_HOME.""".format(self.jython_home))
     def java_opts(self):
         return [self.java_mem, self.java_stack]
 
+    @property
+    def java_cds_archive(self):
+        return get_env("JYTHON_CDS_ARCHIVE", os.path.join(self.jython_home, "jython.jsa"))
+
     @property
     def java_profile_agent(self):
         return os.path.join(self.jython_home, "javalib", "profile.jar")
@@ -369,6 +374,23 @@ setting JYTHON_HOME.""".format(self.jython_home))
         if self.uname == u"cygwin" and "python.console" not in self.args.properties:
             args.append(u"-Dpython.console=org.python.core.PlainConsole")
 
+        if self.args.cds:
+            archive = self.java_cds_archive
+            cds_flags = True
+            if os.path.isfile(archive):
+                args.append(u"-XX:SharedArchiveFile=%s" % self.convert_path(archive))
+            elif os.access(os.path.dirname(os.path.abspath(archive)), os.W_OK):
+                # Java 13 and later: archive the classes loaded, as this run ends
+                args.append(u"-XX:ArchiveClassesAtExit=%s" % self.convert_path(archive))
+            else:
+                # A read-only installation, for example
+                print >> sys.stderr, (u"jython: cannot write {} for --cds, so running without it "
+                    u"(set JYTHON_CDS_ARCHIVE to a file in a writable directory)").format(archive)
+                cds_flags = False
+            if cds_flags:
+                # Not all classes may be archived: don't warn about each one
+                args.extend([u"-Xlog:cds=off", u"-Xlog:cds+dynamic=off"])
+
         if self.args.profile:
             args.append(u"-XX:-UseSplitVerifier")
             args.append(u"-javaagent:%s" % self.convert_path(self.java_profile_agent))
@@ -400,6 +422,9 @@ Jython launcher-specific options:
 -Dname=value : pass name=value property to Java VM (e.g. -Dpython.path=/a/b/c)
 -Jarg    : pass argument through to Java VM (e.g. -J-Xmx512m)
 --boot   : speeds up launch performance by putting Jython jars on the boot classpath
+--cds    : speeds up launch performance by using a class data sharing archive of the
+           classes loaded at start-up, written by the first run if it may be (requires
+           Java 13 or later)
 --help   : this help message
 --jdb    : run under JDB java debugger
 --print  : print the Java command with args for launching Jython instead of executing it
@@ -412,6 +437,7 @@ JAVA_OPTS  : options to pass directly to Java
 JAVA_HOME  : Java installation directory
 JYTHON_HOME: Jython installation directory
 JYTHON_OPTS: default command line arguments
+JYTHON_CDS_ARCHIVE: archive file for --cds (default $JYTHON_HOME/jython.jsa)
 """
 
 def support_java_opts(args):
@@ -38,6 +38,13 @@ public class JOverload {
   public String ov_scal2(java.io.Serializable a) { return "(java.io.Serializable)"; }
   public String ov_scal2(java.lang.Object a) { return "(java.lang.Object)"; }
 
+// ov_classXX
+  public String ov_class1(java.lang.Class a) { return "(java.lang.Class)"; }
+  public String ov_class1(java.lang.Object a) { return "(java.lang.Object)"; }
+
+  public String ov_class2(Runnable a) { return "(java.lang.Runnable)"; }
+  public String ov_class2(java.lang.Object a) { return "(java.lang.Object)"; }
+
   public String ov_scal3(short a) { return "(short)"; }
   public String ov_scal3(char a) { return "(char)"; }
   public String ov_scal3(byte a) { return "(byte)"; }
@@ -0,0 +1,153 @@
+package org.python.core;
+
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the caches of boxed values: the ranges set from the registry, the refusal of ranges
+ * that are empty or too large, and the statistics reported by {@code sys._cache_stats()}.
+ */
+public class BoxCacheTest extends TestCase {
+
+    private static final String[] KEYS = {RegistryKey.PYTHON_INTEGER_CACHE_LOW,
+            RegistryKey.PYTHON_INTEGER_CACHE_HIGH, RegistryKey.PYTHON_FLOAT_CACHE_LOW,
+            RegistryKey.PYTHON_FLOAT_CACHE_HIGH, RegistryKey.PYTHON_UNICODE_CACHE_HIGH};
+
+    private Properties saved;
+    private int[] savedRanges;
+    private boolean savedStats;
+
+    @Override
+    protected void setUp() throws Exception {
+        PySystemState.initialize();
+        saved = new Properties();
+        for (String key : KEYS) {
+            String value = PySystemState.registry.getProperty(key);
+            if (value != null) {
+                saved.setProperty(key, value);
+            }
+        }
+        savedRanges = new int[] {Options.integerCacheLow, Options.integerCacheHigh,
+                Options.floatCacheLow, Options.floatCacheHigh, Options.unicodeCacheHigh};
+        savedStats = Options.cacheStats;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (String key : KEYS) {
+            PySystemState.registry.remove(key);
+        }
+        PySystemState.registry.putAll(saved);
+        Options.integerCacheLow = savedRanges[0];
+        Options.integerCacheHigh = savedRanges[1];
+        Options.floatCacheLow = savedRanges[2];
+        Options.floatCacheHigh = savedRanges[3];
+        Options.unicodeCacheHigh = savedRanges[4];
+        Options.cacheStats = savedStats;
+        Py.setBoxCaches();
+    }
+
+    public void testValues() {
+        BoxCache ints = BoxCache.integers(-5, 10);
+        assertSame(ints.get(-5), ints.get(-5));
+        assertEquals(new PyInteger(-5), ints.get(-5));
+        assertEquals(new PyInteger(10), ints.get(10));
+        assertNull(ints.get(-6));
+        assertNull(ints.get(11));
+        BoxCache floats = BoxCache.floats(-1, 1);
+        assertEquals(new PyFloat(-1.0), floats.get(-1));
+        assertTrue(floats.get(1) instanceof PyFloat);
+        assertNull(floats.get(2));
+        BoxCache chars = BoxCache.characters(0xe000);
+        assertEquals(new PyUnicode("a"), chars.get('a'));
+        assertNull(chars.get(Character.MIN_SURROGATE));
+        assertNull(chars.get(Character.MAX_SURROGATE));
+        assertEquals(new PyUnicode(0xe000), chars.get(0xe000));
+        assertNull(chars.get(0xe001));
+    }
+
+    public void testValidRange() {
+        assertTrue(BoxCache.isValidRange(0, 0));
+        assertTrue(BoxCache.isValidRange(-100, 899));
+        assertTrue(BoxCache.isValidRange(0, BoxCache.MAX_SIZE - 1));
+        assertFalse(BoxCache.isValidRange(0, BoxCache.MAX_SIZE));
+        assertFalse(BoxCache.isValidRange(1, 0));
+        // The size of this range overflows an int
+        assertFalse(BoxCache.isValidRange(Integer.MIN_VALUE, Integer.MAX_VALUE));
+        try {
+            BoxCache.integers(10, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testRangesFromRegistry() {
+        PySystemState.registry.setProperty(RegistryKey.PYTHON_INTEGER_CACHE_LOW, "-10");
+        PySystemState.registry.setProperty(RegistryKey.PYTHON_INTEGER_CACHE_HIGH, "3000");
+        PySystemState.registry.setProperty(RegistryKey.PYTHON_FLOAT_CACHE_LOW, "0");
+        PySystemState.registry.setProperty(RegistryKey.PYTHON_FLOAT_CACHE_HIGH, "10");
+        PySystemState.registry.setProperty(RegistryKey.PYTHON_UNICODE_CACHE_HIGH, "1000");
+        Options.setFromRegistry();
+        assertTrue(Py.integerCache.hasRange(-10, 3000));
+        assertTrue(Py.floatCache.hasRange(0, 10));
+        assertTrue(Py.unicodeCache.hasRange(0, 1000));
+        assertSame(Py.newInteger(3000), Py.newInteger(3000));
+        assertNotSame(Py.newInteger(3001), Py.newInteger(3001));
+        assertNotSame(Py.newInteger(-11), Py.newInteger(-11));
+    }
+
+    public void testInvalidRangesIgnored() {
+        PySystemState.registry.setProperty(RegistryKey.PYTHON_INTEGER_CACHE_LOW, "-10");
+        PySystemState.registry.setProperty(RegistryKey.PYTHON_INTEGER_CACHE_HIGH, "20");
+        Options.setFromRegistry();
+        assertTrue(Py.integerCache.hasRange(-10, 20));
+        // Each of these is refused with a warning, and the cache keeps its range
+        String[][] ranges = {{"20", "-10"}, {"-2147483648", "2147483647"}, {"0", "2000000"}};
+        for (String[] range : ranges) {
+            PySystemState.registry.setProperty(RegistryKey.PYTHON_INTEGER_CACHE_LOW, range[0]);
+            PySystemState.registry.setProperty(RegistryKey.PYTHON_INTEGER_CACHE_HIGH, range[1]);
+            Options.setFromRegistry();
+            assertTrue(Py.integerCache.hasRange(-10, 20));
+            assertEquals(-10, Options.integerCacheLow);
+            assertEquals(20, Options.integerCacheHigh);
+        }
+        PySystemState.registry.setProperty(RegistryKey.PYTHON_UNICODE_CACHE_HIGH, "-1");
+        int high = Options.unicodeCacheHigh;
+        Options.setFromRegistry();
+        assertEquals(high, Options.unicodeCacheHigh);
+    }
+
+    public void testStats() {
+        Options.cacheStats = true;
+        BoxCache ints = BoxCache.integers(0, 9);
+        ints.get(0);
+        ints.get(9);
+        ints.get(10);
+        ints.miss();
+        PyTuple stats = ints.stats();
+        assertEquals(4, stats.size());
+        assertEquals(0, stats.__getitem__(0).asInt());
+        assertEquals(9, stats.__getitem__(1).asInt());
+        assertEquals(2, stats.__getitem__(2).asLong());
+        assertEquals(2, stats.__getitem__(3).asLong());
+        // Nothing is counted while the option is off
+        Options.cacheStats = false;
+        ints.get(0);
+        ints.get(10);
+        assertEquals(ints.stats(), stats);
+
+        PyDictionary all = PySystemState._cache_stats();
+        String[] names = {"int", "float", "unicode", "method", "compile", "compiledir"};
+        int[] lengths = {4, 4, 4, 3, 5, 2};
+        for (int i = 0; i < names.length; i++) {
+            PyObject entry = all.__finditem__(names[i]);
+            assertTrue(names[i], entry instanceof PyTuple);
+            assertEquals(names[i], lengths[i], entry.__len__());
+        }
+        PyTuple intStats = (PyTuple)all.__finditem__("int");
+        assertEquals(Options.integerCacheLow, intStats.__getitem__(0).asInt());
+        assertEquals(Options.integerCacheHigh, intStats.__getitem__(1).asInt());
+    }
+}
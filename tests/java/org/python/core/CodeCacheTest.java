@@ -0,0 +1,261 @@
+package org.python.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import org.python.antlr.base.mod;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the cache of compiled scripts: a hit returns the same code and leaves the compiler
+ * flags as the compilation did, and entries are evicted by number and by size. Compiled scripts
+ * kept in a directory are read back, replaced when they cannot be used, and deleted to keep the
+ * directory within its size.
+ */
+public class CodeCacheTest extends TestCase {
+
+    private int savedSize;
+    private int savedBytes;
+    private boolean savedStats;
+    private String savedDir;
+    private int savedDirBytes;
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        PySystemState.initialize();
+        savedSize = Options.compileCacheSize;
+        savedBytes = Options.compileCacheBytes;
+        savedStats = Options.cacheStats;
+        savedDir = Options.compileCacheDir;
+        savedDirBytes = Options.compileCacheDirBytes;
+        Options.compileCacheSize = 4;
+        Options.compileCacheBytes = 16 * 1024 * 1024;
+        Options.cacheStats = true;
+        CodeCache.clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Options.compileCacheSize = savedSize;
+        Options.compileCacheBytes = savedBytes;
+        Options.cacheStats = savedStats;
+        Options.compileCacheDir = savedDir;
+        Options.compileCacheDirBytes = savedDirBytes;
+        CodeCache.clear();
+        if (dir != null) {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private static PyCode compile(final String source, CompilerFlags cflags) {
+        return CodeCache.compile(source, "<test>", CompileMode.exec, cflags,
+                new CodeCache.Parser() {
+
+                    @Override
+                    public mod parse(CompilerFlags cf) {
+                        return Py.parse_flags(source, "<test>", CompileMode.exec, cf);
+                    }
+                });
+    }
+
+    private static PyCode compile(String source) {
+        return compile(source, new CompilerFlags());
+    }
+
+    /** An item of the statistics tuple of the cache. */
+    private static long stat(int index) {
+        return CodeCache.stats().__getitem__(index).asLong();
+    }
+
+    /** An item of the statistics tuple of the directory. */
+    private static long diskStat(int index) {
+        return CodeCache.diskStats().__getitem__(index).asLong();
+    }
+
+    /** Use a new directory, and only the directory. */
+    private void useDirectory() throws IOException {
+        dir = Files.createTempDirectory("codecache").toFile();
+        Options.compileCacheDir = dir.getPath();
+        Options.compileCacheSize = 0;
+    }
+
+    /** The only file in the directory. */
+    private File onlyFile() {
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    /** Overwrite the int at {@code offset} in {@code file}. */
+    private static void writeInt(File file, long offset, int value) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+            f.seek(offset);
+            f.writeInt(value);
+        }
+    }
+
+    /** Run code in a new namespace and return the value it gives {@code x}. */
+    private static PyObject run(PyCode code) {
+        PyStringMap globals = new PyStringMap();
+        Py.runCode(code, globals, globals);
+        return globals.__finditem__("x");
+    }
+
+    public void testOff() {
+        Options.compileCacheSize = 0;
+        PyCode code = compile("x = 1");
+        assertNotSame(code, compile("x = 1"));
+        assertEquals(0, stat(0));
+    }
+
+    public void testHit() {
+        long hits = stat(2), misses = stat(3);
+        PyCode code = compile("x = 1");
+        assertSame(code, compile("x = 1"));
+        assertNotSame(code, compile("x = 2"));
+        assertEquals(hits + 1, stat(2));
+        assertEquals(misses + 2, stat(3));
+        assertEquals(2, stat(0));
+        // The source is counted with the classes
+        assertTrue(stat(1) > 2 * "x = 1".length() + 2 * "x = 2".length());
+    }
+
+    public void testFlagsRestored() {
+        String source = "from __future__ import division\nx = 1 / 2\n";
+        CompilerFlags first = new CompilerFlags();
+        PyCode code = compile(source, first);
+        assertTrue(first.isFlagSet(CodeFlag.CO_FUTURE_DIVISION));
+        CompilerFlags second = new CompilerFlags();
+        assertSame(code, compile(source, second));
+        assertTrue(second.isFlagSet(CodeFlag.CO_FUTURE_DIVISION));
+        assertEquals(first.toBits(), second.toBits());
+        // Flags that differ before compiling make a different entry
+        CompilerFlags printFunction = new CompilerFlags();
+        printFunction.setPrintFunction(true);
+        assertNotSame(code, compile(source, printFunction));
+    }
+
+    public void testEvictionBySize() {
+        PyCode first = compile("x = 0");
+        for (int i = 1; i < 4; i++) {
+            compile("x = " + i);
+        }
+        // Using the first again makes another the least recently used
+        assertSame(first, compile("x = 0"));
+        compile("x = 4");
+        assertEquals(4, stat(0));
+        assertSame(first, compile("x = 0"));
+        assertSame(compile("x = 4"), compile("x = 4"));
+    }
+
+    public void testEvictionByBytes() {
+        PyCode small = compile("x = 0");
+        long held = stat(1);
+        // A script whose text alone is more than the limit is not kept, nor is what it displaces
+        StringBuilder big = new StringBuilder("x = 1\n");
+        while (big.length() < 4096) {
+            big.append("# padding to make the source long\n");
+        }
+        Options.compileCacheBytes = (int)held + 4096;
+        PyCode code = compile(big.toString());
+        assertNotSame(code, compile(big.toString()));
+        assertEquals(0, stat(0));
+        assertEquals(0, stat(1));
+        assertNotSame(small, compile("x = 0"));
+    }
+
+    public void testDirectoryRoundTrip() throws IOException {
+        useDirectory();
+        String source = "from __future__ import division\nx = 1 / 2\n";
+        long hits = diskStat(0), misses = diskStat(1);
+        CompilerFlags first = new CompilerFlags();
+        PyCode code = compile(source, first);
+        assertEquals(misses + 1, diskStat(1));
+        File file = onlyFile();
+        assertTrue(file.getName().endsWith(".class"));
+        // Read back, with the flags as the compilation left them
+        CompilerFlags second = new CompilerFlags();
+        PyCode again = compile(source, second);
+        assertNotSame(code, again);
+        assertEquals(hits + 1, diskStat(0));
+        assertEquals(first.toBits(), second.toBits());
+        assertEquals(Py.newFloat(0.5), run(again));
+        // Other flags make another file
+        CompilerFlags printFunction = new CompilerFlags();
+        printFunction.setPrintFunction(true);
+        compile(source, printFunction);
+        assertEquals(2, dir.listFiles().length);
+    }
+
+    public void testDirectoryCorruptFile() throws IOException {
+        useDirectory();
+        compile("x = 3");
+        File file = onlyFile();
+        long length = file.length();
+        // Cut short, it is compiled again and replaced
+        try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+            f.setLength(length / 2);
+        }
+        long hits = diskStat(0), misses = diskStat(1);
+        assertEquals(Py.newInteger(3), run(compile("x = 3")));
+        assertEquals(misses + 1, diskStat(1));
+        assertEquals(length, onlyFile().length());
+        assertEquals(Py.newInteger(3), run(compile("x = 3")));
+        assertEquals(hits + 1, diskStat(0));
+        // Garbage in place of the class itself
+        byte[] content = Files.readAllBytes(file.toPath());
+        int start = 0;
+        while (!(content[start] == (byte)0xca && content[start + 1] == (byte)0xfe)) {
+            start++;
+        }
+        writeInt(file, start, 0xdeadbeef);
+        misses = diskStat(1);
+        assertEquals(Py.newInteger(3), run(compile("x = 3")));
+        assertEquals(misses + 1, diskStat(1));
+    }
+
+    public void testDirectoryMismatchedHeader() throws IOException {
+        useDirectory();
+        compile("x = 4");
+        File file = onlyFile();
+        // A different magic number (another layout) and API version (another Jython)
+        for (int offset : new int[] {0, 4}) {
+            writeInt(file, offset, 1);
+            long hits = diskStat(0), misses = diskStat(1);
+            assertEquals(Py.newInteger(4), run(compile("x = 4")));
+            assertEquals(misses + 1, diskStat(1));
+            // Replaced by a file that can be read
+            assertEquals(Py.newInteger(4), run(compile("x = 4")));
+            assertEquals(hits + 1, diskStat(0));
+        }
+    }
+
+    public void testDirectoryTrimmed() throws IOException {
+        useDirectory();
+        compile("x = 0");
+        long length = onlyFile().length();
+        // Room for about three files
+        Options.compileCacheDirBytes = (int)(3 * length + length / 2);
+        File first = onlyFile();
+        first.setLastModified(System.currentTimeMillis() - 60000);
+        compile("x = 1");
+        compile("x = 2");
+        assertEquals(3, dir.listFiles().length);
+        // The least recently used goes when another is written
+        compile("x = 3");
+        assertEquals(3, dir.listFiles().length);
+        assertFalse(first.exists());
+        long total = 0;
+        for (File file : dir.listFiles()) {
+            total += file.length();
+        }
+        assertTrue(total <= Options.compileCacheDirBytes);
+    }
+}
@@ -0,0 +1,248 @@
+package org.python.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the store of dictionaries: entries keep the order of insertion through removal and
+ * resizing, and lookups without a lock see each key either present or absent while another thread
+ * changes the map.
+ */
+public class CompactDictMapTest extends TestCase {
+
+    private CompactDictMap<PyObject, PyObject> map;
+
+    @Override
+    protected void setUp() throws Exception {
+        map = new CompactDictMap<PyObject, PyObject>();
+        for (int i = 0; i < 100; i++) {
+            map.put(Py.newInteger(i), Py.newInteger(-i));
+        }
+    }
+
+    private static List<Integer> keysOf(Map<PyObject, PyObject> m) {
+        List<Integer> keys = new ArrayList<Integer>();
+        for (PyObject k : m.keySet()) {
+            keys.add(k.asInt());
+        }
+        return keys;
+    }
+
+    public void testInsertionOrder() {
+        List<Integer> keys = keysOf(map);
+        assertEquals(100, keys.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, keys.get(i).intValue());
+            assertEquals(Py.newInteger(-i), map.get(Py.newInteger(i)));
+        }
+        // Replacing a value keeps the position of its key
+        assertEquals(Py.newInteger(-50), map.put(Py.newInteger(50), Py.None));
+        assertEquals(50, keysOf(map).indexOf(50));
+        assertEquals(100, map.size());
+    }
+
+    public void testRemoveAndPutAgain() {
+        for (int i = 0; i < 100; i += 2) {
+            assertEquals(Py.newInteger(-i), map.remove(Py.newInteger(i)));
+        }
+        assertEquals(50, map.size());
+        assertNull(map.get(Py.newInteger(10)));
+        assertNull(map.remove(Py.newInteger(10)));
+        assertEquals(Py.newInteger(-11), map.get(Py.newInteger(11)));
+        // A key put again goes to the end, once
+        assertNull(map.put(Py.newInteger(10), Py.None));
+        assertEquals(Py.None, map.put(Py.newInteger(10), Py.True));
+        List<Integer> keys = keysOf(map);
+        assertEquals(51, keys.size());
+        assertEquals(1, keys.get(0).intValue());
+        assertEquals(10, keys.get(50).intValue());
+        // Removing every entry and starting again
+        for (int i = 0; i < 100; i++) {
+            map.remove(Py.newInteger(i));
+        }
+        assertTrue(map.isEmpty());
+        map.put(Py.newInteger(7), Py.None);
+        assertEquals(1, map.size());
+        assertEquals(7, keysOf(map).get(0).intValue());
+    }
+
+    public void testIteratorRemove() {
+        Iterator<Map.Entry<PyObject, PyObject>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getKey().asInt() % 3 != 0) {
+                it.remove();
+            }
+        }
+        assertEquals(34, map.size());
+        assertEquals(99, keysOf(map).get(33).intValue());
+    }
+
+    public void testResize() {
+        CompactDictMap<PyObject, PyObject> m = new CompactDictMap<PyObject, PyObject>();
+        for (int i = 0; i < 10000; i++) {
+            assertNull(m.put(Py.newInteger(i), Py.newInteger(i)));
+            assertEquals(i + 1, m.size());
+        }
+        // Shrink back down, checking the survivors each time a tenth has gone
+        for (int i = 0; i < 9990; i++) {
+            assertNotNull(m.remove(Py.newInteger(i)));
+            if (i % 1000 == 0) {
+                assertEquals(Py.newInteger(9999), m.get(Py.newInteger(9999)));
+            }
+        }
+        assertEquals(10, m.size());
+        List<Integer> keys = keysOf(m);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(9990 + i, keys.get(i).intValue());
+        }
+        assertEquals(map, new CompactDictMap<PyObject, PyObject>(map));
+    }
+
+    public void testConcurrentReaders() throws InterruptedException {
+        // Keys 0-99 stay put, while a writer adds and removes others around them
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final int rounds = 200;
+        Thread writer = new Thread() {
+
+            @Override
+            public void run() {
+                for (int r = 0; r < rounds; r++) {
+                    for (int i = 100; i < 1000; i++) {
+                        map.put(Py.newInteger(i), Py.newInteger(-i));
+                    }
+                    for (int i = 100; i < 1000; i++) {
+                        map.remove(Py.newInteger(i));
+                    }
+                }
+            }
+        };
+        Thread[] readers = new Thread[4];
+        for (int n = 0; n < readers.length; n++) {
+            readers[n] = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int r = 0; r < rounds && failure.get() == null; r++) {
+                        for (int i = 0; i < 1000; i++) {
+                            PyObject v = map.get(Py.newInteger(i));
+                            if (i < 100 ? !Py.newInteger(-i).equals(v)
+                                    : v != null && !Py.newInteger(-i).equals(v)) {
+                                failure.set("key " + i + " had value " + v);
+                            }
+                        }
+                        int seen = 0;
+                        for (PyObject k : map.keySet()) {
+                            seen += k.asInt() < 100 ? 1 : 0;
+                        }
+                        if (seen != 100) {
+                            failure.set("iteration saw " + seen + " of the fixed keys");
+                        }
+                    }
+                }
+            };
+        }
+        writer.start();
+        for (Thread t : readers) {
+            t.start();
+        }
+        writer.join();
+        for (Thread t : readers) {
+            t.join();
+        }
+        assertNull(failure.get(), failure.get());
+        assertEquals(100, map.size());
+    }
+
+    public void testConcurrentGetAndRemove() throws InterruptedException {
+        // Readers look up the very keys a writer is removing and putting back
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final int rounds = 2000;
+        final Thread writer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    for (int r = 0; r < rounds; r++) {
+                        for (int i = 0; i < 100; i++) {
+                            map.remove(Py.newInteger(i));
+                        }
+                        for (int i = 0; i < 100; i++) {
+                            map.put(Py.newInteger(i), Py.newInteger(-i));
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        };
+        Thread[] readers = new Thread[3];
+        for (int n = 0; n < readers.length; n++) {
+            readers[n] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        while (failure.get() == null && writer.isAlive()) {
+                            for (int i = 0; i < 100; i++) {
+                                PyObject k = Py.newInteger(i);
+                                PyObject v = map.get(k);
+                                if (v != null && !Py.newInteger(-i).equals(v)) {
+                                    throw new AssertionError("key " + i + " had value " + v);
+                                }
+                                map.containsKey(k);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+        }
+        writer.start();
+        for (Thread t : readers) {
+            t.start();
+        }
+        writer.join();
+        for (Thread t : readers) {
+            t.join();
+        }
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertEquals(100, map.size());
+    }
+
+    public void testKeyPosition() {
+        CompactDictMap.SharedKeys keys = new CompactDictMap.SharedKeys();
+        CompactDictMap<Object, PyObject> a = new CompactDictMap<Object, PyObject>(keys);
+        a.put("x", Py.One);
+        CompactDictMap.KeyPosition x = a.positionOf("x");
+        CompactDictMap.KeyPosition late = a.positionOf("late");
+        assertEquals(Py.One, a.get(x));
+        assertNull(a.get(late));
+        // A map with the key beyond those known when the position was taken
+        CompactDictMap<Object, PyObject> b = new CompactDictMap<Object, PyObject>(keys);
+        b.put("x", Py.Zero);
+        b.put("late", Py.None);
+        assertEquals(Py.Zero, b.get(x));
+        assertSame(CompactDictMap.NOT_SPLIT, b.get(late));
+        late = b.positionOf("late");
+        assertEquals(Py.None, b.get(late));
+        // A map with fewer keys than the position
+        assertNull(a.get(late));
+        // Keys replaced by larger ones: positions taken before no longer apply to maps that move
+        for (int i = 0; i < 30; i++) {
+            b.put("a" + i, Py.newInteger(i));
+        }
+        assertSame(CompactDictMap.NOT_SPLIT, b.get(x));
+        assertEquals(Py.Zero, b.get(b.positionOf("x")));
+        assertEquals(Py.One, a.get(x));
+        // Removing a key makes the map combined
+        a.remove("x");
+        assertSame(CompactDictMap.NOT_SPLIT, a.get(x));
+        assertNull(a.positionOf("x"));
+    }
+}
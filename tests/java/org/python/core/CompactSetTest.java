@@ -0,0 +1,129 @@
+package org.python.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the store of sets: removed elements must not hide others, and the bulk operations
+ * must agree with those of {@code HashSet}.
+ */
+public class CompactSetTest extends TestCase {
+
+    private CompactSet<PyObject> set;
+
+    @Override
+    protected void setUp() throws Exception {
+        set = new CompactSet<PyObject>();
+        for (int i = 0; i < 100; i++) {
+            set.add(Py.newInteger(i));
+        }
+    }
+
+    public void testRemoveAndAddAgain() {
+        for (int i = 0; i < 100; i += 2) {
+            assertTrue(set.remove(Py.newInteger(i)));
+        }
+        assertEquals(50, set.size());
+        assertFalse(set.contains(Py.newInteger(10)));
+        assertTrue(set.contains(Py.newInteger(11)));
+        // Removed slots are reused without making a duplicate of an element still present
+        assertFalse(set.add(Py.newInteger(99)));
+        assertTrue(set.add(Py.newInteger(10)));
+        assertEquals(51, set.size());
+        assertEquals(51, new HashSet<PyObject>(set).size());
+    }
+
+    public void testPop() {
+        HashSet<PyObject> popped = new HashSet<PyObject>();
+        while (!set.isEmpty()) {
+            popped.add(set.pop());
+        }
+        assertEquals(100, popped.size());
+        try {
+            set.pop();
+            fail();
+        } catch (java.util.NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testRetainAll() {
+        CompactSet<PyObject> few = new CompactSet<PyObject>(
+                Arrays.asList(Py.newInteger(3), Py.newInteger(7), Py.newInteger(500)));
+        CompactSet<PyObject> copy = set.copy();
+        // Iterating the smaller argument, then this set
+        assertTrue(copy.retainAll(few));
+        assertEquals(new HashSet<PyObject>(Arrays.asList(Py.newInteger(3), Py.newInteger(7))),
+                copy);
+        assertTrue(few.retainAll(set));
+        assertEquals(copy, few);
+        assertEquals(copy, set.intersection(few));
+        assertEquals(98, set.difference(few).size());
+        assertEquals(100, set.size());
+    }
+
+    public void testSerialization() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        set.remove(Py.newInteger(0));
+        out.writeObject(set);
+        out.close();
+        ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Object copy = in.readObject();
+        assertEquals(set, copy);
+        assertEquals(99, ((CompactSet<?>)copy).size());
+    }
+
+    /** An element equal to those with the same name, whose comparison may call back to the set. */
+    private static class Key {
+
+        final String name;
+        Runnable onEquals;
+
+        Key(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (onEquals != null) {
+                Runnable r = onEquals;
+                onEquals = null;
+                r.run();
+            }
+            return obj instanceof Key && ((Key)obj).name.equals(name);
+        }
+    }
+
+    public void testContainsRetriesCurrentTable() {
+        final CompactSet<Object> s = new CompactSet<Object>();
+        final Key a = new Key("a");
+        s.add(a);
+        Key probe = new Key("a");
+        // Comparing the probe grows the set into a new table, then removes a from that one
+        probe.onEquals = new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < 100; i++) {
+                    s.add(Py.newInteger(i));
+                }
+                s.remove(a);
+            }
+        };
+        assertFalse(s.contains(probe));
+        assertEquals(100, s.size());
+    }
+}
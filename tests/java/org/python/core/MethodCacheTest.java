@@ -0,0 +1,117 @@
+package org.python.core;
+
+import org.python.util.PythonInterpreter;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the per-type cache of MRO lookups: a change to a type or to any type in its MRO gives
+ * it and its subclasses a new table, and a table holds at most {@link Options#methodCacheSize}
+ * names.
+ */
+public class MethodCacheTest extends TestCase {
+
+    private PythonInterpreter interp;
+    private int savedSize;
+    private boolean savedStats;
+
+    @Override
+    protected void setUp() throws Exception {
+        PySystemState.initialize();
+        interp = new PythonInterpreter();
+        savedSize = Options.methodCacheSize;
+        savedStats = Options.cacheStats;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Options.methodCacheSize = savedSize;
+        Options.cacheStats = savedStats;
+        interp.cleanup();
+    }
+
+    private PyType type(String name) {
+        return (PyType)interp.get(name);
+    }
+
+    public void testSetattrOnBase() {
+        interp.exec("class A(object):\n def f(self): return 'A'\nclass B(A): pass\n"
+                + "class C(B): pass\n");
+        PyType b = type("B"), c = type("C");
+        PyObject f = c.lookup("f");
+        assertSame(f, c.lookup("f"));
+        Object bTag = b.getVersionTag(), cTag = c.getVersionTag();
+        interp.exec("A.f = lambda self: 'A2'");
+        assertNotSame(bTag, b.getVersionTag());
+        assertNotSame(cTag, c.getVersionTag());
+        assertNotSame(f, c.lookup("f"));
+        assertEquals(Py.newString("A2"), interp.eval("C().f()"));
+        // Deleting it from the base, so that it is found nowhere
+        interp.exec("del A.f");
+        assertNull(c.lookup("f"));
+        // Setting it on the subclass changes only the subclass and its own subclasses
+        bTag = b.getVersionTag();
+        interp.exec("C.f = lambda self: 'C'");
+        assertSame(bTag, b.getVersionTag());
+        assertNull(b.lookup("f"));
+        assertEquals(Py.newString("C"), interp.eval("C().f()"));
+    }
+
+    public void testBasesChange() {
+        interp.exec("class P(object): x = 'P'\nclass Q(object): x = 'Q'\n"
+                + "class R(P): pass\nclass S(R): pass\n");
+        PyType r = type("R"), s = type("S");
+        assertEquals(Py.newString("P"), s.lookup("x"));
+        Object tag = s.getVersionTag();
+        interp.exec("R.__bases__ = (Q,)");
+        assertNotSame(tag, s.getVersionTag());
+        assertEquals(Py.newString("Q"), r.lookup("x"));
+        assertEquals(Py.newString("Q"), s.lookup("x"));
+        // A change to the old base no longer concerns them
+        tag = s.getVersionTag();
+        interp.exec("P.x = 'P2'");
+        assertSame(tag, s.getVersionTag());
+        assertEquals(Py.newString("Q"), s.lookup("x"));
+    }
+
+    public void testMroChange() {
+        // A metaclass whose mro() puts the bases in reverse order while a flag is set
+        interp.exec("class Meta(type):\n"
+                + " reverse = False\n"
+                + " def mro(cls):\n"
+                + "  m = type.mro(cls)\n"
+                + "  return [m[0]] + m[1:-1][::-1] + [m[-1]] if Meta.reverse else m\n"
+                + "class X(object): y = 'X'\nclass Y(object): y = 'Y'\n"
+                + "class Z(X, Y):\n __metaclass__ = Meta\n");
+        PyType z = type("Z");
+        assertEquals(Py.newString("X"), z.lookup("y"));
+        Object tag = z.getVersionTag();
+        // Assigning __bases__ computes the MRO again
+        interp.exec("Meta.reverse = True\nZ.__bases__ = (X, Y)\n");
+        assertNotSame(tag, z.getVersionTag());
+        assertEquals(Py.newString("Y"), z.lookup("y"));
+    }
+
+    public void testSizeLimit() {
+        Options.methodCacheSize = 4;
+        Options.cacheStats = true;
+        interp.exec("class T(object): pass\nfor i in range(10): setattr(T, 'a%d' % i, i)\n");
+        PyType t = type("T");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Py.newInteger(i), t.lookup("a" + i));
+        }
+        long hits = stats().__getitem__(1).asLong();
+        long misses = stats().__getitem__(2).asLong();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Py.newInteger(i), t.lookup("a" + i));
+        }
+        // Only the first four names looked up were kept
+        assertEquals(hits + 4, stats().__getitem__(1).asLong());
+        assertEquals(misses + 6, stats().__getitem__(2).asLong());
+        assertEquals(4, stats().__getitem__(0).asInt());
+    }
+
+    private static PyTuple stats() {
+        return PyType.MethodCache.stats();
+    }
+}
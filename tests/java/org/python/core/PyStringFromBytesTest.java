@@ -0,0 +1,131 @@
+package org.python.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.Field;
+
+import org.python.core.buffer.BaseArrayBuffer;
+import org.python.core.util.StringUtil;
+import org.python.util.PythonInterpreter;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for a {@code str} made from bytes, as {@code os.read} makes it: it creates a
+ * {@code String} only when one is needed, is equal to and hashes as the same text made from a
+ * {@code String}, and exports the bytes it holds without copying them.
+ */
+public class PyStringFromBytesTest extends TestCase {
+
+    private byte[] data;
+
+    @Override
+    protected void setUp() throws Exception {
+        PySystemState.initialize();
+        data = new byte[270];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte)i;
+        }
+    }
+
+    /** The bytes held by {@code s}, or {@code null} if it was made from a {@code String}. */
+    private static byte[] bytes(PyString s) throws Exception {
+        Field f = PyString.class.getDeclaredField("bytes");
+        f.setAccessible(true);
+        return (byte[])f.get(s);
+    }
+
+    public void testStringMadeWhenNeeded() throws Exception {
+        PyString s = PyString.fromBytes(data);
+        assertSame(data, bytes(s));
+        assertEquals(data.length, s.__len__());
+        assertEquals(Py.makeCharacter((char)255), s.__getitem__(255));
+        assertEquals(Py.makeCharacter((char)0), s.__getitem__(256));
+        assertEquals(1, s.charAt(257));
+        assertEquals(2, s.getInt(258));
+        assertNull(s.string);
+        assertEquals(StringUtil.fromBytes(data), s.getString());
+        assertNotNull(s.string);
+    }
+
+    public void testEqualToText() {
+        PyString s = PyString.fromBytes(data);
+        PyString text = new PyString(StringUtil.fromBytes(data));
+        assertEquals(text.hashCode(), s.hashCode());
+        assertEquals(text.__hash__(), s.__hash__());
+        assertTrue(s.equals(text));
+        assertTrue(text.equals(s));
+        assertEquals(Py.True, s.__eq__(text));
+        assertEquals(0, s.__cmp__(text));
+        PyDictionary d = new PyDictionary();
+        d.__setitem__(text, Py.One);
+        assertEquals(Py.One, d.__finditem__(PyString.fromBytes(data.clone())));
+        assertEquals(s, PyString.fromBytes(data.clone()));
+        assertFalse(s.equals(new PyString("x")));
+    }
+
+    public void testSlice() throws Exception {
+        PyString s = PyString.fromBytes(data);
+        PyString slice = (PyString)s.__getslice__(Py.newInteger(250), Py.newInteger(260));
+        assertEquals(10, slice.__len__());
+        // A slice holds bytes too, but its own
+        assertNotNull(bytes(slice));
+        assertNotSame(data, bytes(slice));
+        assertEquals(Py.makeCharacter((char)250), slice.__getitem__(0));
+        assertEquals(Py.makeCharacter((char)3), slice.__getitem__(9));
+        assertEquals(new PyString(StringUtil.fromBytes(data, 250, 10)), slice);
+        // An extended slice
+        PyString stepped = (PyString)s.__getitem__(new PySlice(Py.None, Py.None,
+                Py.newInteger(-100)));
+        assertEquals(new PyString("\r\u00a9E"), stepped);
+    }
+
+    public void testBufferSharesBytes() throws Exception {
+        PyString s = PyString.fromBytes(data);
+        PyBuffer buf = s.getBuffer(PyBUF.FULL_RO);
+        try {
+            Field storage = BaseArrayBuffer.class.getDeclaredField("storage");
+            storage.setAccessible(true);
+            assertSame(data, storage.get(buf));
+            assertTrue(buf.isReadonly());
+            assertEquals(data.length, buf.getLen());
+            assertEquals(255, buf.intAt(255));
+        } finally {
+            buf.release();
+        }
+        // No String was made for it
+        assertNull(s.string);
+        try {
+            s.getBuffer(PyBUF.WRITABLE);
+            fail();
+        } catch (PyException e) {
+            // expected
+        }
+    }
+
+    public void testOsRead() throws Exception {
+        File file = File.createTempFile("fromBytes", ".bin");
+        PythonInterpreter interp = new PythonInterpreter();
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(data);
+            }
+            interp.set("path", new PyString(file.getPath()));
+            interp.exec("import os\n"
+                    + "fd = os.open(path, os.O_RDONLY)\n"
+                    + "s = os.read(fd, 1000)\n"
+                    + "os.close(fd)\n"
+                    + "r = os.urandom(16)\n");
+            PyString s = (PyString)interp.get("s");
+            assertNotNull(bytes(s));
+            assertEquals(data.length, s.__len__());
+            assertEquals(new PyString(StringUtil.fromBytes(data)), s);
+            PyString r = (PyString)interp.get("r");
+            assertNotNull(bytes(r));
+            assertEquals(16, r.__len__());
+        } finally {
+            interp.cleanup();
+            file.delete();
+        }
+    }
+}
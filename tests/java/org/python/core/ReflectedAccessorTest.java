@@ -0,0 +1,225 @@
+package org.python.core;
+
+import java.lang.reflect.Field;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the access to Java fields and bean properties by method handle, and by reflection
+ * where no handle may be made: a field or method of a class that is not public, a static field,
+ * a final field and a property with only a setter.
+ */
+public class ReflectedAccessorTest extends TestCase {
+
+    public static class Public {
+
+        public int count = 1;
+        public static String name = "public";
+        public final int fixed = 7;
+        private long secret = 3;
+        private String label = "a";
+        private int written;
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        public void setWritten(int written) {
+            this.written = written;
+        }
+    }
+
+    static class Hidden {
+
+        public int count = 2;
+        public static String name = "hidden";
+        private String label = "b";
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        PySystemState.initialize();
+    }
+
+    /** The value of a private field of {@code owner}, to see which accessors were made. */
+    private static Object get(Object owner, Class<?> c, String name) throws Exception {
+        Field f = c.getDeclaredField(name);
+        f.setAccessible(true);
+        return f.get(owner);
+    }
+
+    /** Whether the field accessors of {@code f} have a getter and a setter handle. */
+    private static boolean[] fieldHandles(PyReflectedField f) throws Exception {
+        Object a = get(f, PyReflectedField.class, "accessors");
+        return new boolean[] {get(a, a.getClass(), "getter") != null,
+                get(a, a.getClass(), "setter") != null};
+    }
+
+    /** Whether the bean accessor named {@code which} of {@code p} has a handle. */
+    private static boolean beanHandle(PyBeanProperty p, String which) throws Exception {
+        Object a = get(p, PyBeanProperty.class, which);
+        return get(a, a.getClass(), "handle") != null;
+    }
+
+    private static PyReflectedField field(Class<?> c, String name) throws Exception {
+        return new PyReflectedField(c.getDeclaredField(name));
+    }
+
+    public void testInstanceField() throws Exception {
+        Public obj = new Public();
+        PyObject self = Py.java2py(obj);
+        PyReflectedField f = field(Public.class, "count");
+        assertEquals(Py.newInteger(1), f._doget(self));
+        f._doset(self, Py.newInteger(5));
+        assertEquals(5, obj.count);
+        assertEquals(Py.newInteger(5), f._doget(self));
+        boolean[] handles = fieldHandles(f);
+        assertTrue(handles[0]);
+        assertTrue(handles[1]);
+        // Without an instance, the descriptor itself
+        assertSame(f, f._doget(null));
+    }
+
+    public void testStaticField() throws Exception {
+        PyReflectedField f = field(Public.class, "name");
+        try {
+            assertEquals(Py.newString("public"), f._doget(null));
+            // The instance is ignored
+            assertEquals(Py.newString("public"), f._doget(Py.java2py(new Public())));
+            f._doset(null, Py.newString("changed"));
+            assertEquals("changed", Public.name);
+            boolean[] handles = fieldHandles(f);
+            assertTrue(handles[0]);
+            assertTrue(handles[1]);
+        } finally {
+            Public.name = "public";
+        }
+    }
+
+    public void testFinalField() throws Exception {
+        Public obj = new Public();
+        PyObject self = Py.java2py(obj);
+        PyReflectedField f = field(Public.class, "fixed");
+        assertEquals(Py.newInteger(7), f._doget(self));
+        boolean[] handles = fieldHandles(f);
+        assertTrue(handles[0]);
+        assertFalse(handles[1]);
+        // Reflection reports the error
+        try {
+            f._doset(self, Py.newInteger(8));
+            fail();
+        } catch (PyException e) {
+            // expected
+        }
+        assertEquals(7, obj.fixed);
+    }
+
+    public void testInaccessibleField() throws Exception {
+        // A private field, as if python.security.respectJavaAccessibility were true
+        PyObject self = Py.java2py(new Public());
+        PyReflectedField f = field(Public.class, "secret");
+        try {
+            f._doget(self);
+            fail();
+        } catch (PyException e) {
+            // expected
+        }
+        boolean[] handles = fieldHandles(f);
+        assertFalse(handles[0]);
+        assertFalse(handles[1]);
+        // Made accessible, as it is when it is false, it has handles
+        Field secret = Public.class.getDeclaredField("secret");
+        secret.setAccessible(true);
+        f = new PyReflectedField(secret);
+        assertEquals(Py.newLong(3), f._doget(self));
+        assertTrue(fieldHandles(f)[0]);
+    }
+
+    public void testFieldOfClassNotPublic() throws Exception {
+        // No handle from the public lookup, but reflection from this package may use it
+        Hidden obj = new Hidden();
+        PyObject self = Py.java2py(obj);
+        PyReflectedField f = field(Hidden.class, "count");
+        assertEquals(Py.newInteger(2), f._doget(self));
+        f._doset(self, Py.newInteger(6));
+        assertEquals(6, obj.count);
+        boolean[] handles = fieldHandles(f);
+        assertFalse(handles[0]);
+        assertFalse(handles[1]);
+
+        f = field(Hidden.class, "name");
+        try {
+            assertEquals(Py.newString("hidden"), f._doget(null));
+            f._doset(null, Py.newString("changed"));
+            assertEquals("changed", Hidden.name);
+            assertFalse(fieldHandles(f)[0]);
+        } finally {
+            Hidden.name = "hidden";
+        }
+    }
+
+    public void testFieldReplaced() throws Exception {
+        // The accessors follow the field, which PyJavaType may change
+        PyObject self = Py.java2py(new Public());
+        PyReflectedField f = field(Public.class, "count");
+        assertEquals(Py.newInteger(1), f._doget(self));
+        f.field = Public.class.getDeclaredField("fixed");
+        assertEquals(Py.newInteger(7), f._doget(self));
+    }
+
+    public void testBeanProperty() throws Exception {
+        Public obj = new Public();
+        PyObject self = Py.java2py(obj);
+        PyBeanProperty p = new PyBeanProperty("label", String.class,
+                Public.class.getMethod("getLabel"), Public.class.getMethod("setLabel",
+                        String.class));
+        assertEquals(Py.newString("a"), p._doget(self));
+        p._doset(self, Py.newString("z"));
+        assertEquals("z", obj.label);
+        assertEquals(Py.newString("z"), p._doget(self));
+        assertTrue(beanHandle(p, "getter"));
+        assertTrue(beanHandle(p, "setter"));
+    }
+
+    public void testSetterOnlyProperty() throws Exception {
+        Public obj = new Public();
+        PyObject self = Py.java2py(obj);
+        PyBeanProperty p = new PyBeanProperty("written", int.class, null,
+                Public.class.getMethod("setWritten", int.class));
+        p._doset(self, Py.newInteger(9));
+        assertEquals(9, obj.written);
+        assertTrue(beanHandle(p, "setter"));
+        try {
+            p._doget(self);
+            fail();
+        } catch (PyException e) {
+            assertTrue(e.match(Py.AttributeError));
+        }
+        assertNull(get(p, PyBeanProperty.class, "getter"));
+    }
+
+    public void testBeanPropertyOfClassNotPublic() throws Exception {
+        Hidden obj = new Hidden();
+        PyObject self = Py.java2py(obj);
+        PyBeanProperty p = new PyBeanProperty("label", String.class,
+                Hidden.class.getMethod("getLabel"), Hidden.class.getMethod("setLabel",
+                        String.class));
+        assertEquals(Py.newString("b"), p._doget(self));
+        p._doset(self, Py.newString("y"));
+        assertEquals("y", obj.label);
+        assertFalse(beanHandle(p, "getter"));
+        assertFalse(beanHandle(p, "setter"));
+    }
+}
@@ -0,0 +1,205 @@
+package org.python.core;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the storage of lists read optimistically ({@code python.list.optimisticReads}): reads
+ * that a write interrupts report failure, so that the caller reads again holding the lock, and
+ * {@code len}, indexing and iteration of a {@link PyList} see consistent items while another
+ * thread changes it.
+ */
+public class StampedListTest extends TestCase {
+
+    private boolean savedOptimistic;
+
+    @Override
+    protected void setUp() throws Exception {
+        PySystemState.initialize();
+        savedOptimistic = Options.listOptimisticReads;
+        Options.listOptimisticReads = true;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Options.listOptimisticReads = savedOptimistic;
+    }
+
+    /** Storage that writes to its guard in the middle of each read, as another thread might. */
+    private static class Interrupted extends ArrayList<PyObject> {
+
+        StampedList guard;
+        boolean interrupt;
+        boolean fail;
+
+        private void interrupt() {
+            if (fail) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (interrupt) {
+                interrupt = false;
+                guard.set(0, guard.get(0));
+            }
+        }
+
+        @Override
+        public PyObject get(int index) {
+            interrupt();
+            return super.get(index);
+        }
+
+        @Override
+        public int size() {
+            int size = super.size();
+            interrupt();
+            return size;
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a) {
+            interrupt();
+            return super.toArray(a);
+        }
+    }
+
+    public void testOptimisticReads() {
+        Interrupted items = new Interrupted();
+        StampedList list = new StampedList(items);
+        items.guard = list;
+        for (int i = 0; i < 3; i++) {
+            list.add(Py.newInteger(i));
+        }
+        assertEquals(Py.newInteger(1), list.optimisticGet(1));
+        assertEquals(Py.newInteger(2), list.optimisticGet(-1));
+        assertNull(list.optimisticGet(3));
+        assertNull(list.optimisticGet(-4));
+        assertEquals(3, list.optimisticSize());
+        assertEquals(3, list.optimisticToArray().length);
+    }
+
+    public void testStampFails() {
+        Interrupted items = new Interrupted();
+        StampedList list = new StampedList(items);
+        items.guard = list;
+        list.add(Py.newInteger(7));
+        items.interrupt = true;
+        assertNull(list.optimisticGet(0));
+        items.interrupt = true;
+        assertEquals(-1, list.optimisticSize());
+        items.interrupt = true;
+        assertNull(list.optimisticToArray());
+        // Inconsistent state seen during a write is a failure too
+        items.fail = true;
+        assertNull(list.optimisticGet(0));
+        assertNull(list.optimisticToArray());
+        items.fail = false;
+        assertEquals(Py.newInteger(7), list.optimisticGet(0));
+    }
+
+    public void testPyListFallsBack() {
+        // Through a PyList, a failed read is made again holding the lock
+        Interrupted items = new Interrupted();
+        StampedList storage = new StampedList(items);
+        items.guard = storage;
+        for (int i = 0; i < 3; i++) {
+            storage.add(Py.newInteger(i));
+        }
+        PyList list = PyList.fromList(storage);
+        items.interrupt = true;
+        assertEquals(Py.newInteger(1), list.__getitem__(Py.newInteger(1)));
+        items.interrupt = true;
+        assertEquals(3, list.__len__());
+        items.interrupt = true;
+        assertEquals(3, list.getArray().length);
+        items.interrupt = true;
+        PyObject iter = list.__iter__();
+        assertEquals(Py.newInteger(0), iter.__iternext__());
+        items.interrupt = true;
+        assertEquals(Py.newInteger(1), iter.__iternext__());
+        assertEquals(Py.newInteger(2), iter.__iternext__());
+        items.interrupt = true;
+        assertNull(iter.__iternext__());
+        // Once stopped, it stays stopped
+        list.append(Py.newInteger(3));
+        assertNull(iter.__iternext__());
+    }
+
+    public void testReadsDuringWrites() throws InterruptedException {
+        // The writer grows and shrinks the list at the end (so that its array is reallocated),
+        // and sets items, keeping list[i] == i: the readers check that this is what they see
+        final int base = 100;
+        final PyList list = new PyList();
+        assertTrue(list.readsOptimistically());
+        for (int i = 0; i < base; i++) {
+            list.append(Py.newInteger(i));
+        }
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread writer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    for (int r = 0; r < 2000; r++) {
+                        for (int i = base; i < base + 50; i++) {
+                            list.append(Py.newInteger(i));
+                        }
+                        for (int i = 0; i < base; i += 7) {
+                            list.__setitem__(i, Py.newInteger(i));
+                        }
+                        for (int i = base + 50; i > base; i--) {
+                            list.pop();
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        };
+        Thread[] readers = new Thread[3];
+        for (int n = 0; n < readers.length; n++) {
+            readers[n] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        while (failure.get() == null && writer.isAlive()) {
+                            int len = list.__len__();
+                            if (len < base || len > base + 50) {
+                                throw new AssertionError("length " + len);
+                            }
+                            for (int i = 0; i < base; i++) {
+                                PyObject item = list.__getitem__(Py.newInteger(i));
+                                if (item.asInt() != i) {
+                                    throw new AssertionError("list[" + i + "] was " + item);
+                                }
+                            }
+                            int count = 0;
+                            for (PyObject item : list.asIterable()) {
+                                if (item.asInt() != count++) {
+                                    throw new AssertionError("item " + count + " was " + item);
+                                }
+                            }
+                            if (count < base) {
+                                throw new AssertionError("iterated over " + count);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+        }
+        writer.start();
+        for (Thread t : readers) {
+            t.start();
+        }
+        writer.join();
+        for (Thread t : readers) {
+            t.join();
+        }
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertEquals(base, list.__len__());
+    }
+}
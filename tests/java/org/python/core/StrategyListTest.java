@@ -0,0 +1,89 @@
+package org.python.core;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the storage of lists by strategy: each change of strategy must keep the items.
+ */
+public class StrategyListTest extends TestCase {
+
+    private StrategyList list;
+
+    @Override
+    protected void setUp() throws Exception {
+        list = new StrategyList();
+        for (int i = 0; i < 20; i++) {
+            list.add(Py.newInteger(i * 1000));
+        }
+    }
+
+    public void testIntsBoxedOnRead() {
+        assertEquals(20, list.size());
+        assertEquals(Py.newInteger(19000), list.get(19));
+        assertEquals(PyInteger.class, list.get(19).getClass());
+    }
+
+    public void testGeneraliseKeepsItems() {
+        PyString s = Py.newString("x");
+        list.add(5, s);
+        assertEquals(21, list.size());
+        assertSame(s, list.get(5));
+        assertEquals(Py.newInteger(4000), list.get(4));
+        assertEquals(Py.newInteger(5000), list.get(6));
+        // bool is a subclass of int, so cannot be held as one
+        list.set(0, Py.True);
+        assertSame(Py.True, list.get(0));
+    }
+
+    public void testFloatsAndNaN() {
+        StrategyList floats = new StrategyList();
+        floats.add(Py.newFloat(-0.0));
+        floats.add(Py.newFloat(1.5));
+        assertEquals(Double.doubleToRawLongBits(-0.0),
+                Double.doubleToRawLongBits(((PyFloat)floats.get(0)).getValue()));
+        PyFloat nan = Py.newFloat(Double.NaN);
+        floats.add(nan);
+        assertSame(nan, floats.get(2));
+        assertEquals(Py.newFloat(1.5), floats.get(1));
+    }
+
+    public void testAddAllAndRemove() {
+        list.addAll(list);
+        assertEquals(40, list.size());
+        assertEquals(Py.newInteger(0), list.get(20));
+        list.subList(0, 30).clear();
+        assertEquals(10, list.size());
+        assertEquals(Py.newInteger(10000), list.remove(0));
+        list.addAll(0, Arrays.asList(Py.newFloat(0.5), Py.None));
+        assertEquals(11, list.size());
+        assertSame(Py.None, list.get(1));
+        assertEquals(Py.newInteger(11000), list.get(2));
+        list.clear();
+        list.add(Py.newFloat(2.5));
+        assertEquals(Py.newFloat(2.5), list.get(0));
+    }
+
+    public void testToArray() {
+        Object[] items = list.toArray();
+        assertEquals(Object[].class, items.getClass());
+        assertEquals(Py.newInteger(1000), items[1]);
+        PyObject[] typed = list.toArray(new PyObject[25]);
+        assertEquals(25, typed.length);
+        assertNull(typed[20]);
+    }
+
+    public void testSum() {
+        assertEquals(Py.newInteger(190000), list.sum(Py.Zero));
+        // Once it overflows int, the sum is long, even if it comes back in range
+        StrategyList ints = new StrategyList();
+        ints.add(Py.newInteger(Integer.MAX_VALUE));
+        ints.add(Py.newInteger(1));
+        ints.add(Py.newInteger(-1));
+        PyObject sum = ints.sum(Py.Zero);
+        assertEquals(PyLong.class, sum.getClass());
+        assertEquals(Integer.MAX_VALUE, sum.asInt());
+        assertNull(ints.sum(Py.newFloat(0.0)));
+    }
+}
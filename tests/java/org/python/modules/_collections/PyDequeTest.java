@@ -0,0 +1,286 @@
+package org.python.modules._collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.core.PyList;
+import org.python.core.PyObject;
+import org.python.core.PySystemState;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the deque with a lock at each end: items pass between several producers and consumers
+ * once each and in order, the array grows while items are taken from the left, a bounded deque
+ * discards from the opposite end, and an iterator fails after a change.
+ */
+public class PyDequeTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        PySystemState.initialize();
+    }
+
+    private static PyDeque deque(int maxlen, int... values) {
+        PyDeque d = new PyDeque();
+        PyList items = new PyList();
+        for (int v : values) {
+            items.append(Py.newInteger(v));
+        }
+        d.deque___init__(new PyObject[] {items, maxlen < 0 ? Py.None : Py.newInteger(maxlen)},
+                Py.NoKeywords);
+        return d;
+    }
+
+    private static void assertItems(PyDeque d, int... values) {
+        assertEquals(values.length, d.__len__());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(Py.newInteger(values[i]), d.__finditem__(Py.newInteger(i)));
+        }
+    }
+
+    public void testGrowAfterPopleft() {
+        // The items wrap round the end of the array when it has to grow
+        PyDeque d = deque(-1, 0, 1, 2, 3, 4, 5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Py.newInteger(i), d.deque_popleft());
+        }
+        for (int i = 6; i < 30; i++) {
+            d.deque_append(Py.newInteger(i));
+        }
+        d.deque_appendleft(Py.newInteger(-1));
+        int[] expected = new int[26];
+        expected[0] = -1;
+        for (int i = 1; i < expected.length; i++) {
+            expected[i] = i + 4;
+        }
+        assertItems(d, expected);
+    }
+
+    public void testGrowDuringPopleft() throws InterruptedException {
+        // A consumer takes from a deque that the producer makes grow many times
+        final PyDeque d = deque(-1);
+        final int n = 200000;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread consumer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    int next = 0;
+                    while (next < n && failure.get() == null) {
+                        PyObject item;
+                        try {
+                            item = d.deque_popleft();
+                        } catch (PyException e) {
+                            continue;
+                        }
+                        if (item.asInt() != next) {
+                            throw new AssertionError("expected " + next + " but got " + item);
+                        }
+                        next++;
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        };
+        consumer.start();
+        for (int i = 0; i < n; i++) {
+            d.deque_append(Py.newInteger(i));
+        }
+        consumer.join();
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertEquals(0, d.__len__());
+    }
+
+    public void testProducersAndConsumers() throws InterruptedException {
+        // Every item is taken exactly once, and those of one producer in the order it gave them
+        final PyDeque d = deque(-1);
+        final int producers = 4, consumers = 4, n = 50000;
+        final AtomicInteger taken = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final boolean[] seen = new boolean[producers * n];
+        Thread[] threads = new Thread[producers + consumers];
+        for (int p = 0; p < producers; p++) {
+            final int first = p * n;
+            final boolean extend = p % 2 == 1;
+            threads[p] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int i = first; i < first + n; i += 10) {
+                            if (extend) {
+                                PyList batch = new PyList();
+                                for (int j = i; j < i + 10; j++) {
+                                    batch.append(Py.newInteger(j));
+                                }
+                                d.deque_extend(batch);
+                            } else {
+                                for (int j = i; j < i + 10; j++) {
+                                    d.deque_append(Py.newInteger(j));
+                                }
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+        }
+        final List<List<Integer>> results = new ArrayList<List<Integer>>();
+        for (int c = 0; c < consumers; c++) {
+            final List<Integer> mine = new ArrayList<Integer>();
+            results.add(mine);
+            threads[producers + c] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        while (taken.get() < producers * n && failure.get() == null) {
+                            try {
+                                mine.add(d.deque_popleft().asInt());
+                                taken.incrementAndGet();
+                            } catch (PyException e) {
+                                // empty for now
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertEquals(0, d.__len__());
+        for (List<Integer> mine : results) {
+            int[] last = new int[producers];
+            for (int p = 0; p < producers; p++) {
+                last[p] = -1;
+            }
+            for (int value : mine) {
+                assertFalse("duplicate " + value, seen[value]);
+                seen[value] = true;
+                int p = value / n;
+                assertTrue("out of order " + value, value > last[p]);
+                last[p] = value;
+            }
+        }
+        for (int i = 0; i < seen.length; i++) {
+            assertTrue("lost " + i, seen[i]);
+        }
+    }
+
+    public void testBoundedDiscards() {
+        PyDeque d = deque(3);
+        for (int i = 0; i < 10; i++) {
+            d.deque_append(Py.newInteger(i));
+        }
+        assertItems(d, 7, 8, 9);
+        d.deque_appendleft(Py.newInteger(6));
+        assertItems(d, 6, 7, 8);
+        d.deque_extend(deque(-1, 10, 11));
+        assertItems(d, 8, 10, 11);
+        d.deque_extendleft(deque(-1, 5, 4));
+        assertItems(d, 4, 5, 8);
+        assertEquals(Py.newInteger(4), d.deque_popleft());
+        d.deque_append(Py.newInteger(12));
+        assertItems(d, 5, 8, 12);
+        // Always empty
+        PyDeque empty = deque(0);
+        empty.deque_append(Py.newInteger(1));
+        empty.deque_appendleft(Py.newInteger(2));
+        assertEquals(0, empty.__len__());
+    }
+
+    public void testBoundedConcurrently() throws InterruptedException {
+        // Appends that discard from the left, against a consumer at the left
+        final PyDeque d = deque(5);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread producer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 200000; i++) {
+                        d.deque_append(Py.newInteger(i));
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        };
+        Thread consumer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    int last = -1;
+                    while (producer.isAlive() && failure.get() == null) {
+                        if (d.__len__() > 5) {
+                            throw new AssertionError("length " + d.__len__());
+                        }
+                        try {
+                            int value = d.deque_popleft().asInt();
+                            if (value <= last) {
+                                throw new AssertionError(value + " after " + last);
+                            }
+                            last = value;
+                        } catch (PyException e) {
+                            // empty for now
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        };
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertTrue(d.__len__() <= 5);
+    }
+
+    public void testIteratorInvalidated() {
+        PyObject[] changes = {Py.newString("append"), Py.newString("appendleft"),
+                Py.newString("pop"), Py.newString("popleft"), Py.newString("clear"),
+                Py.newString("rotate"), Py.newString("reverse")};
+        for (PyObject change : changes) {
+            PyDeque d = deque(-1, 1, 2, 3);
+            PyObject iter = d.__iter__();
+            assertEquals(Py.newInteger(1), iter.__iternext__());
+            PyObject method = d.__getattr__(change.toString());
+            if (change.toString().startsWith("append")) {
+                method.__call__(Py.newInteger(4));
+            } else {
+                method.__call__();
+            }
+            try {
+                iter.__iternext__();
+                fail(change + " did not invalidate the iterator");
+            } catch (PyException e) {
+                assertTrue(e.match(Py.RuntimeError));
+            }
+        }
+        // Without a change, it runs to the end
+        PyDeque d = deque(-1, 1, 2, 3);
+        int count = 0;
+        for (PyObject item : d.asIterable()) {
+            assertEquals(Py.newInteger(++count), item);
+        }
+        assertEquals(3, count);
+    }
+}